@@ -0,0 +1,127 @@
+package com.exoplayer.video;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 在内存中保存完整短视频的 LRU 缓存，供 {@link MemoryLoopDataSource} 循环播放时直接从内存读取。
+ * <p>
+ * 所有片段共享一个总字节上限，超出时淘汰最久未使用的片段；超过单个片段上限的媒体不会被缓存。可以在任意线程使用。
+ */
+public final class ClipMemoryCache {
+
+    /**
+     * The default total size of all cached clips, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+    /**
+     * The default maximum size of a single clip, in bytes.
+     */
+    public static final int DEFAULT_MAX_CLIP_BYTES = 8 * 1024 * 1024;
+
+    @Nullable
+    private static ClipMemoryCache instance;
+
+    private final long maxBytes;
+    private final int maxClipBytes;
+    private final LinkedHashMap<String, byte[]> clips;
+    private long sizeBytes;
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxBytes     The total size of all cached clips, in bytes.
+     * @param maxClipBytes The maximum size of a single clip, in bytes.
+     */
+    public ClipMemoryCache(long maxBytes, int maxClipBytes) {
+        Assertions.checkArgument(maxClipBytes > 0 && maxBytes >= maxClipBytes);
+        this.maxBytes = maxBytes;
+        this.maxClipBytes = maxClipBytes;
+        clips = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+    }
+
+    /**
+     * Returns the process wide instance using the default limits.
+     */
+    public static synchronized ClipMemoryCache getInstance() {
+        if (instance == null) {
+            instance = new ClipMemoryCache(DEFAULT_MAX_BYTES, DEFAULT_MAX_CLIP_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the maximum size of a single clip, in bytes.
+     */
+    public int getMaxClipBytes() {
+        return maxClipBytes;
+    }
+
+    /**
+     * Returns the total size of the cached clips, in bytes.
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Returns the cached data of a clip, or {@code null} if it is not cached.
+     *
+     * @param key The cache key of the clip.
+     */
+    @Nullable
+    public synchronized byte[] get(String key) {
+        return clips.get(key);
+    }
+
+    /**
+     * Caches the complete data of a clip, evicting the least recently used clips if needed.
+     *
+     * @param key  The cache key of the clip.
+     * @param data The complete data of the clip. Must not be modified afterwards.
+     */
+    public synchronized void put(String key, byte[] data) {
+        if (data.length > maxClipBytes) {
+            return;
+        }
+        @Nullable byte[] previous = clips.put(key, data);
+        if (previous != null) {
+            sizeBytes -= previous.length;
+        }
+        sizeBytes += data.length;
+        Iterator<Map.Entry<String, byte[]>> iterator = clips.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            sizeBytes -= eldest.getValue().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes a clip.
+     *
+     * @param key The cache key of the clip.
+     */
+    public synchronized void remove(String key) {
+        @Nullable byte[] removed = clips.remove(key);
+        if (removed != null) {
+            sizeBytes -= removed.length;
+        }
+    }
+
+    /**
+     * Removes all clips.
+     */
+    public synchronized void clear() {
+        clips.clear();
+        sizeBytes = 0;
+    }
+}
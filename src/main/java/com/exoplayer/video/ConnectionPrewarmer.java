@@ -0,0 +1,210 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 提前与即将播放的媒体所在的主机建立连接，省去第一个请求的 DNS、TCP 和 TLS 握手。
+ * <p>
+ * 预热对媒体地址发送一个 {@code HEAD} 请求，完成后连接回到 HTTP 栈的保活连接池，随后的播放请求直接复用。
+ * {@link DefaultHttpDataSource} 使用的 {@code HttpURLConnection} 在进程内共享一个连接池（默认最多保留 5 个空闲连接，
+ * 空闲 5 分钟后关闭），所以同时保持预热的主机数不应超过它；使用其他 HTTP 栈时，需要传入与播放相同的工厂。
+ * 同一主机在空闲超时内只预热一次。
+ * <p>
+ * 通过 {@link PlayerFactory#setConnectionPrewarmer(ConnectionPrewarmer)} 创建的播放器会预热播放列表中后续媒体的主机，
+ * 信息流等不在播放列表中的媒体可以调用 {@link #prewarm(Uri)}。
+ */
+public final class ConnectionPrewarmer {
+
+    /**
+     * The default maximum number of hosts kept warm.
+     */
+    public static final int DEFAULT_MAX_HOSTS = 4;
+    /**
+     * The default time after which a warmed host is warmed again, in milliseconds.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+    /**
+     * The default number of upcoming playlist items whose hosts are warmed.
+     */
+    public static final int DEFAULT_LOOKAHEAD = 2;
+
+    private static final String TAG = "ConnectionPrewarmer";
+
+    private final DataSource.Factory dataSourceFactory;
+    private final int maxHosts;
+    private final long idleTimeoutMs;
+    private final ExecutorService executor;
+    /**
+     * 主机到最后一次预热时间，按访问顺序排列
+     **/
+    private final LinkedHashMap<String, Long> warmHosts;
+    private int lookahead;
+
+    /**
+     * Creates an instance that warms the connection pool of {@link DefaultHttpDataSource}.
+     */
+    public ConnectionPrewarmer() {
+        this(new DefaultHttpDataSource.Factory(), DEFAULT_MAX_HOSTS, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param dataSourceFactory The factory of the HTTP {@link DataSource}, sharing its connection
+     *                          pool with playback.
+     * @param maxHosts          The maximum number of hosts kept warm. Should not exceed the number
+     *                          of idle connections the pool keeps alive.
+     * @param idleTimeoutMs     The time after which a warmed host is warmed again, in milliseconds.
+     *                          Should not exceed the keep-alive duration of the pool.
+     */
+    public ConnectionPrewarmer(DataSource.Factory dataSourceFactory, int maxHosts, long idleTimeoutMs) {
+        Assertions.checkArgument(maxHosts > 0 && idleTimeoutMs > 0);
+        this.dataSourceFactory = dataSourceFactory;
+        this.maxHosts = maxHosts;
+        this.idleTimeoutMs = idleTimeoutMs;
+        executor = Executors.newFixedThreadPool(2);
+        warmHosts = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+        lookahead = DEFAULT_LOOKAHEAD;
+    }
+
+    /**
+     * Sets the number of upcoming playlist items whose hosts are warmed.
+     *
+     * @param lookahead The number of upcoming items.
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Warms a connection to the host of a media item. Does nothing if the item has no http(s) uri.
+     *
+     * @param mediaItem The {@link MediaItem}.
+     */
+    public void prewarm(MediaItem mediaItem) {
+        if (mediaItem.localConfiguration != null) {
+            prewarm(mediaItem.localConfiguration.uri);
+        }
+    }
+
+    /**
+     * Warms a connection to the host of a uri. Does nothing if the uri is not http(s) or the host
+     * was warmed recently. May be called from any thread.
+     *
+     * @param uri The uri of the media, which is requested with {@code HEAD}.
+     */
+    public void prewarm(Uri uri) {
+        @Nullable String scheme = uri.getScheme();
+        if ((!"http".equals(scheme) && !"https".equals(scheme)) || uri.getHost() == null || executor.isShutdown()) {
+            return;
+        }
+        String host = scheme + "://" + uri.getHost() + ":" + uri.getPort();
+        long nowMs = SystemClock.elapsedRealtime();
+        synchronized (warmHosts) {
+            @Nullable Long lastWarmedMs = warmHosts.get(host);
+            if (lastWarmedMs != null && nowMs - lastWarmedMs < idleTimeoutMs) {
+                return;
+            }
+            warmHosts.put(host, nowMs);
+            Iterator<String> iterator = warmHosts.keySet().iterator();
+            while (warmHosts.size() > maxHosts && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        executor.execute(() -> warm(uri));
+    }
+
+    /**
+     * Warms the hosts of the items following the current item of a player, in playback order.
+     *
+     * @param player The {@link Player}.
+     */
+    public void prewarmUpcoming(Player player) {
+        Timeline timeline = player.getCurrentTimeline();
+        if (timeline.isEmpty()) {
+            return;
+        }
+        Timeline.Window window = new Timeline.Window();
+        int index = player.getCurrentMediaItemIndex();
+        for (int i = 0; i < lookahead; i++) {
+            index = timeline.getNextWindowIndex(index, player.getRepeatMode(), player.getShuffleModeEnabled());
+            if (index == C.INDEX_UNSET) {
+                break;
+            }
+            prewarm(timeline.getWindow(index, window).mediaItem);
+        }
+    }
+
+    /**
+     * Stops warming connections.
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Warms the hosts of upcoming items whenever the playlist or the current item of a player
+     * changes.
+     */
+    /* package */ void attach(Player player) {
+        player.addListener(new PlaylistListener(player));
+    }
+
+    private void warm(Uri uri) {
+        DataSource dataSource = dataSourceFactory.createDataSource();
+        try {
+            dataSource.open(new DataSpec.Builder().setUri(uri).setHttpMethod(DataSpec.HTTP_METHOD_HEAD).build());
+        } catch (IOException e) {
+            // 即使服务器拒绝 HEAD，握手也已经完成。
+            Log.d(TAG, "Prewarm request failed: " + uri, e);
+        } finally {
+            DataSourceUtil.closeQuietly(dataSource);
+        }
+    }
+
+    /**
+     * 播放列表或当前媒体变化时预热后续媒体.
+     */
+    private final class PlaylistListener implements Player.Listener {
+
+        private final Player player;
+
+        public PlaylistListener(Player player) {
+            this.player = player;
+        }
+
+        @Override
+        public void onMediaItemTransition(@Nullable MediaItem mediaItem, @Player.MediaItemTransitionReason int reason) {
+            prewarmUpcoming(player);
+        }
+
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, @Player.TimelineChangeReason int reason) {
+            if (reason == Player.TIMELINE_CHANGE_REASON_PLAYLIST_CHANGED) {
+                prewarmUpcoming(player);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.exoplayer.video;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * 按 {@link DataSaverProfile} 当前的限制截断缓冲的 {@link LoadControl}。
+ * <p>
+ * 其余决策交给内部的 {@link DefaultLoadControl}，它的最大缓冲取所有网络类别中最大的值，这里只在此基础上提前停止加载，
+ * 所以网络变化后无需重建播放器就能生效。同时作为 {@link Player.Listener} 记录是否在播放，未播放时使用预加载上限。
+ */
+/* package */ final class DataSaverLoadControl implements LoadControl, Player.Listener {
+
+    private final DataSaverProfile profile;
+    private final DefaultLoadControl loadControl;
+    private volatile boolean playWhenReady;
+
+    /**
+     * @param profile     The {@link DataSaverProfile}.
+     * @param loadControl The delegate, whose maximum buffer should be at least {@link
+     *                    #getMaxBufferMs(DataSaverProfile)}.
+     */
+    public DataSaverLoadControl(DataSaverProfile profile, DefaultLoadControl loadControl) {
+        this.profile = profile;
+        this.loadControl = loadControl;
+    }
+
+    /**
+     * Returns the largest buffer any network class of {@code profile} allows, in milliseconds.
+     */
+    public static int getMaxBufferMs(DataSaverProfile profile) {
+        int maxBufferMs = 0;
+        for (int networkClass = DataSaverProfile.NETWORK_CLASS_UNMETERED; networkClass <= DataSaverProfile.NETWORK_CLASS_CELLULAR; networkClass++) {
+            DataSaverProfile.Limits limits = profile.getLimits(networkClass);
+            maxBufferMs = Math.max(maxBufferMs, Math.max(limits.maxBufferMs, limits.maxPrefetchMs));
+        }
+        return maxBufferMs;
+    }
+
+    // LoadControl implementation
+
+    @Override
+    public void onPrepared() {
+        loadControl.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(@NonNull Renderer[] renderers, @NonNull TrackGroupArray trackGroups, @NonNull ExoTrackSelection[] trackSelections) {
+        loadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        loadControl.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        loadControl.onReleased();
+    }
+
+    @NonNull
+    @Override
+    public Allocator getAllocator() {
+        return loadControl.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return loadControl.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return loadControl.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        DataSaverProfile.Limits limits = profile.getLimits();
+        long maxBufferUs = Util.msToUs(playWhenReady ? limits.maxBufferMs : limits.maxPrefetchMs);
+        if (bufferedDurationUs >= maxBufferUs) {
+            return false;
+        }
+        return loadControl.shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering, long targetLiveOffsetUs) {
+        return loadControl.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering, targetLiveOffsetUs);
+    }
+
+    // Player.Listener implementation
+
+    @Override
+    public void onPlayWhenReadyChanged(boolean playWhenReady, @Player.PlayWhenReadyChangeReason int reason) {
+        this.playWhenReady = playWhenReady;
+    }
+}
@@ -0,0 +1,250 @@
+package com.exoplayer.video;
+
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.NetworkTypeObserver;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按网络类型限制码率、缓冲目标和预加载的省流量配置。
+ * <p>
+ * 网络分为不计流量、计流量（例如计流量的 Wi-Fi）和蜂窝网络三类，每类有各自的 {@link Limits}，网络变化时立即切换。
+ * 码率上限通过 {@link ExoVideoView#setDataSaverProfile(DataSaverProfile)} 作用于视图的轨道选择；
+ * 缓冲目标和预加载上限需要播放器使用 {@link PlayerFactory#setDataSaverProfile(DataSaverProfile)} 创建的加载控制。
+ */
+public final class DataSaverProfile {
+
+    /**
+     * 网络类别. One of {@link #NETWORK_CLASS_UNMETERED}, {@link #NETWORK_CLASS_METERED} or {@link
+     * #NETWORK_CLASS_CELLULAR}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(TYPE_USE)
+    @IntDef({NETWORK_CLASS_UNMETERED, NETWORK_CLASS_METERED, NETWORK_CLASS_CELLULAR})
+    public @interface NetworkClass {
+    }
+
+    /**
+     * 不计流量的网络，例如普通 Wi-Fi 和以太网.
+     */
+    public static final int NETWORK_CLASS_UNMETERED = 0;
+    /**
+     * 计流量的非蜂窝网络，例如热点或计流量的 Wi-Fi.
+     */
+    public static final int NETWORK_CLASS_METERED = 1;
+    /**
+     * 蜂窝网络.
+     */
+    public static final int NETWORK_CLASS_CELLULAR = 2;
+
+    /**
+     * 一类网络下的限制.
+     */
+    public static final class Limits {
+
+        /**
+         * 不做限制，缓冲使用 {@link DefaultLoadControl} 的默认值
+         **/
+        public static final Limits UNLIMITED = new Limits(Integer.MAX_VALUE, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS);
+
+        /**
+         * 最高视频码率，单位 bit/s
+         **/
+        public final int maxVideoBitrate;
+        /**
+         * 播放时最多缓冲的时长
+         **/
+        public final int maxBufferMs;
+        /**
+         * 未播放（准备中或暂停）时最多预加载的时长
+         **/
+        public final int maxPrefetchMs;
+
+        /**
+         * Creates an instance. Buffer durations below {@link
+         * DefaultLoadControl#DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS} are raised to it so
+         * playback can always resume.
+         *
+         * @param maxVideoBitrate The maximum video bitrate, in bits per second.
+         * @param maxBufferMs     The maximum buffered duration while playing, in milliseconds.
+         * @param maxPrefetchMs   The maximum buffered duration while not playing, in milliseconds.
+         */
+        public Limits(int maxVideoBitrate, int maxBufferMs, int maxPrefetchMs) {
+            Assertions.checkArgument(maxVideoBitrate > 0);
+            this.maxVideoBitrate = maxVideoBitrate;
+            this.maxBufferMs = Math.max(maxBufferMs, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+            this.maxPrefetchMs = Math.max(maxPrefetchMs, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+        }
+    }
+
+    /**
+     * 限制变化回调.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the main thread when the network class and therefore the limits changed.
+         *
+         * @param networkClass The new {@link NetworkClass}.
+         * @param limits       The {@link Limits} of the new network class.
+         */
+        void onLimitsChanged(@NetworkClass int networkClass, Limits limits);
+    }
+
+    /**
+     * {@link DataSaverProfile} 的构建器.
+     */
+    public static final class Builder {
+
+        private final Context context;
+        private final Limits[] limits;
+
+        /**
+         * Creates a builder with the default limits: unlimited on unmetered networks, 2.5 Mbit/s with
+         * 20 s of buffer on metered networks and 1.2 Mbit/s with 15 s of buffer on cellular
+         * networks.
+         *
+         * @param context A {@link Context}.
+         */
+        public Builder(Context context) {
+            this.context = context.getApplicationContext();
+            limits = new Limits[]{Limits.UNLIMITED, new Limits(2_500_000, 20_000, 10_000), new Limits(1_200_000, 15_000, 5_000)};
+        }
+
+        /**
+         * Sets the limits of a network class.
+         *
+         * @param networkClass The {@link NetworkClass}.
+         * @param limits       The {@link Limits}.
+         * @return This builder.
+         */
+        public Builder setLimits(@NetworkClass int networkClass, Limits limits) {
+            this.limits[networkClass] = limits;
+            return this;
+        }
+
+        /**
+         * Builds the profile and starts monitoring the network.
+         */
+        public DataSaverProfile build() {
+            return new DataSaverProfile(context, limits.clone());
+        }
+    }
+
+    private final Context context;
+    private final Limits[] limits;
+    private final CopyOnWriteArrayList<Listener> listeners;
+    /**
+     * {@link NetworkTypeObserver} 只持有弱引用，这里持有强引用
+     **/
+    private final NetworkTypeObserver.Listener networkTypeListener;
+    private volatile @NetworkClass int networkClass;
+
+    private DataSaverProfile(Context context, Limits[] limits) {
+        this.context = context;
+        this.limits = limits;
+        listeners = new CopyOnWriteArrayList<>();
+        networkClass = NETWORK_CLASS_UNMETERED;
+        networkTypeListener = this::onNetworkTypeChanged;
+        NetworkTypeObserver.getInstance(context).register(networkTypeListener);
+    }
+
+    /**
+     * Returns the current {@link NetworkClass}. May be called from any thread.
+     */
+    public @NetworkClass int getNetworkClass() {
+        return networkClass;
+    }
+
+    /**
+     * Returns the {@link Limits} of the current network class. May be called from any thread.
+     */
+    public Limits getLimits() {
+        return limits[networkClass];
+    }
+
+    /**
+     * Returns the {@link Limits} of a network class.
+     *
+     * @param networkClass The {@link NetworkClass}.
+     */
+    public Limits getLimits(@NetworkClass int networkClass) {
+        return limits[networkClass];
+    }
+
+    /**
+     * Adds a {@link Listener}.
+     */
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a {@link Listener}.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void onNetworkTypeChanged(@C.NetworkType int networkType) {
+        if (networkType == C.NETWORK_TYPE_OFFLINE) {
+            // 离线时保持原来的限制，恢复连接后再判断。
+            return;
+        }
+        @NetworkClass int newNetworkClass;
+        if (isCellular(networkType)) {
+            newNetworkClass = NETWORK_CLASS_CELLULAR;
+        } else if (isActiveNetworkMetered()) {
+            newNetworkClass = NETWORK_CLASS_METERED;
+        } else {
+            newNetworkClass = NETWORK_CLASS_UNMETERED;
+        }
+        if (newNetworkClass == networkClass) {
+            return;
+        }
+        networkClass = newNetworkClass;
+        Limits newLimits = limits[newNetworkClass];
+        for (Listener listener : listeners) {
+            listener.onLimitsChanged(newNetworkClass, newLimits);
+        }
+    }
+
+    private boolean isActiveNetworkMetered() {
+        @Nullable ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        try {
+            return connectivityManager != null && connectivityManager.isActiveNetworkMetered();
+        } catch (SecurityException e) {
+            // 缺少 ACCESS_NETWORK_STATE 权限。
+            return false;
+        }
+    }
+
+    private static boolean isCellular(@C.NetworkType int networkType) {
+        switch (networkType) {
+            case C.NETWORK_TYPE_CELLULAR_UNKNOWN:
+            case C.NETWORK_TYPE_2G:
+            case C.NETWORK_TYPE_3G:
+            case C.NETWORK_TYPE_4G:
+            case C.NETWORK_TYPE_5G_SA:
+            case C.NETWORK_TYPE_5G_NSA:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
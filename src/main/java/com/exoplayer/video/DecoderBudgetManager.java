@@ -0,0 +1,354 @@
+package com.exoplayer.video;
+
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import android.graphics.Rect;
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.DoNotInline;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 在同时播放多个 {@link ExoVideoView} 的网格中分配硬件解码器。
+ * <p>
+ * 设备能同时运行的硬件解码器数量有限，超出后播放器会失败或退回软件解码，整个画面都会卡顿。
+ * 这里按优先级（焦点、应用设置的优先级、可见面积）排序，只让前 N 个小窗口正常播放，其余的禁用视频轨道并显示最后一帧，
+ * 释放它们的解码器。小窗口的布局、滚动或可见性变化时自动重新分配。只能在主线程使用。
+ * <p>
+ * 只有默认的 {@link #DEGRADATION_POSTER} 会减少同时使用的解码器；{@link #DEGRADATION_LOW_RESOLUTION}
+ * 只降低分辨率，播放器仍然为低分辨率轨道选择硬件解码器，适用于解码器数量充足、只需要降低解码负载的场景。
+ */
+public final class DecoderBudgetManager {
+
+    /**
+     * 超出预算的小窗口如何降级. One of {@link #DEGRADATION_LOW_RESOLUTION} or {@link
+     * #DEGRADATION_POSTER}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(TYPE_USE)
+    @IntDef({DEGRADATION_LOW_RESOLUTION, DEGRADATION_POSTER})
+    public @interface Degradation {
+    }
+
+    /**
+     * 限制为低分辨率轨道，降低解码和带宽负载。播放器仍然使用硬件解码器，不减少同时使用的解码器数量
+     */
+    public static final int DEGRADATION_LOW_RESOLUTION = 0;
+    /**
+     * 禁用视频轨道，释放解码器，显示最后一帧
+     */
+    public static final int DEGRADATION_POSTER = 1;
+
+    /**
+     * API 23 以下无法查询解码器实例数时使用的保守值
+     */
+    public static final int DEFAULT_MAX_DECODER_INSTANCES = 4;
+
+    private static final String TAG = "DecoderBudgetManager";
+    private static final int LOW_RESOLUTION_MAX_WIDTH = 426;
+    private static final int LOW_RESOLUTION_MAX_HEIGHT = 240;
+
+    private final int maxHardwareDecoders;
+    private final List<Tile> tiles;
+    private final Handler handler;
+    private final Runnable rebalanceRunnable;
+    private final Rect visibleRect;
+    private @Degradation int degradation;
+    @Nullable
+    private ExoVideoView focusedTile;
+    private boolean rebalancePending;
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxHardwareDecoders The number of tiles allowed to decode at full quality, for example
+     *                            {@link #getMaxHardwareDecoderInstances(String)}.
+     */
+    public DecoderBudgetManager(int maxHardwareDecoders) {
+        Assertions.checkArgument(maxHardwareDecoders >= 0);
+        this.maxHardwareDecoders = maxHardwareDecoders;
+        tiles = new ArrayList<>();
+        handler = new Handler(Looper.getMainLooper());
+        rebalanceRunnable = this::rebalance;
+        visibleRect = new Rect();
+        degradation = DEGRADATION_POSTER;
+    }
+
+    /**
+     * Returns the number of concurrent instances supported by the first hardware decoder for {@code
+     * mimeType}. The value reported by the platform is an upper bound shared with other apps. May
+     * block while the decoders are queried for the first time, so prefer calling it off the main
+     * thread.
+     *
+     * @param mimeType The video sample MIME type, for example {@code video/avc}.
+     */
+    public static int getMaxHardwareDecoderInstances(String mimeType) {
+        try {
+            for (MediaCodecInfo decoderInfo : MediaCodecUtil.getDecoderInfos(mimeType, /* secure= */ false, /* tunneling= */ false)) {
+                if (decoderInfo.hardwareAccelerated && decoderInfo.capabilities != null) {
+                    return Util.SDK_INT >= 23 ? Api23.getMaxSupportedInstances(decoderInfo.capabilities) : DEFAULT_MAX_DECODER_INSTANCES;
+                }
+            }
+        } catch (MediaCodecUtil.DecoderQueryException e) {
+            Log.w(TAG, "Failed to query decoders for " + mimeType, e);
+        }
+        return DEFAULT_MAX_DECODER_INSTANCES;
+    }
+
+    /**
+     * Sets how tiles outside the budget are degraded. The default is {@link #DEGRADATION_POSTER},
+     * which is the only mode that releases the decoders of degraded tiles. With {@link
+     * #DEGRADATION_LOW_RESOLUTION} degraded tiles keep their hardware decoders, so it does not keep
+     * the number of decoders within the budget.
+     *
+     * @param degradation The {@link Degradation}.
+     */
+    public void setDegradation(@Degradation int degradation) {
+        if (this.degradation != degradation) {
+            this.degradation = degradation;
+            invalidate();
+        }
+    }
+
+    /**
+     * Adds a tile to the budget.
+     *
+     * @param tile The {@link ExoVideoView}.
+     */
+    public void addTile(ExoVideoView tile) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        if (findTile(tile) != null) {
+            return;
+        }
+        Tile newTile = new Tile(tile);
+        tiles.add(newTile);
+        newTile.register();
+        invalidate();
+    }
+
+    /**
+     * Removes a tile and lifts its constraints.
+     *
+     * @param tile The {@link ExoVideoView}.
+     */
+    public void removeTile(ExoVideoView tile) {
+        @Nullable Tile removedTile = findTile(tile);
+        if (removedTile == null) {
+            return;
+        }
+        tiles.remove(removedTile);
+        removedTile.unregister();
+        tile.setVideoConstraints(this, null);
+        if (focusedTile == tile) {
+            focusedTile = null;
+        }
+        invalidate();
+    }
+
+    /**
+     * Sets the priority of a tile. Tiles with a higher priority get a hardware decoder first. The
+     * default is 0.
+     *
+     * @param tile     The {@link ExoVideoView}.
+     * @param priority The priority.
+     */
+    public void setTilePriority(ExoVideoView tile, int priority) {
+        Tile existingTile = Assertions.checkNotNull(findTile(tile));
+        if (existingTile.priority != priority) {
+            existingTile.priority = priority;
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the focused tile, which always gets a hardware decoder while it is visible.
+     *
+     * @param tile The focused {@link ExoVideoView}, or {@code null}.
+     */
+    public void setFocusedTile(@Nullable ExoVideoView tile) {
+        if (focusedTile != tile) {
+            focusedTile = tile;
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns whether a tile is currently allowed to decode at full quality.
+     *
+     * @param tile The {@link ExoVideoView}.
+     */
+    public boolean hasFullBudget(ExoVideoView tile) {
+        @Nullable Tile existingTile = findTile(tile);
+        return existingTile != null && !existingTile.degraded;
+    }
+
+    /**
+     * Schedules a rebalance on the next main loop iteration. Changes within one iteration are
+     * coalesced.
+     */
+    public void invalidate() {
+        if (!rebalancePending) {
+            rebalancePending = true;
+            handler.post(rebalanceRunnable);
+        }
+    }
+
+    /**
+     * Reassigns the hardware decoders immediately.
+     */
+    public void rebalance() {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        handler.removeCallbacks(rebalanceRunnable);
+        rebalancePending = false;
+        for (Tile tile : tiles) {
+            tile.visibleArea = tile.view.isShown() && tile.view.getGlobalVisibleRect(visibleRect) ? (long) visibleRect.width() * visibleRect.height() : 0;
+        }
+        List<Tile> rankedTiles = new ArrayList<>(tiles);
+        Collections.sort(rankedTiles, (a, b) -> {
+            if (a.visibleArea > 0 && b.visibleArea > 0 && (a.view == focusedTile || b.view == focusedTile)) {
+                return a.view == focusedTile ? -1 : 1;
+            }
+            if ((a.visibleArea > 0) != (b.visibleArea > 0)) {
+                return a.visibleArea > 0 ? -1 : 1;
+            }
+            if (a.priority != b.priority) {
+                return Integer.compare(b.priority, a.priority);
+            }
+            return Long.compare(b.visibleArea, a.visibleArea);
+        });
+        for (int i = 0; i < rankedTiles.size(); i++) {
+            Tile tile = rankedTiles.get(i);
+            tile.degraded = i >= maxHardwareDecoders || tile.visibleArea == 0;
+            @Nullable VideoConstraints constraints = null;
+            if (tile.visibleArea == 0) {
+                // 不可见的小窗口不需要解码视频。
+                constraints = VideoConstraints.VIDEO_DISABLED;
+            } else if (tile.degraded) {
+                constraints = degradation == DEGRADATION_LOW_RESOLUTION ? VideoConstraints.maxVideoSize(LOW_RESOLUTION_MAX_WIDTH, LOW_RESOLUTION_MAX_HEIGHT) : VideoConstraints.VIDEO_DISABLED;
+            }
+            tile.view.setVideoConstraints(this, constraints);
+        }
+    }
+
+    /**
+     * Removes all tiles and lifts their constraints.
+     */
+    public void release() {
+        while (!tiles.isEmpty()) {
+            removeTile(tiles.get(tiles.size() - 1).view);
+        }
+        handler.removeCallbacks(rebalanceRunnable);
+        rebalancePending = false;
+    }
+
+    @Nullable
+    private Tile findTile(ExoVideoView view) {
+        for (Tile tile : tiles) {
+            if (tile.view == view) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一个小窗口及其状态，监听会影响可见面积的变化.
+     */
+    private final class Tile implements View.OnLayoutChangeListener, View.OnAttachStateChangeListener, ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnGlobalLayoutListener {
+
+        public final ExoVideoView view;
+        public int priority;
+        public long visibleArea;
+        public boolean degraded;
+
+        public Tile(ExoVideoView view) {
+            this.view = view;
+        }
+
+        public void register() {
+            view.addOnLayoutChangeListener(this);
+            view.addOnAttachStateChangeListener(this);
+            if (view.isAttachedToWindow()) {
+                addTreeObservers();
+            }
+        }
+
+        public void unregister() {
+            view.removeOnLayoutChangeListener(this);
+            view.removeOnAttachStateChangeListener(this);
+            removeTreeObservers();
+        }
+
+        private void addTreeObservers() {
+            ViewTreeObserver observer = view.getViewTreeObserver();
+            observer.addOnScrollChangedListener(this);
+            observer.addOnGlobalLayoutListener(this);
+        }
+
+        private void removeTreeObservers() {
+            ViewTreeObserver observer = view.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(this);
+                observer.removeOnGlobalLayoutListener(this);
+            }
+        }
+
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            invalidate();
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            addTreeObservers();
+            invalidate();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            removeTreeObservers();
+            invalidate();
+        }
+
+        @Override
+        public void onScrollChanged() {
+            invalidate();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            // 捕获可见性变化（setVisibility 不会触发 onLayoutChange）。
+            invalidate();
+        }
+    }
+
+    @RequiresApi(23)
+    private static final class Api23 {
+
+        @DoNotInline
+        public static int getMaxSupportedInstances(CodecCapabilities capabilities) {
+            return capabilities.getMaxSupportedInstances();
+        }
+    }
+}
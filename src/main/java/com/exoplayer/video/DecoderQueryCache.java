@@ -0,0 +1,183 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 跨进程启动保存解码器查询的缓存。
+ * <p>
+ * 渲染器通过 {@link #getMediaCodecSelector()} 查询解码器时，记录查询的格式（MIME 类型、是否安全解码、是否隧道模式）
+ * 并写入磁盘；之后的冷启动在后台调用 {@link #prefetch()}，重新执行这些查询，{@link MediaCodecUtil}
+ * 在进程内缓存结果，第一次播放选择解码器时不再枚举解码器列表。
+ * 记录以 {@link Build#FINGERPRINT} 和 SDK 版本为键，系统更新后自动失效。
+ * <p>
+ * 解码器能力（{@code CodecCapabilities}）无法序列化，缺少能力的解码器信息会让渲染器错误地拒绝格式，
+ * 所以磁盘上只保存查询本身，能力仍由系统提供，但已移出第一次播放的关键路径。
+ */
+public final class DecoderQueryCache {
+
+    private static final String TAG = "DecoderQueryCache";
+    private static final String FILE_NAME = "exo_video_decoder_queries";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final AtomicFile file;
+    private final String buildKey;
+    private final ExecutorService executor;
+    private final MediaCodecSelector mediaCodecSelector;
+    /**
+     * 记录的查询，格式为 {@code mimeType|secure|tunneling}
+     **/
+    private final Set<String> queries;
+    private boolean loaded;
+
+    /**
+     * Creates an instance storing its records in the cache directory.
+     *
+     * @param context A {@link Context}.
+     */
+    public DecoderQueryCache(Context context) {
+        file = new AtomicFile(new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        buildKey = Build.FINGERPRINT + "/" + Build.VERSION.SDK_INT;
+        executor = Executors.newSingleThreadExecutor();
+        mediaCodecSelector = this::getDecoderInfos;
+        queries = new LinkedHashSet<>();
+    }
+
+    /**
+     * Returns a {@link MediaCodecSelector} that behaves like {@link MediaCodecSelector#DEFAULT} and
+     * records the queries it answers.
+     */
+    public MediaCodecSelector getMediaCodecSelector() {
+        return mediaCodecSelector;
+    }
+
+    /**
+     * Repeats the recorded queries in the background, so that decoder selection in the first
+     * playback is answered from memory. Should be called early after process start.
+     */
+    public void prefetch() {
+        executor.execute(this::prefetchBlocking);
+    }
+
+    /**
+     * Loads the records and repeats the recorded queries on the calling thread.
+     */
+    /* package */ void prefetchBlocking() {
+        for (String query : getQueries()) {
+            String[] parts = query.split("\\|");
+            try {
+                MediaCodecUtil.getDecoderInfos(parts[0], Boolean.parseBoolean(parts[1]), Boolean.parseBoolean(parts[2]));
+            } catch (MediaCodecUtil.DecoderQueryException e) {
+                Log.w(TAG, "Failed to query decoders: " + query, e);
+            }
+        }
+    }
+
+    @NonNull
+    private List<MediaCodecInfo> getDecoderInfos(@NonNull String mimeType, boolean requiresSecureDecoder, boolean requiresTunnelingDecoder) throws MediaCodecUtil.DecoderQueryException {
+        List<MediaCodecInfo> decoderInfos = MediaCodecUtil.getDecoderInfos(mimeType, requiresSecureDecoder, requiresTunnelingDecoder);
+        String query = mimeType + "|" + requiresSecureDecoder + "|" + requiresTunnelingDecoder;
+        boolean added;
+        synchronized (queries) {
+            added = queries.add(query);
+        }
+        if (added) {
+            // 在后台合并已保存的记录后写入，不阻塞渲染器。
+            executor.execute(this::write);
+        }
+        return decoderInfos;
+    }
+
+    private List<String> getQueries() {
+        load();
+        synchronized (queries) {
+            return new ArrayList<>(queries);
+        }
+    }
+
+    /**
+     * Loads the records once. Records of another build are deleted.
+     */
+    private void load() {
+        synchronized (queries) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!file.exists()) {
+                return;
+            }
+            List<String> records = new ArrayList<>();
+            boolean valid = false;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openRead(), CHARSET))) {
+                valid = buildKey.equals(reader.readLine());
+                String line;
+                while (valid && (line = reader.readLine()) != null) {
+                    if (line.split("\\|").length == 3) {
+                        records.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read decoder queries", e);
+            }
+            if (valid) {
+                queries.addAll(records);
+            } else {
+                file.delete();
+            }
+        }
+    }
+
+    private void write() {
+        load();
+        List<String> records;
+        synchronized (queries) {
+            records = new ArrayList<>(queries);
+        }
+        OutputStream outputStream = null;
+        try {
+            outputStream = file.startWrite();
+            Writer writer = new OutputStreamWriter(outputStream, CHARSET);
+            writer.write(buildKey);
+            writer.write('\n');
+            for (String record : records) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            file.endWrite(outputStream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write decoder queries", e);
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException ignored) {
+                    // Do nothing.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmSession;
+import com.google.android.exoplayer2.drm.DrmSessionEventListener;
+import com.google.android.exoplayer2.drm.ExoMediaDrm;
+import com.google.android.exoplayer2.drm.FrameworkMediaDrm;
+import com.google.android.exoplayer2.drm.HttpMediaDrmCallback;
+import com.google.android.exoplayer2.drm.OfflineLicenseHelper;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 提前获取 DRM 许可并保存在本地的许可管理。
+ * <p>
+ * 通过 {@link OfflineLicenseHelper} 为即将播放的媒体获取离线（持久）许可，把 keySetId 和许可的到期时间按媒体 id 保存。
+ * 通过 {@link PlayerFactory#setDrmLicenseManager(DrmLicenseManager)} 创建的播放器在创建媒体源时把有效的
+ * keySetId 写入 {@link MediaItem.DrmConfiguration}，DRM 会话直接恢复本地许可，起播前不再等待许可请求；
+ * 同时会为播放列表中后续的媒体预取许可。许可服务器必须允许持久许可。
+ * <p>
+ * 许可请求需要带 PSSH 的 {@link Format}，本库不依赖具体的流格式，由 {@link FormatLoader} 提供
+ * （例如 DASH 可以使用 {@code DashUtil.loadFormatWithDrmInitData}）。预取在后台线程进行，其他方法可以在任意线程调用。
+ */
+public final class DrmLicenseManager {
+
+    /**
+     * 加载媒体带 DRM 初始化数据的格式.
+     */
+    public interface FormatLoader {
+
+        /**
+         * Loads a {@link Format} of a media item whose {@link Format#drmInitData} contains the
+         * scheme data needed for a license request. Called on a background thread.
+         *
+         * @param mediaItem The {@link MediaItem}.
+         * @return The {@link Format}, or {@code null} if the item is not protected.
+         * @throws IOException If the manifest or media could not be loaded.
+         */
+        @Nullable
+        Format loadFormatWithDrmInitData(MediaItem mediaItem) throws IOException;
+    }
+
+    /**
+     * Licenses expiring within this time are considered expired, in milliseconds.
+     */
+    public static final long MIN_REMAINING_LICENSE_DURATION_MS = 60_000;
+    /**
+     * The default number of upcoming playlist items whose licenses are prefetched.
+     */
+    public static final int DEFAULT_LOOKAHEAD = 2;
+
+    private static final String TAG = "DrmLicenseManager";
+    private static final String PREFERENCES_NAME = "exo_video_drm_licenses";
+    private static final String KEY_KEY_SET_ID = "keySetId:";
+    private static final String KEY_EXPIRY_TIME = "expiryTimeMs:";
+
+    private final SharedPreferences preferences;
+    private final HttpDataSource.Factory licenseDataSourceFactory;
+    private final FormatLoader formatLoader;
+    private final ExoMediaDrm.Provider mediaDrmProvider;
+    private final ExecutorService executor;
+    /**
+     * 正在预取许可的媒体 id
+     **/
+    private final Set<String> pendingMediaIds;
+    private int lookahead;
+
+    /**
+     * Creates an instance that requests licenses with a {@link DefaultHttpDataSource}.
+     *
+     * @param context      A {@link Context}.
+     * @param formatLoader The {@link FormatLoader}.
+     */
+    public DrmLicenseManager(Context context, FormatLoader formatLoader) {
+        this(context, new DefaultHttpDataSource.Factory(), formatLoader);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param context                  A {@link Context}.
+     * @param licenseDataSourceFactory The factory of the {@link HttpDataSource} used for license
+     *                                 requests.
+     * @param formatLoader             The {@link FormatLoader}.
+     */
+    public DrmLicenseManager(Context context, HttpDataSource.Factory licenseDataSourceFactory, FormatLoader formatLoader) {
+        this(context, licenseDataSourceFactory, formatLoader, FrameworkMediaDrm.DEFAULT_PROVIDER);
+    }
+
+    /* package */ DrmLicenseManager(Context context, HttpDataSource.Factory licenseDataSourceFactory, FormatLoader formatLoader, ExoMediaDrm.Provider mediaDrmProvider) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.licenseDataSourceFactory = licenseDataSourceFactory;
+        this.formatLoader = formatLoader;
+        this.mediaDrmProvider = mediaDrmProvider;
+        executor = Executors.newSingleThreadExecutor();
+        pendingMediaIds = new HashSet<>();
+        lookahead = DEFAULT_LOOKAHEAD;
+    }
+
+    /**
+     * Sets the number of upcoming playlist items whose licenses are prefetched.
+     *
+     * @param lookahead The number of upcoming items.
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Fetches and stores a license for a media item in the background. Does nothing if the item has
+     * no {@link MediaItem.DrmConfiguration} or no media id, or if a valid license is stored.
+     *
+     * @param mediaItem The {@link MediaItem}.
+     */
+    public void prefetch(MediaItem mediaItem) {
+        if (!isLicensable(mediaItem) || getKeySetId(mediaItem.mediaId) != null || executor.isShutdown()) {
+            return;
+        }
+        synchronized (pendingMediaIds) {
+            if (!pendingMediaIds.add(mediaItem.mediaId)) {
+                return;
+            }
+        }
+        executor.execute(() -> {
+            try {
+                downloadLicense(mediaItem);
+            } finally {
+                synchronized (pendingMediaIds) {
+                    pendingMediaIds.remove(mediaItem.mediaId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Prefetches the licenses of the items following the current item of a player, in playback
+     * order.
+     *
+     * @param player The {@link Player}.
+     */
+    public void prefetchUpcoming(Player player) {
+        Timeline timeline = player.getCurrentTimeline();
+        if (timeline.isEmpty()) {
+            return;
+        }
+        Timeline.Window window = new Timeline.Window();
+        int index = player.getCurrentMediaItemIndex();
+        for (int i = 0; i < lookahead; i++) {
+            index = timeline.getNextWindowIndex(index, player.getRepeatMode(), player.getShuffleModeEnabled());
+            if (index == C.INDEX_UNSET) {
+                break;
+            }
+            prefetch(timeline.getWindow(index, window).mediaItem);
+        }
+    }
+
+    /**
+     * Returns the key set id of the stored license of a media item, or {@code null} if there is
+     * no license or it expires within {@link #MIN_REMAINING_LICENSE_DURATION_MS}.
+     *
+     * @param mediaId The media id.
+     */
+    @Nullable
+    public byte[] getKeySetId(String mediaId) {
+        @Nullable String keySetId = preferences.getString(KEY_KEY_SET_ID + mediaId, null);
+        if (keySetId == null) {
+            return null;
+        }
+        if (getLicenseExpiryTimeMs(mediaId) - System.currentTimeMillis() < MIN_REMAINING_LICENSE_DURATION_MS) {
+            removeLicense(mediaId);
+            return null;
+        }
+        return Base64.decode(keySetId, Base64.NO_WRAP);
+    }
+
+    /**
+     * Returns the wall clock time at which the stored license of a media item expires, {@link
+     * Long#MAX_VALUE} if it does not expire, or {@link C#TIME_UNSET} if there is no license.
+     *
+     * @param mediaId The media id.
+     */
+    public long getLicenseExpiryTimeMs(String mediaId) {
+        return preferences.getLong(KEY_EXPIRY_TIME + mediaId, C.TIME_UNSET);
+    }
+
+    /**
+     * Returns a media item whose {@link MediaItem.DrmConfiguration} uses the stored license, or
+     * {@code mediaItem} itself if there is no valid license.
+     *
+     * @param mediaItem The {@link MediaItem}.
+     */
+    public MediaItem applyLicense(MediaItem mediaItem) {
+        if (!isLicensable(mediaItem)) {
+            return mediaItem;
+        }
+        MediaItem.DrmConfiguration drmConfiguration = Assertions.checkNotNull(Assertions.checkNotNull(mediaItem.localConfiguration).drmConfiguration);
+        if (drmConfiguration.getKeySetId() != null) {
+            return mediaItem;
+        }
+        @Nullable byte[] keySetId = getKeySetId(mediaItem.mediaId);
+        if (keySetId == null) {
+            return mediaItem;
+        }
+        return mediaItem.buildUpon().setDrmConfiguration(drmConfiguration.buildUpon().setKeySetId(keySetId).build()).build();
+    }
+
+    /**
+     * Removes the stored license of a media item. The license is not released on the license
+     * server.
+     *
+     * @param mediaId The media id.
+     */
+    public void removeLicense(String mediaId) {
+        preferences.edit().remove(KEY_KEY_SET_ID + mediaId).remove(KEY_EXPIRY_TIME + mediaId).apply();
+    }
+
+    /**
+     * Stops prefetching. Stored licenses are kept.
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Prefetches the licenses of upcoming items whenever the playlist or the current item of a
+     * player changes, and removes the stored license of the current item when the player reports a
+     * DRM error, so that the next playback requests a new license.
+     */
+    /* package */ void attach(Player player) {
+        player.addListener(new PlayerListener(player));
+    }
+
+    private static boolean isLicensable(MediaItem mediaItem) {
+        return mediaItem.localConfiguration != null && mediaItem.localConfiguration.drmConfiguration != null && !MediaItem.DEFAULT_MEDIA_ID.equals(mediaItem.mediaId);
+    }
+
+    private void downloadLicense(MediaItem mediaItem) {
+        MediaItem.DrmConfiguration drmConfiguration = Assertions.checkNotNull(Assertions.checkNotNull(mediaItem.localConfiguration).drmConfiguration);
+        @Nullable Format format;
+        try {
+            format = formatLoader.loadFormatWithDrmInitData(mediaItem);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load format: " + mediaItem.mediaId, e);
+            return;
+        }
+        if (format == null || format.drmInitData == null) {
+            return;
+        }
+        OfflineLicenseHelper licenseHelper = new OfflineLicenseHelper(buildDrmSessionManager(drmConfiguration), new DrmSessionEventListener.EventDispatcher());
+        try {
+            byte[] keySetId = licenseHelper.downloadLicense(format);
+            Pair<Long, Long> remainingSec = licenseHelper.getLicenseDurationRemainingSec(keySetId);
+            long expiryTimeMs;
+            if (remainingSec.first == C.TIME_UNSET || remainingSec.first >= Long.MAX_VALUE / 1000) {
+                // 许可没有声明有效期时视为不过期，播放时出现 DRM 错误会删除它。
+                expiryTimeMs = Long.MAX_VALUE;
+            } else {
+                expiryTimeMs = System.currentTimeMillis() + Math.max(0, remainingSec.first) * 1000;
+            }
+            preferences.edit()
+                    .putString(KEY_KEY_SET_ID + mediaItem.mediaId, Base64.encodeToString(keySetId, Base64.NO_WRAP))
+                    .putLong(KEY_EXPIRY_TIME + mediaItem.mediaId, expiryTimeMs)
+                    .apply();
+        } catch (DrmSession.DrmSessionException e) {
+            Log.w(TAG, "Failed to download license: " + mediaItem.mediaId, e);
+        } finally {
+            licenseHelper.release();
+        }
+    }
+
+    private DefaultDrmSessionManager buildDrmSessionManager(MediaItem.DrmConfiguration drmConfiguration) {
+        HttpMediaDrmCallback callback = new HttpMediaDrmCallback(drmConfiguration.licenseUri == null ? null : drmConfiguration.licenseUri.toString(), drmConfiguration.forceDefaultLicenseUri, licenseDataSourceFactory);
+        for (Map.Entry<String, String> header : drmConfiguration.licenseRequestHeaders.entrySet()) {
+            callback.setKeyRequestProperty(header.getKey(), header.getValue());
+        }
+        return new DefaultDrmSessionManager.Builder()
+                .setUuidAndExoMediaDrmProvider(drmConfiguration.scheme, mediaDrmProvider)
+                .setMultiSession(drmConfiguration.multiSession)
+                .setPlayClearSamplesWithoutKeys(drmConfiguration.playClearContentWithoutKey)
+                .build(callback);
+    }
+
+    /**
+     * 播放列表或当前媒体变化时预取后续媒体的许可，出现 DRM 错误时删除当前媒体的许可.
+     */
+    private final class PlayerListener implements Player.Listener {
+
+        private final Player player;
+
+        public PlayerListener(Player player) {
+            this.player = player;
+        }
+
+        @Override
+        public void onMediaItemTransition(@Nullable MediaItem mediaItem, @Player.MediaItemTransitionReason int reason) {
+            prefetchUpcoming(player);
+        }
+
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, @Player.TimelineChangeReason int reason) {
+            if (reason == Player.TIMELINE_CHANGE_REASON_PLAYLIST_CHANGED) {
+                prefetchUpcoming(player);
+            }
+        }
+
+        @Override
+        public void onPlayerError(@NonNull PlaybackException error) {
+            // DRM 错误码都在 6000 到 6999 之间。
+            if (error.errorCode / 1000 != PlaybackException.ERROR_CODE_DRM_UNSPECIFIED / 1000) {
+                return;
+            }
+            @Nullable MediaItem mediaItem = player.isCommandAvailable(Player.COMMAND_GET_CURRENT_MEDIA_ITEM) ? player.getCurrentMediaItem() : null;
+            if (mediaItem != null && isLicensable(mediaItem)) {
+                // 本地许可可能已被吊销或与设备不匹配，下次播放改为在线请求。
+                removeLicense(mediaItem.mediaId);
+            }
+        }
+    }
+}
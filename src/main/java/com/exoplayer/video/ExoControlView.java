@@ -0,0 +1,717 @@
+package com.exoplayer.video;
+
+import static com.google.android.exoplayer2.Player.COMMAND_PLAY_PAUSE;
+import static com.google.android.exoplayer2.Player.COMMAND_PREPARE;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_BACK;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_FORWARD;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_TO_DEFAULT_POSITION;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_TO_NEXT;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_TO_PREVIOUS;
+import static com.google.android.exoplayer2.Player.EVENT_IS_PLAYING_CHANGED;
+import static com.google.android.exoplayer2.Player.EVENT_PLAYBACK_STATE_CHANGED;
+import static com.google.android.exoplayer2.Player.EVENT_PLAY_WHEN_READY_CHANGED;
+import static com.google.android.exoplayer2.Player.EVENT_POSITION_DISCONTINUITY;
+import static com.google.android.exoplayer2.Player.EVENT_TIMELINE_CHANGED;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.exoplayer.exolibrary.R;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.ui.DefaultTimeBar;
+import com.google.android.exoplayer2.ui.TimeBar;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * 为 {@code exo_player_controller} 布局定制的轻量播放控制器。
+ * <p>
+ * 只支持播放/暂停、当前位置、进度条、时长和全屏按钮，没有设置弹窗、轨道选择和动画。
+ * 进度在控制器可见且正在播放时跟随 vsync（{@link Choreographer}）更新，隐藏后立即停止；
+ * 时间文本写入复用的字符数组，不分配新对象。
+ * <p>
+ * 在 {@link ExoVideoView} 上设置 {@code controller_type="slim"} 使用此控制器，布局通过
+ * {@code controller_layout_id} 指定，默认为 {@code exo_player_controller}。
+ * <p>
+ * 布局中可选的视图 ID：{@code exo_play_pause}、{@code exo_position}、{@code exo_progress} 或
+ * {@code exo_progress_placeholder}、{@code exo_duration}、{@code exo_fullscreen}。
+ */
+public class ExoControlView extends FrameLayout implements PlayerController {
+
+    /**
+     * The default show timeout, in milliseconds.
+     */
+    public static final int DEFAULT_SHOW_TIMEOUT_MS = 5_000;
+
+    /**
+     * "-" + 小时 + ":MM:SS"
+     **/
+    private static final int MAX_TIME_CHARS = 24;
+
+    private final ComponentListener componentListener;
+    private final Choreographer choreographer;
+    private final Runnable hideAction;
+
+    @Nullable
+    private final ImageView playPauseButton;
+    @Nullable
+    private final TextView positionView;
+    @Nullable
+    private final TextView durationView;
+    @Nullable
+    private final TimeBar timeBar;
+    @Nullable
+    private final ImageView fullscreenButton;
+
+    @Nullable
+    private final Drawable playDrawable;
+    @Nullable
+    private final Drawable pauseDrawable;
+    @Nullable
+    private final Drawable fullscreenEnterDrawable;
+    @Nullable
+    private final Drawable fullscreenExitDrawable;
+    private final String playDescription;
+    private final String pauseDescription;
+    private final String fullscreenEnterDescription;
+    private final String fullscreenExitDescription;
+
+    /**
+     * TextView 会持有传入的字符数组，所以两个文本视图各用一个缓冲区
+     **/
+    private final char[] positionChars;
+    private final char[] durationChars;
+
+    @Nullable
+    private Player player;
+    @Nullable
+    private ExoVideoView.ControllerVisibilityListener visibilityListener;
+    @Nullable
+    private ExoVideoView.FullscreenButtonClickListener fullscreenButtonClickListener;
+    @Nullable
+    private long[] extraAdGroupTimesMs;
+    @Nullable
+    private boolean[] extraPlayedAdGroups;
+    /**
+     * 标记索引，以及交给进度条的合并后的标记（复用的数组，只增长）
+     **/
+    @Nullable
+    private MarkerIndex markerIndex;
+    private long[] markerTimesMs;
+    private boolean[] markerPlayed;
+
+    private int showTimeoutMs;
+    private boolean isAttachedToWindow;
+    private boolean isFullScreen;
+    private boolean scrubbing;
+    private boolean frameCallbackPending;
+    private long durationMs;
+    private long displayedPositionMs;
+    private long displayedPositionSec;
+    private long displayedDurationSec;
+
+    public ExoControlView(Context context) {
+        this(context, null);
+    }
+
+    public ExoControlView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ExoControlView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        this(context, attrs, defStyleAttr, attrs);
+    }
+
+    @SuppressWarnings({"nullness:argument", "nullness:method.invocation"})
+    public ExoControlView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, @Nullable AttributeSet playbackAttrs) {
+        super(context, attrs, defStyleAttr);
+        int controllerLayoutId = R.layout.exo_player_controller;
+        showTimeoutMs = DEFAULT_SHOW_TIMEOUT_MS;
+        if (playbackAttrs != null) {
+            TypedArray a = context.getTheme().obtainStyledAttributes(playbackAttrs, R.styleable.ExoControlView, defStyleAttr, /* defStyleRes= */ 0);
+            try {
+                controllerLayoutId = a.getResourceId(R.styleable.ExoControlView_controller_layout_id, controllerLayoutId);
+                showTimeoutMs = a.getInt(R.styleable.ExoControlView_show_timeout, showTimeoutMs);
+            } finally {
+                a.recycle();
+            }
+        }
+
+        componentListener = new ComponentListener();
+        choreographer = Choreographer.getInstance();
+        hideAction = this::hide;
+        positionChars = new char[MAX_TIME_CHARS];
+        durationChars = new char[MAX_TIME_CHARS];
+        durationMs = C.TIME_UNSET;
+        displayedPositionMs = C.TIME_UNSET;
+        displayedPositionSec = C.TIME_UNSET;
+        displayedDurationSec = C.TIME_UNSET;
+
+        LayoutInflater.from(context).inflate(controllerLayoutId, /* root= */ this);
+        setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
+
+        playPauseButton = findViewById(R.id.exo_play_pause);
+        if (playPauseButton != null) {
+            playPauseButton.setOnClickListener(componentListener);
+        }
+        positionView = findViewById(R.id.exo_position);
+        durationView = findViewById(R.id.exo_duration);
+        fullscreenButton = findViewById(R.id.exo_fullscreen);
+        if (fullscreenButton != null) {
+            fullscreenButton.setVisibility(GONE);
+            fullscreenButton.setOnClickListener(componentListener);
+        }
+
+        TimeBar customTimeBar = findViewById(R.id.exo_progress);
+        View timeBarPlaceholder = findViewById(R.id.exo_progress_placeholder);
+        if (customTimeBar != null) {
+            timeBar = customTimeBar;
+        } else if (timeBarPlaceholder != null) {
+            // 将 attrs 传递给 DefaultTimeBar，以便应用进度条的自定义属性。
+            DefaultTimeBar defaultTimeBar = new DefaultTimeBar(context, null, 0, playbackAttrs);
+            defaultTimeBar.setId(R.id.exo_progress);
+            defaultTimeBar.setLayoutParams(timeBarPlaceholder.getLayoutParams());
+            ViewGroup parent = ((ViewGroup) timeBarPlaceholder.getParent());
+            int timeBarIndex = parent.indexOfChild(timeBarPlaceholder);
+            parent.removeView(timeBarPlaceholder);
+            parent.addView(defaultTimeBar, timeBarIndex);
+            timeBar = defaultTimeBar;
+        } else {
+            timeBar = null;
+        }
+        if (timeBar != null) {
+            timeBar.addListener(componentListener);
+            // 进度条宽度变化时重新合并标记。
+            ((View) timeBar).addOnLayoutChangeListener(componentListener);
+        }
+        markerTimesMs = new long[0];
+        markerPlayed = new boolean[0];
+
+        playDrawable = ContextCompat.getDrawable(context, com.google.android.exoplayer2.ui.R.drawable.exo_styled_controls_play);
+        pauseDrawable = ContextCompat.getDrawable(context, com.google.android.exoplayer2.ui.R.drawable.exo_styled_controls_pause);
+        fullscreenEnterDrawable = ContextCompat.getDrawable(context, com.google.android.exoplayer2.ui.R.drawable.exo_styled_controls_fullscreen_enter);
+        fullscreenExitDrawable = ContextCompat.getDrawable(context, com.google.android.exoplayer2.ui.R.drawable.exo_styled_controls_fullscreen_exit);
+        playDescription = getResources().getString(com.google.android.exoplayer2.ui.R.string.exo_controls_play_description);
+        pauseDescription = getResources().getString(com.google.android.exoplayer2.ui.R.string.exo_controls_pause_description);
+        fullscreenEnterDescription = getResources().getString(com.google.android.exoplayer2.ui.R.string.exo_controls_fullscreen_enter_description);
+        fullscreenExitDescription = getResources().getString(com.google.android.exoplayer2.ui.R.string.exo_controls_fullscreen_exit_description);
+        updateFullscreenButton();
+    }
+
+    // PlayerController implementation
+
+    @Override
+    public View getView() {
+        return this;
+    }
+
+    /**
+     * Sets the {@link Player} to control.
+     *
+     * @param player The {@link Player} to control, or {@code null} to detach the current player. Only
+     *               players which are accessed on the main thread are supported ({@code
+     *               player.getApplicationLooper() == Looper.getMainLooper()}).
+     */
+    @Override
+    public void setPlayer(@Nullable Player player) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        Assertions.checkArgument(player == null || player.getApplicationLooper() == Looper.getMainLooper());
+        if (this.player == player) {
+            return;
+        }
+        if (this.player != null) {
+            this.player.removeListener(componentListener);
+        }
+        this.player = player;
+        if (player != null) {
+            player.addListener(componentListener);
+        }
+        updateAll();
+    }
+
+    @Override
+    public void show() {
+        if (!isFullyVisible()) {
+            setVisibility(VISIBLE);
+            if (visibilityListener != null) {
+                visibilityListener.onVisibilityChanged(getVisibility());
+            }
+            updateAll();
+            if (playPauseButton != null) {
+                playPauseButton.requestFocus();
+            }
+        }
+        resetHideTimer();
+    }
+
+    @Override
+    public void hide() {
+        if (isFullyVisible()) {
+            setVisibility(GONE);
+            if (visibilityListener != null) {
+                visibilityListener.onVisibilityChanged(getVisibility());
+            }
+        }
+        removeCallbacks(hideAction);
+        cancelProgressUpdates();
+    }
+
+    @Override
+    public void hideImmediately() {
+        hide();
+    }
+
+    @Override
+    public boolean isFullyVisible() {
+        return getVisibility() == VISIBLE;
+    }
+
+    @Override
+    public int getShowTimeoutMs() {
+        return showTimeoutMs;
+    }
+
+    @Override
+    public void setShowTimeoutMs(int showTimeoutMs) {
+        this.showTimeoutMs = showTimeoutMs;
+        if (isFullyVisible()) {
+            resetHideTimer();
+        }
+    }
+
+    @Override
+    public boolean dispatchMediaKeyEvent(KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        @Nullable Player player = this.player;
+        if (player == null || !isHandledMediaKey(keyCode)) {
+            return false;
+        }
+        if (event.getAction() == KeyEvent.ACTION_DOWN) {
+            if (keyCode == KeyEvent.KEYCODE_MEDIA_FAST_FORWARD) {
+                if (player.getPlaybackState() != Player.STATE_ENDED && player.isCommandAvailable(COMMAND_SEEK_FORWARD)) {
+                    player.seekForward();
+                }
+            } else if (keyCode == KeyEvent.KEYCODE_MEDIA_REWIND) {
+                if (player.isCommandAvailable(COMMAND_SEEK_BACK)) {
+                    player.seekBack();
+                }
+            } else if (event.getRepeatCount() == 0) {
+                switch (keyCode) {
+                    case KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE:
+                    case KeyEvent.KEYCODE_HEADSETHOOK:
+                        dispatchPlayPause(player);
+                        break;
+                    case KeyEvent.KEYCODE_MEDIA_PLAY:
+                        dispatchPlay(player);
+                        break;
+                    case KeyEvent.KEYCODE_MEDIA_PAUSE:
+                        dispatchPause(player);
+                        break;
+                    case KeyEvent.KEYCODE_MEDIA_NEXT:
+                        if (player.isCommandAvailable(COMMAND_SEEK_TO_NEXT)) {
+                            player.seekToNext();
+                        }
+                        break;
+                    case KeyEvent.KEYCODE_MEDIA_PREVIOUS:
+                        if (player.isCommandAvailable(COMMAND_SEEK_TO_PREVIOUS)) {
+                            player.seekToPrevious();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setExtraAdGroupMarkers(@Nullable long[] extraAdGroupTimesMs, @Nullable boolean[] extraPlayedAdGroups) {
+        if (extraAdGroupTimesMs == null) {
+            this.extraAdGroupTimesMs = null;
+            this.extraPlayedAdGroups = null;
+        } else {
+            extraPlayedAdGroups = Assertions.checkNotNull(extraPlayedAdGroups);
+            Assertions.checkArgument(extraAdGroupTimesMs.length == extraPlayedAdGroups.length);
+            this.extraAdGroupTimesMs = extraAdGroupTimesMs;
+            this.extraPlayedAdGroups = extraPlayedAdGroups;
+        }
+        updateTimeline();
+    }
+
+    @Override
+    public void setMarkerIndex(@Nullable MarkerIndex markerIndex) {
+        if (this.markerIndex == markerIndex) {
+            return;
+        }
+        if (this.markerIndex != null) {
+            this.markerIndex.removeListener(componentListener);
+        }
+        this.markerIndex = markerIndex;
+        if (markerIndex != null) {
+            markerIndex.addListener(componentListener);
+        }
+        updateTimeline();
+    }
+
+    @Override
+    public void setVisibilityListener(@Nullable ExoVideoView.ControllerVisibilityListener listener) {
+        this.visibilityListener = listener;
+    }
+
+    @Override
+    public void setFullscreenButtonClickListener(@Nullable ExoVideoView.FullscreenButtonClickListener listener) {
+        this.fullscreenButtonClickListener = listener;
+        if (fullscreenButton != null) {
+            fullscreenButton.setVisibility(listener != null ? VISIBLE : GONE);
+        }
+    }
+
+    // View overrides
+
+    @Override
+    public void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        isAttachedToWindow = true;
+        if (isFullyVisible()) {
+            resetHideTimer();
+        }
+        updateAll();
+    }
+
+    @Override
+    public void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        isAttachedToWindow = false;
+        removeCallbacks(hideAction);
+        cancelProgressUpdates();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // 祖先视图重新可见时恢复进度更新，隐藏时下一帧会自动停止。
+        updateProgress();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgress();
+    }
+
+    // Internal methods.
+
+    private void updateAll() {
+        updatePlayPauseButton();
+        updateTimeline();
+    }
+
+    private void resetHideTimer() {
+        removeCallbacks(hideAction);
+        if (showTimeoutMs > 0 && isAttachedToWindow && !scrubbing) {
+            postDelayed(hideAction, showTimeoutMs);
+        }
+    }
+
+    private boolean isProgressVisible() {
+        return isAttachedToWindow && isFullyVisible() && isShown() && getWindowVisibility() == VISIBLE;
+    }
+
+    private void updatePlayPauseButton() {
+        if (playPauseButton == null || !isProgressVisible()) {
+            return;
+        }
+        boolean showPause = shouldShowPauseButton();
+        playPauseButton.setImageDrawable(showPause ? pauseDrawable : playDrawable);
+        playPauseButton.setContentDescription(showPause ? pauseDescription : playDescription);
+        playPauseButton.setEnabled(player != null && player.isCommandAvailable(COMMAND_PLAY_PAUSE));
+    }
+
+    private void updateFullscreenButton() {
+        if (fullscreenButton != null) {
+            fullscreenButton.setImageDrawable(isFullScreen ? fullscreenExitDrawable : fullscreenEnterDrawable);
+            fullscreenButton.setContentDescription(isFullScreen ? fullscreenExitDescription : fullscreenEnterDescription);
+        }
+    }
+
+    private void updateTimeline() {
+        if (!isProgressVisible()) {
+            return;
+        }
+        @Nullable Player player = this.player;
+        durationMs = player != null ? player.getContentDuration() : C.TIME_UNSET;
+        if (timeBar != null) {
+            timeBar.setDuration(durationMs);
+            if (markerIndex != null) {
+                updateMarkers(markerIndex);
+            } else {
+                int extraAdGroupCount = extraAdGroupTimesMs != null ? extraAdGroupTimesMs.length : 0;
+                timeBar.setAdGroupTimesMs(extraAdGroupTimesMs, extraPlayedAdGroups, extraAdGroupCount);
+            }
+            timeBar.setEnabled(player != null && player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM));
+        }
+        long durationSec = toDisplayedSeconds(durationMs);
+        if (durationView != null && durationSec != displayedDurationSec) {
+            displayedDurationSec = durationSec;
+            setTimeText(durationView, durationChars, durationMs);
+        }
+        displayedPositionMs = C.TIME_UNSET;
+        updateProgress();
+    }
+
+    /**
+     * 只把进度条范围内的标记交给进度条，落在同一像素上的标记合并为一个，标记数不超过进度条的像素宽度。
+     */
+    private void updateMarkers(MarkerIndex markerIndex) {
+        TimeBar timeBar = Assertions.checkNotNull(this.timeBar);
+        int widthPx = ((View) timeBar).getWidth();
+        int maxCount = Math.min(markerIndex.size(), widthPx + 1);
+        if (markerTimesMs.length < maxCount) {
+            markerTimesMs = new long[maxCount];
+            markerPlayed = new boolean[maxCount];
+        }
+        int count = durationMs == C.TIME_UNSET ? 0 : markerIndex.getVisibleMarkers(/* startMs= */ 0, durationMs, widthPx, markerTimesMs, markerPlayed);
+        timeBar.setAdGroupTimesMs(markerTimesMs, markerPlayed, count);
+    }
+
+    private void updateProgress() {
+        if (!isProgressVisible()) {
+            cancelProgressUpdates();
+            return;
+        }
+        @Nullable Player player = this.player;
+        long positionMs = player != null ? player.getContentPosition() : 0;
+        long bufferedPositionMs = player != null ? player.getContentBufferedPosition() : 0;
+        if (timeBar != null && movesTimeBar(positionMs)) {
+            displayedPositionMs = positionMs;
+            timeBar.setPosition(positionMs);
+            timeBar.setBufferedPosition(bufferedPositionMs);
+        }
+        long positionSec = toDisplayedSeconds(positionMs);
+        if (positionView != null && !scrubbing && positionSec != displayedPositionSec) {
+            displayedPositionSec = positionSec;
+            setTimeText(positionView, positionChars, positionMs);
+        }
+        if (player != null && player.isPlaying()) {
+            if (!frameCallbackPending) {
+                frameCallbackPending = true;
+                choreographer.postFrameCallback(componentListener);
+            }
+        } else {
+            cancelProgressUpdates();
+        }
+    }
+
+    private void cancelProgressUpdates() {
+        if (frameCallbackPending) {
+            frameCallbackPending = false;
+            choreographer.removeFrameCallback(componentListener);
+        }
+    }
+
+    /**
+     * 位置变化不足一个像素时不重绘进度条。
+     */
+    private boolean movesTimeBar(long positionMs) {
+        if (displayedPositionMs == C.TIME_UNSET || durationMs == C.TIME_UNSET || durationMs <= 0) {
+            return true;
+        }
+        int timeBarWidth = ((View) Assertions.checkNotNull(timeBar)).getWidth();
+        return Math.abs(positionMs - displayedPositionMs) * timeBarWidth >= durationMs;
+    }
+
+    private boolean shouldShowPauseButton() {
+        return player != null && player.getPlaybackState() != Player.STATE_ENDED && player.getPlaybackState() != Player.STATE_IDLE && player.getPlayWhenReady();
+    }
+
+    private void dispatchPlayPause(Player player) {
+        if (shouldShowPauseButton()) {
+            dispatchPause(player);
+        } else {
+            dispatchPlay(player);
+        }
+    }
+
+    private void dispatchPlay(Player player) {
+        @Player.State int state = player.getPlaybackState();
+        if (state == Player.STATE_IDLE && player.isCommandAvailable(COMMAND_PREPARE)) {
+            player.prepare();
+        } else if (state == Player.STATE_ENDED && player.isCommandAvailable(COMMAND_SEEK_TO_DEFAULT_POSITION)) {
+            player.seekToDefaultPosition();
+        }
+        if (player.isCommandAvailable(COMMAND_PLAY_PAUSE)) {
+            player.play();
+        }
+    }
+
+    private void dispatchPause(Player player) {
+        if (player.isCommandAvailable(COMMAND_PLAY_PAUSE)) {
+            player.pause();
+        }
+    }
+
+    private static long toDisplayedSeconds(long timeMs) {
+        return timeMs == C.TIME_UNSET ? C.TIME_UNSET : (timeMs + 500) / 1000;
+    }
+
+    private static void setTimeText(TextView textView, char[] buffer, long timeMs) {
+        int length = formatTime(buffer, timeMs);
+        textView.setText(buffer, 0, length);
+    }
+
+    /**
+     * 与 {@code Util.getStringForTime} 输出相同的格式（{@code H:MM:SS} 或 {@code MM:SS}），但不分配对象。
+     *
+     * @return 写入的字符数。
+     */
+    /* package */ static int formatTime(char[] buffer, long timeMs) {
+        if (timeMs == C.TIME_UNSET) {
+            timeMs = 0;
+        }
+        int length = 0;
+        if (timeMs < 0) {
+            buffer[length++] = '-';
+            timeMs = -timeMs;
+        }
+        long totalSeconds = (timeMs + 500) / 1000;
+        long seconds = totalSeconds % 60;
+        long minutes = (totalSeconds / 60) % 60;
+        long hours = totalSeconds / 3600;
+        if (hours > 0) {
+            length = appendNumber(buffer, length, hours);
+            buffer[length++] = ':';
+        }
+        length = appendTwoDigits(buffer, length, minutes);
+        buffer[length++] = ':';
+        return appendTwoDigits(buffer, length, seconds);
+    }
+
+    private static int appendTwoDigits(char[] buffer, int offset, long value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+        return offset + 2;
+    }
+
+    private static int appendNumber(char[] buffer, int offset, long value) {
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    @SuppressLint("InlinedApi")
+    private static boolean isHandledMediaKey(int keyCode) {
+        return keyCode == KeyEvent.KEYCODE_MEDIA_FAST_FORWARD || keyCode == KeyEvent.KEYCODE_MEDIA_REWIND || keyCode == KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE || keyCode == KeyEvent.KEYCODE_HEADSETHOOK || keyCode == KeyEvent.KEYCODE_MEDIA_PLAY || keyCode == KeyEvent.KEYCODE_MEDIA_PAUSE || keyCode == KeyEvent.KEYCODE_MEDIA_NEXT || keyCode == KeyEvent.KEYCODE_MEDIA_PREVIOUS;
+    }
+
+    private final class ComponentListener implements Player.Listener, TimeBar.OnScrubListener, OnClickListener, OnLayoutChangeListener, MarkerIndex.Listener, Choreographer.FrameCallback {
+
+        // Player.Listener implementation
+
+        @Override
+        public void onEvents(@NonNull Player player, @NonNull Player.Events events) {
+            if (events.containsAny(EVENT_PLAYBACK_STATE_CHANGED, EVENT_PLAY_WHEN_READY_CHANGED)) {
+                updatePlayPauseButton();
+            }
+            if (events.containsAny(EVENT_TIMELINE_CHANGED, EVENT_POSITION_DISCONTINUITY)) {
+                updateTimeline();
+            } else if (events.containsAny(EVENT_PLAYBACK_STATE_CHANGED, EVENT_PLAY_WHEN_READY_CHANGED, EVENT_IS_PLAYING_CHANGED)) {
+                updateProgress();
+            }
+        }
+
+        // TimeBar.OnScrubListener implementation
+
+        @Override
+        public void onScrubStart(@NonNull TimeBar timeBar, long position) {
+            scrubbing = true;
+            removeCallbacks(hideAction);
+            if (positionView != null) {
+                setTimeText(positionView, positionChars, position);
+            }
+        }
+
+        @Override
+        public void onScrubMove(@NonNull TimeBar timeBar, long position) {
+            if (positionView != null) {
+                setTimeText(positionView, positionChars, position);
+            }
+        }
+
+        @Override
+        public void onScrubStop(@NonNull TimeBar timeBar, long position, boolean canceled) {
+            scrubbing = false;
+            displayedPositionSec = C.TIME_UNSET;
+            @Nullable Player player = ExoControlView.this.player;
+            if (!canceled && player != null && player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM)) {
+                player.seekTo(position);
+            }
+            resetHideTimer();
+            updateProgress();
+        }
+
+        // OnClickListener implementation
+
+        @Override
+        public void onClick(View view) {
+            @Nullable Player player = ExoControlView.this.player;
+            if (view == playPauseButton && player != null) {
+                dispatchPlayPause(player);
+            } else if (view == fullscreenButton) {
+                isFullScreen = !isFullScreen;
+                updateFullscreenButton();
+                if (fullscreenButtonClickListener != null) {
+                    fullscreenButtonClickListener.onFullscreenButtonClick(isFullScreen);
+                }
+            }
+            resetHideTimer();
+        }
+
+        // OnLayoutChangeListener implementation
+
+        @Override
+        public void onLayoutChange(View view, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (markerIndex != null && right - left != oldRight - oldLeft) {
+                updateTimeline();
+            }
+        }
+
+        // MarkerIndex.Listener implementation
+
+        @Override
+        public void onMarkersChanged(MarkerIndex markerIndex) {
+            updateTimeline();
+        }
+
+        // Choreographer.FrameCallback implementation
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameCallbackPending = false;
+            updateProgress();
+        }
+    }
+}
@@ -6,6 +6,8 @@ import static com.google.android.exoplayer2.Player.COMMAND_GET_MEDIA_ITEMS_METAD
 import static com.google.android.exoplayer2.Player.COMMAND_GET_TEXT;
 import static com.google.android.exoplayer2.Player.COMMAND_GET_TIMELINE;
 import static com.google.android.exoplayer2.Player.COMMAND_GET_TRACKS;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM;
+import static com.google.android.exoplayer2.Player.COMMAND_SET_TRACK_SELECTION_PARAMETERS;
 import static com.google.android.exoplayer2.Player.COMMAND_SET_VIDEO_SURFACE;
 import static com.google.android.exoplayer2.ui.AspectRatioFrameLayout.RESIZE_MODE_FIT;
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
@@ -18,14 +20,19 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
 import android.graphics.RectF;
+import android.graphics.SurfaceTexture;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.opengl.GLSurfaceView;
+import android.os.Bundle;
 import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
@@ -50,6 +57,7 @@ import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.Timeline.Period;
 import com.google.android.exoplayer2.Tracks;
 import com.google.android.exoplayer2.text.CueGroup;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
 import com.google.android.exoplayer2.ui.AdOverlayInfo;
 import com.google.android.exoplayer2.ui.AdViewProvider;
 import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
@@ -57,6 +65,7 @@ import com.google.android.exoplayer2.ui.AspectRatioFrameLayout.ResizeMode;
 import com.google.android.exoplayer2.ui.DefaultTimeBar;
 import com.google.android.exoplayer2.ui.StyledPlayerControlView;
 import com.google.android.exoplayer2.ui.SubtitleView;
+import com.google.android.exoplayer2.ui.TimeBar;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.ErrorMessageProvider;
 import com.google.android.exoplayer2.util.RepeatModeUtil;
@@ -68,7 +77,9 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 
@@ -201,7 +212,7 @@ import java.util.Objects;
  * <p>
  * < ul >
  *
- * <li>对应方法:无
+ * <li>对应方法:{@link #setSurfaceFactory(SurfaceFactory)}
  *
  * <li>默认值:{@code surface_view}
  * <p>
@@ -231,6 +242,19 @@ import java.util.Objects;
  * <p>
  * </ ul >
  *
+ * <li><b>{@code controller_type}</b> -使用的控制器实现。有效值为{@code styled}和{@code slim}。
+ * <p>
+ * {@code slim}使用{@link ExoControlView}，只支持播放/暂停、位置、进度条、时长和全屏按钮，
+ * 设置其他按钮的方法（例如{@link #setShowRewindButton(boolean)}）对它没有作用。
+ * <p>
+ * < ul >
+ *
+ * <li>对应方法:无
+ *
+ * <li>默认值:{@code styled}
+ * <p>
+ * </ ul >
+ *
  * <li>可以在{@link StyledPlayerControlView}和{@link . view上设置的所有属性
  * <p>
  * DefaultTimeBar}也可以在StyledPlayerView上设置，并将被传播到
@@ -301,20 +325,62 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      */
     public static final int SHOW_BUFFERING_ALWAYS = 2;
 
+    /**
+     * 显示刷新率如何匹配视频帧率。{@link #FRAME_RATE_MATCHING_OFF}、{@link #FRAME_RATE_MATCHING_ONLY_IF_SEAMLESS} 或 {@link #FRAME_RATE_MATCHING_ALWAYS} 之一。
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(TYPE_USE)
+    @IntDef({FRAME_RATE_MATCHING_OFF, FRAME_RATE_MATCHING_ONLY_IF_SEAMLESS, FRAME_RATE_MATCHING_ALWAYS})
+    public @interface FrameRateMatching {
+    }
+
+    /**
+     * 不匹配帧率，显示保持当前刷新率.
+     */
+    public static final int FRAME_RATE_MATCHING_OFF = 0;
+    /**
+     * 只在可以无缝切换时改变刷新率（API 30+）.
+     */
+    public static final int FRAME_RATE_MATCHING_ONLY_IF_SEAMLESS = 1;
+    /**
+     * 即使切换会造成短暂黑屏也改变刷新率；API 23-29 通过选择显示模式实现.
+     */
+    public static final int FRAME_RATE_MATCHING_ALWAYS = 2;
+    /**
+     * 跳到上一个标记时，位于当前位置之前这个时间内的标记被跳过，单位毫秒.
+     */
+    public static final long PREVIOUS_MARKER_THRESHOLD_MS = 3_000;
+
     private static final int SURFACE_TYPE_NONE = 0;
     private static final int SURFACE_TYPE_SURFACE_VIEW = 1;
     private static final int SURFACE_TYPE_TEXTURE_VIEW = 2;
     private static final int SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW = 3;
     private static final int SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW = 4;
 
+    private static final long PREVIEW_FADE_OUT_DURATION_MS = 200;
+
+    private static final int CONTROLLER_TYPE_STYLED = 0;
+    private static final int CONTROLLER_TYPE_SLIM = 1;
+
     private final ComponentListener componentListener;
     @Nullable
     private final AspectRatioFrameLayout contentFrame;
     @Nullable
     private final View shutterView;
+    private final SurfaceSwitchListener surfaceSwitchListener;
+    @Nullable
+    private SurfaceFactory surfaceFactory;
+    @Nullable
+    private View surfaceView;
+    private boolean surfaceViewIgnoresVideoAspectRatio;
+    /**
+     * 正在切换到的表面，在它的 Surface 可用之前旧表面继续渲染
+     **/
     @Nullable
-    private final View surfaceView;
-    private final boolean surfaceViewIgnoresVideoAspectRatio;
+    private View pendingSurfaceView;
+    @Nullable
+    private SurfaceFactory pendingSurfaceFactory;
     /**
      * 封面图
      **/
@@ -330,7 +396,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
     @Nullable
     private final TextView errorMessageView;
     @Nullable
-    private final StyledPlayerControlView controller;
+    private final PlayerController controller;
     /**
      * 广告占位图
      **/
@@ -338,9 +404,19 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
     private final FrameLayout adOverlayFrameLayout;
     @Nullable
     private final FrameLayout overlayFrameLayout;
+    /**
+     * 预览图，用于在新播放器渲染第一帧之前显示截取的画面
+     **/
+    @Nullable
+    private final ImageView previewView;
 
     @Nullable
     private Player player;
+    /**
+     * 播放器的应用线程不是主线程时，包装它的主线程代理；此时 player 就是这个代理
+     **/
+    @Nullable
+    private MainLooperPlayer mainLooperPlayer;
     private boolean useController;
 
     // 最多一个 controllerVisibilityListener 和 legacyControllerVisibilityListener 是非空的.
@@ -362,10 +438,73 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      * 视频最后一帧是否可见
      **/
     private boolean keepContentOnPlayerReset;
+    /**
+     * 设置播放器时还不能设置表面，等命令可用后再设置（后台线程的播放器在第一份快照到达前没有可用命令）
+     **/
+    private boolean videoSurfacePending;
+    /**
+     * 播放器重置时是否用截取的最后一帧代替黑色遮挡
+     **/
+    private boolean bridgeFrameOnPlayerReset;
+    private boolean bridgeFrameCapturePending;
+    /**
+     * 各个来源对视频轨道的限制，已经写入当前播放器的合并结果，以及第一次施加限制之前应用自己设置的参数
+     **/
+    private final Map<Object, VideoConstraints> videoConstraints;
+    @Nullable
+    private VideoConstraints appliedVideoConstraints;
+    @Nullable
+    private TrackSelectionParameters videoConstraintsBaseline;
+    /**
+     * 封面来源，以及正在进行的封面加载
+     **/
+    @Nullable
+    private PosterSource posterSource;
+    @Nullable
+    private PosterLoader.Request posterRequest;
     @Nullable
     private ErrorMessageProvider<? super PlaybackException> errorMessageProvider;
     @Nullable
     private CharSequence customErrorMessage;
+    @Nullable
+    private PlaybackErrorRecovery errorRecovery;
+    @Nullable
+    private QualityGovernor qualityGovernor;
+    @Nullable
+    private DataSaverProfile dataSaverProfile;
+    /**
+     * 帧率匹配，未设置时由播放器自己决定
+     **/
+    @Nullable
+    private FrameRateMatcher frameRateMatcher;
+    /**
+     * 即时回放，以及交给控制器的播放器（回退动作被限制在保留的缓冲内）
+     **/
+    @Nullable
+    private InstantReplay instantReplay;
+    @Nullable
+    private Player controllerPlayer;
+    /**
+     * 拖动进度条时的节流跳转，未启用时为 null
+     **/
+    @Nullable
+    private ScrubSeekThrottler scrubSeekThrottler;
+    /**
+     * 恢复的播放状态，等待播放器设置了相同的媒体后应用
+     **/
+    @Nullable
+    private PlayerSnapshot pendingSnapshot;
+    /**
+     * 记录观看进度，未设置存储时为 null
+     **/
+    @Nullable
+    private WatchProgressStore.Tracker watchProgressTracker;
+    /**
+     * 进度条上的章节和广告标记，未设置时为 null
+     **/
+    @Nullable
+    private MarkerIndex markerIndex;
+    private int scrubSeekIntervalMs = ScrubSeekThrottler.DEFAULT_SEEK_INTERVAL_MS;
     private int controllerShowTimeoutMs;
     private boolean controllerAutoShow;
     private boolean controllerHideDuringAds;
@@ -381,15 +520,28 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         this(context, attrs, 0);
     }
 
-    @SuppressWarnings({"nullness:argument", "nullness:method.invocation"})
     public ExoVideoView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        this(context, attrs, defStyleAttr, /* surfaceFactory= */ null);
+    }
+
+    /**
+     * Creates an instance whose surface view is created by {@code surfaceFactory}.
+     *
+     * @param surfaceFactory The {@link SurfaceFactory} creating the surface view, or {@code null}
+     *                       to create it according to the {@code surface_type} attribute.
+     */
+    @SuppressWarnings({"nullness:argument", "nullness:method.invocation"})
+    public ExoVideoView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, @Nullable SurfaceFactory surfaceFactory) {
         super(context, attrs, defStyleAttr);
 
         componentListener = new ComponentListener();
+        surfaceSwitchListener = new SurfaceSwitchListener();
+        videoConstraints = new HashMap<>();
 
         if (isInEditMode()) {
             contentFrame = null;
             shutterView = null;
+            this.surfaceFactory = null;
             surfaceView = null;
             surfaceViewIgnoresVideoAspectRatio = false;
             artworkView = null;
@@ -399,6 +551,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             controller = null;
             adOverlayFrameLayout = null;
             overlayFrameLayout = null;
+            previewView = null;
             return;
         }
 
@@ -410,6 +563,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         boolean useController = true;
         int surfaceType = SURFACE_TYPE_SURFACE_VIEW;
         int resizeMode = RESIZE_MODE_FIT;
+        int controllerType = CONTROLLER_TYPE_STYLED;
         int controllerShowTimeoutMs = StyledPlayerControlView.DEFAULT_SHOW_TIMEOUT_MS;
         boolean controllerHideOnTouch = true;
         boolean controllerAutoShow = true;
@@ -424,6 +578,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
                 useArtwork = a.getBoolean(R.styleable.ExoVideoView_use_artwork, useArtwork);
                 defaultArtworkId = a.getResourceId(R.styleable.ExoVideoView_default_artwork, defaultArtworkId);
                 useController = a.getBoolean(R.styleable.ExoVideoView_use_controller, useController);
+                controllerType = a.getInt(R.styleable.ExoVideoView_controller_type, controllerType);
                 surfaceType = a.getInt(R.styleable.ExoVideoView_surface_type, surfaceType);
                 resizeMode = a.getInt(R.styleable.ExoVideoView_resize_mode, resizeMode);
                 controllerShowTimeoutMs = a.getInt(R.styleable.ExoVideoView_show_timeout, controllerShowTimeoutMs);
@@ -454,34 +609,13 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
 
         // 创建曲面视图并将其插入到内容框架中（如果有）。
-        boolean surfaceViewIgnoresVideoAspectRatio = false;
-        if (contentFrame != null && surfaceType != SURFACE_TYPE_NONE) {
+        if (surfaceFactory == null) {
+            surfaceFactory = getSurfaceFactory(surfaceType);
+        }
+        this.surfaceFactory = surfaceFactory;
+        if (contentFrame != null && surfaceFactory != null) {
             ViewGroup.LayoutParams params = new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
-            switch (surfaceType) {
-                case SURFACE_TYPE_TEXTURE_VIEW:
-                    surfaceView = new TextureView(context);
-                    break;
-                case SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW:
-                    try {
-                        Class<?> clazz = Class.forName("com.google.android.exoplayer2.video.spherical.SphericalGLSurfaceView");
-                        surfaceView = (View) clazz.getConstructor(Context.class).newInstance(context);
-                    } catch (Exception e) {
-                        throw new IllegalStateException("spherical_gl_surface_view requires an ExoPlayer dependency", e);
-                    }
-                    surfaceViewIgnoresVideoAspectRatio = true;
-                    break;
-                case SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW:
-                    try {
-                        Class<?> clazz = Class.forName("com.google.android.exoplayer2.video.VideoDecoderGLSurfaceView");
-                        surfaceView = (View) clazz.getConstructor(Context.class).newInstance(context);
-                    } catch (Exception e) {
-                        throw new IllegalStateException("video_decoder_gl_surface_view requires an ExoPlayer dependency", e);
-                    }
-                    break;
-                default:
-                    surfaceView = new SurfaceView(context);
-                    break;
-            }
+            surfaceView = surfaceFactory.createSurfaceView(context);
             surfaceView.setLayoutParams(params);
             // 我们不希望 surfaceView 可单独点击到 StyledPlayerView 本身，
             // 但我们确实希望注册为 OnClickListener，
@@ -489,10 +623,11 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             surfaceView.setOnClickListener(componentListener);
             surfaceView.setClickable(false);
             contentFrame.addView(surfaceView, 0);
+            surfaceViewIgnoresVideoAspectRatio = surfaceFactory.ignoresVideoAspectRatio();
         } else {
             surfaceView = null;
+            surfaceViewIgnoresVideoAspectRatio = false;
         }
-        this.surfaceViewIgnoresVideoAspectRatio = surfaceViewIgnoresVideoAspectRatio;
 
         // Ad overlay frame layout.
         adOverlayFrameLayout = findViewById(R.id.exo_ad_overlay);
@@ -500,6 +635,12 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         // Overlay frame layout.
         overlayFrameLayout = findViewById(R.id.exo_overlay);
 
+        // Preview view.
+        previewView = findViewById(R.id.exo_preview);
+        if (previewView != null) {
+            previewView.setVisibility(View.GONE);
+        }
+
         // Artwork view.
         artworkView = findViewById(R.id.exo_artwork);
         this.useArtwork = useArtwork && artworkView != null;
@@ -528,19 +669,30 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
 
         // Playback control view.
-        StyledPlayerControlView customController = findViewById(R.id.exo_controller);
+        View customController = findViewById(R.id.exo_controller);
         View controllerPlaceholder = findViewById(R.id.exo_controller_placeholder);
-        if (customController != null) {
-            this.controller = customController;
+        if (customController instanceof StyledPlayerControlView) {
+            this.controller = new StyledControllerAdapter((StyledPlayerControlView) customController);
+        } else if (customController instanceof ExoControlView) {
+            this.controller = (ExoControlView) customController;
         } else if (controllerPlaceholder != null) {
-            //将 attr 传播为播放收件人，以便传输 StyledPlayerControlView 的自定义属性，但不会传输标准属性（例如背景）。
-            this.controller = new StyledPlayerControlView(context, null, 0, attrs);
-            controller.setId(R.id.exo_controller);
-            controller.setLayoutParams(controllerPlaceholder.getLayoutParams());
+            //将 attr 传播为播放收件人，以便传输控制器的自定义属性，但不会传输标准属性（例如背景）。
+            View controllerView;
+            if (controllerType == CONTROLLER_TYPE_SLIM) {
+                ExoControlView slimController = new ExoControlView(context, null, 0, attrs);
+                this.controller = slimController;
+                controllerView = slimController;
+            } else {
+                StyledPlayerControlView styledController = new StyledPlayerControlView(context, null, 0, attrs);
+                this.controller = new StyledControllerAdapter(styledController);
+                controllerView = styledController;
+            }
+            controllerView.setId(R.id.exo_controller);
+            controllerView.setLayoutParams(controllerPlaceholder.getLayoutParams());
             ViewGroup parent = ((ViewGroup) controllerPlaceholder.getParent());
             int controllerIndex = parent.indexOfChild(controllerPlaceholder);
             parent.removeView(controllerPlaceholder);
-            parent.addView(controller, controllerIndex);
+            parent.addView(controllerView, controllerIndex);
         } else {
             this.controller = null;
         }
@@ -551,7 +703,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         this.useController = useController && controller != null;
         if (controller != null) {
             controller.hideImmediately();
-            controller.addVisibilityListener(/* listener= */ componentListener);
+            controller.setVisibilityListener(/* listener= */ componentListener);
         }
         if (useController) {
             setClickable(true);
@@ -587,7 +739,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      */
     @Nullable
     public Player getPlayer() {
-        return player;
+        return mainLooperPlayer != null ? mainLooperPlayer.getWrappedPlayer() : player;
     }
 
     /**
@@ -599,52 +751,80 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      * <em>before</em> calling {@code setPlayer(null)} to detach it from the old one. This ordering is
      * significantly more efficient and may allow for more seamless transitions.
      *
-     * @param player The {@link Player} to use, or {@code null} to detach the current player. Only
-     *               players which are accessed on the main thread are supported ({@code
-     *               player.getApplicationLooper() == Looper.getMainLooper()}).
+     * <p>Players whose application looper is not the main looper are supported. Their events are
+     * collected on the player's application thread and only the coalesced changes are posted to the
+     * main thread, so a busy playback thread never floods the UI.
+     *
+     * @param player The {@link Player} to use, or {@code null} to detach the current player.
      */
     public void setPlayer(@Nullable Player player) {
         Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
-        Assertions.checkArgument(player == null || player.getApplicationLooper() == Looper.getMainLooper());
-        if (this.player == player) {
+        if (getPlayer() == player) {
             return;
         }
         @Nullable Player oldPlayer = this.player;
+        @Nullable MainLooperPlayer oldMainLooperPlayer = mainLooperPlayer;
         if (oldPlayer != null) {
+            if (!keepContentOnPlayerReset) {
+                // 在解除表面之前截取，新的播放器渲染第一帧之前显示这一帧。
+                maybeCaptureBridgeFrame();
+            }
             oldPlayer.removeListener(componentListener);
             if (oldPlayer.isCommandAvailable(COMMAND_SET_VIDEO_SURFACE)) {
-                if (surfaceView instanceof TextureView) {
-                    oldPlayer.clearVideoTextureView((TextureView) surfaceView);
-                } else if (surfaceView instanceof SurfaceView) {
-                    oldPlayer.clearVideoSurfaceView((SurfaceView) surfaceView);
-                }
+                clearVideoSurface(oldPlayer, surfaceView);
+            }
+            if (appliedVideoConstraints != null) {
+                // 不把这个视图的限制留给旧的播放器，恢复应用自己设置的参数。
+                restoreVideoConstraintsBaseline(oldPlayer);
             }
         }
+        if (oldMainLooperPlayer != null) {
+            oldMainLooperPlayer.detach();
+        }
+        if (player != null && player.getApplicationLooper() != Looper.getMainLooper()) {
+            mainLooperPlayer = new MainLooperPlayer(player);
+            player = mainLooperPlayer;
+        } else {
+            mainLooperPlayer = null;
+        }
         if (subtitleView != null) {
             subtitleView.setCues(null);
         }
+        if (errorRecovery != null) {
+            errorRecovery.reset();
+        }
+        if (scrubSeekThrottler != null) {
+            scrubSeekThrottler.setPlayer(player);
+        }
         this.player = player;
-        if (useController()) {
-            if (controller != null) {
-                controller.setPlayer(player);
-            }
+        updateVideoConstraints();
+        if (qualityGovernor != null) {
+            qualityGovernor.setPlayer(getPlayer());
         }
+        updateFrameRateMatcher();
+        if (instantReplay != null) {
+            instantReplay.setPlayer(player);
+        }
+        if (watchProgressTracker != null) {
+            watchProgressTracker.setPlayer(player);
+        }
+        updateControllerPlayer();
         updateBuffering();
         updateErrorMessage();
         updateForCurrentTrackSelections(/* isNewPlayer= */ true);
+        videoSurfacePending = false;
         if (player != null) {
             if (player.isCommandAvailable(COMMAND_SET_VIDEO_SURFACE)) {
-                if (surfaceView instanceof TextureView) {
-                    player.setVideoTextureView((TextureView) surfaceView);
-                } else if (surfaceView instanceof SurfaceView) {
-                    player.setVideoSurfaceView((SurfaceView) surfaceView);
-                }
+                setVideoSurface(player, surfaceView);
                 updateAspectRatio();
+            } else {
+                videoSurfacePending = true;
             }
             if (subtitleView != null && player.isCommandAvailable(COMMAND_GET_TEXT)) {
                 subtitleView.setCues(player.getCurrentCues().cues);
             }
             player.addListener(componentListener);
+            maybeApplySnapshot();
             maybeShowController(false);
 
         } else {
@@ -652,6 +832,82 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (dataSaverProfile != null) {
+            // 分离期间网络可能已经变化。
+            dataSaverProfile.addListener(componentListener);
+            componentListener.onLimitsChanged(dataSaverProfile.getNetworkClass(), dataSaverProfile.getLimits());
+        }
+        updateFrameRateMatcher();
+        if (posterSource != null && posterRequest == null && getWidth() > 0 && getHeight() > 0) {
+            loadPoster(posterSource);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        updateFrameRateMatcher();
+        if (posterRequest != null) {
+            // 分离后完成的加载不再写入视图，重新附加时从缓存再次加载。
+            posterRequest.cancel();
+            posterRequest = null;
+        }
+        if (dataSaverProfile != null) {
+            // 应用级的配置不能持有分离后的视图（以及它所在的 Activity）。
+            dataSaverProfile.removeListener(componentListener);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (posterSource != null && posterRequest == null && w > 0 && h > 0 && isAttachedToWindow()) {
+            loadPoster(posterSource);
+        }
+    }
+
+    /**
+     * Saves the media id, position, play-when-ready state and track selection overrides of the
+     * player, and the {@link ResizeMode}. The view must have an id for its state to be saved.
+     */
+    @Nullable
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        @Nullable PlayerSnapshot snapshot = player != null ? PlayerSnapshot.capture(player) : null;
+        if (snapshot == null) {
+            // 还没有应用的状态继续保存，避免连续两次重建时丢失。
+            snapshot = pendingSnapshot;
+        }
+        state.snapshot = snapshot != null ? snapshot.toBundle() : null;
+        state.resizeMode = contentFrame != null ? contentFrame.getResizeMode() : RESIZE_MODE_FIT;
+        return state;
+    }
+
+    /**
+     * Restores the {@link ResizeMode}, and the player state once a player is set whose current
+     * media item has the saved media id and has not started playing. Setting the player and its
+     * media item before preparing it lets the restored track selection overrides apply to the first
+     * track selection, without a second selection after the player is ready.
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        if (contentFrame != null) {
+            contentFrame.setResizeMode(savedState.resizeMode);
+        }
+        pendingSnapshot = savedState.snapshot != null ? PlayerSnapshot.fromBundle(savedState.snapshot) : null;
+        maybeApplySnapshot();
+    }
+
     @Override
     public void setVisibility(int visibility) {
         super.setVisibility(visibility);
@@ -659,6 +915,9 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             // Work around https://github.com/google/ExoPlayer/issues/3160.
             surfaceView.setVisibility(visibility);
         }
+        if (pendingSurfaceView instanceof SurfaceView) {
+            pendingSurfaceView.setVisibility(visibility);
+        }
     }
 
     /**
@@ -748,7 +1007,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         this.useController = useController;
         if (useController()) {
             if (controller != null) {
-                controller.setPlayer(player);
+                controller.setPlayer(controllerPlayer);
             }
         } else if (controller != null) {
             controller.hide();
@@ -788,6 +1047,85 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    /**
+     * Sets whether the last video frame is captured and shown in place of the shutter when the player
+     * is reset and {@link #setKeepContentOnPlayerReset(boolean) keepContentOnPlayerReset} is {@code
+     * false}. The frame is hidden when the next player renders its first frame.
+     *
+     * <p>Capturing needs a {@link TextureView}, or a {@link SurfaceView} on API 24 and above, and an
+     * {@code exo_preview} view in the layout.
+     *
+     * @param bridgeFrameOnPlayerReset Whether to show the last frame while the next player warms up.
+     */
+    public void setBridgeFrameOnPlayerReset(boolean bridgeFrameOnPlayerReset) {
+        Assertions.checkState(!bridgeFrameOnPlayerReset || previewView != null);
+        this.bridgeFrameOnPlayerReset = bridgeFrameOnPlayerReset;
+        if (!bridgeFrameOnPlayerReset) {
+            hidePreview();
+        }
+    }
+
+    /**
+     * Captures the frame currently shown by the video surface. From API 24 the copy is made with
+     * {@link android.view.PixelCopy} and does not block the UI thread; a {@link TextureView} below API
+     * 24 or with a rotation transform is read synchronously. The callback is invoked on the main
+     * thread.
+     *
+     * @param callback The callback receiving the frame, or {@code null} if it could not be captured.
+     */
+    public void captureFrame(FrameCapture.Callback callback) {
+        Assertions.checkStateNotNull(surfaceView);
+        if (surfaceView != null) {
+            FrameCapture.capture(surfaceView, callback);
+        }
+    }
+
+    /**
+     * Sets the video track constraints of one owner, such as a {@link DecoderBudgetManager}. The
+     * constraints of all owners are merged and written to the player's track selection parameters.
+     * They only tighten the video limits the app had set when the first constraints were applied,
+     * and those limits are restored once all constraints are removed or the player is replaced.
+     *
+     * @param owner       The owner of the constraints.
+     * @param constraints The {@link VideoConstraints}, or {@code null} to remove the owner's
+     *                    constraints.
+     */
+    /* package */ void setVideoConstraints(Object owner, @Nullable VideoConstraints constraints) {
+        if (constraints == null) {
+            if (videoConstraints.remove(owner) == null) {
+                return;
+            }
+        } else if (constraints.equals(videoConstraints.put(owner, constraints))) {
+            return;
+        }
+        updateVideoConstraints();
+    }
+
+    /**
+     * Sets the poster shown in {@code exo_preview} until the player renders its first frame. The
+     * poster is decoded in the background at the size of this view, cached in memory and on disk, and
+     * faded out when the first frame is rendered.
+     *
+     * @param posterSource The {@link PosterSource}, or {@code null} to remove the poster.
+     */
+    public void setPoster(@Nullable PosterSource posterSource) {
+        Assertions.checkState(posterSource == null || previewView != null);
+        if (Objects.equals(this.posterSource, posterSource)) {
+            return;
+        }
+        this.posterSource = posterSource;
+        if (posterRequest != null) {
+            posterRequest.cancel();
+            posterRequest = null;
+        }
+        if (posterSource == null) {
+            hidePreview();
+        } else if (getWidth() > 0 && getHeight() > 0 && isAttachedToWindow()) {
+            loadPoster(posterSource);
+        }
+        // 否则在 onSizeChanged 或 onAttachedToWindow 中加载。
+    }
+
     /**
      * Sets whether a buffering spinner is displayed when the player is in the buffering state. The
      * buffering spinner is not displayed by default.
@@ -803,6 +1141,71 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    /**
+     * Sets how the display refresh rate is matched to the frame rate of the current video format,
+     * which avoids judder and lets high refresh rate panels drop to a lower rate. The frame rate is
+     * updated whenever the video format changes. Requires an {@link
+     * com.google.android.exoplayer2.ExoPlayer} and a {@link SurfaceView}. If never called, the
+     * player's own frame rate strategy is left unchanged.
+     *
+     * @param frameRateMatching The {@link FrameRateMatching} policy.
+     */
+    public void setFrameRateMatching(@FrameRateMatching int frameRateMatching) {
+        if (frameRateMatcher == null) {
+            frameRateMatcher = new FrameRateMatcher(this, frameRateMatching);
+            updateFrameRateMatcher();
+        } else {
+            frameRateMatcher.setFrameRateMatching(frameRateMatching);
+        }
+    }
+
+    /**
+     * Sets the {@link InstantReplay} used by the controller's rewind action and {@link
+     * KeyEvent#KEYCODE_MEDIA_REWIND}, which then seek inside the retained back buffer. The player
+     * should be created with {@link PlayerFactory#setInstantReplay(InstantReplay)}.
+     *
+     * @param instantReplay The {@link InstantReplay}, or {@code null} to use the player's seek back.
+     */
+    public void setInstantReplay(@Nullable InstantReplay instantReplay) {
+        if (this.instantReplay == instantReplay) {
+            return;
+        }
+        if (this.instantReplay != null) {
+            this.instantReplay.setPlayer(null);
+        }
+        this.instantReplay = instantReplay;
+        if (instantReplay != null) {
+            instantReplay.setPlayer(player);
+        }
+        updateControllerPlayer();
+    }
+
+    /**
+     * Sets the {@link WatchProgressStore} in which the position of the current media item is
+     * recorded when playback pauses, seeks or moves to another item, when the player is replaced,
+     * and periodically while playing.
+     *
+     * @param watchProgressStore The {@link WatchProgressStore}, or {@code null} to stop recording.
+     */
+    public void setWatchProgressStore(@Nullable WatchProgressStore watchProgressStore) {
+        if (watchProgressTracker != null) {
+            watchProgressTracker.setPlayer(null);
+            watchProgressTracker = null;
+        }
+        if (watchProgressStore != null) {
+            watchProgressTracker = watchProgressStore.createTracker();
+            watchProgressTracker.setPlayer(player);
+        }
+    }
+
+    /**
+     * Returns how far playback can currently rewind without loading, in milliseconds, or 0 if no
+     * {@link InstantReplay} is set.
+     */
+    public long getReplayWindowMs() {
+        return instantReplay != null ? instantReplay.getReplayWindowMs() : 0;
+    }
+
     /**
      * Sets the optional {@link ErrorMessageProvider}.
      *
@@ -827,6 +1230,71 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         updateErrorMessage();
     }
 
+    /**
+     * Sets the {@link PlaybackErrorRecovery} used to retry recoverable playback errors. While a retry
+     * is pending the error message is not shown, and the buffering view is shown if enabled.
+     *
+     * @param errorRecovery The {@link PlaybackErrorRecovery}, or {@code null} to show all errors
+     *                      immediately.
+     */
+    public void setPlaybackErrorRecovery(@Nullable PlaybackErrorRecovery errorRecovery) {
+        if (this.errorRecovery == errorRecovery) {
+            return;
+        }
+        if (this.errorRecovery != null) {
+            this.errorRecovery.reset();
+        }
+        this.errorRecovery = errorRecovery;
+        updateBuffering();
+        updateErrorMessage();
+    }
+
+    /**
+     * Sets the {@link QualityGovernor} that lowers the maximum video resolution and frame rate when
+     * frames are dropped or the device heats up. A governor can be set on one view at a time.
+     *
+     * @param qualityGovernor The {@link QualityGovernor}, or {@code null} to lift its constraints.
+     */
+    public void setQualityGovernor(@Nullable QualityGovernor qualityGovernor) {
+        if (this.qualityGovernor == qualityGovernor) {
+            return;
+        }
+        if (this.qualityGovernor != null) {
+            this.qualityGovernor.detach();
+        }
+        this.qualityGovernor = qualityGovernor;
+        if (qualityGovernor != null) {
+            qualityGovernor.attach(this);
+        }
+    }
+
+    /**
+     * Sets the {@link DataSaverProfile} whose bitrate cap for the current network is applied to the
+     * video track selection, and updated when the network changes. Use {@link
+     * PlayerFactory#setDataSaverProfile(DataSaverProfile)} to also apply its buffer limits. The view
+     * only listens to the profile while it is attached to a window, so an app-scoped profile does
+     * not keep a detached view alive.
+     *
+     * @param dataSaverProfile The {@link DataSaverProfile}, or {@code null} to lift the bitrate cap.
+     */
+    public void setDataSaverProfile(@Nullable DataSaverProfile dataSaverProfile) {
+        if (this.dataSaverProfile == dataSaverProfile) {
+            return;
+        }
+        if (this.dataSaverProfile != null) {
+            this.dataSaverProfile.removeListener(componentListener);
+        }
+        this.dataSaverProfile = dataSaverProfile;
+        if (dataSaverProfile != null) {
+            if (isAttachedToWindow()) {
+                dataSaverProfile.addListener(componentListener);
+            }
+            componentListener.onLimitsChanged(dataSaverProfile.getNetworkClass(), dataSaverProfile.getLimits());
+        } else {
+            setVideoConstraints(componentListener, null);
+        }
+    }
+
     @Override
     public boolean dispatchKeyEvent(KeyEvent event) {
         if (player != null && player.isCommandAvailable(COMMAND_GET_CURRENT_MEDIA_ITEM) && player.isPlayingAd()) {
@@ -966,7 +1434,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
     }
 
     /**
-     * Sets the {@link StyledPlayerControlView.VisibilityListener}.
+     * Sets the {@link ControllerVisibilityListener}.
      *
      * <p>If {@code listener} is non-null then any listener set by {@link
      * #setControllerVisibilityListener(StyledPlayerControlView.VisibilityListener)} is removed.
@@ -988,6 +1456,8 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      * <p>If {@code listener} is non-null then any listener set by {@link
      * #setControllerVisibilityListener(ControllerVisibilityListener)} is removed.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @deprecated Use {@link #setControllerVisibilityListener(ControllerVisibilityListener)} instead.
      */
     @SuppressWarnings("deprecation")
@@ -998,15 +1468,16 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             return;
         }
 
+        @Nullable StyledPlayerControlView styledController = getStyledController();
         if (this.legacyControllerVisibilityListener != null) {
-            if (controller != null) {
-                controller.removeVisibilityListener(this.legacyControllerVisibilityListener);
+            if (styledController != null) {
+                styledController.removeVisibilityListener(this.legacyControllerVisibilityListener);
             }
         }
         this.legacyControllerVisibilityListener = listener;
         if (listener != null) {
-            if (controller != null) {
-                controller.addVisibilityListener(listener);
+            if (styledController != null) {
+                styledController.addVisibilityListener(listener);
             }
             setControllerVisibilityListener((ControllerVisibilityListener) null);
         }
@@ -1021,13 +1492,11 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      * @param listener The listener to be notified when the fullscreen button is clicked, or null to
      *                 remove the current listener and hide the fullscreen button.
      */
-    @SuppressWarnings("deprecation")
-    // Calling the deprecated method on StyledPlayerControlView for now.
     public void setFullscreenButtonClickListener(@Nullable FullscreenButtonClickListener listener) {
         Assertions.checkStateNotNull(controller);
         this.fullscreenButtonClickListener = listener;
         if (controller != null) {
-            controller.setOnFullScreenModeChangedListener(componentListener);
+            controller.setFullscreenButtonClickListener(componentListener);
         }
     }
 
@@ -1037,123 +1506,156 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
      * <p>Clears any listener set by {@link
      * #setFullscreenButtonClickListener(FullscreenButtonClickListener)}.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param listener The listener to be notified when the fullscreen button is clicked, or null to
      *                 remove the current listener and hide the fullscreen button.
      * @deprecated Use {@link #setFullscreenButtonClickListener(FullscreenButtonClickListener)}
      * instead.
      */
+    @SuppressWarnings("deprecation")
     @Deprecated
     public void setControllerOnFullScreenModeChangedListener(@Nullable StyledPlayerControlView.OnFullScreenModeChangedListener listener) {
         Assertions.checkStateNotNull(controller);
         this.fullscreenButtonClickListener = null;
-        controller.setOnFullScreenModeChangedListener(listener);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setOnFullScreenModeChangedListener(listener);
+        }
     }
 
     /**
      * Sets whether the rewind button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showRewindButton Whether the rewind button is shown.
      */
     public void setShowRewindButton(boolean showRewindButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowRewindButton(showRewindButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowRewindButton(showRewindButton);
         }
     }
 
     /**
      * Sets whether the fast forward button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showFastForwardButton Whether the fast forward button is shown.
      */
     public void setShowFastForwardButton(boolean showFastForwardButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowFastForwardButton(showFastForwardButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowFastForwardButton(showFastForwardButton);
         }
     }
 
     /**
      * Sets whether the previous button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showPreviousButton Whether the previous button is shown.
      */
     public void setShowPreviousButton(boolean showPreviousButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowPreviousButton(showPreviousButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowPreviousButton(showPreviousButton);
         }
     }
 
     /**
      * Sets whether the next button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showNextButton Whether the next button is shown.
      */
     public void setShowNextButton(boolean showNextButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowNextButton(showNextButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowNextButton(showNextButton);
         }
     }
 
     /**
      * Sets which repeat toggle modes are enabled.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param repeatToggleModes A set of {@link RepeatModeUtil.RepeatToggleModes}.
      */
     public void setRepeatToggleModes(@RepeatModeUtil.RepeatToggleModes int repeatToggleModes) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setRepeatToggleModes(repeatToggleModes);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setRepeatToggleModes(repeatToggleModes);
         }
     }
 
     /**
      * Sets whether the shuffle button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showShuffleButton Whether the shuffle button is shown.
      */
     public void setShowShuffleButton(boolean showShuffleButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowShuffleButton(showShuffleButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowShuffleButton(showShuffleButton);
         }
     }
 
     /**
      * Sets whether the subtitle button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showSubtitleButton Whether the subtitle button is shown.
      */
     public void setShowSubtitleButton(boolean showSubtitleButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowSubtitleButton(showSubtitleButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowSubtitleButton(showSubtitleButton);
         }
     }
 
     /**
      * Sets whether the vr button is shown.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showVrButton Whether the vr button is shown.
      */
     public void setShowVrButton(boolean showVrButton) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowVrButton(showVrButton);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowVrButton(showVrButton);
         }
     }
 
     /**
      * Sets whether the time bar should show all windows, as opposed to just the current one.
      *
+     * <p>Only supported by the styled controller. Has no effect with {@code controller_type="slim"}.
+     *
      * @param showMultiWindowTimeBar Whether to show all windows.
      */
     public void setShowMultiWindowTimeBar(boolean showMultiWindowTimeBar) {
         Assertions.checkStateNotNull(controller);
-        if (controller != null) {
-            controller.setShowMultiWindowTimeBar(showMultiWindowTimeBar);
+        @Nullable StyledPlayerControlView styledController = getStyledController();
+        if (styledController != null) {
+            styledController.setShowMultiWindowTimeBar(showMultiWindowTimeBar);
         }
     }
 
@@ -1174,6 +1676,99 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    /**
+     * Sets the {@link MarkerIndex} whose markers are shown on the time bar instead of the extra ad
+     * markers, and used by {@link #seekToNextMarker()} and {@link #seekToPreviousMarker()}. Only the
+     * markers within the duration are drawn, and markers on the same pixel of the time bar are
+     * merged.
+     *
+     * @param markerIndex The {@link MarkerIndex}, or {@code null} to show the extra ad markers.
+     */
+    public void setMarkerIndex(@Nullable MarkerIndex markerIndex) {
+        this.markerIndex = markerIndex;
+        if (controller != null) {
+            controller.setMarkerIndex(markerIndex);
+        }
+    }
+
+    /**
+     * Seeks to the first marker after the current position.
+     *
+     * @return Whether a seek was performed.
+     */
+    public boolean seekToNextMarker() {
+        if (markerIndex == null || player == null || !player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM)) {
+            return false;
+        }
+        long timeMs = markerIndex.getNextMarkerTimeMs(player.getContentPosition());
+        if (timeMs == C.TIME_UNSET) {
+            return false;
+        }
+        player.seekTo(timeMs);
+        return true;
+    }
+
+    /**
+     * Seeks to the last marker before the current position. Markers less than {@link
+     * #PREVIOUS_MARKER_THRESHOLD_MS} before the position are skipped, so that repeated calls while
+     * playing move further back.
+     *
+     * @return Whether a seek was performed.
+     */
+    public boolean seekToPreviousMarker() {
+        if (markerIndex == null || player == null || !player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM)) {
+            return false;
+        }
+        long timeMs = markerIndex.getPreviousMarkerTimeMs(player.getContentPosition() - PREVIOUS_MARKER_THRESHOLD_MS);
+        if (timeMs == C.TIME_UNSET) {
+            return false;
+        }
+        player.seekTo(timeMs);
+        return true;
+    }
+
+    /**
+     * Sets whether the player seeks while the time bar is being dragged. Intermediate seeks snap to
+     * the closest sync frame, are throttled to {@link #setScrubSeekIntervalMs(int)} and are skipped
+     * while a previous seek is still in progress. The seek on release is exact. Has no effect if
+     * there is no controller or its layout has no {@code exo_progress} time bar.
+     *
+     * @param scrubSeekingEnabled Whether to seek while scrubbing.
+     */
+    public void setScrubSeekingEnabled(boolean scrubSeekingEnabled) {
+        if (scrubSeekingEnabled == (scrubSeekThrottler != null)) {
+            return;
+        }
+        // 没有控制器或进度条时只记录设置，不监听拖动。
+        @Nullable TimeBar timeBar = getTimeBar();
+        if (scrubSeekingEnabled) {
+            scrubSeekThrottler = new ScrubSeekThrottler();
+            scrubSeekThrottler.setSeekIntervalMs(scrubSeekIntervalMs);
+            scrubSeekThrottler.setPlayer(player);
+            if (timeBar != null) {
+                timeBar.addListener(scrubSeekThrottler);
+            }
+        } else {
+            if (timeBar != null) {
+                timeBar.removeListener(Objects.requireNonNull(scrubSeekThrottler));
+            }
+            Objects.requireNonNull(scrubSeekThrottler).setPlayer(null);
+            scrubSeekThrottler = null;
+        }
+    }
+
+    /**
+     * Sets the minimum interval between two seeks issued while the time bar is being dragged.
+     *
+     * @param scrubSeekIntervalMs The interval in milliseconds.
+     */
+    public void setScrubSeekIntervalMs(int scrubSeekIntervalMs) {
+        this.scrubSeekIntervalMs = scrubSeekIntervalMs;
+        if (scrubSeekThrottler != null) {
+            scrubSeekThrottler.setSeekIntervalMs(scrubSeekIntervalMs);
+        }
+    }
+
     /**
      * Sets the {@link AspectRatioFrameLayout.AspectRatioListener}.
      *
@@ -1209,6 +1804,58 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         return surfaceView;
     }
 
+    /**
+     * Switches the view the video is rendered to without re-inflating this view, for example to a
+     * {@link TextureView} during a shared element transition and back to a {@link SurfaceView} for
+     * steady playback.
+     *
+     * <p>The new view is added behind the current one and the player keeps rendering to the current
+     * view until the new view's surface is available. The player is then attached to the new
+     * surface before the old view is removed, so there is no gap without an output surface. The
+     * old view is handed back to the previous factory's {@link
+     * SurfaceFactory#releaseSurfaceView(View)}.
+     *
+     * @param surfaceFactory The {@link SurfaceFactory} creating the new view, or {@code null} to
+     *                       remove the surface view.
+     */
+    public void setSurfaceFactory(@Nullable SurfaceFactory surfaceFactory) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        Assertions.checkStateNotNull(contentFrame);
+        if (contentFrame == null) {
+            return;
+        }
+        if (pendingSurfaceView != null) {
+            if (pendingSurfaceFactory == surfaceFactory) {
+                return;
+            }
+            cancelSurfaceSwitch();
+        }
+        if (this.surfaceFactory == surfaceFactory) {
+            return;
+        }
+        if (surfaceFactory == null) {
+            replaceSurfaceView(/* newSurfaceView= */ null, /* newSurfaceFactory= */ null);
+            return;
+        }
+        View newSurfaceView = surfaceFactory.createSurfaceView(getContext());
+        newSurfaceView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        newSurfaceView.setOnClickListener(componentListener);
+        newSurfaceView.setClickable(false);
+        if (newSurfaceView instanceof SurfaceView) {
+            // Work around https://github.com/google/ExoPlayer/issues/3160.
+            newSurfaceView.setVisibility(getVisibility());
+        }
+        contentFrame.addView(newSurfaceView, 0);
+        pendingSurfaceView = newSurfaceView;
+        pendingSurfaceFactory = surfaceFactory;
+        if (!isAttachedToWindow() || isSurfaceAvailable(newSurfaceView)) {
+            // 没有附加到窗口时表面不会被创建，也没有正在显示的画面，直接切换。
+            completeSurfaceSwitch();
+        } else {
+            surfaceSwitchListener.register(newSurfaceView);
+        }
+    }
+
     /**
      * Gets the overlay {@link FrameLayout}, which can be populated with UI elements to show on top of
      * the player.
@@ -1301,7 +1948,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             overlayViews.add(new AdOverlayInfo.Builder(overlayFrameLayout, AdOverlayInfo.PURPOSE_NOT_VISIBLE).setDetailedReason("Transparent overlay does not impact viewability").build());
         }
         if (controller != null) {
-            overlayViews.add(new AdOverlayInfo.Builder(controller, AdOverlayInfo.PURPOSE_CONTROLS).build());
+            overlayViews.add(new AdOverlayInfo.Builder(controller.getView(), AdOverlayInfo.PURPOSE_CONTROLS).build());
         }
         return ImmutableList.copyOf(overlayViews);
     }
@@ -1384,6 +2031,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         @Nullable Player player = this.player;
         if (player == null || !player.isCommandAvailable(COMMAND_GET_TRACKS) || player.getCurrentTracks().isEmpty()) {
             if (!keepContentOnPlayerReset) {
+                maybeCaptureBridgeFrame();
                 hideArtwork();
                 closeShutter();
             }
@@ -1392,6 +2040,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
 
         if (isNewPlayer && !keepContentOnPlayerReset) {
             // Hide any video from the previous player.
+            maybeCaptureBridgeFrame();
             closeShutter();
         }
 
@@ -1403,6 +2052,12 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
 
         // Video disabled so the shutter must be closed.
+        if (appliedVideoConstraints != null && appliedVideoConstraints.videoDisabled) {
+            // 视频被限制禁用时保留最后一帧，而不是显示黑屏。
+            maybeCaptureConstrainedFrame();
+        } else {
+            hidePreview();
+        }
         closeShutter();
         // Display artwork if enabled and available, else hide it.
         if (useArtwork()) {
@@ -1461,9 +2116,149 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    /**
+     * 如果视频当前可见，异步截取最后一帧，并在遮挡仍然关闭时显示在预览图中。
+     */
+    private void maybeCaptureBridgeFrame() {
+        if (!bridgeFrameOnPlayerReset || bridgeFrameCapturePending || previewView == null || surfaceView == null || shutterView == null || shutterView.getVisibility() == View.VISIBLE) {
+            return;
+        }
+        bridgeFrameCapturePending = true;
+        FrameCapture.capture(surfaceView, frame -> {
+            bridgeFrameCapturePending = false;
+            // 新的播放器可能已经渲染了第一帧。
+            if (frame != null && bridgeFrameOnPlayerReset && shutterView.getVisibility() == View.VISIBLE) {
+                showPreview(frame);
+            }
+        });
+    }
+
+    private void maybeCaptureConstrainedFrame() {
+        if (previewView == null || surfaceView == null || shutterView == null || shutterView.getVisibility() == View.VISIBLE) {
+            return;
+        }
+        FrameCapture.capture(surfaceView, frame -> {
+            if (frame != null && appliedVideoConstraints != null && appliedVideoConstraints.videoDisabled) {
+                showPreview(frame);
+            }
+        });
+    }
+
+    /**
+     * 播放器设置了媒体后应用恢复的状态。播放器正在播放其他媒体或已经开始播放时丢弃，以播放器为准.
+     */
+    private void maybeApplySnapshot() {
+        if (pendingSnapshot == null || player == null || !player.isCommandAvailable(COMMAND_GET_CURRENT_MEDIA_ITEM) || player.getCurrentMediaItem() == null) {
+            return;
+        }
+        PlayerSnapshot snapshot = pendingSnapshot;
+        pendingSnapshot = null;
+        if (snapshot.canApplyTo(player)) {
+            snapshot.applyTo(player);
+        }
+    }
+
+    /**
+     * 只在视图附加到窗口并且有播放器时匹配帧率，否则释放，恢复窗口的显示模式.
+     */
+    private void updateFrameRateMatcher() {
+        if (frameRateMatcher == null) {
+            return;
+        }
+        if (player == null || !isAttachedToWindow()) {
+            frameRateMatcher.release();
+        } else {
+            frameRateMatcher.setSurfaceView(surfaceView);
+            frameRateMatcher.setPlayer(getPlayer());
+        }
+    }
+
+    private void updateControllerPlayer() {
+        @Nullable Player player = this.player;
+        controllerPlayer = player != null && instantReplay != null ? instantReplay.wrapForController(player) : player;
+        if (useController() && controller != null) {
+            controller.setPlayer(controllerPlayer);
+        }
+    }
+
+    private void updateVideoConstraints() {
+        @Nullable Player player = this.player;
+        if (player == null || !player.isCommandAvailable(COMMAND_SET_TRACK_SELECTION_PARAMETERS)) {
+            return;
+        }
+        VideoConstraints constraints = VideoConstraints.UNCONSTRAINED;
+        for (VideoConstraints ownerConstraints : videoConstraints.values()) {
+            constraints = constraints.merge(ownerConstraints);
+        }
+        // 从未施加过限制时不改动应用自己设置的参数。
+        if (constraints.equals(appliedVideoConstraints != null ? appliedVideoConstraints : VideoConstraints.UNCONSTRAINED)) {
+            return;
+        }
+        if (constraints.equals(VideoConstraints.UNCONSTRAINED)) {
+            restoreVideoConstraintsBaseline(player);
+            return;
+        }
+        TrackSelectionParameters baseline = videoConstraintsBaseline;
+        if (baseline == null) {
+            baseline = player.getTrackSelectionParameters();
+            videoConstraintsBaseline = baseline;
+        }
+        appliedVideoConstraints = constraints;
+        // 限制只能在应用自己的限制之上收紧，不能放宽。
+        player.setTrackSelectionParameters(player.getTrackSelectionParameters().buildUpon().setMaxVideoSize(Math.min(constraints.maxVideoWidth, baseline.maxVideoWidth), Math.min(constraints.maxVideoHeight, baseline.maxVideoHeight)).setMaxVideoFrameRate(Math.min(constraints.maxVideoFrameRate, baseline.maxVideoFrameRate)).setMaxVideoBitrate(Math.min(constraints.maxVideoBitrate, baseline.maxVideoBitrate)).setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, constraints.videoDisabled || baseline.disabledTrackTypes.contains(C.TRACK_TYPE_VIDEO)).build());
+    }
+
+    /**
+     * Restores the video fields of the track selection parameters the app had set before the
+     * constraints were first applied, keeping any other change made in the meantime.
+     */
+    private void restoreVideoConstraintsBaseline(Player player) {
+        @Nullable TrackSelectionParameters baseline = videoConstraintsBaseline;
+        appliedVideoConstraints = null;
+        videoConstraintsBaseline = null;
+        if (baseline == null || !player.isCommandAvailable(COMMAND_SET_TRACK_SELECTION_PARAMETERS)) {
+            return;
+        }
+        player.setTrackSelectionParameters(player.getTrackSelectionParameters().buildUpon().setMaxVideoSize(baseline.maxVideoWidth, baseline.maxVideoHeight).setMaxVideoFrameRate(baseline.maxVideoFrameRate).setMaxVideoBitrate(baseline.maxVideoBitrate).setTrackTypeDisabled(C.TRACK_TYPE_VIDEO, baseline.disabledTrackTypes.contains(C.TRACK_TYPE_VIDEO)).build());
+    }
+
+    private void loadPoster(PosterSource posterSource) {
+        posterRequest = PosterLoader.getInstance(getContext()).load(posterSource, getWidth(), getHeight(), poster -> {
+            // 第一帧已经渲染时不再显示封面。
+            if (poster != null && (shutterView == null || shutterView.getVisibility() == View.VISIBLE)) {
+                showPreview(poster);
+            }
+        });
+    }
+
+    private void showPreview(Bitmap bitmap) {
+        if (previewView != null) {
+            previewView.animate().cancel();
+            previewView.setAlpha(1f);
+            previewView.setImageBitmap(bitmap);
+            previewView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void hidePreview() {
+        if (previewView != null && previewView.getVisibility() != View.GONE) {
+            previewView.animate().cancel();
+            previewView.setImageDrawable(null);
+            previewView.setVisibility(View.GONE);
+            previewView.setAlpha(1f);
+        }
+    }
+
+    private void fadeOutPreview() {
+        if (previewView != null && previewView.getVisibility() == View.VISIBLE) {
+            previewView.animate().alpha(0f).setDuration(PREVIEW_FADE_OUT_DURATION_MS).withEndAction(this::hidePreview);
+        }
+    }
+
     private void updateBuffering() {
         if (bufferingView != null) {
-            boolean showBufferingSpinner = player != null && player.getPlaybackState() == Player.STATE_BUFFERING && (showBuffering == SHOW_BUFFERING_ALWAYS || (showBuffering == SHOW_BUFFERING_WHEN_PLAYING && player.getPlayWhenReady()));
+            boolean isBuffering = player != null && (player.getPlaybackState() == Player.STATE_BUFFERING || isRecoveringFromError());
+            boolean showBufferingSpinner = isBuffering && (showBuffering == SHOW_BUFFERING_ALWAYS || (showBuffering == SHOW_BUFFERING_WHEN_PLAYING && player.getPlayWhenReady()));
             bufferingView.setVisibility(showBufferingSpinner ? View.VISIBLE : View.GONE);
         }
     }
@@ -1476,7 +2271,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
                 return;
             }
             @Nullable PlaybackException error = player != null ? player.getPlayerError() : null;
-            if (error != null && errorMessageProvider != null) {
+            if (error != null && errorMessageProvider != null && !isRecoveringFromError()) {
                 CharSequence errorMessage = errorMessageProvider.getErrorMessage(error).second;
                 errorMessageView.setText(errorMessage);
                 errorMessageView.setVisibility(View.VISIBLE);
@@ -1486,6 +2281,24 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         }
     }
 
+    @Nullable
+    private StyledPlayerControlView getStyledController() {
+        return controller instanceof StyledControllerAdapter ? ((StyledControllerAdapter) controller).getControlView() : null;
+    }
+
+    @Nullable
+    private TimeBar getTimeBar() {
+        if (controller == null) {
+            return null;
+        }
+        View timeBar = controller.getView().findViewById(R.id.exo_progress);
+        return timeBar instanceof TimeBar ? (TimeBar) timeBar : null;
+    }
+
+    private boolean isRecoveringFromError() {
+        return errorRecovery != null && errorRecovery.isRecovering();
+    }
+
     private void updateContentDescription() {
         if (controller == null || !useController) {
             setContentDescription(/* contentDescription= */ null);
@@ -1541,6 +2354,88 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         aspectRatioFrame.setResizeMode(resizeMode);
     }
 
+    private void completeSurfaceSwitch() {
+        View newSurfaceView = checkNotNull(pendingSurfaceView);
+        SurfaceFactory newSurfaceFactory = checkNotNull(pendingSurfaceFactory);
+        surfaceSwitchListener.unregister(newSurfaceView);
+        pendingSurfaceView = null;
+        pendingSurfaceFactory = null;
+        replaceSurfaceView(newSurfaceView, newSurfaceFactory);
+    }
+
+    private void cancelSurfaceSwitch() {
+        View newSurfaceView = checkNotNull(pendingSurfaceView);
+        SurfaceFactory newSurfaceFactory = checkNotNull(pendingSurfaceFactory);
+        surfaceSwitchListener.unregister(newSurfaceView);
+        pendingSurfaceView = null;
+        pendingSurfaceFactory = null;
+        checkNotNull(contentFrame).removeView(newSurfaceView);
+        newSurfaceFactory.releaseSurfaceView(newSurfaceView);
+    }
+
+    private void replaceSurfaceView(@Nullable View newSurfaceView, @Nullable SurfaceFactory newSurfaceFactory) {
+        @Nullable View oldSurfaceView = surfaceView;
+        @Nullable SurfaceFactory oldSurfaceFactory = surfaceFactory;
+        surfaceView = newSurfaceView;
+        surfaceFactory = newSurfaceFactory;
+        surfaceViewIgnoresVideoAspectRatio = newSurfaceFactory != null && newSurfaceFactory.ignoresVideoAspectRatio();
+        updateFrameRateMatcher();
+        if (player != null && player.isCommandAvailable(COMMAND_SET_VIDEO_SURFACE)) {
+            // 先附加新表面再解除旧表面，播放器在切换过程中始终有输出表面。
+            setVideoSurface(player, newSurfaceView);
+            clearVideoSurface(player, oldSurfaceView);
+        }
+        if (oldSurfaceView != null) {
+            // 旋转只作用于旧的 TextureView，由 updateAspectRatio 为新表面重新计算。
+            oldSurfaceView.removeOnLayoutChangeListener(componentListener);
+            checkNotNull(contentFrame).removeView(oldSurfaceView);
+            checkNotNull(oldSurfaceFactory).releaseSurfaceView(oldSurfaceView);
+        }
+        textureViewRotation = 0;
+        updateAspectRatio();
+    }
+
+    private static void setVideoSurface(Player player, @Nullable View surfaceView) {
+        if (surfaceView instanceof TextureView) {
+            player.setVideoTextureView((TextureView) surfaceView);
+        } else if (surfaceView instanceof SurfaceView) {
+            player.setVideoSurfaceView((SurfaceView) surfaceView);
+        }
+    }
+
+    private static void clearVideoSurface(Player player, @Nullable View surfaceView) {
+        if (surfaceView instanceof TextureView) {
+            player.clearVideoTextureView((TextureView) surfaceView);
+        } else if (surfaceView instanceof SurfaceView) {
+            player.clearVideoSurfaceView((SurfaceView) surfaceView);
+        }
+    }
+
+    private static boolean isSurfaceAvailable(View surfaceView) {
+        if (surfaceView instanceof TextureView) {
+            return ((TextureView) surfaceView).isAvailable();
+        } else if (surfaceView instanceof SurfaceView) {
+            return ((SurfaceView) surfaceView).getHolder().getSurface().isValid();
+        }
+        return true;
+    }
+
+    @Nullable
+    private static SurfaceFactory getSurfaceFactory(int surfaceType) {
+        switch (surfaceType) {
+            case SURFACE_TYPE_NONE:
+                return null;
+            case SURFACE_TYPE_TEXTURE_VIEW:
+                return SurfaceFactory.TEXTURE_VIEW;
+            case SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW:
+                return SurfaceFactory.SPHERICAL_GL_SURFACE_VIEW;
+            case SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW:
+                return SurfaceFactory.VIDEO_DECODER_GL_SURFACE_VIEW;
+            default:
+                return SurfaceFactory.SURFACE_VIEW;
+        }
+    }
+
     /**
      * Applies a texture rotation to a {@link TextureView}.
      */
@@ -1567,10 +2462,115 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
         return keyCode == KeyEvent.KEYCODE_DPAD_UP || keyCode == KeyEvent.KEYCODE_DPAD_UP_RIGHT || keyCode == KeyEvent.KEYCODE_DPAD_RIGHT || keyCode == KeyEvent.KEYCODE_DPAD_DOWN_RIGHT || keyCode == KeyEvent.KEYCODE_DPAD_DOWN || keyCode == KeyEvent.KEYCODE_DPAD_DOWN_LEFT || keyCode == KeyEvent.KEYCODE_DPAD_LEFT || keyCode == KeyEvent.KEYCODE_DPAD_UP_LEFT || keyCode == KeyEvent.KEYCODE_DPAD_CENTER;
     }
 
-    // Implementing the deprecated StyledPlayerControlView.VisibilityListener and
-    // StyledPlayerControlView.OnFullScreenModeChangedListener for now.
-    @SuppressWarnings("deprecation")
-    private final class ComponentListener implements Player.Listener, OnLayoutChangeListener, OnClickListener, StyledPlayerControlView.VisibilityListener, StyledPlayerControlView.OnFullScreenModeChangedListener {
+    /**
+     * 等待切换中的新表面可用.
+     */
+    private final class SurfaceSwitchListener implements SurfaceHolder.Callback, TextureView.SurfaceTextureListener {
+
+        public void register(View surfaceView) {
+            if (surfaceView instanceof TextureView) {
+                ((TextureView) surfaceView).setSurfaceTextureListener(this);
+            } else if (surfaceView instanceof SurfaceView) {
+                ((SurfaceView) surfaceView).getHolder().addCallback(this);
+            }
+        }
+
+        public void unregister(View surfaceView) {
+            if (surfaceView instanceof TextureView) {
+                // 播放器会设置自己的监听器，这里必须先清除。
+                ((TextureView) surfaceView).setSurfaceTextureListener(null);
+            } else if (surfaceView instanceof SurfaceView) {
+                ((SurfaceView) surfaceView).getHolder().removeCallback(this);
+            }
+        }
+
+        // SurfaceHolder.Callback implementation
+
+        @Override
+        public void surfaceCreated(@NonNull SurfaceHolder holder) {
+            if (pendingSurfaceView instanceof SurfaceView && ((SurfaceView) pendingSurfaceView).getHolder() == holder) {
+                completeSurfaceSwitch();
+            }
+        }
+
+        @Override
+        public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+            // Do nothing.
+        }
+
+        @Override
+        public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+            // Do nothing.
+        }
+
+        // TextureView.SurfaceTextureListener implementation
+
+        @Override
+        public void onSurfaceTextureAvailable(@NonNull SurfaceTexture surfaceTexture, int width, int height) {
+            if (pendingSurfaceView instanceof TextureView && ((TextureView) pendingSurfaceView).getSurfaceTexture() == surfaceTexture) {
+                completeSurfaceSwitch();
+            }
+        }
+
+        @Override
+        public void onSurfaceTextureSizeChanged(@NonNull SurfaceTexture surfaceTexture, int width, int height) {
+            // Do nothing.
+        }
+
+        @Override
+        public boolean onSurfaceTextureDestroyed(@NonNull SurfaceTexture surfaceTexture) {
+            return true;
+        }
+
+        @Override
+        public void onSurfaceTextureUpdated(@NonNull SurfaceTexture surfaceTexture) {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * 视图保存的状态.
+     */
+    /* package */ static final class SavedState extends BaseSavedState {
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+
+        /**
+         * {@link PlayerSnapshot#toBundle()} 的结果，没有播放器状态时为 null
+         **/
+        @Nullable
+        private Bundle snapshot;
+        private @ResizeMode int resizeMode;
+
+        public SavedState(@Nullable Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel source) {
+            super(source);
+            snapshot = source.readBundle(SavedState.class.getClassLoader());
+            resizeMode = source.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeBundle(snapshot);
+            out.writeInt(resizeMode);
+        }
+    }
+
+    private final class ComponentListener implements Player.Listener, OnLayoutChangeListener, OnClickListener, ControllerVisibilityListener, FullscreenButtonClickListener, DataSaverProfile.Listener {
 
         private final Period period;
         private @Nullable
@@ -1589,6 +2589,15 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             }
         }
 
+        @Override
+        public void onAvailableCommandsChanged(@NonNull Player.Commands availableCommands) {
+            if (videoSurfacePending && player != null && availableCommands.contains(COMMAND_SET_VIDEO_SURFACE)) {
+                videoSurfacePending = false;
+                setVideoSurface(player, surfaceView);
+                updateAspectRatio();
+            }
+        }
+
         @Override
         public void onVideoSizeChanged(@NonNull VideoSize videoSize) {
             updateAspectRatio();
@@ -1599,6 +2608,7 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             if (shutterView != null) {
                 shutterView.setVisibility(INVISIBLE);
             }
+            fadeOutPreview();
         }
 
         @Override
@@ -1627,8 +2637,20 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             updateForCurrentTrackSelections(/* isNewPlayer= */ false);
         }
 
+        @Override
+        public void onPlayerError(@NonNull PlaybackException error) {
+            if (errorRecovery != null && player != null) {
+                errorRecovery.onPlayerError(player, error);
+            }
+            updateBuffering();
+            updateErrorMessage();
+        }
+
         @Override
         public void onPlaybackStateChanged(@Player.State int playbackState) {
+            if (errorRecovery != null) {
+                errorRecovery.onPlaybackStateChanged(playbackState);
+            }
             updateBuffering();
             updateErrorMessage();
             updateControllerVisibility();
@@ -1647,6 +2669,11 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             }
         }
 
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, @Player.TimelineChangeReason int reason) {
+            maybeApplySnapshot();
+        }
+
         // OnLayoutChangeListener implementation
 
         @Override
@@ -1661,22 +2688,30 @@ public class ExoVideoView extends FrameLayout implements AdViewProvider {
             toggleControllerVisibility();
         }
 
-        // StyledPlayerControlView.VisibilityListener implementation
+        // ControllerVisibilityListener implementation
+
         @Override
-        public void onVisibilityChange(int visibility) {
+        public void onVisibilityChanged(int visibility) {
             updateContentDescription();
             if (controllerVisibilityListener != null) {
                 controllerVisibilityListener.onVisibilityChanged(visibility);
             }
         }
 
-        // StyledPlayerControlView.OnFullScreenModeChangedListener implementation
+        // FullscreenButtonClickListener implementation
 
         @Override
-        public void onFullScreenModeChanged(boolean isFullScreen) {
+        public void onFullscreenButtonClick(boolean isFullScreen) {
             if (fullscreenButtonClickListener != null) {
                 fullscreenButtonClickListener.onFullscreenButtonClick(isFullScreen);
             }
         }
+
+        // DataSaverProfile.Listener implementation
+
+        @Override
+        public void onLimitsChanged(@DataSaverProfile.NetworkClass int networkClass, DataSaverProfile.Limits limits) {
+            setVideoConstraints(/* owner= */ this, new VideoConstraints(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, limits.maxVideoBitrate, /* videoDisabled= */ false));
+        }
     }
 }
@@ -0,0 +1,373 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加快 {@code moov} 在文件末尾的 MP4 起播的 {@link DataSource}。
+ * <p>
+ * 这类文件的解析器先读开头的盒子，遇到 {@code mdat} 后跳到文件末尾读取 {@code moov}，再跳回 {@code mdat} 读取样本，
+ * 每次跳转都是一个新的请求。第一次从头打开时，这里在同一个连接上先读取文件开头的 {@link #HEAD_SIZE} 字节；
+ * 只有以 {@code ftyp} 开头、{@code mdat} 之后跟着 {@code moov} 的文件，才再用一个请求取回 {@code mdat} 之后的全部数据，
+ * 两段保存在内存中。之后对这两段的读取直接从内存返回，读到开头一段之后才继续向上游请求 {@code mdat}，所以首帧前只有两个请求。
+ * 其他资源（清单、分片、非 MP4 文件）读完开头后在同一个连接上继续读取，不产生额外的请求，也不缓存。
+ * 取回结尾失败时按普通文件播放。有 {@code moov} 结尾的文件布局在进程内共享缓存，再次播放同一个文件时不再探测。
+ */
+public final class FastStartDataSource implements DataSource {
+
+    /**
+     * {@link FastStartDataSource} 的工厂.
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+
+        /**
+         * Creates a factory.
+         *
+         * @param upstreamFactory The factory of the upstream {@link DataSource}.
+         */
+        public Factory(DataSource.Factory upstreamFactory) {
+            this.upstreamFactory = upstreamFactory;
+        }
+
+        @NonNull
+        @Override
+        public FastStartDataSource createDataSource() {
+            return new FastStartDataSource(upstreamFactory);
+        }
+    }
+
+    /**
+     * The number of bytes read from the start of a file to probe its box layout.
+     */
+    public static final int HEAD_SIZE = 32 * 1024;
+    /**
+     * The maximum number of bytes after {@code mdat} that are fetched to get the {@code moov} box.
+     */
+    public static final int MAX_TAIL_SIZE = 4 * 1024 * 1024;
+    /**
+     * The maximum number of bytes of cached layouts.
+     */
+    public static final long MAX_CACHE_BYTES = 16 * 1024 * 1024;
+
+    private static final String TAG = "FastStartDataSource";
+    private static final int TYPE_FTYP = Util.getIntegerCodeForString("ftyp");
+    private static final int TYPE_MDAT = Util.getIntegerCodeForString("mdat");
+    private static final int TYPE_MOOV = Util.getIntegerCodeForString("moov");
+    private static final LayoutCache LAYOUT_CACHE = new LayoutCache(MAX_CACHE_BYTES);
+
+    private final DataSource.Factory upstreamFactory;
+    private final DataSource upstream;
+
+    @Nullable
+    private DataSpec dataSpec;
+    /**
+     * 正在从内存读取的数据段及其在文件中的位置，读完后转为从上游读取
+     **/
+    @Nullable
+    private byte[] segment;
+    private long segmentPosition;
+    @Nullable
+    private Layout layout;
+    private long readPosition;
+    private long bytesRemaining;
+    private boolean upstreamOpened;
+    /**
+     * 开头一段是从上游连接读取的，并且已经读到了资源的结尾
+     **/
+    private boolean headEndOfInput;
+
+    private FastStartDataSource(DataSource.Factory upstreamFactory) {
+        this.upstreamFactory = upstreamFactory;
+        upstream = upstreamFactory.createDataSource();
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        this.dataSpec = dataSpec;
+        String key = dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+        @Nullable Layout layout = LAYOUT_CACHE.get(key);
+        if (layout != null && layout.getSegment(dataSpec.position) != null) {
+            this.layout = layout;
+            segment = layout.getSegment(dataSpec.position);
+            segmentPosition = layout.getSegmentPosition(dataSpec.position);
+            readPosition = dataSpec.position;
+            bytesRemaining = dataSpec.length;
+            return dataSpec.length != C.LENGTH_UNSET ? dataSpec.length : layout.length - dataSpec.position;
+        }
+        upstreamOpened = true;
+        long length = upstream.open(dataSpec);
+        if (layout == null && dataSpec.position == 0 && isProbeable(dataSpec)) {
+            // 开头一段从同一个连接读取，之后继续在这个连接上读，不是 MP4 的资源不产生额外的请求。
+            byte[] head = readHead();
+            segment = head;
+            segmentPosition = 0;
+            readPosition = 0;
+            bytesRemaining = C.LENGTH_UNSET;
+            headEndOfInput = head.length < HEAD_SIZE;
+            if (length != C.LENGTH_UNSET && isMp4(head)) {
+                @Nullable Layout probed = fetchTail(dataSpec, head, length);
+                if (probed != null) {
+                    LAYOUT_CACHE.put(key, probed);
+                }
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        @Nullable byte[] segment = this.segment;
+        if (segment != null) {
+            if (bytesRemaining == 0) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            int segmentRemaining = (int) (segmentPosition + segment.length - readPosition);
+            if (segmentRemaining > 0) {
+                int bytesToRead = Math.min(length, segmentRemaining);
+                if (bytesRemaining != C.LENGTH_UNSET) {
+                    bytesToRead = (int) Math.min(bytesToRead, bytesRemaining);
+                    bytesRemaining -= bytesToRead;
+                }
+                System.arraycopy(segment, (int) (readPosition - segmentPosition), buffer, offset, bytesToRead);
+                readPosition += bytesToRead;
+                return bytesToRead;
+            }
+            @Nullable Layout layout = this.layout;
+            this.segment = null;
+            if (headEndOfInput || (layout != null && readPosition == layout.length)) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            if (!upstreamOpened) {
+                // 内存中的数据读完了，从这里开始向上游请求剩下的数据。
+                DataSpec dataSpec = Assertions.checkNotNull(this.dataSpec);
+                upstreamOpened = true;
+                upstream.open(dataSpec.subrange(readPosition - dataSpec.position, bytesRemaining));
+            }
+        }
+        return upstream.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return upstreamOpened ? upstream.getUri() : dataSpec != null ? dataSpec.uri : null;
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstreamOpened ? upstream.getResponseHeaders() : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataSpec = null;
+        segment = null;
+        layout = null;
+        headEndOfInput = false;
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+
+    private static boolean isProbeable(DataSpec dataSpec) {
+        @Nullable String scheme = dataSpec.uri.getScheme();
+        return ("http".equals(scheme) || "https".equals(scheme)) && dataSpec.httpMethod == DataSpec.HTTP_METHOD_GET && dataSpec.length == C.LENGTH_UNSET;
+    }
+
+    /**
+     * 从已经打开的上游读取最多 {@link #HEAD_SIZE} 字节.
+     */
+    private byte[] readHead() throws IOException {
+        byte[] head = new byte[HEAD_SIZE];
+        int length = 0;
+        while (length < HEAD_SIZE) {
+            int bytesRead = upstream.read(head, length, HEAD_SIZE - length);
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length == HEAD_SIZE ? head : Arrays.copyOf(head, length);
+    }
+
+    private static boolean isMp4(byte[] head) {
+        return head.length >= 8 && readInt(head, /* offset= */ 4) == TYPE_FTYP;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * {@code moov} 在 {@code mdat} 之后时取回 {@code mdat} 之后的数据，返回 null 表示不需要或取回失败.
+     */
+    @Nullable
+    private Layout fetchTail(DataSpec dataSpec, byte[] head, long length) {
+        long tailPosition = findBoxEnd(head, 0, TYPE_MDAT, length);
+        if (tailPosition == C.POSITION_UNSET || tailPosition >= length || length - tailPosition > MAX_TAIL_SIZE) {
+            return null;
+        }
+        DataSource probe = upstreamFactory.createDataSource();
+        try {
+            probe.open(dataSpec.subrange(tailPosition, length - tailPosition));
+            byte[] tail = DataSourceUtil.readToEnd(probe);
+            if (tail.length != length - tailPosition || findBoxEnd(tail, tailPosition, TYPE_MOOV, length) == C.POSITION_UNSET) {
+                return null;
+            }
+            return new Layout(head, tailPosition, tail, length);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to fetch the end of " + dataSpec.uri, e);
+            return null;
+        } finally {
+            DataSourceUtil.closeQuietly(probe);
+        }
+    }
+
+    /**
+     * Returns the end position of the first top level box of the given type in {@code data}, or
+     * {@link C#POSITION_UNSET} if it is not found before a {@code moov} box or the end of the data.
+     *
+     * @param data     Data starting at a box header.
+     * @param position The position of {@code data} in the file.
+     * @param type     The box type to find.
+     * @param length   The length of the file, or {@link C#LENGTH_UNSET}.
+     */
+    private static long findBoxEnd(byte[] data, long position, int type, long length) {
+        ParsableByteArray boxes = new ParsableByteArray(data);
+        while (boxes.bytesLeft() >= 8) {
+            long boxPosition = position + boxes.getPosition();
+            long size = boxes.readUnsignedInt();
+            int boxType = boxes.readInt();
+            if (size == 1) {
+                if (boxes.bytesLeft() < 8) {
+                    return C.POSITION_UNSET;
+                }
+                size = boxes.readUnsignedLongToLong();
+            } else if (size == 0) {
+                if (length == C.LENGTH_UNSET) {
+                    return C.POSITION_UNSET;
+                }
+                size = length - boxPosition;
+            }
+            if (size < 8) {
+                return C.POSITION_UNSET;
+            }
+            if (boxType == type) {
+                return boxPosition + size;
+            }
+            if (boxType == TYPE_MOOV) {
+                // moov 已经在 mdat 之前，不需要处理。
+                return C.POSITION_UNSET;
+            }
+            long next = boxPosition + size - position;
+            if (next > data.length) {
+                return C.POSITION_UNSET;
+            }
+            boxes.setPosition((int) next);
+        }
+        return C.POSITION_UNSET;
+    }
+
+    /**
+     * 一个文件保存在内存中的开头和结尾.
+     */
+    private static final class Layout {
+
+        public final byte[] head;
+        public final long tailPosition;
+        public final byte[] tail;
+        public final long length;
+
+        public Layout(byte[] head, long tailPosition, byte[] tail, long length) {
+            this.head = head;
+            this.tailPosition = tailPosition;
+            this.tail = tail;
+            this.length = length;
+        }
+
+        @Nullable
+        public byte[] getSegment(long position) {
+            if (position < head.length) {
+                return head;
+            }
+            return position >= tailPosition && position < tailPosition + tail.length ? tail : null;
+        }
+
+        public long getSegmentPosition(long position) {
+            return position < head.length ? 0 : tailPosition;
+        }
+
+        public int getSizeBytes() {
+            return head.length + tail.length;
+        }
+    }
+
+    /**
+     * 按字节数限制的 {@link Layout} LRU 缓存.
+     */
+    private static final class LayoutCache {
+
+        private final long maxBytes;
+        private final LinkedHashMap<String, Layout> layouts;
+        private long sizeBytes;
+
+        public LayoutCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+            layouts = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+        }
+
+        @Nullable
+        public synchronized Layout get(String key) {
+            return layouts.get(key);
+        }
+
+        public synchronized void put(String key, Layout layout) {
+            @Nullable Layout previous = layouts.put(key, layout);
+            if (previous != null) {
+                sizeBytes -= previous.getSizeBytes();
+            }
+            sizeBytes += layout.getSizeBytes();
+            Iterator<Layout> iterator = layouts.values().iterator();
+            while (sizeBytes > maxBytes && iterator.hasNext()) {
+                Layout eldest = iterator.next();
+                if (eldest == layout) {
+                    continue;
+                }
+                sizeBytes -= eldest.getSizeBytes();
+                iterator.remove();
+            }
+        }
+    }
+}
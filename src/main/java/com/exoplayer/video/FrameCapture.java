@@ -0,0 +1,132 @@
+package com.exoplayer.video;
+
+import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.view.PixelCopy;
+import android.view.Surface;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+
+import androidx.annotation.DoNotInline;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * 异步截取视频表面当前显示的帧。
+ * <p>
+ * API 24+ 使用 {@link PixelCopy}，复制在渲染线程完成，不阻塞 UI 线程：{@link SurfaceView} 直接复制，
+ * {@link TextureView} 复制其 {@link SurfaceTexture} 最后一次收到的缓冲区。
+ * API 24 以下，或 {@link TextureView} 设置了变换（旋转的视频）时，只能在调用线程上同步调用
+ * {@link TextureView#getBitmap(Bitmap)}；这时 {@link SurfaceView} 不支持截取。
+ * 回调总是在调用线程上异步执行，截取失败或不支持时回调 {@code null}。
+ */
+public final class FrameCapture {
+
+    /**
+     * 截帧结果回调.
+     */
+    public interface Callback {
+
+        /**
+         * Called when the capture finished.
+         *
+         * @param frame The captured frame, or {@code null} if nothing could be captured.
+         */
+        void onFrameCaptured(@Nullable Bitmap frame);
+    }
+
+    /**
+     * The default scale applied to the surface size. Half resolution is enough to bridge the short
+     * gap until the next frame is rendered.
+     */
+    public static final float DEFAULT_SCALE = 0.5f;
+
+    private FrameCapture() {
+    }
+
+    /**
+     * Captures the frame shown by {@code surfaceView} at {@link #DEFAULT_SCALE}.
+     *
+     * @param surfaceView The {@link SurfaceView} or {@link TextureView} the video is rendered to.
+     * @param callback    The callback, invoked on the calling thread.
+     */
+    public static void capture(View surfaceView, Callback callback) {
+        capture(surfaceView, DEFAULT_SCALE, callback);
+    }
+
+    /**
+     * Captures the frame shown by {@code surfaceView}.
+     *
+     * @param surfaceView The {@link SurfaceView} or {@link TextureView} the video is rendered to.
+     * @param scale       The scale applied to the view size, in (0, 1].
+     * @param callback    The callback, invoked on the calling thread.
+     */
+    public static void capture(View surfaceView, float scale, Callback callback) {
+        Assertions.checkArgument(scale > 0 && scale <= 1);
+        Handler handler = Util.createHandlerForCurrentOrMainLooper();
+        int width = Math.round(surfaceView.getWidth() * scale);
+        int height = Math.round(surfaceView.getHeight() * scale);
+        if (width <= 0 || height <= 0) {
+            handler.post(() -> callback.onFrameCaptured(null));
+            return;
+        }
+        if (surfaceView instanceof TextureView && Util.SDK_INT >= 24 && ((TextureView) surfaceView).getTransform(null).isIdentity()) {
+            Api24.request((TextureView) surfaceView, Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888), handler, callback);
+        } else if (surfaceView instanceof TextureView) {
+            TextureView textureView = (TextureView) surfaceView;
+            @Nullable Bitmap frame = null;
+            if (textureView.isAvailable()) {
+                frame = textureView.getBitmap(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+            }
+            @Nullable Bitmap result = frame;
+            handler.post(() -> callback.onFrameCaptured(result));
+        } else if (surfaceView instanceof SurfaceView && Util.SDK_INT >= 24) {
+            Api24.request((SurfaceView) surfaceView, Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888), handler, callback);
+        } else {
+            handler.post(() -> callback.onFrameCaptured(null));
+        }
+    }
+
+    @RequiresApi(24)
+    private static final class Api24 {
+
+        @DoNotInline
+        public static void request(SurfaceView surfaceView, Bitmap bitmap, Handler handler, Callback callback) {
+            if (!surfaceView.getHolder().getSurface().isValid()) {
+                handler.post(() -> callback.onFrameCaptured(null));
+                return;
+            }
+            try {
+                PixelCopy.request(surfaceView, bitmap, result -> callback.onFrameCaptured(result == PixelCopy.SUCCESS ? bitmap : null), handler);
+            } catch (IllegalArgumentException e) {
+                // 表面在检查之后被销毁。
+                handler.post(() -> callback.onFrameCaptured(null));
+            }
+        }
+
+        @DoNotInline
+        public static void request(TextureView textureView, Bitmap bitmap, Handler handler, Callback callback) {
+            @Nullable SurfaceTexture surfaceTexture = textureView.getSurfaceTexture();
+            if (surfaceTexture == null) {
+                handler.post(() -> callback.onFrameCaptured(null));
+                return;
+            }
+            // 只用来读取缓冲区，不连接生产者，不影响播放器的 Surface。
+            Surface surface = new Surface(surfaceTexture);
+            try {
+                PixelCopy.request(surface, bitmap, result -> {
+                    surface.release();
+                    callback.onFrameCaptured(result == PixelCopy.SUCCESS ? bitmap : null);
+                }, handler);
+            } catch (IllegalArgumentException e) {
+                surface.release();
+                handler.post(() -> callback.onFrameCaptured(null));
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.exoplayer.video;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Display;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+
+import androidx.annotation.DoNotInline;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * 让显示刷新率匹配视频帧率，实现 {@link ExoVideoView#setFrameRateMatching(int)}。
+ * <p>
+ * {@link ExoVideoView#FRAME_RATE_MATCHING_ONLY_IF_SEAMLESS} 交给 {@link ExoPlayer} 自己调用 {@link
+ * Surface#setFrameRate}；{@link ExoVideoView#FRAME_RATE_MATCHING_ALWAYS} 关闭播放器的策略，在视频格式变化时自行设置：
+ * API 30+ 使用 {@link Surface#setFrameRate}，API 23-29 通过窗口的 {@code preferredDisplayModeId} 选择刷新率是帧率整数倍的显示模式。
+ * 只有 {@link SurfaceView} 有独立的 Surface，{@code TextureView} 由应用窗口合成，不受影响。
+ * <p>
+ * 视图离开窗口或解除播放器时由 {@link ExoVideoView} 调用 {@link #release()}，恢复窗口的显示模式。
+ */
+/* package */ final class FrameRateMatcher implements AnalyticsListener, SurfaceHolder.Callback {
+
+    private static final String TAG = "FrameRateMatcher";
+    /**
+     * 判断刷新率是否为帧率整数倍时允许的误差，覆盖 23.976/29.97 等帧率
+     **/
+    private static final float REFRESH_RATE_TOLERANCE = 0.1f;
+
+    private final View hostView;
+    private final Handler mainHandler;
+    private @ExoVideoView.FrameRateMatching int frameRateMatching;
+    @Nullable
+    private ExoPlayer player;
+    @Nullable
+    private SurfaceView surfaceView;
+    private float frameRate;
+    private float appliedFrameRate;
+    private int appliedDisplayModeId;
+
+    public FrameRateMatcher(View hostView, @ExoVideoView.FrameRateMatching int frameRateMatching) {
+        this.hostView = hostView;
+        this.frameRateMatching = frameRateMatching;
+        mainHandler = new Handler(Looper.getMainLooper());
+        frameRate = Format.NO_VALUE;
+    }
+
+    public void setFrameRateMatching(@ExoVideoView.FrameRateMatching int frameRateMatching) {
+        if (this.frameRateMatching != frameRateMatching) {
+            this.frameRateMatching = frameRateMatching;
+            updatePlayerStrategy();
+            updateFrameRate();
+        }
+    }
+
+    /**
+     * Sets the player. Only an {@link ExoPlayer} reports its video format; other players are
+     * ignored.
+     */
+    public void setPlayer(@Nullable Player player) {
+        @Nullable ExoPlayer exoPlayer = player instanceof ExoPlayer ? (ExoPlayer) player : null;
+        if (this.player == exoPlayer) {
+            return;
+        }
+        if (this.player != null) {
+            this.player.removeAnalyticsListener(this);
+        }
+        this.player = exoPlayer;
+        frameRate = Format.NO_VALUE;
+        if (this.player != null) {
+            this.player.addAnalyticsListener(this);
+            updatePlayerStrategy();
+        }
+        updateFrameRate();
+    }
+
+    public void setSurfaceView(@Nullable View surfaceView) {
+        if (this.surfaceView == surfaceView) {
+            return;
+        }
+        clearFrameRate();
+        if (this.surfaceView != null) {
+            this.surfaceView.getHolder().removeCallback(this);
+        }
+        this.surfaceView = surfaceView instanceof SurfaceView ? (SurfaceView) surfaceView : null;
+        if (this.surfaceView != null) {
+            this.surfaceView.getHolder().addCallback(this);
+        }
+        updateFrameRate();
+    }
+
+    /**
+     * Detaches the player and the surface view, and clears the frame rate and display mode that
+     * were applied.
+     */
+    public void release() {
+        setPlayer(null);
+        setSurfaceView(null);
+    }
+
+    // AnalyticsListener implementation
+
+    @Override
+    public void onVideoInputFormatChanged(@NonNull EventTime eventTime, @NonNull Format format, @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+        runOnMainThread(() -> {
+            frameRate = format.frameRate;
+            updateFrameRate();
+        });
+    }
+
+    @Override
+    public void onVideoDisabled(@NonNull EventTime eventTime, @NonNull DecoderCounters decoderCounters) {
+        runOnMainThread(() -> {
+            frameRate = Format.NO_VALUE;
+            updateFrameRate();
+        });
+    }
+
+    // SurfaceHolder.Callback implementation
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        // 新的 Surface 没有帧率设置。
+        appliedFrameRate = 0;
+        updateFrameRate();
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        // Do nothing.
+    }
+
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        appliedFrameRate = 0;
+    }
+
+    // Internal methods.
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
+    private void updatePlayerStrategy() {
+        @Nullable ExoPlayer player = this.player;
+        if (player == null) {
+            return;
+        }
+        @C.VideoChangeFrameRateStrategy int strategy = frameRateMatching == ExoVideoView.FRAME_RATE_MATCHING_ONLY_IF_SEAMLESS ? C.VIDEO_CHANGE_FRAME_RATE_STRATEGY_ONLY_IF_SEAMLESS : C.VIDEO_CHANGE_FRAME_RATE_STRATEGY_OFF;
+        if (player.getApplicationLooper() == Looper.myLooper()) {
+            player.setVideoChangeFrameRateStrategy(strategy);
+        } else {
+            new Handler(player.getApplicationLooper()).post(() -> player.setVideoChangeFrameRateStrategy(strategy));
+        }
+    }
+
+    private void updateFrameRate() {
+        if (frameRateMatching != ExoVideoView.FRAME_RATE_MATCHING_ALWAYS || player == null || surfaceView == null || frameRate <= 0) {
+            clearFrameRate();
+            return;
+        }
+        if (Util.SDK_INT >= 30) {
+            Surface surface = surfaceView.getHolder().getSurface();
+            if (appliedFrameRate != frameRate && surface.isValid()) {
+                appliedFrameRate = setSurfaceFrameRate(surface, frameRate) ? frameRate : 0;
+            }
+        } else if (Util.SDK_INT >= 23) {
+            setPreferredDisplayMode(Api23.findDisplayModeId(hostView.getDisplay(), frameRate));
+        }
+    }
+
+    private void clearFrameRate() {
+        if (Util.SDK_INT >= 30) {
+            if (appliedFrameRate != 0 && surfaceView != null && surfaceView.getHolder().getSurface().isValid()) {
+                setSurfaceFrameRate(surfaceView.getHolder().getSurface(), 0);
+            }
+            appliedFrameRate = 0;
+        } else if (Util.SDK_INT >= 23) {
+            setPreferredDisplayMode(0);
+        }
+    }
+
+    private static boolean setSurfaceFrameRate(Surface surface, float frameRate) {
+        try {
+            if (Util.SDK_INT >= 31) {
+                Api31.setFrameRateAlways(surface, frameRate);
+            } else {
+                Api30.setFrameRate(surface, frameRate);
+            }
+            return true;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            Log.w(TAG, "Failed to set surface frame rate", e);
+            return false;
+        }
+    }
+
+    private void setPreferredDisplayMode(int displayModeId) {
+        if (appliedDisplayModeId == displayModeId) {
+            return;
+        }
+        @Nullable Activity activity = getActivity(hostView.getContext());
+        if (activity == null) {
+            return;
+        }
+        // 通过 Window 修改，窗口自己保存的属性副本之后不会覆盖这里的设置。
+        Window window = activity.getWindow();
+        WindowManager.LayoutParams attributes = window.getAttributes();
+        attributes.preferredDisplayModeId = displayModeId;
+        window.setAttributes(attributes);
+        appliedDisplayModeId = displayModeId;
+    }
+
+    @Nullable
+    private static Activity getActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return (Activity) context;
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    @RequiresApi(23)
+    private static final class Api23 {
+
+        /**
+         * 在与当前分辨率相同的模式中，选择刷新率是帧率整数倍的最低刷新率模式；没有时返回 0。
+         */
+        @DoNotInline
+        public static int findDisplayModeId(@Nullable Display display, float frameRate) {
+            if (display == null) {
+                return 0;
+            }
+            Display.Mode currentMode = display.getMode();
+            @Nullable Display.Mode bestMode = null;
+            for (Display.Mode mode : display.getSupportedModes()) {
+                if (mode.getPhysicalWidth() != currentMode.getPhysicalWidth() || mode.getPhysicalHeight() != currentMode.getPhysicalHeight()) {
+                    continue;
+                }
+                float refreshRate = mode.getRefreshRate();
+                float multiple = Math.round(refreshRate / frameRate);
+                if (multiple >= 1 && Math.abs(refreshRate - multiple * frameRate) <= REFRESH_RATE_TOLERANCE * multiple && (bestMode == null || refreshRate < bestMode.getRefreshRate())) {
+                    bestMode = mode;
+                }
+            }
+            return bestMode != null ? bestMode.getModeId() : 0;
+        }
+    }
+
+    @RequiresApi(30)
+    private static final class Api30 {
+
+        @DoNotInline
+        public static void setFrameRate(Surface surface, float frameRate) {
+            surface.setFrameRate(frameRate, frameRate == 0 ? Surface.FRAME_RATE_COMPATIBILITY_DEFAULT : Surface.FRAME_RATE_COMPATIBILITY_FIXED_SOURCE);
+        }
+    }
+
+    @RequiresApi(31)
+    private static final class Api31 {
+
+        @DoNotInline
+        public static void setFrameRateAlways(Surface surface, float frameRate) {
+            surface.setFrameRate(frameRate, frameRate == 0 ? Surface.FRAME_RATE_COMPATIBILITY_DEFAULT : Surface.FRAME_RATE_COMPATIBILITY_FIXED_SOURCE, Surface.CHANGE_FRAME_RATE_ALWAYS);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.exoplayer.video;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ForwardingPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * 利用保留的后向缓冲实现不访问网络的短距离回退。
+ * <p>
+ * 播放器需要通过 {@link PlayerFactory#setInstantReplay(InstantReplay)} 创建，加载控制才会从关键帧开始保留 {@link
+ * #getBackBufferMs()} 的已播放数据。通过 {@link ExoVideoView#setInstantReplay(InstantReplay)} 使用时，控制器的回退按钮和
+ * {@link android.view.KeyEvent#KEYCODE_MEDIA_REWIND} 都会回退到保留的范围内，不会重新请求和解码网络数据。
+ * 所有方法必须在主线程调用。
+ */
+public final class InstantReplay {
+
+    /**
+     * The default duration of retained back buffer, in milliseconds.
+     */
+    public static final int DEFAULT_BACK_BUFFER_MS = 30_000;
+    /**
+     * The default rewind increment, in milliseconds.
+     */
+    public static final long DEFAULT_REWIND_INCREMENT_MS = 10_000;
+
+    private final int backBufferMs;
+    private final long rewindIncrementMs;
+    private final PositionListener positionListener;
+
+    @Nullable
+    private Player player;
+    /**
+     * 保留的缓冲从哪里开始：跳出缓冲范围或切换媒体项后，之前的数据都被丢弃
+     **/
+    private int windowMediaItemIndex;
+    private long windowStartMs;
+
+    /**
+     * Creates an instance with the default back buffer and rewind increment.
+     */
+    public InstantReplay() {
+        this(DEFAULT_BACK_BUFFER_MS, DEFAULT_REWIND_INCREMENT_MS);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param backBufferMs      The duration of played media to retain, in milliseconds.
+     * @param rewindIncrementMs The rewind increment, in milliseconds. Should not exceed {@code
+     *                          backBufferMs}.
+     */
+    public InstantReplay(int backBufferMs, long rewindIncrementMs) {
+        Assertions.checkArgument(backBufferMs > 0 && rewindIncrementMs > 0);
+        this.backBufferMs = backBufferMs;
+        this.rewindIncrementMs = rewindIncrementMs;
+        positionListener = new PositionListener();
+    }
+
+    /**
+     * Returns the duration of played media retained by the load control, in milliseconds.
+     */
+    public int getBackBufferMs() {
+        return backBufferMs;
+    }
+
+    /**
+     * Returns the rewind increment, in milliseconds.
+     */
+    public long getRewindIncrementMs() {
+        return rewindIncrementMs;
+    }
+
+    /**
+     * Returns how far playback can currently rewind without loading, in milliseconds. The value is
+     * an estimate that never exceeds the retained back buffer.
+     */
+    public long getReplayWindowMs() {
+        @Nullable Player player = this.player;
+        if (player == null || player.isPlayingAd() || player.getCurrentMediaItemIndex() != windowMediaItemIndex) {
+            return 0;
+        }
+        long positionMs = player.getCurrentPosition();
+        return Math.max(0, positionMs - Math.max(windowStartMs, positionMs - backBufferMs));
+    }
+
+    /**
+     * Rewinds by the rewind increment, without leaving the replay window.
+     */
+    public void rewind() {
+        @Nullable Player player = this.player;
+        if (player == null || !player.isCommandAvailable(Player.COMMAND_SEEK_BACK)) {
+            return;
+        }
+        long replayWindowMs = getReplayWindowMs();
+        if (replayWindowMs == 0) {
+            player.seekBack();
+            return;
+        }
+        long positionMs = player.getCurrentPosition();
+        player.seekTo(positionMs - Math.min(rewindIncrementMs, replayWindowMs));
+    }
+
+    /* package */ void setPlayer(@Nullable Player player) {
+        if (this.player != null) {
+            this.player.removeListener(positionListener);
+        }
+        this.player = player;
+        if (player != null) {
+            player.addListener(positionListener);
+            resetWindow(player);
+        }
+    }
+
+    /**
+     * Returns a player for the controller whose rewind action stays inside the replay window.
+     */
+    /* package */ Player wrapForController(Player player) {
+        return new ForwardingPlayer(player) {
+            @Override
+            public void seekBack() {
+                rewind();
+            }
+        };
+    }
+
+    private void resetWindow(Player player) {
+        windowMediaItemIndex = player.getCurrentMediaItemIndex();
+        windowStartMs = player.getCurrentPosition();
+    }
+
+    /**
+     * 跟踪丢弃后向缓冲的跳转.
+     */
+    private final class PositionListener implements Player.Listener {
+
+        @Override
+        public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, @Player.DiscontinuityReason int reason) {
+            boolean sameItem = oldPosition.mediaItemIndex == newPosition.mediaItemIndex && oldPosition.adGroupIndex == C.INDEX_UNSET && newPosition.adGroupIndex == C.INDEX_UNSET;
+            // 向后跳回保留范围内不会丢弃缓冲；其他跳转（包括向前跳转）保守地认为缓冲已丢弃。
+            boolean insideWindow = sameItem && newPosition.positionMs <= oldPosition.positionMs && newPosition.positionMs >= Math.max(windowStartMs, oldPosition.positionMs - backBufferMs);
+            if (!insideWindow || windowMediaItemIndex != newPosition.mediaItemIndex) {
+                windowMediaItemIndex = newPosition.mediaItemIndex;
+                windowStartMs = newPosition.positionMs;
+            }
+        }
+
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, @Player.TimelineChangeReason int reason) {
+            if (reason == Player.TIMELINE_CHANGE_REASON_PLAYLIST_CHANGED && player != null) {
+                resetWindow(player);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.exoplayer.video;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.drm.DrmSessionManagerProvider;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+
+/**
+ * 创建媒体源前通过 {@link DrmLicenseManager#applyLicense(MediaItem)} 使用本地许可的 {@link MediaSource.Factory}.
+ */
+/* package */ final class LicensedMediaSourceFactory implements MediaSource.Factory {
+
+    private final MediaSource.Factory mediaSourceFactory;
+    private final DrmLicenseManager drmLicenseManager;
+
+    public LicensedMediaSourceFactory(MediaSource.Factory mediaSourceFactory, DrmLicenseManager drmLicenseManager) {
+        this.mediaSourceFactory = mediaSourceFactory;
+        this.drmLicenseManager = drmLicenseManager;
+    }
+
+    @NonNull
+    @Override
+    public MediaSource.Factory setDrmSessionManagerProvider(@NonNull DrmSessionManagerProvider drmSessionManagerProvider) {
+        mediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public MediaSource.Factory setLoadErrorHandlingPolicy(@NonNull LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+        mediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public @C.ContentType int[] getSupportedTypes() {
+        return mediaSourceFactory.getSupportedTypes();
+    }
+
+    @NonNull
+    @Override
+    public MediaSource createMediaSource(@NonNull MediaItem mediaItem) {
+        return mediaSourceFactory.createMediaSource(drmLicenseManager.applyLicense(mediaItem));
+    }
+}
@@ -0,0 +1,73 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地文件交给 {@link MappedFileDataSource}，其他 uri 交给另一个 {@link DataSource}.
+ */
+/* package */ final class LocalFileRoutingDataSource implements DataSource {
+
+    private final MappedFileDataSource fileDataSource;
+    private final DataSource fallbackDataSource;
+    @Nullable
+    private DataSource dataSource;
+
+    public LocalFileRoutingDataSource(MappedFileDataSource fileDataSource, DataSource fallbackDataSource) {
+        this.fileDataSource = fileDataSource;
+        this.fallbackDataSource = fallbackDataSource;
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        fileDataSource.addTransferListener(transferListener);
+        fallbackDataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        Assertions.checkState(dataSource == null);
+        dataSource = Util.isLocalFileUri(dataSpec.uri) ? fileDataSource : fallbackDataSource;
+        return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        return Assertions.checkNotNull(dataSource).read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return dataSource != null ? dataSource.getUri() : null;
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return dataSource != null ? dataSource.getResponseHeaders() : DataSource.super.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dataSource != null) {
+            try {
+                dataSource.close();
+            } finally {
+                dataSource = null;
+            }
+        }
+    }
+}
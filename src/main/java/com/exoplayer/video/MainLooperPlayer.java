@@ -0,0 +1,843 @@
+package com.exoplayer.video;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.SurfaceView;
+import android.view.TextureView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ForwardingPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.MediaMetadata;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.Tracks;
+import com.google.android.exoplayer2.text.CueGroup;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.ListenerSet;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoSize;
+
+/**
+ * 把应用线程不是主线程的 {@link Player} 包装成可以在主线程访问的 {@link Player}。
+ * <p>
+ * 播放器的事件在它自己的应用线程上被汇总成一份只在该线程写入的状态快照，快照和合并后的事件标志再一次性 post 到主线程。
+ * 无论播放器在一个消息循环里产生多少事件，主线程每次最多只处理一批变化。主线程上的查询都读快照，位置按播放速度外推；
+ * 控制命令被 post 到播放器的应用线程执行。
+ * <p>
+ * 只覆盖了 {@link ExoVideoView} 和控制器用到的方法，其他方法（例如修改播放列表）仍需在播放器的应用线程上调用原播放器。
+ */
+/* package */ final class MainLooperPlayer extends ForwardingPlayer {
+
+    private final Player player;
+    private final Handler playerHandler;
+    private final Handler mainHandler;
+    private final ListenerSet<Listener> listeners;
+    private final PlayerListener playerListener;
+    private final Runnable dispatchRunnable;
+    private final Timeline.Window window;
+
+    /**
+     * 以下字段由 lock 保护，在播放器线程写入、主线程读取
+     **/
+    private final Object lock;
+    @Nullable
+    private Snapshot pendingState;
+    private long pendingEventFlags;
+    private boolean dispatchScheduled;
+    private @TimelineChangeReason int pendingTimelineChangeReason;
+    private @MediaItemTransitionReason int pendingMediaItemTransitionReason;
+    private @PlayWhenReadyChangeReason int pendingPlayWhenReadyChangeReason;
+    @Nullable
+    private PositionInfo pendingOldPosition;
+    @Nullable
+    private PositionInfo pendingNewPosition;
+    private @DiscontinuityReason int pendingDiscontinuityReason;
+
+    /**
+     * 主线程上的当前快照
+     **/
+    private Snapshot state;
+    private volatile boolean released;
+
+    /**
+     * Creates an instance. Until the first state snapshot has been taken on the player's
+     * application thread, queries return the state of an empty idle player; listeners are then
+     * notified of the changes.
+     *
+     * @param player A player whose application looper is not the main looper.
+     */
+    public MainLooperPlayer(Player player) {
+        super(player);
+        this.player = player;
+        playerHandler = new Handler(player.getApplicationLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+        listeners = new ListenerSet<>(Looper.getMainLooper(), Clock.DEFAULT, (listener, flags) -> listener.onEvents(/* player= */ this, new Events(flags)));
+        playerListener = new PlayerListener();
+        dispatchRunnable = this::dispatchPendingState;
+        window = new Timeline.Window();
+        lock = new Object();
+        state = new Snapshot();
+        // 不在主线程等待播放器线程，第一份快照和普通事件一样 post 回主线程。
+        playerHandler.post(this::captureInitialState);
+    }
+
+    /**
+     * Stops forwarding events. Does not release the wrapped player.
+     */
+    public void detach() {
+        released = true;
+        listeners.release();
+        mainHandler.removeCallbacks(dispatchRunnable);
+        playerHandler.post(() -> player.removeListener(playerListener));
+    }
+
+    // Listeners.
+
+    @Override
+    public Looper getApplicationLooper() {
+        return Looper.getMainLooper();
+    }
+
+    @Override
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // State queries, answered from the snapshot.
+
+    @Override
+    public Commands getAvailableCommands() {
+        return state.availableCommands;
+    }
+
+    @Override
+    public boolean isCommandAvailable(@Command int command) {
+        return state.availableCommands.contains(command);
+    }
+
+    @Override
+    public @Player.State int getPlaybackState() {
+        return state.playbackState;
+    }
+
+    @Override
+    public @PlaybackSuppressionReason int getPlaybackSuppressionReason() {
+        return state.playbackSuppressionReason;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return state.isPlaying;
+    }
+
+    @Nullable
+    @Override
+    public PlaybackException getPlayerError() {
+        return state.playerError;
+    }
+
+    @Override
+    public boolean getPlayWhenReady() {
+        return state.playWhenReady;
+    }
+
+    @Override
+    public @RepeatMode int getRepeatMode() {
+        return state.repeatMode;
+    }
+
+    @Override
+    public boolean getShuffleModeEnabled() {
+        return state.shuffleModeEnabled;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return state.isLoading;
+    }
+
+    @Override
+    public long getSeekBackIncrement() {
+        return state.seekBackIncrementMs;
+    }
+
+    @Override
+    public long getSeekForwardIncrement() {
+        return state.seekForwardIncrementMs;
+    }
+
+    @Override
+    public long getMaxSeekToPreviousPosition() {
+        return state.maxSeekToPreviousPositionMs;
+    }
+
+    @Override
+    public PlaybackParameters getPlaybackParameters() {
+        return state.playbackParameters;
+    }
+
+    @Override
+    public Tracks getCurrentTracks() {
+        return state.currentTracks;
+    }
+
+    @Override
+    public TrackSelectionParameters getTrackSelectionParameters() {
+        return state.trackSelectionParameters;
+    }
+
+    @Override
+    public MediaMetadata getMediaMetadata() {
+        return state.mediaMetadata;
+    }
+
+    @Override
+    public Timeline getCurrentTimeline() {
+        return state.timeline;
+    }
+
+    @Override
+    public int getCurrentPeriodIndex() {
+        return state.currentPeriodIndex;
+    }
+
+    @Override
+    public int getCurrentMediaItemIndex() {
+        return state.currentMediaItemIndex;
+    }
+
+    @Override
+    public int getNextMediaItemIndex() {
+        Timeline timeline = state.timeline;
+        return timeline.isEmpty() ? C.INDEX_UNSET : timeline.getNextWindowIndex(state.currentMediaItemIndex, getRepeatModeForNavigation(), state.shuffleModeEnabled);
+    }
+
+    @Override
+    public int getPreviousMediaItemIndex() {
+        Timeline timeline = state.timeline;
+        return timeline.isEmpty() ? C.INDEX_UNSET : timeline.getPreviousWindowIndex(state.currentMediaItemIndex, getRepeatModeForNavigation(), state.shuffleModeEnabled);
+    }
+
+    @Override
+    public boolean hasNextMediaItem() {
+        return getNextMediaItemIndex() != C.INDEX_UNSET;
+    }
+
+    @Override
+    public boolean hasPreviousMediaItem() {
+        return getPreviousMediaItemIndex() != C.INDEX_UNSET;
+    }
+
+    @Nullable
+    @Override
+    public MediaItem getCurrentMediaItem() {
+        Timeline timeline = state.timeline;
+        return timeline.isEmpty() ? null : timeline.getWindow(state.currentMediaItemIndex, window).mediaItem;
+    }
+
+    @Override
+    public int getMediaItemCount() {
+        return state.timeline.getWindowCount();
+    }
+
+    @Override
+    public MediaItem getMediaItemAt(int index) {
+        return state.timeline.getWindow(index, window).mediaItem;
+    }
+
+    @Override
+    public boolean isCurrentMediaItemDynamic() {
+        Timeline timeline = state.timeline;
+        return !timeline.isEmpty() && timeline.getWindow(state.currentMediaItemIndex, window).isDynamic;
+    }
+
+    @Override
+    public boolean isCurrentMediaItemLive() {
+        Timeline timeline = state.timeline;
+        return !timeline.isEmpty() && timeline.getWindow(state.currentMediaItemIndex, window).isLive();
+    }
+
+    @Override
+    public boolean isCurrentMediaItemSeekable() {
+        Timeline timeline = state.timeline;
+        return !timeline.isEmpty() && timeline.getWindow(state.currentMediaItemIndex, window).isSeekable;
+    }
+
+    @Override
+    public long getCurrentLiveOffset() {
+        Timeline timeline = state.timeline;
+        if (timeline.isEmpty()) {
+            return C.TIME_UNSET;
+        }
+        long windowStartTimeMs = timeline.getWindow(state.currentMediaItemIndex, window).windowStartTimeMs;
+        if (windowStartTimeMs == C.TIME_UNSET) {
+            return C.TIME_UNSET;
+        }
+        return window.getCurrentUnixTimeMs() - windowStartTimeMs - getContentPosition();
+    }
+
+    @Override
+    public long getDuration() {
+        return state.durationMs;
+    }
+
+    @Override
+    public long getContentDuration() {
+        return state.contentDurationMs;
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        return state.extrapolate(state.currentPositionMs, state.durationMs);
+    }
+
+    @Override
+    public long getContentPosition() {
+        return state.isPlayingAd ? state.contentPositionMs : state.extrapolate(state.contentPositionMs, state.contentDurationMs);
+    }
+
+    @Override
+    public long getBufferedPosition() {
+        return state.bufferedPositionMs;
+    }
+
+    @Override
+    public long getContentBufferedPosition() {
+        return state.contentBufferedPositionMs;
+    }
+
+    @Override
+    public int getBufferedPercentage() {
+        long positionMs = getBufferedPosition();
+        long durationMs = getDuration();
+        return positionMs == C.TIME_UNSET || durationMs == C.TIME_UNSET ? 0 : durationMs == 0 ? 100 : Util.constrainValue((int) ((positionMs * 100) / durationMs), 0, 100);
+    }
+
+    @Override
+    public long getTotalBufferedDuration() {
+        return state.totalBufferedDurationMs;
+    }
+
+    @Override
+    public boolean isPlayingAd() {
+        return state.isPlayingAd;
+    }
+
+    @Override
+    public int getCurrentAdGroupIndex() {
+        return state.currentAdGroupIndex;
+    }
+
+    @Override
+    public int getCurrentAdIndexInAdGroup() {
+        return state.currentAdIndexInAdGroup;
+    }
+
+    @Override
+    public VideoSize getVideoSize() {
+        return state.videoSize;
+    }
+
+    @Override
+    public CueGroup getCurrentCues() {
+        return state.cueGroup;
+    }
+
+    // Commands, executed on the player's application thread.
+
+    @Override
+    public void prepare() {
+        runOnPlayerThread(player::prepare);
+    }
+
+    @Override
+    public void play() {
+        runOnPlayerThread(player::play);
+    }
+
+    @Override
+    public void pause() {
+        runOnPlayerThread(player::pause);
+    }
+
+    @Override
+    public void setPlayWhenReady(boolean playWhenReady) {
+        runOnPlayerThread(() -> player.setPlayWhenReady(playWhenReady));
+    }
+
+    @Override
+    public void setRepeatMode(@RepeatMode int repeatMode) {
+        runOnPlayerThread(() -> player.setRepeatMode(repeatMode));
+    }
+
+    @Override
+    public void setShuffleModeEnabled(boolean shuffleModeEnabled) {
+        runOnPlayerThread(() -> player.setShuffleModeEnabled(shuffleModeEnabled));
+    }
+
+    @Override
+    public void seekToDefaultPosition() {
+        runOnPlayerThread(player::seekToDefaultPosition);
+    }
+
+    @Override
+    public void seekToDefaultPosition(int mediaItemIndex) {
+        runOnPlayerThread(() -> player.seekToDefaultPosition(mediaItemIndex));
+    }
+
+    @Override
+    public void seekTo(long positionMs) {
+        runOnPlayerThread(() -> player.seekTo(positionMs));
+    }
+
+    @Override
+    public void seekTo(int mediaItemIndex, long positionMs) {
+        runOnPlayerThread(() -> player.seekTo(mediaItemIndex, positionMs));
+    }
+
+    /**
+     * Seeks to the sync frame closest to a position on the player's application thread, see {@link
+     * ScrubSeekThrottler#seekToSyncFrame(Player, long)}.
+     */
+    public void seekToSyncFrame(long positionMs) {
+        runOnPlayerThread(() -> ScrubSeekThrottler.seekToSyncFrame(player, positionMs));
+    }
+
+    @Override
+    public void seekBack() {
+        runOnPlayerThread(player::seekBack);
+    }
+
+    @Override
+    public void seekForward() {
+        runOnPlayerThread(player::seekForward);
+    }
+
+    @Override
+    public void seekToPreviousMediaItem() {
+        runOnPlayerThread(player::seekToPreviousMediaItem);
+    }
+
+    @Override
+    public void seekToPrevious() {
+        runOnPlayerThread(player::seekToPrevious);
+    }
+
+    @Override
+    public void seekToNextMediaItem() {
+        runOnPlayerThread(player::seekToNextMediaItem);
+    }
+
+    @Override
+    public void seekToNext() {
+        runOnPlayerThread(player::seekToNext);
+    }
+
+    @Override
+    public void setPlaybackParameters(@NonNull PlaybackParameters playbackParameters) {
+        runOnPlayerThread(() -> player.setPlaybackParameters(playbackParameters));
+    }
+
+    @Override
+    public void setPlaybackSpeed(float speed) {
+        runOnPlayerThread(() -> player.setPlaybackSpeed(speed));
+    }
+
+    @Override
+    public void setTrackSelectionParameters(@NonNull TrackSelectionParameters parameters) {
+        runOnPlayerThread(() -> player.setTrackSelectionParameters(parameters));
+    }
+
+    @Override
+    public void stop() {
+        runOnPlayerThread(player::stop);
+    }
+
+    @Override
+    public void release() {
+        detach();
+        playerHandler.post(player::release);
+    }
+
+    @Override
+    public void setVideoSurfaceView(@Nullable SurfaceView surfaceView) {
+        runOnPlayerThread(() -> player.setVideoSurfaceView(surfaceView));
+    }
+
+    @Override
+    public void clearVideoSurfaceView(@Nullable SurfaceView surfaceView) {
+        runOnPlayerThread(() -> player.clearVideoSurfaceView(surfaceView));
+    }
+
+    @Override
+    public void setVideoTextureView(@Nullable TextureView textureView) {
+        runOnPlayerThread(() -> player.setVideoTextureView(textureView));
+    }
+
+    @Override
+    public void clearVideoTextureView(@Nullable TextureView textureView) {
+        runOnPlayerThread(() -> player.clearVideoTextureView(textureView));
+    }
+
+    // Internal methods.
+
+    private void runOnPlayerThread(Runnable runnable) {
+        if (!released) {
+            playerHandler.post(runnable);
+        }
+    }
+
+    /**
+     * 在播放器线程上截取第一份快照并开始监听，按与空状态的差异通知主线程.
+     */
+    private void captureInitialState() {
+        if (released) {
+            return;
+        }
+        Snapshot initialState = new Snapshot(player);
+        player.addListener(playerListener);
+        synchronized (lock) {
+            if (pendingState == null) {
+                pendingState = initialState;
+            }
+            pendingEventFlags |= initialState.getChangedEvents(new Snapshot());
+            pendingTimelineChangeReason = TIMELINE_CHANGE_REASON_PLAYLIST_CHANGED;
+            pendingPlayWhenReadyChangeReason = PLAY_WHEN_READY_CHANGE_REASON_USER_REQUEST;
+            if (dispatchScheduled) {
+                return;
+            }
+            dispatchScheduled = true;
+        }
+        mainHandler.post(dispatchRunnable);
+    }
+
+    private @RepeatMode int getRepeatModeForNavigation() {
+        return state.repeatMode == REPEAT_MODE_ONE ? REPEAT_MODE_OFF : state.repeatMode;
+    }
+
+    /**
+     * 在主线程上取出合并后的快照和事件，按 ExoPlayer 的回调顺序通知监听器。
+     */
+    private void dispatchPendingState() {
+        Snapshot newState;
+        long eventFlags;
+        @TimelineChangeReason int timelineChangeReason;
+        @MediaItemTransitionReason int mediaItemTransitionReason;
+        @PlayWhenReadyChangeReason int playWhenReadyChangeReason;
+        @Nullable PositionInfo oldPosition;
+        @Nullable PositionInfo newPosition;
+        @DiscontinuityReason int discontinuityReason;
+        synchronized (lock) {
+            dispatchScheduled = false;
+            if (pendingState == null || released) {
+                return;
+            }
+            newState = pendingState;
+            eventFlags = pendingEventFlags;
+            timelineChangeReason = pendingTimelineChangeReason;
+            mediaItemTransitionReason = pendingMediaItemTransitionReason;
+            playWhenReadyChangeReason = pendingPlayWhenReadyChangeReason;
+            oldPosition = pendingOldPosition;
+            newPosition = pendingNewPosition;
+            discontinuityReason = pendingDiscontinuityReason;
+            pendingState = null;
+            pendingEventFlags = 0;
+            // 跳转的位置先于 onEvents 记录，这时标志还没有置上，位置要留给下一次通知。
+            if (contains(eventFlags, EVENT_POSITION_DISCONTINUITY)) {
+                pendingOldPosition = null;
+                pendingNewPosition = null;
+            }
+        }
+        state = newState;
+
+        if (contains(eventFlags, EVENT_TIMELINE_CHANGED)) {
+            listeners.queueEvent(EVENT_TIMELINE_CHANGED, listener -> listener.onTimelineChanged(newState.timeline, timelineChangeReason));
+        }
+        if (contains(eventFlags, EVENT_POSITION_DISCONTINUITY) && oldPosition != null && newPosition != null) {
+            listeners.queueEvent(EVENT_POSITION_DISCONTINUITY, listener -> listener.onPositionDiscontinuity(oldPosition, newPosition, discontinuityReason));
+        }
+        if (contains(eventFlags, EVENT_MEDIA_ITEM_TRANSITION)) {
+            @Nullable MediaItem mediaItem = getCurrentMediaItem();
+            listeners.queueEvent(EVENT_MEDIA_ITEM_TRANSITION, listener -> listener.onMediaItemTransition(mediaItem, mediaItemTransitionReason));
+        }
+        if (contains(eventFlags, EVENT_PLAYER_ERROR)) {
+            listeners.queueEvent(EVENT_PLAYER_ERROR, listener -> listener.onPlayerErrorChanged(newState.playerError));
+            if (newState.playerError != null) {
+                listeners.queueEvent(EVENT_PLAYER_ERROR, listener -> listener.onPlayerError(newState.playerError));
+            }
+        }
+        if (contains(eventFlags, EVENT_TRACKS_CHANGED)) {
+            listeners.queueEvent(EVENT_TRACKS_CHANGED, listener -> listener.onTracksChanged(newState.currentTracks));
+        }
+        if (contains(eventFlags, EVENT_TRACK_SELECTION_PARAMETERS_CHANGED)) {
+            listeners.queueEvent(EVENT_TRACK_SELECTION_PARAMETERS_CHANGED, listener -> listener.onTrackSelectionParametersChanged(newState.trackSelectionParameters));
+        }
+        if (contains(eventFlags, EVENT_MEDIA_METADATA_CHANGED)) {
+            listeners.queueEvent(EVENT_MEDIA_METADATA_CHANGED, listener -> listener.onMediaMetadataChanged(newState.mediaMetadata));
+        }
+        if (contains(eventFlags, EVENT_IS_LOADING_CHANGED)) {
+            listeners.queueEvent(EVENT_IS_LOADING_CHANGED, listener -> listener.onIsLoadingChanged(newState.isLoading));
+        }
+        if (contains(eventFlags, EVENT_PLAYBACK_STATE_CHANGED)) {
+            listeners.queueEvent(EVENT_PLAYBACK_STATE_CHANGED, listener -> listener.onPlaybackStateChanged(newState.playbackState));
+        }
+        if (contains(eventFlags, EVENT_PLAY_WHEN_READY_CHANGED)) {
+            listeners.queueEvent(EVENT_PLAY_WHEN_READY_CHANGED, listener -> listener.onPlayWhenReadyChanged(newState.playWhenReady, playWhenReadyChangeReason));
+        }
+        if (contains(eventFlags, EVENT_PLAYBACK_SUPPRESSION_REASON_CHANGED)) {
+            listeners.queueEvent(EVENT_PLAYBACK_SUPPRESSION_REASON_CHANGED, listener -> listener.onPlaybackSuppressionReasonChanged(newState.playbackSuppressionReason));
+        }
+        if (contains(eventFlags, EVENT_IS_PLAYING_CHANGED)) {
+            listeners.queueEvent(EVENT_IS_PLAYING_CHANGED, listener -> listener.onIsPlayingChanged(newState.isPlaying));
+        }
+        if (contains(eventFlags, EVENT_PLAYBACK_PARAMETERS_CHANGED)) {
+            listeners.queueEvent(EVENT_PLAYBACK_PARAMETERS_CHANGED, listener -> listener.onPlaybackParametersChanged(newState.playbackParameters));
+        }
+        if (contains(eventFlags, EVENT_REPEAT_MODE_CHANGED)) {
+            listeners.queueEvent(EVENT_REPEAT_MODE_CHANGED, listener -> listener.onRepeatModeChanged(newState.repeatMode));
+        }
+        if (contains(eventFlags, EVENT_SHUFFLE_MODE_ENABLED_CHANGED)) {
+            listeners.queueEvent(EVENT_SHUFFLE_MODE_ENABLED_CHANGED, listener -> listener.onShuffleModeEnabledChanged(newState.shuffleModeEnabled));
+        }
+        if (contains(eventFlags, EVENT_AVAILABLE_COMMANDS_CHANGED)) {
+            listeners.queueEvent(EVENT_AVAILABLE_COMMANDS_CHANGED, listener -> listener.onAvailableCommandsChanged(newState.availableCommands));
+        }
+        if (contains(eventFlags, EVENT_VIDEO_SIZE_CHANGED)) {
+            listeners.queueEvent(EVENT_VIDEO_SIZE_CHANGED, listener -> listener.onVideoSizeChanged(newState.videoSize));
+        }
+        if (contains(eventFlags, EVENT_RENDERED_FIRST_FRAME)) {
+            listeners.queueEvent(EVENT_RENDERED_FIRST_FRAME, Listener::onRenderedFirstFrame);
+        }
+        if (contains(eventFlags, EVENT_CUES)) {
+            listeners.queueEvent(EVENT_CUES, listener -> listener.onCues(newState.cueGroup));
+        }
+        listeners.flushEvents();
+    }
+
+    private static boolean contains(long eventFlags, @Event int event) {
+        return (eventFlags & (1L << event)) != 0;
+    }
+
+    /**
+     * 在播放器线程上接收事件，只记录原因和快照，合并后 post 到主线程.
+     */
+    private final class PlayerListener implements Listener {
+
+        @Override
+        public void onTimelineChanged(@NonNull Timeline timeline, @TimelineChangeReason int reason) {
+            synchronized (lock) {
+                pendingTimelineChangeReason = reason;
+            }
+        }
+
+        @Override
+        public void onMediaItemTransition(@Nullable MediaItem mediaItem, @MediaItemTransitionReason int reason) {
+            synchronized (lock) {
+                pendingMediaItemTransitionReason = reason;
+            }
+        }
+
+        @Override
+        public void onPlayWhenReadyChanged(boolean playWhenReady, @PlayWhenReadyChangeReason int reason) {
+            synchronized (lock) {
+                pendingPlayWhenReadyChangeReason = reason;
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity(@NonNull PositionInfo oldPosition, @NonNull PositionInfo newPosition, @DiscontinuityReason int reason) {
+            synchronized (lock) {
+                // 多次跳转合并为一次，保留最早的旧位置和最新的新位置。
+                if (pendingOldPosition == null) {
+                    pendingOldPosition = oldPosition;
+                }
+                pendingNewPosition = newPosition;
+                pendingDiscontinuityReason = reason;
+            }
+        }
+
+        @Override
+        public void onEvents(@NonNull Player player, @NonNull Events events) {
+            Snapshot newState = new Snapshot(player);
+            long eventFlags = 0;
+            for (int i = 0; i < events.size(); i++) {
+                eventFlags |= 1L << events.get(i);
+            }
+            synchronized (lock) {
+                pendingState = newState;
+                pendingEventFlags |= eventFlags;
+                if (dispatchScheduled) {
+                    return;
+                }
+                dispatchScheduled = true;
+            }
+            mainHandler.post(dispatchRunnable);
+        }
+    }
+
+    /**
+     * 在播放器线程上截取的不可变状态快照.
+     */
+    private static final class Snapshot {
+
+        public final Commands availableCommands;
+        public final @Player.State int playbackState;
+        public final @PlaybackSuppressionReason int playbackSuppressionReason;
+        public final boolean playWhenReady;
+        public final boolean isPlaying;
+        public final boolean isLoading;
+        @Nullable
+        public final PlaybackException playerError;
+        public final @RepeatMode int repeatMode;
+        public final boolean shuffleModeEnabled;
+        public final long seekBackIncrementMs;
+        public final long seekForwardIncrementMs;
+        public final long maxSeekToPreviousPositionMs;
+        public final PlaybackParameters playbackParameters;
+        public final Tracks currentTracks;
+        public final TrackSelectionParameters trackSelectionParameters;
+        public final MediaMetadata mediaMetadata;
+        public final Timeline timeline;
+        public final int currentPeriodIndex;
+        public final int currentMediaItemIndex;
+        public final boolean isPlayingAd;
+        public final int currentAdGroupIndex;
+        public final int currentAdIndexInAdGroup;
+        public final long durationMs;
+        public final long contentDurationMs;
+        public final long currentPositionMs;
+        public final long contentPositionMs;
+        public final long bufferedPositionMs;
+        public final long contentBufferedPositionMs;
+        public final long totalBufferedDurationMs;
+        public final VideoSize videoSize;
+        public final CueGroup cueGroup;
+        public final long realtimeMs;
+
+        /**
+         * Creates the snapshot of an empty idle player.
+         */
+        public Snapshot() {
+            availableCommands = Commands.EMPTY;
+            playbackState = STATE_IDLE;
+            playbackSuppressionReason = PLAYBACK_SUPPRESSION_REASON_NONE;
+            playWhenReady = false;
+            isPlaying = false;
+            isLoading = false;
+            playerError = null;
+            repeatMode = REPEAT_MODE_OFF;
+            shuffleModeEnabled = false;
+            seekBackIncrementMs = C.DEFAULT_SEEK_BACK_INCREMENT_MS;
+            seekForwardIncrementMs = C.DEFAULT_SEEK_FORWARD_INCREMENT_MS;
+            maxSeekToPreviousPositionMs = C.DEFAULT_MAX_SEEK_TO_PREVIOUS_POSITION_MS;
+            playbackParameters = PlaybackParameters.DEFAULT;
+            currentTracks = Tracks.EMPTY;
+            trackSelectionParameters = TrackSelectionParameters.DEFAULT_WITHOUT_CONTEXT;
+            mediaMetadata = MediaMetadata.EMPTY;
+            timeline = Timeline.EMPTY;
+            currentPeriodIndex = 0;
+            currentMediaItemIndex = 0;
+            isPlayingAd = false;
+            currentAdGroupIndex = C.INDEX_UNSET;
+            currentAdIndexInAdGroup = C.INDEX_UNSET;
+            durationMs = C.TIME_UNSET;
+            contentDurationMs = C.TIME_UNSET;
+            currentPositionMs = 0;
+            contentPositionMs = 0;
+            bufferedPositionMs = 0;
+            contentBufferedPositionMs = 0;
+            totalBufferedDurationMs = 0;
+            videoSize = VideoSize.UNKNOWN;
+            cueGroup = CueGroup.EMPTY_TIME_ZERO;
+            realtimeMs = SystemClock.elapsedRealtime();
+        }
+
+        public Snapshot(Player player) {
+            availableCommands = player.getAvailableCommands();
+            playbackState = player.getPlaybackState();
+            playbackSuppressionReason = player.getPlaybackSuppressionReason();
+            playWhenReady = player.getPlayWhenReady();
+            isPlaying = player.isPlaying();
+            isLoading = player.isLoading();
+            playerError = player.getPlayerError();
+            repeatMode = player.getRepeatMode();
+            shuffleModeEnabled = player.getShuffleModeEnabled();
+            seekBackIncrementMs = player.getSeekBackIncrement();
+            seekForwardIncrementMs = player.getSeekForwardIncrement();
+            maxSeekToPreviousPositionMs = player.getMaxSeekToPreviousPosition();
+            playbackParameters = player.getPlaybackParameters();
+            currentTracks = player.getCurrentTracks();
+            trackSelectionParameters = player.getTrackSelectionParameters();
+            mediaMetadata = player.getMediaMetadata();
+            timeline = player.getCurrentTimeline();
+            currentPeriodIndex = player.getCurrentPeriodIndex();
+            currentMediaItemIndex = player.getCurrentMediaItemIndex();
+            isPlayingAd = player.isPlayingAd();
+            currentAdGroupIndex = player.getCurrentAdGroupIndex();
+            currentAdIndexInAdGroup = player.getCurrentAdIndexInAdGroup();
+            durationMs = player.getDuration();
+            contentDurationMs = player.getContentDuration();
+            currentPositionMs = player.getCurrentPosition();
+            contentPositionMs = player.getContentPosition();
+            bufferedPositionMs = player.getBufferedPosition();
+            contentBufferedPositionMs = player.getContentBufferedPosition();
+            totalBufferedDurationMs = player.getTotalBufferedDuration();
+            videoSize = player.getVideoSize();
+            cueGroup = player.getCurrentCues();
+            realtimeMs = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * Returns the {@link Event} flags of the state that differs from another snapshot.
+         */
+        public long getChangedEvents(Snapshot other) {
+            long eventFlags = 0;
+            eventFlags |= flagIf(!timeline.equals(other.timeline), EVENT_TIMELINE_CHANGED);
+            eventFlags |= flagIf(!currentTracks.equals(other.currentTracks), EVENT_TRACKS_CHANGED);
+            eventFlags |= flagIf(!trackSelectionParameters.equals(other.trackSelectionParameters), EVENT_TRACK_SELECTION_PARAMETERS_CHANGED);
+            eventFlags |= flagIf(!mediaMetadata.equals(other.mediaMetadata), EVENT_MEDIA_METADATA_CHANGED);
+            eventFlags |= flagIf(isLoading != other.isLoading, EVENT_IS_LOADING_CHANGED);
+            eventFlags |= flagIf(playbackState != other.playbackState, EVENT_PLAYBACK_STATE_CHANGED);
+            eventFlags |= flagIf(playWhenReady != other.playWhenReady, EVENT_PLAY_WHEN_READY_CHANGED);
+            eventFlags |= flagIf(playbackSuppressionReason != other.playbackSuppressionReason, EVENT_PLAYBACK_SUPPRESSION_REASON_CHANGED);
+            eventFlags |= flagIf(isPlaying != other.isPlaying, EVENT_IS_PLAYING_CHANGED);
+            eventFlags |= flagIf(!playbackParameters.equals(other.playbackParameters), EVENT_PLAYBACK_PARAMETERS_CHANGED);
+            eventFlags |= flagIf(repeatMode != other.repeatMode, EVENT_REPEAT_MODE_CHANGED);
+            eventFlags |= flagIf(shuffleModeEnabled != other.shuffleModeEnabled, EVENT_SHUFFLE_MODE_ENABLED_CHANGED);
+            eventFlags |= flagIf(!availableCommands.equals(other.availableCommands), EVENT_AVAILABLE_COMMANDS_CHANGED);
+            eventFlags |= flagIf(!videoSize.equals(other.videoSize), EVENT_VIDEO_SIZE_CHANGED);
+            eventFlags |= flagIf(!cueGroup.cues.equals(other.cueGroup.cues), EVENT_CUES);
+            eventFlags |= flagIf(playerError != other.playerError, EVENT_PLAYER_ERROR);
+            return eventFlags;
+        }
+
+        private static long flagIf(boolean condition, @Event int event) {
+            return condition ? 1L << event : 0;
+        }
+
+        /**
+         * 正在播放时按经过的时间和播放速度外推位置。
+         */
+        public long extrapolate(long positionMs, long durationMs) {
+            if (!isPlaying) {
+                return positionMs;
+            }
+            long elapsedMs = SystemClock.elapsedRealtime() - realtimeMs;
+            long extrapolatedMs = positionMs + (long) (elapsedMs * playbackParameters.speed);
+            return durationMs == C.TIME_UNSET ? extrapolatedMs : Math.min(extrapolatedMs, durationMs);
+        }
+    }
+}
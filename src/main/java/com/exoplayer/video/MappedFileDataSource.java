@@ -0,0 +1,223 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.upstream.BaseDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 通过内存映射读取本地文件的 {@link DataSource}，代替 {@link FileDataSource}。
+ * <p>
+ * 文件按固定大小的窗口映射，读取越过窗口时映射下一个窗口，所以同时映射的地址空间有上限，也能读取超过 2 GB 的文件。
+ * 读取直接从页缓存复制到调用方的数组，不需要每次读取都进行一次系统调用。
+ * <p>
+ * Java 不能主动解除映射，窗口在缓冲被垃圾回收时才解除。为此每个实例只保留最近的一个窗口：关闭后再次打开同一个文件
+ * （例如加载器按区间多次打开）时复用这个窗口，打开其他文件时才丢弃它。所以每个实例占用的地址空间不超过一个窗口，
+ * 但已丢弃的窗口在回收前仍然占用地址空间，同时存在大量实例时应使用较小的窗口。
+ */
+public final class MappedFileDataSource extends BaseDataSource {
+
+    /**
+     * {@link MappedFileDataSource} 的工厂.
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final long windowSize;
+        @Nullable
+        private final DataSource.Factory fallbackFactory;
+
+        /**
+         * Creates a factory of data sources that can only read local files.
+         */
+        public Factory() {
+            this(/* fallbackFactory= */ null);
+        }
+
+        /**
+         * Creates a factory of data sources that read local files through a mapping, and all other
+         * uris through {@code fallbackFactory}.
+         *
+         * @param fallbackFactory The factory of the {@link DataSource} reading uris that are not
+         *                        local files, or {@code null} if only local files are read.
+         */
+        public Factory(@Nullable DataSource.Factory fallbackFactory) {
+            this(fallbackFactory, DEFAULT_WINDOW_SIZE);
+        }
+
+        /**
+         * Creates a factory.
+         *
+         * @param fallbackFactory The factory of the {@link DataSource} reading uris that are not
+         *                        local files, or {@code null} if only local files are read.
+         * @param windowSize      The size of a mapping window, in bytes.
+         */
+        public Factory(@Nullable DataSource.Factory fallbackFactory, long windowSize) {
+            Assertions.checkArgument(windowSize > 0 && windowSize <= Integer.MAX_VALUE);
+            this.fallbackFactory = fallbackFactory;
+            this.windowSize = windowSize;
+        }
+
+        @NonNull
+        @Override
+        public DataSource createDataSource() {
+            MappedFileDataSource dataSource = new MappedFileDataSource(windowSize);
+            return fallbackFactory != null ? new LocalFileRoutingDataSource(dataSource, fallbackFactory.createDataSource()) : dataSource;
+        }
+    }
+
+    /**
+     * The default size of a mapping window, in bytes. Small enough that the windows awaiting
+     * garbage collection don't exhaust the address space of 32-bit processes.
+     */
+    public static final long DEFAULT_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private final long windowSize;
+
+    @Nullable
+    private Uri uri;
+    @Nullable
+    private RandomAccessFile file;
+    @Nullable
+    private FileChannel channel;
+    /**
+     * 当前映射的窗口、它所在的文件和文件映射时的大小与修改时间，以及窗口在文件中的起始位置。关闭后保留，再次打开同一个文件时复用
+     **/
+    @Nullable
+    private MappedByteBuffer window;
+    @Nullable
+    private String windowPath;
+    private long windowFileSize;
+    private long windowFileLastModified;
+    private long windowStart;
+    private long fileSize;
+    private long position;
+    private long bytesRemaining;
+    private boolean opened;
+
+    /**
+     * Creates an instance using {@link #DEFAULT_WINDOW_SIZE}.
+     */
+    public MappedFileDataSource() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param windowSize The size of a mapping window, in bytes.
+     */
+    public MappedFileDataSource(long windowSize) {
+        super(/* isNetwork= */ false);
+        Assertions.checkArgument(windowSize > 0 && windowSize <= Integer.MAX_VALUE);
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws FileDataSource.FileDataSourceException {
+        uri = dataSpec.uri;
+        transferInitializing(dataSpec);
+        String path = Assertions.checkNotNull(dataSpec.uri.getPath());
+        try {
+            file = new RandomAccessFile(path, "r");
+            channel = file.getChannel();
+            fileSize = channel.size();
+            long lastModified = new File(path).lastModified();
+            if (!path.equals(windowPath) || fileSize != windowFileSize || lastModified != windowFileLastModified) {
+                // 其他文件或文件已改变，不能复用之前的窗口。
+                window = null;
+                windowPath = path;
+                windowFileSize = fileSize;
+                windowFileLastModified = lastModified;
+            }
+        } catch (FileNotFoundException e) {
+            throw new FileDataSource.FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND);
+        } catch (SecurityException e) {
+            throw new FileDataSource.FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_NO_PERMISSION);
+        } catch (IOException e) {
+            throw new FileDataSource.FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+        }
+        position = dataSpec.position;
+        bytesRemaining = dataSpec.length == C.LENGTH_UNSET ? fileSize - position : dataSpec.length;
+        if (position > fileSize || bytesRemaining < 0) {
+            throw new FileDataSource.FileDataSourceException(/* message= */ null, /* cause= */ null, PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+        }
+        opened = true;
+        transferStarted(dataSpec);
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws FileDataSource.FileDataSourceException {
+        if (length == 0) {
+            return 0;
+        }
+        if (bytesRemaining == 0 || position >= fileSize) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        @Nullable MappedByteBuffer window = this.window;
+        if (window == null || position < windowStart || position >= windowStart + window.capacity()) {
+            window = mapWindow();
+        }
+        long windowRemaining = windowStart + window.capacity() - position;
+        int bytesToRead = (int) Math.min(length, Math.min(bytesRemaining, windowRemaining));
+        window.position((int) (position - windowStart));
+        window.get(buffer, offset, bytesToRead);
+        position += bytesToRead;
+        bytesRemaining -= bytesToRead;
+        bytesTransferred(bytesToRead);
+        return bytesToRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws FileDataSource.FileDataSourceException {
+        uri = null;
+        // 映射在文件关闭后仍然有效，保留窗口供再次打开同一个文件时使用。
+        channel = null;
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new FileDataSource.FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+        } finally {
+            file = null;
+            if (opened) {
+                opened = false;
+                transferEnded();
+            }
+        }
+    }
+
+    private MappedByteBuffer mapWindow() throws FileDataSource.FileDataSourceException {
+        // 窗口起点按窗口大小对齐，顺序读取时每个窗口只映射一次。
+        windowStart = position - position % windowSize;
+        long size = Math.min(windowSize, fileSize - windowStart);
+        try {
+            window = Assertions.checkNotNull(channel).map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+        } catch (IOException e) {
+            throw new FileDataSource.FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+        }
+        return window;
+    }
+}
@@ -0,0 +1,300 @@
+package com.exoplayer.video;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 进度条上的章节和广告标记，按时间排序并支持增量更新。
+ * <p>
+ * 标记保存在按时间排序的基本类型数组中：增删单个标记只移动插入点之后的元素，批量添加先排序再与已有标记归并，
+ * 查找上一个和下一个标记使用二分查找。绘制时控制器只取进度条范围内的标记，
+ * 并把落在同一像素上的标记合并为一个，长时间的直播回看窗口有上千个标记时，进度条绘制的标记数不超过其像素宽度。
+ * <p>
+ * 通过 {@link ExoVideoView#setMarkerIndex(MarkerIndex)} 设置。标记的时间相对于窗口开始，与
+ * {@link ExoVideoView#setExtraAdGroupMarkers(long[], boolean[])} 相同。只能在主线程访问。
+ */
+public final class MarkerIndex {
+
+    /**
+     * 标记变化的监听.
+     */
+    public interface Listener {
+
+        /**
+         * Called when markers are added, removed or change their played state.
+         */
+        void onMarkersChanged(MarkerIndex markerIndex);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ArrayList<Listener> listeners;
+    private long[] timesMs;
+    private boolean[] played;
+    private int size;
+
+    public MarkerIndex() {
+        listeners = new ArrayList<>();
+        timesMs = new long[INITIAL_CAPACITY];
+        played = new boolean[INITIAL_CAPACITY];
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of markers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time of the marker at an index, in ascending time order.
+     */
+    public long getTimeMs(int index) {
+        Assertions.checkIndex(index, 0, size);
+        return timesMs[index];
+    }
+
+    /**
+     * Returns whether the marker at an index has been played.
+     */
+    public boolean isPlayed(int index) {
+        Assertions.checkIndex(index, 0, size);
+        return played[index];
+    }
+
+    /**
+     * Adds a marker, or updates the played state of the marker at the same time.
+     *
+     * @param timeMs The time of the marker relative to the start of the window, in milliseconds.
+     * @param played Whether the marker has been played.
+     */
+    public void add(long timeMs, boolean played) {
+        int index = Arrays.binarySearch(timesMs, 0, size, timeMs);
+        if (index >= 0) {
+            if (this.played[index] == played) {
+                return;
+            }
+            this.played[index] = played;
+        } else {
+            index = -index - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(timesMs, index, timesMs, index + 1, size - index);
+            System.arraycopy(this.played, index, this.played, index + 1, size - index);
+            timesMs[index] = timeMs;
+            this.played[index] = played;
+            size++;
+        }
+        notifyMarkersChanged();
+    }
+
+    /**
+     * Adds markers in a single update. The markers need not be sorted. Markers at the time of an
+     * existing marker replace its played state.
+     *
+     * @param timesMs The times of the markers relative to the start of the window, in milliseconds.
+     * @param played  Whether each marker has been played.
+     */
+    public void addAll(long[] timesMs, boolean[] played) {
+        Assertions.checkArgument(timesMs.length == played.length);
+        if (timesMs.length == 0) {
+            return;
+        }
+        // 先对新标记排序，再与已有标记归并，避免逐个插入的平方复杂度。
+        long[] newTimesMs = new long[timesMs.length];
+        boolean[] newPlayed = new boolean[timesMs.length];
+        Integer[] order = new Integer[timesMs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timesMs[a], timesMs[b]));
+        for (int i = 0; i < order.length; i++) {
+            newTimesMs[i] = timesMs[order[i]];
+            newPlayed[i] = played[order[i]];
+        }
+        long[] mergedTimesMs = new long[Math.max(INITIAL_CAPACITY, size + newTimesMs.length)];
+        boolean[] mergedPlayed = new boolean[mergedTimesMs.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < size || j < newTimesMs.length) {
+            long timeMs;
+            boolean markerPlayed;
+            if (j == newTimesMs.length || (i < size && this.timesMs[i] < newTimesMs[j])) {
+                timeMs = this.timesMs[i];
+                markerPlayed = this.played[i++];
+            } else {
+                if (i < size && this.timesMs[i] == newTimesMs[j]) {
+                    i++;
+                }
+                timeMs = newTimesMs[j];
+                markerPlayed = newPlayed[j++];
+            }
+            if (count > 0 && mergedTimesMs[count - 1] == timeMs) {
+                mergedPlayed[count - 1] = markerPlayed;
+            } else {
+                mergedTimesMs[count] = timeMs;
+                mergedPlayed[count] = markerPlayed;
+                count++;
+            }
+        }
+        this.timesMs = mergedTimesMs;
+        this.played = mergedPlayed;
+        size = count;
+        notifyMarkersChanged();
+    }
+
+    /**
+     * Removes the marker at a time, if any.
+     *
+     * @param timeMs The time of the marker, in milliseconds.
+     */
+    public void remove(long timeMs) {
+        int index = Arrays.binarySearch(timesMs, 0, size, timeMs);
+        if (index < 0) {
+            return;
+        }
+        removeRange(index, index + 1);
+    }
+
+    /**
+     * Removes the markers in a time range, for example those that left a live window.
+     *
+     * @param fromMs The start of the range, inclusive, in milliseconds.
+     * @param toMs   The end of the range, exclusive, in milliseconds.
+     */
+    public void removeRange(long fromMs, long toMs) {
+        int fromIndex = lowerBound(fromMs);
+        int toIndex = lowerBound(toMs);
+        if (fromIndex < toIndex) {
+            removeRange(fromIndex, toIndex);
+        }
+    }
+
+    /**
+     * Sets the played state of the marker at a time, if any.
+     *
+     * @param timeMs The time of the marker, in milliseconds.
+     * @param played Whether the marker has been played.
+     */
+    public void setPlayed(long timeMs, boolean played) {
+        int index = Arrays.binarySearch(timesMs, 0, size, timeMs);
+        if (index >= 0 && this.played[index] != played) {
+            this.played[index] = played;
+            notifyMarkersChanged();
+        }
+    }
+
+    /**
+     * Removes all markers.
+     */
+    public void clear() {
+        if (size > 0) {
+            size = 0;
+            notifyMarkersChanged();
+        }
+    }
+
+    /**
+     * Returns the time of the first marker after a position, or {@link C#TIME_UNSET} if there is
+     * none.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public long getNextMarkerTimeMs(long positionMs) {
+        int index = lowerBound(positionMs + 1);
+        return index < size ? timesMs[index] : C.TIME_UNSET;
+    }
+
+    /**
+     * Returns the time of the last marker before a position, or {@link C#TIME_UNSET} if there is
+     * none.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public long getPreviousMarkerTimeMs(long positionMs) {
+        int index = lowerBound(positionMs) - 1;
+        return index >= 0 ? timesMs[index] : C.TIME_UNSET;
+    }
+
+    /**
+     * Writes the markers in a time range into arrays, merging markers that fall on the same pixel
+     * of a time bar into the first of them. A merged marker is played if all its markers are.
+     *
+     * @param startMs    The time at the start of the time bar, in milliseconds.
+     * @param endMs      The time at the end of the time bar, in milliseconds.
+     * @param widthPx    The width of the time bar, in pixels.
+     * @param outTimesMs The array receiving the marker times, of at least {@code widthPx + 1}
+     *                   elements.
+     * @param outPlayed  The array receiving the played states, of the same length.
+     * @return The number of markers written.
+     */
+    /* package */ int getVisibleMarkers(long startMs, long endMs, int widthPx, long[] outTimesMs, boolean[] outPlayed) {
+        if (endMs <= startMs || widthPx <= 0) {
+            return 0;
+        }
+        long rangeMs = endMs - startMs;
+        int count = 0;
+        long lastPixel = -1;
+        for (int i = lowerBound(startMs); i < size && timesMs[i] <= endMs; i++) {
+            long pixel = (long) ((double) (timesMs[i] - startMs) * widthPx / rangeMs);
+            if (count > 0 && pixel == lastPixel) {
+                outPlayed[count - 1] &= played[i];
+            } else {
+                outTimesMs[count] = timesMs[i];
+                outPlayed[count] = played[i];
+                lastPixel = pixel;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 第一个时间不小于 {@code timeMs} 的标记的下标.
+     */
+    private int lowerBound(long timeMs) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timesMs[mid] < timeMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void removeRange(int fromIndex, int toIndex) {
+        System.arraycopy(timesMs, toIndex, timesMs, fromIndex, size - toIndex);
+        System.arraycopy(played, toIndex, played, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        notifyMarkersChanged();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timesMs.length) {
+            int newCapacity = Math.max(capacity, timesMs.length * 2);
+            timesMs = Arrays.copyOf(timesMs, newCapacity);
+            played = Arrays.copyOf(played, newCapacity);
+        }
+    }
+
+    private void notifyMarkersChanged() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onMarkersChanged(this);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceException;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把完整读取过的短片段保存在 {@link ClipMemoryCache} 中，之后的打开直接从内存读取的 {@link DataSource}。
+ * <p>
+ * {@link com.google.android.exoplayer2.Player#REPEAT_MODE_ONE} 每次循环都会重新打开数据源，
+ * 第一次从头读到尾时把数据记录下来，后续循环不再访问上游，缓存或网络的波动不会在循环点造成卡顿。
+ * 循环点处解码器由播放器复用（格式相同时不重建解码器），因此循环是无缝的。
+ * <p>
+ * 只有 {@link ClipPredicate} 认为需要循环的打开才会被记录。默认只记录渐进式媒体文件本身，
+ * HLS、DASH 的清单和分片只读取一次，不复制到内存，也不会挤掉缓存中的短片段。
+ */
+public final class MemoryLoopDataSource implements DataSource {
+
+    /**
+     * 判断一次打开读取的是否是需要循环的短片段.
+     */
+    public interface ClipPredicate {
+
+        /**
+         * Returns whether the data read for a {@link DataSpec} should be recorded, so that it can be
+         * served from memory when it is opened again.
+         *
+         * @param dataSpec The {@link DataSpec} opened from the start with an unset length.
+         */
+        boolean isClip(DataSpec dataSpec);
+    }
+
+    /**
+     * Records progressive media files: their uri has no adaptive streaming type, and the player
+     * opens them with {@link DataSpec#FLAG_DONT_CACHE_IF_LENGTH_UNKNOWN}, which HLS and DASH
+     * manifests and segments don't set. Apps whose clips can be told apart otherwise, for example by a
+     * {@link com.google.android.exoplayer2.MediaItem.Builder#setCustomCacheKey(String) custom cache
+     * key}, should pass their own {@link ClipPredicate}.
+     */
+    public static final ClipPredicate DEFAULT_CLIP_PREDICATE = dataSpec -> dataSpec.isFlagSet(DataSpec.FLAG_DONT_CACHE_IF_LENGTH_UNKNOWN) && Util.inferContentType(dataSpec.uri) == C.CONTENT_TYPE_OTHER;
+
+    /**
+     * {@link MemoryLoopDataSource} 的工厂.
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+        private final ClipMemoryCache cache;
+        private final ClipPredicate clipPredicate;
+
+        /**
+         * Creates a factory recording the clips accepted by {@link #DEFAULT_CLIP_PREDICATE}.
+         *
+         * @param upstreamFactory The factory of the upstream {@link DataSource}.
+         * @param cache           The {@link ClipMemoryCache}.
+         */
+        public Factory(DataSource.Factory upstreamFactory, ClipMemoryCache cache) {
+            this(upstreamFactory, cache, DEFAULT_CLIP_PREDICATE);
+        }
+
+        /**
+         * Creates a factory.
+         *
+         * @param upstreamFactory The factory of the upstream {@link DataSource}.
+         * @param cache           The {@link ClipMemoryCache}.
+         * @param clipPredicate   The {@link ClipPredicate} selecting the data that is recorded.
+         */
+        public Factory(DataSource.Factory upstreamFactory, ClipMemoryCache cache, ClipPredicate clipPredicate) {
+            this.upstreamFactory = upstreamFactory;
+            this.cache = cache;
+            this.clipPredicate = clipPredicate;
+        }
+
+        @NonNull
+        @Override
+        public MemoryLoopDataSource createDataSource() {
+            return new MemoryLoopDataSource(upstreamFactory.createDataSource(), cache, clipPredicate);
+        }
+    }
+
+    /**
+     * 长度未知时记录缓冲的初始大小
+     **/
+    private static final int INITIAL_RECORDING_SIZE = 256 * 1024;
+
+    private final DataSource upstream;
+    private final ClipMemoryCache cache;
+    private final ClipPredicate clipPredicate;
+
+    @Nullable
+    private Uri uri;
+    @Nullable
+    private String key;
+    /**
+     * 从内存读取时的数据和位置
+     **/
+    @Nullable
+    private byte[] data;
+    private int readPosition;
+    private int bytesRemaining;
+    /**
+     * 从上游读取时的记录，数据不完整或超出单个片段上限时为 null
+     **/
+    @Nullable
+    private ByteArrayOutputStream recording;
+    private boolean upstreamOpened;
+
+    /**
+     * Creates an instance recording the clips accepted by {@link #DEFAULT_CLIP_PREDICATE}.
+     *
+     * @param upstream The upstream {@link DataSource}.
+     * @param cache    The {@link ClipMemoryCache}.
+     */
+    public MemoryLoopDataSource(DataSource upstream, ClipMemoryCache cache) {
+        this(upstream, cache, DEFAULT_CLIP_PREDICATE);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstream      The upstream {@link DataSource}.
+     * @param cache         The {@link ClipMemoryCache}.
+     * @param clipPredicate The {@link ClipPredicate} selecting the data that is recorded.
+     */
+    public MemoryLoopDataSource(DataSource upstream, ClipMemoryCache cache, ClipPredicate clipPredicate) {
+        this.upstream = upstream;
+        this.cache = cache;
+        this.clipPredicate = clipPredicate;
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        uri = dataSpec.uri;
+        key = dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+        @Nullable byte[] cachedData = cache.get(key);
+        if (cachedData != null) {
+            if (dataSpec.position > cachedData.length) {
+                throw new DataSourceException(PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+            }
+            data = cachedData;
+            readPosition = (int) dataSpec.position;
+            int available = cachedData.length - readPosition;
+            bytesRemaining = dataSpec.length == C.LENGTH_UNSET ? available : (int) Math.min(dataSpec.length, available);
+            return bytesRemaining;
+        }
+        long length = upstream.open(dataSpec);
+        upstreamOpened = true;
+        // 只记录需要循环的片段从头开始、读到结尾的打开，才能得到完整的片段。
+        if (dataSpec.position == 0 && dataSpec.length == C.LENGTH_UNSET && (length == C.LENGTH_UNSET || length <= cache.getMaxClipBytes()) && clipPredicate.isClip(dataSpec)) {
+            recording = new ByteArrayOutputStream(length != C.LENGTH_UNSET ? (int) length : INITIAL_RECORDING_SIZE);
+        }
+        return length;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (data != null) {
+            if (bytesRemaining == 0) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            int bytesToRead = Math.min(length, bytesRemaining);
+            System.arraycopy(data, readPosition, buffer, offset, bytesToRead);
+            readPosition += bytesToRead;
+            bytesRemaining -= bytesToRead;
+            return bytesToRead;
+        }
+        int bytesRead = upstream.read(buffer, offset, length);
+        @Nullable ByteArrayOutputStream recording = this.recording;
+        if (recording != null) {
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                cache.put(key, recording.toByteArray());
+                this.recording = null;
+            } else {
+                recording.write(buffer, offset, bytesRead);
+                if (recording.size() > cache.getMaxClipBytes()) {
+                    this.recording = null;
+                }
+            }
+        }
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return data != null ? uri : upstream.getUri();
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return data != null ? Collections.emptyMap() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        data = null;
+        recording = null;
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+}
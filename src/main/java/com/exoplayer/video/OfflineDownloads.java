@@ -0,0 +1,433 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 基于 {@link DownloadManager} 的离线下载。
+ * <p>
+ * 下载状态保存在数据库中，进程被杀后重新创建实例即可恢复未完成的下载；已下载的分段保留在缓存中，断点续传。
+ * 可以限制同时下载的数量，并按 {@link Requirements}（例如只在不计流量的网络下载）暂停和恢复。
+ * 播放器通过 {@link PlayerFactory#setOfflineDownloads(OfflineDownloads)} 创建后会优先读取已下载的内容，
+ * 在 {@link ExoVideoView} 中无需额外处理。需要在应用退到后台后继续下载时，把 {@link #getDownloadManager()}
+ * 交给应用自己的 {@link com.google.android.exoplayer2.offline.DownloadService}。
+ * <p>
+ * 每个进程只应创建一个实例（同一目录的 {@link SimpleCache} 只能打开一次），所有方法必须在主线程调用。
+ */
+public final class OfflineDownloads {
+
+    /**
+     * The default maximum number of parallel downloads.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 3;
+    /**
+     * The default interval between progress reports, in milliseconds.
+     */
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 1000;
+
+    /**
+     * 下载事件的监听.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the state of a download changes, including when it completes or fails.
+         *
+         * @param download The changed {@link Download}.
+         */
+        default void onDownloadChanged(Download download) {
+        }
+
+        /**
+         * Called when a download is removed.
+         *
+         * @param download The removed {@link Download}.
+         */
+        default void onDownloadRemoved(Download download) {
+        }
+
+        /**
+         * Called periodically while downloads are in progress.
+         *
+         * @param downloads The downloads in progress. {@link Download#getPercentDownloaded()} and
+         *                  {@link Download#getBytesDownloaded()} report their current progress.
+         */
+        default void onProgress(List<Download> downloads) {
+        }
+
+        /**
+         * Called when downloads start or stop waiting for the {@link Requirements} to be met.
+         *
+         * @param waitingForRequirements Whether downloads are waiting for the requirements.
+         */
+        default void onWaitingForRequirementsChanged(boolean waitingForRequirements) {
+        }
+    }
+
+    /**
+     * {@link OfflineDownloads} 的构建器.
+     */
+    public static final class Builder {
+
+        private final Context context;
+        private File downloadDirectory;
+        private DataSource.Factory upstreamFactory;
+        private int maxParallelDownloads;
+        private Requirements requirements;
+        private long progressIntervalMs;
+
+        /**
+         * Creates a builder that downloads over HTTP into {@code files/downloads}, with {@link
+         * #DEFAULT_MAX_PARALLEL_DOWNLOADS} parallel downloads on any network.
+         *
+         * @param context A {@link Context}.
+         */
+        public Builder(Context context) {
+            this.context = context.getApplicationContext();
+            downloadDirectory = new File(this.context.getFilesDir(), "downloads");
+            upstreamFactory = new DefaultHttpDataSource.Factory();
+            maxParallelDownloads = DEFAULT_MAX_PARALLEL_DOWNLOADS;
+            requirements = DownloadManager.DEFAULT_REQUIREMENTS;
+            progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+        }
+
+        /**
+         * Sets the directory in which downloaded content is stored. It must not be used by any other
+         * {@link Cache}.
+         *
+         * @param downloadDirectory The directory.
+         * @return This builder.
+         */
+        public Builder setDownloadDirectory(File downloadDirectory) {
+            this.downloadDirectory = downloadDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the factory of the {@link DataSource} used to download content and to play content
+         * that has not been downloaded.
+         *
+         * @param upstreamFactory The {@link DataSource.Factory}.
+         * @return This builder.
+         */
+        public Builder setUpstreamFactory(DataSource.Factory upstreamFactory) {
+            this.upstreamFactory = upstreamFactory;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of parallel downloads.
+         *
+         * @param maxParallelDownloads The maximum number of parallel downloads. Must be positive.
+         * @return This builder.
+         */
+        public Builder setMaxParallelDownloads(int maxParallelDownloads) {
+            Assertions.checkArgument(maxParallelDownloads > 0);
+            this.maxParallelDownloads = maxParallelDownloads;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Requirements} that must be met for downloads to progress, for example
+         * {@link Requirements#NETWORK_UNMETERED}.
+         *
+         * @param requirements The {@link Requirements}.
+         * @return This builder.
+         */
+        public Builder setRequirements(Requirements requirements) {
+            this.requirements = requirements;
+            return this;
+        }
+
+        /**
+         * Sets the interval between {@link Listener#onProgress(List)} reports.
+         *
+         * @param progressIntervalMs The interval, in milliseconds.
+         * @return This builder.
+         */
+        public Builder setProgressIntervalMs(long progressIntervalMs) {
+            Assertions.checkArgument(progressIntervalMs > 0);
+            this.progressIntervalMs = progressIntervalMs;
+            return this;
+        }
+
+        /**
+         * Builds the instance and restores the downloads that were not completed.
+         */
+        public OfflineDownloads build() {
+            return new OfflineDownloads(this);
+        }
+    }
+
+    private final Context context;
+    private final DataSource.Factory upstreamFactory;
+    private final SimpleCache cache;
+    private final ExecutorService downloadExecutor;
+    private final DownloadManager downloadManager;
+    private final long progressIntervalMs;
+    private final Handler handler;
+    private final Runnable progressRunnable;
+    private final CopyOnWriteArrayList<Listener> listeners;
+    private boolean progressScheduled;
+    private boolean released;
+
+    private OfflineDownloads(Builder builder) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        context = builder.context;
+        upstreamFactory = builder.upstreamFactory;
+        progressIntervalMs = builder.progressIntervalMs;
+        DatabaseProvider databaseProvider = new StandaloneDatabaseProvider(context);
+        cache = new SimpleCache(builder.downloadDirectory, new NoOpCacheEvictor(), databaseProvider);
+        downloadExecutor = Executors.newFixedThreadPool(builder.maxParallelDownloads);
+        downloadManager = new DownloadManager(context, databaseProvider, cache, upstreamFactory, downloadExecutor);
+        downloadManager.setMaxParallelDownloads(builder.maxParallelDownloads);
+        downloadManager.setRequirements(builder.requirements);
+        handler = new Handler(Looper.getMainLooper());
+        progressRunnable = this::reportProgress;
+        listeners = new CopyOnWriteArrayList<>();
+        downloadManager.addListener(new ManagerListener());
+    }
+
+    /**
+     * Returns the underlying {@link DownloadManager}.
+     */
+    public DownloadManager getDownloadManager() {
+        return downloadManager;
+    }
+
+    /**
+     * Returns the {@link Cache} containing the downloaded content.
+     */
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Adds a {@link Listener}.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a {@link Listener}.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts downloading a progressive stream, or resumes it if it was downloaded before.
+     *
+     * @param id  The download id, for example the media id.
+     * @param uri The uri of the stream.
+     */
+    public void download(String id, Uri uri) {
+        download(new DownloadRequest.Builder(id, uri).build());
+    }
+
+    /**
+     * Starts downloading content. Adaptive streams need a request with the tracks to download,
+     * as built by {@link com.google.android.exoplayer2.offline.DownloadHelper}.
+     *
+     * @param request The {@link DownloadRequest}.
+     */
+    public void download(DownloadRequest request) {
+        Assertions.checkState(!released);
+        downloadManager.addDownload(request);
+        maybeScheduleProgress();
+    }
+
+    /**
+     * Removes a download and its downloaded content.
+     *
+     * @param id The download id.
+     */
+    public void remove(String id) {
+        downloadManager.removeDownload(id);
+    }
+
+    /**
+     * Pauses or resumes all downloads. Paused downloads keep their progress.
+     *
+     * @param paused Whether downloads are paused.
+     */
+    public void setPaused(boolean paused) {
+        downloadManager.setDownloadsPaused(paused);
+        if (!paused) {
+            maybeScheduleProgress();
+        }
+    }
+
+    /**
+     * Returns the download with the given id, or {@code null} if there is none.
+     *
+     * @param id The download id.
+     */
+    @Nullable
+    public Download getDownload(String id) {
+        try {
+            return downloadManager.getDownloadIndex().getDownload(id);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the content of a download has been completely downloaded.
+     *
+     * @param id The download id.
+     */
+    public boolean isDownloaded(String id) {
+        @Nullable Download download = getDownload(id);
+        return download != null && download.state == Download.STATE_COMPLETED;
+    }
+
+    /**
+     * Returns a {@link MediaItem} that plays a download from the cache, or {@code null} if there
+     * is no such download. Its cache key and stream keys match the download.
+     *
+     * @param id The download id.
+     */
+    @Nullable
+    public MediaItem getMediaItem(String id) {
+        @Nullable Download download = getDownload(id);
+        return download != null ? download.request.toMediaItem() : null;
+    }
+
+    /**
+     * Returns a factory of {@link DataSource DataSources} that read downloaded content from the
+     * cache and all other content from the upstream, without writing it to the cache.
+     */
+    public DataSource.Factory createDataSourceFactory() {
+        return createDataSourceFactory(new DefaultDataSource.Factory(context, upstreamFactory), /* memoryMappedCacheReads= */ false);
+    }
+
+    /**
+     * Returns the factory of the {@link DataSource} used to download content.
+     */
+    /* package */ DataSource.Factory getUpstreamFactory() {
+        return upstreamFactory;
+    }
+
+    /**
+     * @param upstream               The factory of the {@link DataSource} reading content that has
+     *                               not been downloaded.
+     * @param memoryMappedCacheReads Whether downloaded content is read through a {@link
+     *                               MappedFileDataSource}.
+     */
+    /* package */ DataSource.Factory createDataSourceFactory(DataSource.Factory upstream, boolean memoryMappedCacheReads) {
+        CacheDataSource.Factory dataSourceFactory = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setUpstreamDataSourceFactory(upstream)
+                .setCacheWriteDataSinkFactory(null);
+        if (memoryMappedCacheReads) {
+            dataSourceFactory.setCacheReadDataSourceFactory(new MappedFileDataSource.Factory());
+        }
+        return dataSourceFactory;
+    }
+
+    /**
+     * Stops all downloads and releases the cache. Downloads that were not completed are resumed
+     * by the next instance.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        handler.removeCallbacks(progressRunnable);
+        listeners.clear();
+        downloadManager.release();
+        downloadExecutor.shutdown();
+        cache.release();
+    }
+
+    private void maybeScheduleProgress() {
+        if (!progressScheduled && !released && !downloadManager.getCurrentDownloads().isEmpty()) {
+            progressScheduled = true;
+            handler.postDelayed(progressRunnable, progressIntervalMs);
+        }
+    }
+
+    private void reportProgress() {
+        progressScheduled = false;
+        List<Download> downloads = downloadManager.getCurrentDownloads();
+        if (downloads.isEmpty()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onProgress(downloads);
+        }
+        maybeScheduleProgress();
+    }
+
+    /**
+     * 转发 {@link DownloadManager} 的事件.
+     */
+    private final class ManagerListener implements DownloadManager.Listener {
+
+        @Override
+        public void onInitialized(@NonNull DownloadManager downloadManager) {
+            // 恢复的下载开始进行。
+            maybeScheduleProgress();
+        }
+
+        @Override
+        public void onDownloadChanged(@NonNull DownloadManager downloadManager, @NonNull Download download, @Nullable Exception finalException) {
+            for (Listener listener : listeners) {
+                listener.onDownloadChanged(download);
+            }
+            maybeScheduleProgress();
+        }
+
+        @Override
+        public void onDownloadRemoved(@NonNull DownloadManager downloadManager, @NonNull Download download) {
+            for (Listener listener : listeners) {
+                listener.onDownloadRemoved(download);
+            }
+        }
+
+        @Override
+        public void onWaitingForRequirementsChanged(@NonNull DownloadManager downloadManager, boolean waitingForRequirements) {
+            for (Listener listener : listeners) {
+                listener.onWaitingForRequirementsChanged(waitingForRequirements);
+            }
+            if (!waitingForRequirements) {
+                maybeScheduleProgress();
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.upstream.BaseDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceException;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把后续的字节范围拆成多个并行的 HTTP 范围请求的 {@link DataSource}，用于高延迟网络下加快渐进式 MP4 的起播。
+ * <p>
+ * 第一个分块用当前连接读取，同时从响应的 {@code Content-Range} 得到总长度，之后的分块并行请求并按顺序交给调用方，
+ * 调用方可以读取正在下载的分块中已经到达的部分。分块大小按每个连接测得的吞吐量调整，使每个请求大约持续
+ * {@link #TARGET_CHUNK_DURATION_MS}，请求延迟只占小部分；已请求未读取的字节不超过内存上限。
+ * 服务器不支持范围请求、请求允许 gzip 或不是 HTTP 请求时退回单个连接顺序读取。
+ * <p>
+ * 所有实例共用最多 {@link #MAX_DOWNLOAD_THREADS} 个守护线程下载分块，空闲的线程会退出。关闭时正在下载的分块的连接也被关闭。
+ */
+public final class ParallelRangeDataSource extends BaseDataSource {
+
+    /**
+     * {@link ParallelRangeDataSource} 的工厂.
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+        private int maxParallelRequests;
+        private int initialChunkSize;
+        private int maxChunkSize;
+        private long maxBufferedBytes;
+
+        /**
+         * Creates a factory.
+         *
+         * @param upstreamFactory The factory of the HTTP {@link DataSource} used for every request.
+         */
+        public Factory(DataSource.Factory upstreamFactory) {
+            this.upstreamFactory = upstreamFactory;
+            maxParallelRequests = DEFAULT_MAX_PARALLEL_REQUESTS;
+            initialChunkSize = DEFAULT_INITIAL_CHUNK_SIZE;
+            maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+            maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+        }
+
+        /**
+         * Sets the maximum number of parallel range requests of a data source.
+         *
+         * @param maxParallelRequests The maximum number of parallel requests. Must be positive.
+         * @return This factory.
+         */
+        public Factory setMaxParallelRequests(int maxParallelRequests) {
+            Assertions.checkArgument(maxParallelRequests > 0);
+            this.maxParallelRequests = maxParallelRequests;
+            return this;
+        }
+
+        /**
+         * Sets the minimum and maximum chunk sizes. Chunks start at the minimum size and grow with
+         * the measured throughput.
+         *
+         * @param initialChunkSize The minimum chunk size, in bytes.
+         * @param maxChunkSize     The maximum chunk size, in bytes.
+         * @return This factory.
+         */
+        public Factory setChunkSizes(int initialChunkSize, int maxChunkSize) {
+            Assertions.checkArgument(initialChunkSize > 0 && maxChunkSize >= initialChunkSize);
+            this.initialChunkSize = initialChunkSize;
+            this.maxChunkSize = maxChunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes a data source requests ahead of the reader.
+         *
+         * @param maxBufferedBytes The maximum number of bytes requested but not read.
+         * @return This factory.
+         */
+        public Factory setMaxBufferedBytes(long maxBufferedBytes) {
+            Assertions.checkArgument(maxBufferedBytes > 0);
+            this.maxBufferedBytes = maxBufferedBytes;
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public ParallelRangeDataSource createDataSource() {
+            return new ParallelRangeDataSource(upstreamFactory, getDownloadExecutor(), maxParallelRequests, initialChunkSize, maxChunkSize, maxBufferedBytes);
+        }
+    }
+
+    /**
+     * The default maximum number of parallel range requests.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_REQUESTS = 4;
+    /**
+     * The default minimum chunk size, in bytes.
+     */
+    public static final int DEFAULT_INITIAL_CHUNK_SIZE = 256 * 1024;
+    /**
+     * The default maximum chunk size, in bytes.
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    /**
+     * The default maximum number of bytes requested but not read.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 16 * 1024 * 1024;
+    /**
+     * The duration a chunk request should take at the measured throughput, in milliseconds.
+     */
+    public static final long TARGET_CHUNK_DURATION_MS = 1000;
+    /**
+     * The maximum number of threads downloading chunks, shared by all instances.
+     */
+    public static final int MAX_DOWNLOAD_THREADS = 8;
+
+    private static final String TAG = "ParallelRangeDataSource";
+    private static final long THREAD_KEEP_ALIVE_MS = 10_000;
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    @Nullable
+    private static ExecutorService downloadExecutor;
+
+    private final DataSource.Factory upstreamFactory;
+    private final ExecutorService executor;
+    private final int maxParallelRequests;
+    private final int initialChunkSize;
+    private final int maxChunkSize;
+    private final long maxBufferedBytes;
+    /**
+     * 保护 {@link Chunk} 的下载状态，下载线程有进展时通知读取线程
+     **/
+    private final Object lock;
+    /**
+     * 已请求、未读完的分块，按位置排序
+     **/
+    private final ArrayDeque<Chunk> chunks;
+
+    @Nullable
+    private DataSpec dataSpec;
+    /**
+     * 打开时使用的连接：并行时只读取第一个分块，否则读取全部数据
+     **/
+    @Nullable
+    private DataSource primary;
+    @Nullable
+    private Uri uri;
+    private Map<String, List<String>> responseHeaders;
+    private boolean parallel;
+    private long primaryBytesRemaining;
+    private long nextChunkPosition;
+    private long endPosition;
+    private int nextChunkSize;
+    private long bufferedBytes;
+    private long bytesRemaining;
+    private boolean opened;
+
+    private ParallelRangeDataSource(DataSource.Factory upstreamFactory, ExecutorService executor, int maxParallelRequests, int initialChunkSize, int maxChunkSize, long maxBufferedBytes) {
+        super(/* isNetwork= */ true);
+        this.upstreamFactory = upstreamFactory;
+        this.executor = executor;
+        this.maxParallelRequests = maxParallelRequests;
+        this.initialChunkSize = initialChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.maxBufferedBytes = maxBufferedBytes;
+        lock = new Object();
+        chunks = new ArrayDeque<>();
+        responseHeaders = Collections.emptyMap();
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        this.dataSpec = dataSpec;
+        transferInitializing(dataSpec);
+        DataSource primary = upstreamFactory.createDataSource();
+        this.primary = primary;
+        parallel = false;
+        if (isParallelizable(dataSpec)) {
+            long firstChunkLength = dataSpec.length == C.LENGTH_UNSET ? initialChunkSize : Math.min(initialChunkSize, dataSpec.length);
+            primaryBytesRemaining = primary.open(dataSpec.subrange(/* offset= */ 0, firstChunkLength));
+            long totalLength = getTotalLength(primary.getResponseHeaders());
+            if (totalLength != C.LENGTH_UNSET && primaryBytesRemaining == firstChunkLength) {
+                parallel = true;
+                endPosition = dataSpec.length == C.LENGTH_UNSET ? totalLength : Math.min(totalLength, dataSpec.position + dataSpec.length);
+                bytesRemaining = endPosition - dataSpec.position;
+                nextChunkPosition = dataSpec.position + firstChunkLength;
+                nextChunkSize = initialChunkSize;
+                bufferedBytes = 0;
+            } else {
+                // 服务器忽略了范围请求，重新用一个连接顺序读取。
+                primary.close();
+            }
+        }
+        if (!parallel) {
+            bytesRemaining = primary.open(dataSpec);
+        }
+        uri = primary.getUri();
+        responseHeaders = primary.getResponseHeaders();
+        opened = true;
+        transferStarted(dataSpec);
+        if (parallel) {
+            scheduleChunks();
+        }
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int bytesRead;
+        if (!parallel) {
+            bytesRead = Assertions.checkNotNull(primary).read(buffer, offset, length);
+            if (bytesRead != C.RESULT_END_OF_INPUT) {
+                bytesTransferred(bytesRead);
+            }
+            return bytesRead;
+        }
+        if (bytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        if (primaryBytesRemaining > 0) {
+            DataSource primary = Assertions.checkNotNull(this.primary);
+            bytesRead = primary.read(buffer, offset, (int) Math.min(length, primaryBytesRemaining));
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                throw new DataSourceException(new EOFException(), PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+            }
+            primaryBytesRemaining -= bytesRead;
+            if (primaryBytesRemaining == 0) {
+                this.primary = null;
+                primary.close();
+            }
+        } else {
+            bytesRead = readChunk(buffer, offset, length);
+        }
+        bytesRemaining -= bytesRead;
+        bytesTransferred(bytesRead);
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<DataSource> chunkDataSources = new ArrayList<>();
+        synchronized (lock) {
+            for (Chunk chunk : chunks) {
+                chunk.canceled = true;
+                if (chunk.dataSource != null) {
+                    chunkDataSources.add(chunk.dataSource);
+                }
+            }
+        }
+        // 关闭连接使阻塞在读取中的下载线程立即返回，而不是读完整个分块。
+        for (int i = 0; i < chunkDataSources.size(); i++) {
+            DataSourceUtil.closeQuietly(chunkDataSources.get(i));
+        }
+        chunks.clear();
+        bufferedBytes = 0;
+        dataSpec = null;
+        uri = null;
+        responseHeaders = Collections.emptyMap();
+        try {
+            if (primary != null) {
+                primary.close();
+            }
+        } finally {
+            primary = null;
+            if (opened) {
+                opened = false;
+                transferEnded();
+            }
+        }
+    }
+
+    /**
+     * Returns the executor shared by all instances, creating it if needed.
+     */
+    private static synchronized ExecutorService getDownloadExecutor() {
+        if (downloadExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_DOWNLOAD_THREADS, MAX_DOWNLOAD_THREADS, THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            downloadExecutor = executor;
+        }
+        return downloadExecutor;
+    }
+
+    private boolean isParallelizable(DataSpec dataSpec) {
+        @Nullable String scheme = dataSpec.uri.getScheme();
+        return ("http".equals(scheme) || "https".equals(scheme)) && dataSpec.httpMethod == DataSpec.HTTP_METHOD_GET && !dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP) && (dataSpec.length == C.LENGTH_UNSET || dataSpec.length > 2L * initialChunkSize);
+    }
+
+    /**
+     * 从 {@code Content-Range} 响应头得到资源的总长度，不是范围响应时返回 {@link C#LENGTH_UNSET}。
+     */
+    /* package */ static long getTotalLength(Map<String, List<String>> headers) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() == null || !"Content-Range".equalsIgnoreCase(header.getKey()) || header.getValue().isEmpty()) {
+                continue;
+            }
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(header.getValue().get(0));
+            if (matcher.find()) {
+                return Long.parseLong(Assertions.checkNotNull(matcher.group(3)));
+            }
+        }
+        return C.LENGTH_UNSET;
+    }
+
+    /**
+     * 在并行数和内存上限内请求后续的分块.
+     */
+    private void scheduleChunks() {
+        DataSpec dataSpec = Assertions.checkNotNull(this.dataSpec);
+        synchronized (lock) {
+            int activeRequests = 0;
+            for (Chunk chunk : chunks) {
+                if (!chunk.finished) {
+                    activeRequests++;
+                }
+            }
+            while (activeRequests < maxParallelRequests && nextChunkPosition < endPosition) {
+                int length = (int) Math.min(nextChunkSize, endPosition - nextChunkPosition);
+                if (bufferedBytes + length > maxBufferedBytes && !chunks.isEmpty()) {
+                    break;
+                }
+                Chunk chunk = new Chunk(length);
+                DataSpec chunkSpec = dataSpec.subrange(nextChunkPosition - dataSpec.position, length);
+                chunks.add(chunk);
+                bufferedBytes += length;
+                nextChunkPosition += length;
+                activeRequests++;
+                executor.execute(() -> download(chunk, chunkSpec));
+            }
+        }
+    }
+
+    private int readChunk(byte[] buffer, int offset, int length) throws IOException {
+        if (chunks.isEmpty()) {
+            scheduleChunks();
+        }
+        Chunk chunk = Assertions.checkNotNull(chunks.peek());
+        int available;
+        synchronized (lock) {
+            while (chunk.downloaded == chunk.readOffset && chunk.error == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                // 其他分块可能已经完成，补上空出的请求。
+                scheduleChunks();
+            }
+            if (chunk.downloaded == chunk.readOffset) {
+                throw Assertions.checkNotNull(chunk.error);
+            }
+            available = chunk.downloaded - chunk.readOffset;
+        }
+        int bytesRead = Math.min(length, available);
+        System.arraycopy(chunk.data, chunk.readOffset, buffer, offset, bytesRead);
+        chunk.readOffset += bytesRead;
+        if (chunk.readOffset == chunk.data.length) {
+            chunks.remove();
+            bufferedBytes -= chunk.data.length;
+            updateChunkSize(chunk);
+            scheduleChunks();
+        }
+        return bytesRead;
+    }
+
+    private void updateChunkSize(Chunk chunk) {
+        long elapsedMs = chunk.endTimeMs - chunk.startTimeMs;
+        if (elapsedMs > 0) {
+            long bytesPerSecond = chunk.data.length * 1000L / elapsedMs;
+            nextChunkSize = (int) Util.constrainValue(bytesPerSecond * TARGET_CHUNK_DURATION_MS / 1000, initialChunkSize, maxChunkSize);
+        }
+    }
+
+    /**
+     * 在下载线程中请求一个分块.
+     */
+    private void download(Chunk chunk, DataSpec chunkSpec) {
+        DataSource dataSource = upstreamFactory.createDataSource();
+        synchronized (lock) {
+            if (chunk.canceled) {
+                // 排队期间数据源已经关闭。
+                chunk.finished = true;
+                return;
+            }
+            chunk.dataSource = dataSource;
+        }
+        chunk.startTimeMs = SystemClock.elapsedRealtime();
+        try {
+            dataSource.open(chunkSpec);
+            int downloaded = 0;
+            while (downloaded < chunk.data.length && !chunk.canceled) {
+                int bytesRead = dataSource.read(chunk.data, downloaded, chunk.data.length - downloaded);
+                if (bytesRead == C.RESULT_END_OF_INPUT) {
+                    throw new DataSourceException(new EOFException(), PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+                }
+                downloaded += bytesRead;
+                if (downloaded == chunk.data.length) {
+                    chunk.endTimeMs = SystemClock.elapsedRealtime();
+                }
+                synchronized (lock) {
+                    chunk.downloaded = downloaded;
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                chunk.error = e;
+            }
+        } finally {
+            DataSourceUtil.closeQuietly(dataSource);
+            synchronized (lock) {
+                chunk.dataSource = null;
+                chunk.finished = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 一个范围请求的数据.
+     */
+    private static final class Chunk {
+
+        public final byte[] data;
+        /**
+         * 读取线程已经读取的字节数，只在读取线程访问
+         **/
+        public int readOffset;
+        public int downloaded;
+        public boolean finished;
+        @Nullable
+        public IOException error;
+        /**
+         * 正在下载这个分块的连接，取消时由读取线程关闭
+         **/
+        @Nullable
+        public DataSource dataSource;
+        public volatile boolean canceled;
+        public volatile long startTimeMs;
+        public volatile long endTimeMs;
+
+        public Chunk(int length) {
+            data = new byte[length];
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.exoplayer.video;
+
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import android.os.Handler;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 播放错误的自动恢复策略。
+ * <p>
+ * 将 {@link PlaybackException} 分为网络错误、解码器错误和落后于直播窗口三类，并按指数退避重试。
+ * 重试通过 {@link Player#prepare()} 完成，播放器会从当前位置重新准备，因此缓存和轨道选择都会保留。
+ * 落后于直播窗口时，会先跳转到直播边缘再重新准备。
+ * <p>
+ * 通过 {@link ExoVideoView#setPlaybackErrorRecovery(PlaybackErrorRecovery)} 使用时，错误视图只会在重试用尽后显示。
+ * 所有方法必须在主线程调用。
+ */
+public final class PlaybackErrorRecovery {
+
+    /**
+     * 错误类型。{@link #ERROR_TYPE_UNRECOVERABLE}、{@link #ERROR_TYPE_NETWORK}、{@link #ERROR_TYPE_DECODER} 或
+     * {@link #ERROR_TYPE_BEHIND_LIVE_WINDOW} 之一。
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(TYPE_USE)
+    @IntDef({ERROR_TYPE_UNRECOVERABLE, ERROR_TYPE_NETWORK, ERROR_TYPE_DECODER, ERROR_TYPE_BEHIND_LIVE_WINDOW})
+    public @interface ErrorType {
+    }
+
+    /**
+     * 无法通过重试恢复的错误.
+     */
+    public static final int ERROR_TYPE_UNRECOVERABLE = 0;
+    /**
+     * 网络连接失败、超时或服务端临时错误.
+     */
+    public static final int ERROR_TYPE_NETWORK = 1;
+    /**
+     * 解码器初始化或解码失败.
+     */
+    public static final int ERROR_TYPE_DECODER = 2;
+    /**
+     * 播放位置已落后于直播窗口.
+     */
+    public static final int ERROR_TYPE_BEHIND_LIVE_WINDOW = 3;
+
+    /**
+     * The default maximum number of consecutive retries.
+     */
+    public static final int DEFAULT_MAX_RETRY_COUNT = 5;
+    /**
+     * The default delay before the first retry, in milliseconds.
+     */
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 500;
+    /**
+     * The default upper bound of the retry delay, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_BACKOFF_MS = 16_000;
+    /**
+     * The time the player must stay ready after a retry before the retry count is reset, in
+     * milliseconds.
+     */
+    public static final long STABLE_PLAYBACK_MS = 10_000;
+
+    /**
+     * 解码器错误多数是确定性的，只重试有限次数
+     **/
+    private static final int MAX_DECODER_RETRY_COUNT = 2;
+
+    private final Handler handler;
+    private final Runnable retryRunnable;
+    private final Runnable resetRunnable;
+    private final int maxRetryCount;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    @Nullable
+    private Player player;
+    private @ErrorType int pendingErrorType;
+    private boolean retryPending;
+    private int retryCount;
+
+    /**
+     * Creates an instance with the default retry count and backoff.
+     */
+    public PlaybackErrorRecovery() {
+        this(DEFAULT_MAX_RETRY_COUNT, DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxRetryCount    The maximum number of consecutive retries before the error is surfaced.
+     * @param initialBackoffMs The delay before the first retry, in milliseconds. Each further retry
+     *                         doubles the delay.
+     * @param maxBackoffMs     The upper bound of the retry delay, in milliseconds.
+     */
+    public PlaybackErrorRecovery(int maxRetryCount, long initialBackoffMs, long maxBackoffMs) {
+        Assertions.checkArgument(maxRetryCount >= 0 && initialBackoffMs >= 0 && maxBackoffMs >= initialBackoffMs);
+        this.maxRetryCount = maxRetryCount;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        handler = Util.createHandlerForCurrentOrMainLooper();
+        retryRunnable = this::retry;
+        resetRunnable = () -> retryCount = 0;
+    }
+
+    /**
+     * Returns the {@link ErrorType} of a {@link PlaybackException}.
+     *
+     * @param error The error to classify.
+     * @return The {@link ErrorType}.
+     */
+    public static @ErrorType int getErrorType(PlaybackException error) {
+        switch (error.errorCode) {
+            case PlaybackException.ERROR_CODE_BEHIND_LIVE_WINDOW:
+                return ERROR_TYPE_BEHIND_LIVE_WINDOW;
+            case PlaybackException.ERROR_CODE_TIMEOUT:
+            case PlaybackException.ERROR_CODE_IO_UNSPECIFIED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_FAILED:
+            case PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_TIMEOUT:
+                return ERROR_TYPE_NETWORK;
+            case PlaybackException.ERROR_CODE_IO_BAD_HTTP_STATUS:
+                return isTransientHttpError(error) ? ERROR_TYPE_NETWORK : ERROR_TYPE_UNRECOVERABLE;
+            case PlaybackException.ERROR_CODE_DECODER_INIT_FAILED:
+            case PlaybackException.ERROR_CODE_DECODING_FAILED:
+                return ERROR_TYPE_DECODER;
+            default:
+                return ERROR_TYPE_UNRECOVERABLE;
+        }
+    }
+
+    /**
+     * Called when the player reports an error. Schedules a retry if the error is recoverable and
+     * retries are not exhausted.
+     *
+     * @param player The player that reported the error.
+     * @param error  The error.
+     * @return Whether a retry was scheduled. If {@code false} the error should be shown to the user.
+     */
+    public boolean onPlayerError(Player player, PlaybackException error) {
+        @ErrorType int errorType = getErrorType(error);
+        // 恢复后没有稳定播放就再次出错，继续累计重试次数。
+        handler.removeCallbacks(resetRunnable);
+        int retryLimit = errorType == ERROR_TYPE_DECODER ? Math.min(maxRetryCount, MAX_DECODER_RETRY_COUNT) : maxRetryCount;
+        if (errorType == ERROR_TYPE_UNRECOVERABLE || retryCount >= retryLimit) {
+            cancelRetry();
+            return false;
+        }
+        // 落后于直播窗口不是临时故障，立即回到直播边缘即可。
+        long delayMs = errorType == ERROR_TYPE_BEHIND_LIVE_WINDOW ? 0 : getBackoffMs(retryCount);
+        retryCount++;
+        this.player = player;
+        pendingErrorType = errorType;
+        retryPending = true;
+        handler.removeCallbacks(retryRunnable);
+        handler.postDelayed(retryRunnable, delayMs);
+        return true;
+    }
+
+    /**
+     * Called when the playback state of the player changes. The retry count is reset once the
+     * player has stayed ready for {@link #STABLE_PLAYBACK_MS}, so that an error that recurs right
+     * after every successful preparation still exhausts the retries.
+     *
+     * @param playbackState The new {@link Player.State}.
+     */
+    public void onPlaybackStateChanged(@Player.State int playbackState) {
+        handler.removeCallbacks(resetRunnable);
+        if (playbackState == Player.STATE_READY && retryCount > 0) {
+            handler.postDelayed(resetRunnable, STABLE_PLAYBACK_MS);
+        }
+    }
+
+    /**
+     * Returns whether a retry is scheduled and the current error should not be shown yet.
+     */
+    public boolean isRecovering() {
+        return retryPending;
+    }
+
+    /**
+     * Returns the number of retries since playback was last stable.
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Cancels any scheduled retry and resets the retry count. Should be called when the player is
+     * replaced.
+     */
+    public void reset() {
+        cancelRetry();
+        handler.removeCallbacks(resetRunnable);
+        retryCount = 0;
+    }
+
+    private void cancelRetry() {
+        handler.removeCallbacks(retryRunnable);
+        retryPending = false;
+        player = null;
+    }
+
+    private long getBackoffMs(int retryIndex) {
+        return Math.min(maxBackoffMs, initialBackoffMs << Math.min(retryIndex, 20));
+    }
+
+    private void retry() {
+        @Nullable Player player = this.player;
+        retryPending = false;
+        this.player = null;
+        if (player == null || player.getPlayerError() == null) {
+            // 应用已经自行处理了错误。
+            return;
+        }
+        if (pendingErrorType == ERROR_TYPE_BEHIND_LIVE_WINDOW) {
+            player.seekToDefaultPosition();
+        }
+        player.prepare();
+    }
+
+    private static boolean isTransientHttpError(PlaybackException error) {
+        if (!(error.getCause() instanceof HttpDataSource.InvalidResponseCodeException)) {
+            return false;
+        }
+        int responseCode = ((HttpDataSource.InvalidResponseCodeException) error.getCause()).responseCode;
+        return responseCode >= 500 || responseCode == 408 || responseCode == 429;
+    }
+}
@@ -0,0 +1,86 @@
+package com.exoplayer.video;
+
+import android.view.KeyEvent;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.Player;
+
+/**
+ * {@link ExoVideoView} 与播放控制器之间的接口。
+ * <p>
+ * 由 {@link StyledControllerAdapter}（包装 {@link com.google.android.exoplayer2.ui.StyledPlayerControlView}）和
+ * {@link ExoControlView} 实现。
+ */
+/* package */ interface PlayerController {
+
+    /**
+     * Returns the controller view.
+     */
+    View getView();
+
+    /**
+     * Sets the {@link Player} to control, or {@code null} to detach the current player.
+     */
+    void setPlayer(@Nullable Player player);
+
+    /**
+     * Shows the controller and restarts the show timeout.
+     */
+    void show();
+
+    /**
+     * Hides the controller.
+     */
+    void hide();
+
+    /**
+     * Hides the controller without any animation.
+     */
+    void hideImmediately();
+
+    /**
+     * Returns whether the controller is fully visible.
+     */
+    boolean isFullyVisible();
+
+    /**
+     * Returns the show timeout in milliseconds.
+     */
+    int getShowTimeoutMs();
+
+    /**
+     * Sets the show timeout in milliseconds. A non-positive value keeps the controller visible
+     * indefinitely.
+     */
+    void setShowTimeoutMs(int showTimeoutMs);
+
+    /**
+     * Handles a media key event.
+     *
+     * @return Whether the key event was handled.
+     */
+    boolean dispatchMediaKeyEvent(KeyEvent event);
+
+    /**
+     * Sets the extra ad markers shown on the time bar.
+     */
+    void setExtraAdGroupMarkers(@Nullable long[] extraAdGroupTimesMs, @Nullable boolean[] extraPlayedAdGroups);
+
+    /**
+     * Sets the {@link MarkerIndex} whose markers are shown on the time bar instead of the extra ad
+     * markers.
+     */
+    void setMarkerIndex(@Nullable MarkerIndex markerIndex);
+
+    /**
+     * Sets the listener notified about controller visibility changes.
+     */
+    void setVisibilityListener(@Nullable ExoVideoView.ControllerVisibilityListener listener);
+
+    /**
+     * Sets the listener notified when the fullscreen button is clicked.
+     */
+    void setFullscreenButtonClickListener(@Nullable ExoVideoView.FullscreenButtonClickListener listener);
+}
@@ -0,0 +1,278 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+
+/**
+ * 创建与本库功能配套的 {@link ExoPlayer}。
+ * <p>
+ * 一些功能需要在播放器创建时安装组件（例如加载控制），这里集中完成，应用只需设置需要的功能后调用 {@link #build()}。
+ */
+public final class PlayerFactory {
+
+    private final Context context;
+    @Nullable
+    private DataSaverProfile dataSaverProfile;
+    @Nullable
+    private InstantReplay instantReplay;
+    @Nullable
+    private ClipMemoryCache clipMemoryCache;
+    private MemoryLoopDataSource.ClipPredicate clipPredicate;
+    @Nullable
+    private OfflineDownloads offlineDownloads;
+    private boolean memoryMappedFiles;
+    private int maxParallelRangeRequests;
+    private boolean fastStart;
+    @Nullable
+    private ConnectionPrewarmer connectionPrewarmer;
+    @Nullable
+    private DrmLicenseManager drmLicenseManager;
+    @Nullable
+    private DecoderQueryCache decoderQueryCache;
+
+    /**
+     * Creates an instance.
+     *
+     * @param context A {@link Context}.
+     */
+    public PlayerFactory(Context context) {
+        this.context = context.getApplicationContext();
+        clipPredicate = MemoryLoopDataSource.DEFAULT_CLIP_PREDICATE;
+    }
+
+    /**
+     * Sets the {@link DataSaverProfile} whose buffer and prefetch limits are applied by the players'
+     * load control. The bitrate cap is applied by {@link
+     * ExoVideoView#setDataSaverProfile(DataSaverProfile)}.
+     *
+     * @param dataSaverProfile The {@link DataSaverProfile}, or {@code null} to use the default load
+     *                         control.
+     * @return This factory.
+     */
+    public PlayerFactory setDataSaverProfile(@Nullable DataSaverProfile dataSaverProfile) {
+        this.dataSaverProfile = dataSaverProfile;
+        return this;
+    }
+
+    /**
+     * Sets the {@link InstantReplay} whose back buffer is retained by the players' load control and
+     * whose rewind increment is used as the seek back increment.
+     *
+     * @param instantReplay The {@link InstantReplay}, or {@code null} to retain no back buffer.
+     * @return This factory.
+     */
+    public PlayerFactory setInstantReplay(@Nullable InstantReplay instantReplay) {
+        this.instantReplay = instantReplay;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ClipMemoryCache} from which fully read clips are served again, so that short
+     * clips played with {@link com.google.android.exoplayer2.Player#REPEAT_MODE_ONE} loop from
+     * memory.
+     *
+     * @param clipMemoryCache The {@link ClipMemoryCache}, typically {@link
+     *                        ClipMemoryCache#getInstance()}, or {@code null} to read clips from the
+     *                        upstream each time.
+     * @return This factory.
+     */
+    public PlayerFactory setClipMemoryCache(@Nullable ClipMemoryCache clipMemoryCache) {
+        return setClipMemoryCache(clipMemoryCache, MemoryLoopDataSource.DEFAULT_CLIP_PREDICATE);
+    }
+
+    /**
+     * Sets the {@link ClipMemoryCache} from which fully read clips are served again, recording only
+     * the data accepted by a {@link MemoryLoopDataSource.ClipPredicate}.
+     *
+     * @param clipMemoryCache The {@link ClipMemoryCache}, or {@code null} to read clips from the
+     *                        upstream each time.
+     * @param clipPredicate   The {@link MemoryLoopDataSource.ClipPredicate} selecting the data that
+     *                        is recorded.
+     * @return This factory.
+     */
+    public PlayerFactory setClipMemoryCache(@Nullable ClipMemoryCache clipMemoryCache, MemoryLoopDataSource.ClipPredicate clipPredicate) {
+        this.clipMemoryCache = clipMemoryCache;
+        this.clipPredicate = clipPredicate;
+        return this;
+    }
+
+    /**
+     * Sets the {@link OfflineDownloads} whose downloaded content is read by the players instead of
+     * the network.
+     *
+     * @param offlineDownloads The {@link OfflineDownloads}, or {@code null} to always read from the
+     *                         network.
+     * @return This factory.
+     */
+    public PlayerFactory setOfflineDownloads(@Nullable OfflineDownloads offlineDownloads) {
+        this.offlineDownloads = offlineDownloads;
+        return this;
+    }
+
+    /**
+     * Sets whether local files, including downloaded content, are read through a {@link
+     * MappedFileDataSource} instead of a {@link com.google.android.exoplayer2.upstream.FileDataSource}.
+     * Mapping saves a system call per read, which matters for high bitrate local files.
+     *
+     * @param memoryMappedFiles Whether local files are read through a mapping. Default false.
+     * @return This factory.
+     */
+    public PlayerFactory setMemoryMappedFiles(boolean memoryMappedFiles) {
+        this.memoryMappedFiles = memoryMappedFiles;
+        return this;
+    }
+
+    /**
+     * Sets the number of parallel HTTP range requests used to read progressive streams. Splitting
+     * the stream over several connections speeds up startup on high latency links, where one
+     * connection is limited by its TCP window.
+     *
+     * @param maxParallelRangeRequests The maximum number of parallel range requests per stream, or
+     *                                 1 to read each stream over a single connection. Default 1.
+     * @return This factory.
+     * @see ParallelRangeDataSource
+     */
+    public PlayerFactory setParallelRangeRequests(int maxParallelRangeRequests) {
+        this.maxParallelRangeRequests = maxParallelRangeRequests;
+        return this;
+    }
+
+    /**
+     * Sets whether MP4 files streamed over HTTP start fast when their {@code moov} box is at the
+     * end. The box layout is probed with range requests and the {@code moov} box is fetched and
+     * kept in memory before the extractor asks for it.
+     *
+     * @param fastStart Whether fast start is enabled. Default false.
+     * @return This factory.
+     * @see FastStartDataSource
+     */
+    public PlayerFactory setFastStart(boolean fastStart) {
+        this.fastStart = fastStart;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ConnectionPrewarmer} that warms connections to the hosts of the players'
+     * upcoming playlist items.
+     *
+     * @param connectionPrewarmer The {@link ConnectionPrewarmer}, or {@code null} to not warm
+     *                            connections.
+     * @return This factory.
+     */
+    public PlayerFactory setConnectionPrewarmer(@Nullable ConnectionPrewarmer connectionPrewarmer) {
+        this.connectionPrewarmer = connectionPrewarmer;
+        return this;
+    }
+
+    /**
+     * Sets the {@link DrmLicenseManager} whose stored licenses are used by the players' DRM
+     * sessions, and which prefetches the licenses of the players' upcoming playlist items.
+     *
+     * @param drmLicenseManager The {@link DrmLicenseManager}, or {@code null} to request licenses
+     *                          when playback starts.
+     * @return This factory.
+     */
+    public PlayerFactory setDrmLicenseManager(@Nullable DrmLicenseManager drmLicenseManager) {
+        this.drmLicenseManager = drmLicenseManager;
+        return this;
+    }
+
+    /**
+     * Sets the {@link DecoderQueryCache} through which the players' renderers query decoders, so
+     * that the queries are recorded and can be prefetched in later process starts.
+     *
+     * @param decoderQueryCache The {@link DecoderQueryCache}, or {@code null} to query decoders
+     *                          directly.
+     * @return This factory.
+     */
+    public PlayerFactory setDecoderQueryCache(@Nullable DecoderQueryCache decoderQueryCache) {
+        this.decoderQueryCache = decoderQueryCache;
+        return this;
+    }
+
+    /**
+     * Builds an {@link ExoPlayer} using the configured components.
+     */
+    public ExoPlayer build() {
+        ExoPlayer.Builder builder = new ExoPlayer.Builder(context);
+        DefaultLoadControl.Builder loadControlBuilder = new DefaultLoadControl.Builder();
+        if (dataSaverProfile != null) {
+            int maxBufferMs = DataSaverLoadControl.getMaxBufferMs(dataSaverProfile);
+            loadControlBuilder.setBufferDurationsMs(Math.min(DefaultLoadControl.DEFAULT_MIN_BUFFER_MS, maxBufferMs), maxBufferMs, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+        }
+        if (instantReplay != null) {
+            // 从关键帧开始保留，回退时解码器不必从更早的位置解起。
+            loadControlBuilder.setBackBuffer(instantReplay.getBackBufferMs(), /* retainBackBufferFromKeyframe= */ true);
+            builder.setSeekBackIncrementMs(instantReplay.getRewindIncrementMs());
+        }
+        if (decoderQueryCache != null) {
+            builder.setRenderersFactory(new DefaultRenderersFactory(context).setMediaCodecSelector(decoderQueryCache.getMediaCodecSelector()));
+        }
+        @Nullable DataSource.Factory dataSourceFactory = buildDataSourceFactory();
+        if (dataSourceFactory != null || drmLicenseManager != null) {
+            MediaSource.Factory mediaSourceFactory = dataSourceFactory != null ? new DefaultMediaSourceFactory(dataSourceFactory) : new DefaultMediaSourceFactory(context);
+            if (drmLicenseManager != null) {
+                mediaSourceFactory = new LicensedMediaSourceFactory(mediaSourceFactory, drmLicenseManager);
+            }
+            builder.setMediaSourceFactory(mediaSourceFactory);
+        }
+        DefaultLoadControl loadControl = loadControlBuilder.build();
+        @Nullable DataSaverLoadControl dataSaverLoadControl = null;
+        if (dataSaverProfile != null) {
+            dataSaverLoadControl = new DataSaverLoadControl(dataSaverProfile, loadControl);
+            builder.setLoadControl(dataSaverLoadControl);
+        } else {
+            builder.setLoadControl(loadControl);
+        }
+        ExoPlayer player = builder.build();
+        if (dataSaverLoadControl != null) {
+            player.addListener(dataSaverLoadControl);
+        }
+        if (connectionPrewarmer != null) {
+            connectionPrewarmer.attach(player);
+        }
+        if (drmLicenseManager != null) {
+            drmLicenseManager.attach(player);
+        }
+        return player;
+    }
+
+    /**
+     * 按设置的功能组合数据源，没有需要的功能时返回 null，使用播放器默认的数据源。
+     */
+    @Nullable
+    private DataSource.Factory buildDataSourceFactory() {
+        if (clipMemoryCache == null && offlineDownloads == null && !memoryMappedFiles && maxParallelRangeRequests <= 1 && !fastStart) {
+            return null;
+        }
+        // 由内向外：网络、本地文件、MP4 快速起播、离线下载的缓存、内存中的循环片段。
+        DataSource.Factory networkFactory = offlineDownloads != null ? offlineDownloads.getUpstreamFactory() : new DefaultHttpDataSource.Factory();
+        if (maxParallelRangeRequests > 1) {
+            networkFactory = new ParallelRangeDataSource.Factory(networkFactory).setMaxParallelRequests(maxParallelRangeRequests);
+        }
+        DataSource.Factory dataSourceFactory = new DefaultDataSource.Factory(context, networkFactory);
+        if (memoryMappedFiles) {
+            dataSourceFactory = new MappedFileDataSource.Factory(dataSourceFactory);
+        }
+        if (fastStart) {
+            dataSourceFactory = new FastStartDataSource.Factory(dataSourceFactory);
+        }
+        if (offlineDownloads != null) {
+            dataSourceFactory = offlineDownloads.createDataSourceFactory(dataSourceFactory, memoryMappedFiles);
+        }
+        if (clipMemoryCache != null) {
+            dataSourceFactory = new MemoryLoopDataSource.Factory(dataSourceFactory, clipMemoryCache, clipPredicate);
+        }
+        return dataSourceFactory;
+    }
+}
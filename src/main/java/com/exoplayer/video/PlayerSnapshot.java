@@ -0,0 +1,110 @@
+package com.exoplayer.video;
+
+import static com.google.android.exoplayer2.Player.COMMAND_GET_CURRENT_MEDIA_ITEM;
+import static com.google.android.exoplayer2.Player.COMMAND_PLAY_PAUSE;
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM;
+import static com.google.android.exoplayer2.Player.COMMAND_SET_TRACK_SELECTION_PARAMETERS;
+
+import android.os.Bundle;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.trackselection.TrackSelectionOverride;
+import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+
+/**
+ * {@link ExoVideoView} 保存的播放状态：媒体 id、位置、是否自动播放和轨道选择的覆盖。
+ */
+/* package */ final class PlayerSnapshot {
+
+    private static final String KEY_MEDIA_ID = "mediaId";
+    private static final String KEY_POSITION_MS = "positionMs";
+    private static final String KEY_PLAY_WHEN_READY = "playWhenReady";
+    private static final String KEY_OVERRIDES = "overrides";
+
+    public final String mediaId;
+    public final long positionMs;
+    public final boolean playWhenReady;
+    public final ImmutableList<TrackSelectionOverride> overrides;
+
+    private PlayerSnapshot(String mediaId, long positionMs, boolean playWhenReady, ImmutableList<TrackSelectionOverride> overrides) {
+        this.mediaId = mediaId;
+        this.positionMs = positionMs;
+        this.playWhenReady = playWhenReady;
+        this.overrides = overrides;
+    }
+
+    /**
+     * Returns the snapshot of a player, or {@code null} if it has no current media item or the item
+     * has no {@link MediaItem#mediaId}, in which case it can't be recognized after recreation.
+     */
+    @Nullable
+    public static PlayerSnapshot capture(Player player) {
+        @Nullable MediaItem mediaItem = player.isCommandAvailable(COMMAND_GET_CURRENT_MEDIA_ITEM) ? player.getCurrentMediaItem() : null;
+        if (mediaItem == null || MediaItem.DEFAULT_MEDIA_ID.equals(mediaItem.mediaId)) {
+            return null;
+        }
+        return new PlayerSnapshot(mediaItem.mediaId, player.getContentPosition(), player.getPlayWhenReady(), ImmutableList.copyOf(player.getTrackSelectionParameters().overrides.values()));
+    }
+
+    /**
+     * Returns whether the snapshot can be applied to a player, which is the case if it has just
+     * been set up with the same media item and has not started playing it. Items without a
+     * {@link MediaItem#mediaId} all share {@link MediaItem#DEFAULT_MEDIA_ID} and never match.
+     */
+    public boolean canApplyTo(Player player) {
+        @Nullable MediaItem mediaItem = player.isCommandAvailable(COMMAND_GET_CURRENT_MEDIA_ITEM) ? player.getCurrentMediaItem() : null;
+        return mediaItem != null && !MediaItem.DEFAULT_MEDIA_ID.equals(mediaId) && mediaItem.mediaId.equals(mediaId) && (player.getPlaybackState() == Player.STATE_IDLE || player.getContentPosition() == 0);
+    }
+
+    /**
+     * Applies the snapshot. Track selection overrides are set before seeking, so that the first
+     * track selection at the restored position already uses them. Overrides are added rather than
+     * set per type, so that overrides of several track groups of the same type are all restored.
+     */
+    public void applyTo(Player player) {
+        if (!overrides.isEmpty() && player.isCommandAvailable(COMMAND_SET_TRACK_SELECTION_PARAMETERS)) {
+            TrackSelectionParameters.Builder builder = player.getTrackSelectionParameters().buildUpon();
+            for (TrackSelectionOverride override : overrides) {
+                builder.addOverride(override);
+            }
+            player.setTrackSelectionParameters(builder.build());
+        }
+        if (player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM)) {
+            player.seekTo(positionMs);
+        }
+        if (player.isCommandAvailable(COMMAND_PLAY_PAUSE)) {
+            player.setPlayWhenReady(playWhenReady);
+        }
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(KEY_MEDIA_ID, mediaId);
+        bundle.putLong(KEY_POSITION_MS, positionMs);
+        bundle.putBoolean(KEY_PLAY_WHEN_READY, playWhenReady);
+        ArrayList<Bundle> overrideBundles = new ArrayList<>(overrides.size());
+        for (TrackSelectionOverride override : overrides) {
+            overrideBundles.add(override.toBundle());
+        }
+        bundle.putParcelableArrayList(KEY_OVERRIDES, overrideBundles);
+        return bundle;
+    }
+
+    public static PlayerSnapshot fromBundle(Bundle bundle) {
+        ImmutableList.Builder<TrackSelectionOverride> overrides = ImmutableList.builder();
+        @Nullable ArrayList<Bundle> overrideBundles = bundle.getParcelableArrayList(KEY_OVERRIDES);
+        if (overrideBundles != null) {
+            for (Bundle overrideBundle : overrideBundles) {
+                overrides.add(TrackSelectionOverride.CREATOR.fromBundle(overrideBundle));
+            }
+        }
+        return new PlayerSnapshot(Assertions.checkNotNull(bundle.getString(KEY_MEDIA_ID, MediaItem.DEFAULT_MEDIA_ID)), bundle.getLong(KEY_POSITION_MS), bundle.getBoolean(KEY_PLAY_WHEN_READY), overrides.build());
+    }
+}
@@ -0,0 +1,256 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 应用启动后在后台线程预热播放器，缩短进程中第一个 {@link ExoVideoView} 的起播时间。
+ * <p>
+ * 预热创建并释放一个播放器以加载播放器、渲染器和轨道选择的类，创建所有解析器，查询常用格式的解码器
+ * （{@link MediaCodecUtil} 会缓存结果），并可选地创建和释放一次解码器。预热线程使用低优先级，可以延迟开始，
+ * 不与应用自己的启动任务竞争。每一步只执行一次并报告其耗时；创建解析器和查询解码器的代价很小，
+ * 预热后再重复一次，两次的耗时差作为节省的时间报告。
+ * 需要在 {@code Application#onCreate} 中调用 {@link #start(Listener)}，每个进程只会预热一次。
+ */
+public final class PlayerWarmup {
+
+    /**
+     * 预热的结果.
+     */
+    public static final class Report {
+
+        /**
+         * 加载播放器相关类的耗时
+         **/
+        public final long classLoadingMs;
+        /**
+         * 创建解析器的耗时
+         **/
+        public final long extractorsMs;
+        /**
+         * 查询解码器的耗时
+         **/
+        public final long codecQueriesMs;
+        /**
+         * 创建解码器的耗时，未启用时为 0
+         **/
+        public final long codecInstantiationMs;
+        /**
+         * 之后第一次使用时节省的时间，即创建解析器和查询解码器预热前后的耗时差之和，不包括加载类和创建解码器
+         **/
+        public final long savedMs;
+
+        private Report(long classLoadingMs, long extractorsMs, long codecQueriesMs, long codecInstantiationMs, long savedMs) {
+            this.classLoadingMs = classLoadingMs;
+            this.extractorsMs = extractorsMs;
+            this.codecQueriesMs = codecQueriesMs;
+            this.codecInstantiationMs = codecInstantiationMs;
+            this.savedMs = savedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "classLoading=" + classLoadingMs + "ms, extractors=" + extractorsMs + "ms, codecQueries=" + codecQueriesMs + "ms, codecInstantiation=" + codecInstantiationMs + "ms, saved=" + savedMs + "ms";
+        }
+    }
+
+    /**
+     * 预热完成的监听.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the main thread when the warm-up completes.
+         *
+         * @param report The {@link Report}.
+         */
+        void onWarmupCompleted(Report report);
+    }
+
+    private static final String TAG = "PlayerWarmup";
+    /**
+     * 查询解码器的格式
+     **/
+    private static final String[] WARMUP_MIME_TYPES = {MimeTypes.VIDEO_H264, MimeTypes.VIDEO_H265, MimeTypes.VIDEO_VP9, MimeTypes.AUDIO_AAC};
+    /**
+     * 创建解码器的格式
+     **/
+    private static final String[] INSTANTIATION_MIME_TYPES = {MimeTypes.VIDEO_H264, MimeTypes.AUDIO_AAC};
+
+    private static boolean started;
+
+    private final Context context;
+    private boolean instantiateCodecs;
+    private int threadPriority;
+    private long startDelayMs;
+    @Nullable
+    private DecoderQueryCache decoderQueryCache;
+    @Nullable
+    private volatile Report report;
+
+    /**
+     * Creates an instance with background thread priority, no start delay and no codec
+     * instantiation.
+     *
+     * @param context A {@link Context}.
+     */
+    public PlayerWarmup(Context context) {
+        this.context = context.getApplicationContext();
+        threadPriority = Process.THREAD_PRIORITY_BACKGROUND;
+    }
+
+    /**
+     * Sets whether a decoder for each common format is created and released. This loads the codec
+     * libraries, at the cost of briefly holding a hardware decoder.
+     *
+     * @param instantiateCodecs Whether to instantiate codecs. Default false.
+     * @return This instance.
+     */
+    public PlayerWarmup setInstantiateCodecs(boolean instantiateCodecs) {
+        this.instantiateCodecs = instantiateCodecs;
+        return this;
+    }
+
+    /**
+     * Sets the priority of the warm-up thread.
+     *
+     * @param threadPriority A {@link Process} thread priority. Default {@link
+     *                       Process#THREAD_PRIORITY_BACKGROUND}.
+     * @return This instance.
+     */
+    public PlayerWarmup setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+        return this;
+    }
+
+    /**
+     * Sets the delay before the warm-up starts, to leave the first moments after app start to the
+     * app.
+     *
+     * @param startDelayMs The delay, in milliseconds. Default 0.
+     * @return This instance.
+     */
+    public PlayerWarmup setStartDelayMs(long startDelayMs) {
+        this.startDelayMs = startDelayMs;
+        return this;
+    }
+
+    /**
+     * Sets a {@link DecoderQueryCache} whose recorded queries are repeated in addition to the
+     * common formats.
+     *
+     * @param decoderQueryCache The {@link DecoderQueryCache}, or {@code null}.
+     * @return This instance.
+     */
+    public PlayerWarmup setDecoderQueryCache(@Nullable DecoderQueryCache decoderQueryCache) {
+        this.decoderQueryCache = decoderQueryCache;
+        return this;
+    }
+
+    /**
+     * Starts the warm-up on a background thread. Does nothing if a warm-up was already started in
+     * this process. Must be called on the main thread.
+     *
+     * @param listener A {@link Listener} notified when the warm-up completes, or {@code null}.
+     */
+    public void start(@Nullable Listener listener) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        if (started) {
+            return;
+        }
+        started = true;
+        HandlerThread thread = new HandlerThread("ExoVideo:Warmup", threadPriority);
+        thread.start();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        new Handler(thread.getLooper()).postDelayed(() -> {
+            Report report = warmUp();
+            this.report = report;
+            Log.d(TAG, "Warm-up completed: " + report);
+            thread.quit();
+            if (listener != null) {
+                mainHandler.post(() -> listener.onWarmupCompleted(report));
+            }
+        }, startDelayMs);
+    }
+
+    /**
+     * Returns the {@link Report}, or {@code null} if the warm-up has not completed.
+     */
+    @Nullable
+    public Report getReport() {
+        return report;
+    }
+
+    private Report warmUp() {
+        long classLoadingMs = measure(this::buildAndReleasePlayer);
+        Runnable createExtractors = () -> new DefaultExtractorsFactory().createExtractors();
+        long extractorsMs = measure(createExtractors);
+        long codecQueriesMs = measure(this::queryDecoders);
+        long codecInstantiationMs = instantiateCodecs ? measure(PlayerWarmup::instantiateDecoders) : 0;
+        // 只重复代价很小的步骤：解析器的类已经加载，解码器的查询结果已经缓存。再创建一个播放器或解码器的代价与第一次相当。
+        long savedMs = Math.max(0, extractorsMs - measure(createExtractors)) + Math.max(0, codecQueriesMs - measure(PlayerWarmup::queryCommonDecoders));
+        return new Report(classLoadingMs, extractorsMs, codecQueriesMs, codecInstantiationMs, savedMs);
+    }
+
+    private void buildAndReleasePlayer() {
+        ExoPlayer player = new ExoPlayer.Builder(context).setLooper(Assertions.checkNotNull(Looper.myLooper())).build();
+        player.release();
+    }
+
+    private void queryDecoders() {
+        if (decoderQueryCache != null) {
+            decoderQueryCache.prefetchBlocking();
+        }
+        queryCommonDecoders();
+    }
+
+    private static void queryCommonDecoders() {
+        for (String mimeType : WARMUP_MIME_TYPES) {
+            try {
+                MediaCodecUtil.getDecoderInfos(mimeType, /* secure= */ false, /* tunneling= */ false);
+            } catch (MediaCodecUtil.DecoderQueryException e) {
+                Log.w(TAG, "Failed to query decoders: " + mimeType, e);
+            }
+        }
+    }
+
+    private static void instantiateDecoders() {
+        for (String mimeType : INSTANTIATION_MIME_TYPES) {
+            try {
+                List<MediaCodecInfo> decoderInfos = MediaCodecUtil.getDecoderInfos(mimeType, /* secure= */ false, /* tunneling= */ false);
+                if (!decoderInfos.isEmpty()) {
+                    MediaCodec.createByCodecName(decoderInfos.get(0).name).release();
+                }
+            } catch (MediaCodecUtil.DecoderQueryException | IOException | RuntimeException e) {
+                Log.w(TAG, "Failed to instantiate decoder: " + mimeType, e);
+            }
+        }
+    }
+
+    /**
+     * 执行一次，返回耗时.
+     */
+    private static long measure(Runnable runnable) {
+        long startMs = SystemClock.elapsedRealtime();
+        runnable.run();
+        return SystemClock.elapsedRealtime() - startMs;
+    }
+}
@@ -0,0 +1,334 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+
+import androidx.annotation.DoNotInline;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在后台解码 {@link PosterSource}，按视图尺寸缩放，并缓存在内存和磁盘中。
+ * <p>
+ * 内存缓存占最大堆的 1/16，磁盘缓存位于 {@code cacheDir/exo_posters}，超过上限时删除最旧的文件。
+ * 回调总是在主线程执行。
+ */
+public final class PosterLoader {
+
+    /**
+     * 封面加载回调.
+     */
+    public interface Callback {
+
+        /**
+         * Called on the main thread when the poster was loaded.
+         *
+         * @param poster The decoded poster, or {@code null} if it could not be loaded.
+         */
+        void onPosterLoaded(@Nullable Bitmap poster);
+    }
+
+    /**
+     * 一次加载请求，可以取消.
+     */
+    public static final class Request {
+
+        private volatile boolean canceled;
+
+        private Request() {
+        }
+
+        /**
+         * Cancels the request. The callback will not be invoked after this call.
+         */
+        public void cancel() {
+            canceled = true;
+        }
+    }
+
+    private static final String TAG = "PosterLoader";
+    private static final String CACHE_DIR_NAME = "exo_posters";
+    private static final long MAX_DISK_CACHE_BYTES = 32 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+
+    @Nullable
+    private static PosterLoader instance;
+
+    private final Context context;
+    private final File cacheDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    private PosterLoader(Context context) {
+        this.context = context.getApplicationContext();
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        int maxMemoryBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, Integer.MAX_VALUE);
+        memoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        executor = Executors.newFixedThreadPool(2, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, TAG));
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Returns the process wide instance.
+     */
+    public static synchronized PosterLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new PosterLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Loads a poster scaled to fit a target size. A memory cache hit invokes the callback
+     * immediately; otherwise the poster is decoded in the background.
+     *
+     * @param source   The {@link PosterSource}.
+     * @param width    The target width in pixels.
+     * @param height   The target height in pixels.
+     * @param callback The callback, invoked on the main thread.
+     * @return A {@link Request} that can be used to cancel the load.
+     */
+    public Request load(PosterSource source, int width, int height, Callback callback) {
+        Request request = new Request();
+        String key = source.getCacheKey() + "@" + width + "x" + height;
+        @Nullable Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onPosterLoaded(cached);
+            return request;
+        }
+        executor.execute(() -> {
+            if (request.canceled) {
+                return;
+            }
+            @Nullable Bitmap poster = loadInBackground(source, key, width, height);
+            if (poster != null) {
+                memoryCache.put(key, poster);
+            }
+            mainHandler.post(() -> {
+                if (!request.canceled) {
+                    callback.onPosterLoaded(poster);
+                }
+            });
+        });
+        return request;
+    }
+
+    /**
+     * Removes all cached posters from memory and disk.
+     */
+    public void clearCache() {
+        memoryCache.evictAll();
+        executor.execute(() -> {
+            @Nullable File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    // Internal methods.
+
+    @Nullable
+    private Bitmap loadInBackground(PosterSource source, String key, int width, int height) {
+        File cacheFile = new File(cacheDir, md5(key) + ".jpg");
+        if (cacheFile.exists()) {
+            @Nullable Bitmap poster = BitmapFactory.decodeFile(cacheFile.getPath());
+            if (poster != null) {
+                //noinspection ResultOfMethodCallIgnored
+                cacheFile.setLastModified(System.currentTimeMillis());
+                return poster;
+            }
+        }
+        @Nullable Bitmap poster;
+        try {
+            poster = source.isVideoFrame() ? decodeVideoFrame(source, width, height) : decodeImage(source.uri, width, height);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to load poster " + source.uri, e);
+            return null;
+        }
+        if (poster != null) {
+            writeToDiskCache(poster, cacheFile);
+        }
+        return poster;
+    }
+
+    @Nullable
+    private Bitmap decodeImage(Uri uri, int width, int height) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = openInputStream(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        try (InputStream inputStream = openInputStream(uri)) {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeVideoFrame(PosterSource source, int width, int height) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, source.uri);
+            long positionUs = source.videoFramePositionMs * 1000;
+            if (Util.SDK_INT >= 27) {
+                return Api27.getScaledFrameAtTime(retriever, positionUs, width, height);
+            }
+            @Nullable Bitmap frame = retriever.getFrameAtTime(positionUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            return frame != null ? scaleToFit(frame, width, height) : null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                // Ignore.
+            }
+        }
+    }
+
+    private InputStream openInputStream(Uri uri) throws IOException {
+        @Nullable String scheme = uri.getScheme();
+        if ("http".equals(scheme) || "https".equals(scheme)) {
+            // 设置超时，停滞的主机不会一直占用加载线程。
+            HttpURLConnection connection = (HttpURLConnection) new URL(uri.toString()).openConnection();
+            connection.setConnectTimeout(DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS);
+            return connection.getInputStream();
+        }
+        @Nullable InputStream inputStream = context.getContentResolver().openInputStream(uri);
+        if (inputStream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return inputStream;
+    }
+
+    private void writeToDiskCache(Bitmap poster, File cacheFile) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return;
+        }
+        File tempFile = new File(cacheDir, cacheFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            poster.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache poster", e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(cacheFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        trimDiskCache();
+    }
+
+    private void trimDiskCache() {
+        @Nullable File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= MAX_DISK_CACHE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (totalBytes <= MAX_DISK_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    /**
+     * 返回使解码后尺寸不小于目标尺寸的最大 2 的幂采样率。
+     */
+    private static int getSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        if (sourceWidth <= 0 || sourceHeight <= 0 || width <= 0 || height <= 0) {
+            return sampleSize;
+        }
+        while (sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleToFit(Bitmap frame, int width, int height) {
+        float scale = Math.min((float) width / frame.getWidth(), (float) height / frame.getHeight());
+        if (scale >= 1 || width <= 0 || height <= 0) {
+            return frame;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(frame, Math.round(frame.getWidth() * scale), Math.round(frame.getHeight() * scale), /* filter= */ true);
+        if (scaled != frame) {
+            frame.recycle();
+        }
+        return scaled;
+    }
+
+    private static String md5(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(Util.getUtf8Bytes(key));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    @RequiresApi(27)
+    private static final class Api27 {
+
+        @DoNotInline
+        @Nullable
+        public static Bitmap getScaledFrameAtTime(MediaMetadataRetriever retriever, long positionUs, int width, int height) {
+            return retriever.getScaledFrameAtTime(positionUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, width, height);
+        }
+    }
+}
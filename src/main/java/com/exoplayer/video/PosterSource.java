@@ -0,0 +1,86 @@
+package com.exoplayer.video;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.File;
+
+/**
+ * {@link ExoVideoView} 播放前显示的封面来源：本地图片文件、图片 URI，或本地视频中指定位置的一帧。
+ */
+public final class PosterSource {
+
+    /* package */ final Uri uri;
+    /**
+     * 从视频中截帧的位置；来源是图片时为 {@link C#TIME_UNSET}
+     **/
+    /* package */ final long videoFramePositionMs;
+
+    private PosterSource(Uri uri, long videoFramePositionMs) {
+        this.uri = uri;
+        this.videoFramePositionMs = videoFramePositionMs;
+    }
+
+    /**
+     * Creates a source decoding an image file.
+     *
+     * @param file The image file.
+     */
+    public static PosterSource fromFile(File file) {
+        return new PosterSource(Uri.fromFile(file), C.TIME_UNSET);
+    }
+
+    /**
+     * Creates a source decoding an image from a {@code file}, {@code content}, {@code
+     * android.resource}, {@code http} or {@code https} URI.
+     *
+     * @param uri The image URI.
+     */
+    public static PosterSource fromUri(Uri uri) {
+        return new PosterSource(uri, C.TIME_UNSET);
+    }
+
+    /**
+     * Creates a source extracting the frame closest to a position of local media. The extraction
+     * runs in the background.
+     *
+     * @param videoUri   A {@code file} or {@code content} URI of the media.
+     * @param positionMs The position of the frame, in milliseconds.
+     */
+    public static PosterSource fromVideoFrame(Uri videoUri, long positionMs) {
+        Assertions.checkArgument(positionMs >= 0);
+        return new PosterSource(videoUri, positionMs);
+    }
+
+    /**
+     * Returns whether the poster is extracted from a video frame.
+     */
+    public boolean isVideoFrame() {
+        return videoFramePositionMs != C.TIME_UNSET;
+    }
+
+    /* package */ String getCacheKey() {
+        return isVideoFrame() ? uri + "#" + videoFramePositionMs : uri.toString();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        PosterSource other = (PosterSource) obj;
+        return videoFramePositionMs == other.videoFramePositionMs && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * uri.hashCode() + (int) (videoFramePositionMs ^ (videoFramePositionMs >>> 32));
+    }
+}
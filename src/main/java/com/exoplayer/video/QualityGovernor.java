@@ -0,0 +1,363 @@
+package com.exoplayer.video;
+
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+
+import androidx.annotation.DoNotInline;
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 根据掉帧和设备温度状态调节 {@link ExoVideoView} 的最高分辨率和帧率。
+ * <p>
+ * 掉帧率超过阈值或温度状态升高时立即降一级；信号恢复正常并持续一段时间后才逐级升回，避免在两个档位之间来回切换。
+ * 限制通过轨道选择参数生效，每次调整都会通知 {@link Listener}。掉帧来自 {@link ExoPlayer} 的 {@link
+ * AnalyticsListener}，温度状态来自 {@link PowerManager}（API 29+）；两者也可以通过 {@link #onDroppedFrames(int, long)}
+ * 和 {@link #onThermalStatusChanged(int)} 手动输入。所有方法必须在主线程调用。
+ */
+public final class QualityGovernor {
+
+    /**
+     * 调整原因. One of {@link #REASON_DROPPED_FRAMES}, {@link #REASON_THERMAL} or {@link
+     * #REASON_RECOVERED}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(TYPE_USE)
+    @IntDef({REASON_DROPPED_FRAMES, REASON_THERMAL, REASON_RECOVERED})
+    public @interface Reason {
+    }
+
+    /**
+     * 解码器持续掉帧.
+     */
+    public static final int REASON_DROPPED_FRAMES = 0;
+    /**
+     * 设备温度状态升高.
+     */
+    public static final int REASON_THERMAL = 1;
+    /**
+     * 信号恢复正常后升级.
+     */
+    public static final int REASON_RECOVERED = 2;
+
+    /**
+     * 画质调整回调.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the quality level changed.
+         *
+         * @param level             The new level, 0 being unconstrained.
+         * @param maxVideoHeight    The maximum video height of the level, or {@link
+         *                          Integer#MAX_VALUE} if unconstrained.
+         * @param maxVideoFrameRate The maximum video frame rate of the level, or {@link
+         *                          Integer#MAX_VALUE} if unconstrained.
+         * @param reason            The {@link Reason} of the change.
+         */
+        void onQualityLevelChanged(int level, int maxVideoHeight, int maxVideoFrameRate, @Reason int reason);
+    }
+
+    /**
+     * The default number of dropped frames per second above which the level is lowered.
+     */
+    public static final float DEFAULT_MAX_DROPPED_FRAMES_PER_SECOND = 2f;
+    /**
+     * The default time signals have to stay good before the level is raised again, in milliseconds.
+     */
+    public static final long DEFAULT_STABLE_PERIOD_MS = 30_000;
+
+    /**
+     * 降级后等待新轨道生效的时间，期间的掉帧不再继续降级
+     **/
+    private static final long STEP_DOWN_COOLDOWN_MS = 5_000;
+
+    /**
+     * 各级的限制，0 级不限制
+     **/
+    private static final VideoConstraints[] LEVELS = {
+            VideoConstraints.UNCONSTRAINED,
+            new VideoConstraints(1920, 1080, 30, Integer.MAX_VALUE, /* videoDisabled= */ false),
+            new VideoConstraints(1280, 720, 30, Integer.MAX_VALUE, /* videoDisabled= */ false),
+            new VideoConstraints(854, 480, 30, Integer.MAX_VALUE, /* videoDisabled= */ false),
+            new VideoConstraints(640, 360, 24, Integer.MAX_VALUE, /* videoDisabled= */ false),
+    };
+
+    private final float maxDroppedFramesPerSecond;
+    private final long stablePeriodMs;
+    private final Clock clock;
+    private final Handler handler;
+    private final Runnable stepUpRunnable;
+    private final DroppedFramesListener droppedFramesListener;
+
+    @Nullable
+    private Listener listener;
+    @Nullable
+    private ExoVideoView view;
+    @Nullable
+    private ExoPlayer player;
+    @Nullable
+    private Object thermalStatusListener;
+    private int thermalStatus;
+    /**
+     * 掉帧决定的级别，以及温度状态已经生效的最低级别
+     **/
+    private int droppedFramesLevel;
+    private int thermalLevel;
+    private int level;
+    private long lastStepDownMs;
+    private long lastBadSignalMs;
+    private long lastThermalChangeMs;
+
+    /**
+     * Creates an instance with the default thresholds.
+     */
+    public QualityGovernor() {
+        this(DEFAULT_MAX_DROPPED_FRAMES_PER_SECOND, DEFAULT_STABLE_PERIOD_MS);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxDroppedFramesPerSecond The number of dropped frames per second above which the level
+     *                                  is lowered.
+     * @param stablePeriodMs            The time signals have to stay good before the level is raised
+     *                                  again, in milliseconds.
+     */
+    public QualityGovernor(float maxDroppedFramesPerSecond, long stablePeriodMs) {
+        this(maxDroppedFramesPerSecond, stablePeriodMs, Clock.DEFAULT);
+    }
+
+    /* package */ QualityGovernor(float maxDroppedFramesPerSecond, long stablePeriodMs, Clock clock) {
+        Assertions.checkArgument(maxDroppedFramesPerSecond > 0 && stablePeriodMs >= 0);
+        this.maxDroppedFramesPerSecond = maxDroppedFramesPerSecond;
+        this.stablePeriodMs = stablePeriodMs;
+        this.clock = clock;
+        handler = Util.createHandlerForCurrentOrMainLooper();
+        stepUpRunnable = this::maybeStepUp;
+        droppedFramesListener = new DroppedFramesListener();
+        lastStepDownMs = -STEP_DOWN_COOLDOWN_MS;
+    }
+
+    /**
+     * Sets the {@link Listener} notified of each level change.
+     *
+     * @param listener The {@link Listener}, or {@code null}.
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the current level, 0 being unconstrained and higher levels being more constrained.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Reports dropped frames. Called automatically for an {@link ExoPlayer} set on the attached
+     * view, and may be called to feed frame drops measured elsewhere.
+     *
+     * @param droppedFrames The number of frames dropped.
+     * @param elapsedMs     The duration over which the frames were dropped, in milliseconds.
+     */
+    public void onDroppedFrames(int droppedFrames, long elapsedMs) {
+        if (elapsedMs <= 0 || droppedFrames * 1000f / elapsedMs < maxDroppedFramesPerSecond) {
+            return;
+        }
+        long nowMs = clock.elapsedRealtime();
+        lastBadSignalMs = nowMs;
+        if (nowMs - lastStepDownMs >= STEP_DOWN_COOLDOWN_MS && droppedFramesLevel < LEVELS.length - 1) {
+            droppedFramesLevel++;
+            lastStepDownMs = nowMs;
+            updateLevel(REASON_DROPPED_FRAMES);
+        }
+        scheduleStepUp();
+    }
+
+    /**
+     * Reports the device thermal status. Called automatically on API 29+ while attached, and may be
+     * called to feed a thermal status obtained elsewhere.
+     *
+     * @param thermalStatus One of the {@code PowerManager.THERMAL_STATUS_*} values.
+     */
+    public void onThermalStatusChanged(int thermalStatus) {
+        if (this.thermalStatus == thermalStatus) {
+            return;
+        }
+        this.thermalStatus = thermalStatus;
+        lastThermalChangeMs = clock.elapsedRealtime();
+        int targetLevel = getThermalLevel(thermalStatus);
+        if (targetLevel > thermalLevel) {
+            // 升温立即生效，降温等待稳定后逐级恢复。
+            thermalLevel = targetLevel;
+            updateLevel(REASON_THERMAL);
+        }
+        scheduleStepUp();
+    }
+
+    /* package */ void attach(ExoVideoView view) {
+        Assertions.checkState(this.view == null);
+        this.view = view;
+        if (Util.SDK_INT >= 29) {
+            @Nullable PowerManager powerManager = (PowerManager) view.getContext().getApplicationContext().getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null) {
+                thermalStatusListener = Api29.addThermalStatusListener(powerManager, this::onThermalStatusChanged);
+                onThermalStatusChanged(Api29.getCurrentThermalStatus(powerManager));
+            }
+        }
+        setPlayer(view.getPlayer());
+        view.setVideoConstraints(this, LEVELS[level]);
+    }
+
+    /* package */ void detach() {
+        @Nullable ExoVideoView view = this.view;
+        if (view == null) {
+            return;
+        }
+        if (Util.SDK_INT >= 29 && thermalStatusListener != null) {
+            @Nullable PowerManager powerManager = (PowerManager) view.getContext().getApplicationContext().getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null) {
+                Api29.removeThermalStatusListener(powerManager, thermalStatusListener);
+            }
+            thermalStatusListener = null;
+        }
+        setPlayer(null);
+        view.setVideoConstraints(this, null);
+        handler.removeCallbacks(stepUpRunnable);
+        this.view = null;
+    }
+
+    /* package */ void setPlayer(@Nullable Player player) {
+        if (this.player != null) {
+            this.player.removeAnalyticsListener(droppedFramesListener);
+        }
+        this.player = player instanceof ExoPlayer ? (ExoPlayer) player : null;
+        if (this.player != null) {
+            this.player.addAnalyticsListener(droppedFramesListener);
+        }
+    }
+
+    // Internal methods.
+
+    private void maybeStepUp() {
+        long nowMs = clock.elapsedRealtime();
+        boolean changed = false;
+        if (droppedFramesLevel > 0 && nowMs - lastBadSignalMs >= stablePeriodMs) {
+            droppedFramesLevel--;
+            lastBadSignalMs = nowMs;
+            changed = true;
+        }
+        if (thermalLevel > getThermalLevel(thermalStatus) && nowMs - lastThermalChangeMs >= stablePeriodMs) {
+            thermalLevel--;
+            lastThermalChangeMs = nowMs;
+            changed = true;
+        }
+        if (changed) {
+            updateLevel(REASON_RECOVERED);
+        }
+        scheduleStepUp();
+    }
+
+    private void scheduleStepUp() {
+        handler.removeCallbacks(stepUpRunnable);
+        if (droppedFramesLevel > 0 || thermalLevel > getThermalLevel(thermalStatus)) {
+            handler.postDelayed(stepUpRunnable, stablePeriodMs);
+        }
+    }
+
+    private void updateLevel(@Reason int reason) {
+        int newLevel = Math.max(droppedFramesLevel, thermalLevel);
+        if (newLevel == level) {
+            return;
+        }
+        level = newLevel;
+        VideoConstraints constraints = LEVELS[newLevel];
+        if (view != null) {
+            view.setVideoConstraints(this, constraints);
+        }
+        if (listener != null) {
+            listener.onQualityLevelChanged(newLevel, constraints.maxVideoHeight, constraints.maxVideoFrameRate, reason);
+        }
+    }
+
+    private static int getThermalLevel(int thermalStatus) {
+        switch (thermalStatus) {
+            case PowerManager.THERMAL_STATUS_NONE:
+            case PowerManager.THERMAL_STATUS_LIGHT:
+                return 0;
+            case PowerManager.THERMAL_STATUS_MODERATE:
+                return 1;
+            case PowerManager.THERMAL_STATUS_SEVERE:
+                return 2;
+            case PowerManager.THERMAL_STATUS_CRITICAL:
+                return 3;
+            default:
+                return thermalStatus > PowerManager.THERMAL_STATUS_CRITICAL ? LEVELS.length - 1 : 0;
+        }
+    }
+
+    /**
+     * 接收播放器的掉帧事件，转到主线程处理.
+     */
+    private final class DroppedFramesListener implements AnalyticsListener {
+
+        @Override
+        public void onDroppedVideoFrames(@NonNull EventTime eventTime, int droppedFrames, long elapsedMs) {
+            if (Looper.myLooper() == handler.getLooper()) {
+                onDroppedFrames(droppedFrames, elapsedMs);
+            } else {
+                handler.post(() -> onDroppedFrames(droppedFrames, elapsedMs));
+            }
+        }
+    }
+
+    @RequiresApi(29)
+    private static final class Api29 {
+
+        @DoNotInline
+        public static int getCurrentThermalStatus(PowerManager powerManager) {
+            return powerManager.getCurrentThermalStatus();
+        }
+
+        @DoNotInline
+        public static Object addThermalStatusListener(PowerManager powerManager, ThermalStatusCallback callback) {
+            PowerManager.OnThermalStatusChangedListener listener = callback::onThermalStatusChanged;
+            powerManager.addThermalStatusListener(listener);
+            return listener;
+        }
+
+        @DoNotInline
+        public static void removeThermalStatusListener(PowerManager powerManager, Object listener) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) listener);
+        }
+    }
+
+    /**
+     * 温度状态回调，避免在 API 29 以下引用平台接口.
+     */
+    private interface ThermalStatusCallback {
+
+        void onThermalStatusChanged(int thermalStatus);
+    }
+}
@@ -0,0 +1,168 @@
+package com.exoplayer.video;
+
+import static com.google.android.exoplayer2.Player.COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.ui.TimeBar;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * 拖动进度条时发起节流的关键帧对齐跳转。
+ * <p>
+ * 拖动过程中的中间跳转使用 {@link SeekParameters#CLOSEST_SYNC}，避免在长 GOP 内容上反复刷新解码器；
+ * 上一次跳转仍在进行时（播放器处于缓冲状态）不会发起新的跳转，只记录最新位置。
+ * 松手时的精确跳转由控制器完成，使用播放器自身的跳转参数。
+ * <p>
+ * 位置按当前媒体项计算，不支持多窗口进度条。
+ */
+/* package */ final class ScrubSeekThrottler implements TimeBar.OnScrubListener, Player.Listener {
+
+    /**
+     * The default minimum interval between two intermediate seeks, in milliseconds.
+     */
+    public static final int DEFAULT_SEEK_INTERVAL_MS = 100;
+
+    /**
+     * 跳转一直没有完成时，最多等待这么久再发起下一次跳转
+     **/
+    private static final long MAX_SEEK_IN_FLIGHT_MS = 1_000;
+
+    private final Handler handler;
+    private final Runnable seekRunnable;
+
+    @Nullable
+    private Player player;
+    private int seekIntervalMs;
+    private boolean scrubbing;
+    private boolean seekInFlight;
+    private long lastSeekRealtimeMs;
+    private long pendingPositionMs;
+
+    public ScrubSeekThrottler() {
+        handler = Util.createHandlerForCurrentOrMainLooper();
+        seekRunnable = this::maybeSeek;
+        seekIntervalMs = DEFAULT_SEEK_INTERVAL_MS;
+        pendingPositionMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Sets the player to seek, or {@code null} to stop seeking.
+     */
+    public void setPlayer(@Nullable Player player) {
+        if (this.player == player) {
+            return;
+        }
+        stopScrubbing();
+        this.player = player;
+    }
+
+    /**
+     * Sets the minimum interval between two intermediate seeks.
+     *
+     * @param seekIntervalMs The interval in milliseconds.
+     */
+    public void setSeekIntervalMs(int seekIntervalMs) {
+        this.seekIntervalMs = seekIntervalMs;
+    }
+
+    // TimeBar.OnScrubListener implementation
+
+    @Override
+    public void onScrubStart(TimeBar timeBar, long position) {
+        @Nullable Player player = this.player;
+        if (player == null || !player.isCommandAvailable(COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM)) {
+            return;
+        }
+        scrubbing = true;
+        seekInFlight = false;
+        lastSeekRealtimeMs = 0;
+        player.addListener(this);
+    }
+
+    @Override
+    public void onScrubMove(TimeBar timeBar, long position) {
+        if (!scrubbing) {
+            return;
+        }
+        pendingPositionMs = position;
+        maybeSeek();
+    }
+
+    @Override
+    public void onScrubStop(TimeBar timeBar, long position, boolean canceled) {
+        stopScrubbing();
+    }
+
+    // Player.Listener implementation
+
+    @Override
+    public void onPlaybackStateChanged(@Player.State int playbackState) {
+        if (playbackState != Player.STATE_BUFFERING && seekInFlight) {
+            seekInFlight = false;
+            maybeSeek();
+        }
+    }
+
+    // Internal methods.
+
+    private void stopScrubbing() {
+        handler.removeCallbacks(seekRunnable);
+        if (scrubbing && player != null) {
+            player.removeListener(this);
+        }
+        scrubbing = false;
+        seekInFlight = false;
+        pendingPositionMs = C.TIME_UNSET;
+    }
+
+    private void maybeSeek() {
+        @Nullable Player player = this.player;
+        if (!scrubbing || player == null || pendingPositionMs == C.TIME_UNSET) {
+            return;
+        }
+        handler.removeCallbacks(seekRunnable);
+        long elapsedMs = SystemClock.elapsedRealtime() - lastSeekRealtimeMs;
+        if (seekInFlight && elapsedMs < MAX_SEEK_IN_FLIGHT_MS) {
+            // 等待上一次跳转完成，超时后再重试。
+            handler.postDelayed(seekRunnable, MAX_SEEK_IN_FLIGHT_MS - elapsedMs);
+            return;
+        }
+        if (elapsedMs < seekIntervalMs) {
+            handler.postDelayed(seekRunnable, seekIntervalMs - elapsedMs);
+            return;
+        }
+        seekToSyncFrame(player, pendingPositionMs);
+        pendingPositionMs = C.TIME_UNSET;
+        lastSeekRealtimeMs = SystemClock.elapsedRealtime();
+        seekInFlight = player.getPlaybackState() == Player.STATE_BUFFERING;
+    }
+
+    /**
+     * Seeks to the sync frame closest to a position. Must be called on the application thread of
+     * the player; a {@link MainLooperPlayer} posts the seek to the thread of the player it wraps.
+     */
+    /* package */ static void seekToSyncFrame(Player player, long positionMs) {
+        if (player instanceof MainLooperPlayer) {
+            ((MainLooperPlayer) player).seekToSyncFrame(positionMs);
+            return;
+        }
+        if (!(player instanceof ExoPlayer)) {
+            player.seekTo(positionMs);
+            return;
+        }
+        // 跳转参数和跳转请求按顺序在播放线程处理，所以恢复原参数只影响之后的跳转，松手时的跳转仍是精确的。
+        ExoPlayer exoPlayer = (ExoPlayer) player;
+        SeekParameters seekParameters = exoPlayer.getSeekParameters();
+        exoPlayer.setSeekParameters(SeekParameters.CLOSEST_SYNC);
+        exoPlayer.seekTo(positionMs);
+        exoPlayer.setSeekParameters(seekParameters);
+    }
+}
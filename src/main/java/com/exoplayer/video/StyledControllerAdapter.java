@@ -0,0 +1,229 @@
+package com.exoplayer.video;
+
+import android.view.KeyEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.exoplayer.exolibrary.R;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.ui.StyledPlayerControlView;
+
+/**
+ * 将 {@link StyledPlayerControlView} 适配为 {@link PlayerController}.
+ */
+// Implementing the deprecated StyledPlayerControlView.VisibilityListener and
+// StyledPlayerControlView.OnFullScreenModeChangedListener for now.
+@SuppressWarnings("deprecation")
+/* package */ final class StyledControllerAdapter implements PlayerController, StyledPlayerControlView.VisibilityListener, StyledPlayerControlView.OnFullScreenModeChangedListener, MarkerIndex.Listener, Player.Listener, View.OnLayoutChangeListener {
+
+    private final StyledPlayerControlView controlView;
+    @Nullable
+    private final View timeBarView;
+
+    @Nullable
+    private ExoVideoView.ControllerVisibilityListener visibilityListener;
+    @Nullable
+    private ExoVideoView.FullscreenButtonClickListener fullscreenButtonClickListener;
+    @Nullable
+    private MarkerIndex markerIndex;
+    @Nullable
+    private Player player;
+    /** 合并标记用的缓冲区，按进度条宽度分配后重复使用 **/
+    private long[] markerTimesMs;
+    private boolean[] markerPlayed;
+    /** 交给控制器的标记，只在可见标记数变化时重新分配 **/
+    private long[] visibleTimesMs;
+    private boolean[] visiblePlayed;
+    /** 上次合并标记时的时长和进度条宽度，变化时重新合并 **/
+    private long markersDurationMs;
+    private int markersWidthPx;
+
+    public StyledControllerAdapter(StyledPlayerControlView controlView) {
+        this.controlView = controlView;
+        controlView.addVisibilityListener(this);
+        timeBarView = controlView.findViewById(R.id.exo_progress);
+        if (timeBarView != null) {
+            timeBarView.addOnLayoutChangeListener(this);
+        }
+        markerTimesMs = new long[0];
+        markerPlayed = new boolean[0];
+        visibleTimesMs = new long[0];
+        visiblePlayed = new boolean[0];
+        markersDurationMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Returns the wrapped {@link StyledPlayerControlView}.
+     */
+    public StyledPlayerControlView getControlView() {
+        return controlView;
+    }
+
+    // PlayerController implementation
+
+    @Override
+    public View getView() {
+        return controlView;
+    }
+
+    @Override
+    public void setPlayer(@Nullable Player player) {
+        if (this.player == player) {
+            return;
+        }
+        if (this.player != null) {
+            this.player.removeListener(this);
+        }
+        this.player = player;
+        if (player != null) {
+            player.addListener(this);
+        }
+        controlView.setPlayer(player);
+        if (markerIndex != null) {
+            updateMarkers(markerIndex);
+        }
+    }
+
+    @Override
+    public void show() {
+        controlView.show();
+    }
+
+    @Override
+    public void hide() {
+        controlView.hide();
+    }
+
+    @Override
+    public void hideImmediately() {
+        controlView.hideImmediately();
+    }
+
+    @Override
+    public boolean isFullyVisible() {
+        return controlView.isFullyVisible();
+    }
+
+    @Override
+    public int getShowTimeoutMs() {
+        return controlView.getShowTimeoutMs();
+    }
+
+    @Override
+    public void setShowTimeoutMs(int showTimeoutMs) {
+        controlView.setShowTimeoutMs(showTimeoutMs);
+    }
+
+    @Override
+    public boolean dispatchMediaKeyEvent(KeyEvent event) {
+        return controlView.dispatchMediaKeyEvent(event);
+    }
+
+    @Override
+    public void setExtraAdGroupMarkers(@Nullable long[] extraAdGroupTimesMs, @Nullable boolean[] extraPlayedAdGroups) {
+        controlView.setExtraAdGroupMarkers(extraAdGroupTimesMs, extraPlayedAdGroups);
+    }
+
+    /**
+     * {@link StyledPlayerControlView} 只接受完整的标记数组，这里与 {@link ExoControlView} 一样只传入进度条范围内的标记，
+     * 落在同一像素上的标记合并为一个.
+     */
+    @Override
+    public void setMarkerIndex(@Nullable MarkerIndex markerIndex) {
+        if (this.markerIndex == markerIndex) {
+            return;
+        }
+        if (this.markerIndex != null) {
+            this.markerIndex.removeListener(this);
+        }
+        this.markerIndex = markerIndex;
+        if (markerIndex != null) {
+            markerIndex.addListener(this);
+            updateMarkers(markerIndex);
+        } else {
+            controlView.setExtraAdGroupMarkers(null, null);
+        }
+    }
+
+    @Override
+    public void setVisibilityListener(@Nullable ExoVideoView.ControllerVisibilityListener listener) {
+        this.visibilityListener = listener;
+    }
+
+    @Override
+    public void setFullscreenButtonClickListener(@Nullable ExoVideoView.FullscreenButtonClickListener listener) {
+        this.fullscreenButtonClickListener = listener;
+        // StyledPlayerControlView 只在设置了监听器时显示全屏按钮。
+        controlView.setOnFullScreenModeChangedListener(listener != null ? this : null);
+    }
+
+    // StyledPlayerControlView.VisibilityListener implementation
+
+    @Override
+    public void onVisibilityChange(int visibility) {
+        if (visibilityListener != null) {
+            visibilityListener.onVisibilityChanged(visibility);
+        }
+    }
+
+    // MarkerIndex.Listener implementation
+
+    @Override
+    public void onMarkersChanged(MarkerIndex markerIndex) {
+        updateMarkers(markerIndex);
+    }
+
+    // Player.Listener implementation
+
+    @Override
+    public void onEvents(@NonNull Player player, @NonNull Player.Events events) {
+        if (markerIndex != null && events.containsAny(Player.EVENT_TIMELINE_CHANGED, Player.EVENT_POSITION_DISCONTINUITY) && player.getContentDuration() != markersDurationMs) {
+            updateMarkers(markerIndex);
+        }
+    }
+
+    // View.OnLayoutChangeListener implementation
+
+    @Override
+    public void onLayoutChange(View view, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        if (markerIndex != null && right - left != markersWidthPx) {
+            updateMarkers(markerIndex);
+        }
+    }
+
+    // StyledPlayerControlView.OnFullScreenModeChangedListener implementation
+
+    @Override
+    public void onFullScreenModeChanged(boolean isFullScreen) {
+        if (fullscreenButtonClickListener != null) {
+            fullscreenButtonClickListener.onFullscreenButtonClick(isFullScreen);
+        }
+    }
+
+    /**
+     * 按进度条宽度合并标记后交给控制器，标记数不超过进度条的像素宽度.
+     */
+    private void updateMarkers(MarkerIndex markerIndex) {
+        long durationMs = player != null ? player.getContentDuration() : C.TIME_UNSET;
+        int widthPx = timeBarView != null ? timeBarView.getWidth() : 0;
+        int maxCount = Math.min(markerIndex.size(), widthPx + 1);
+        if (markerTimesMs.length < maxCount) {
+            markerTimesMs = new long[maxCount];
+            markerPlayed = new boolean[maxCount];
+        }
+        int count = durationMs == C.TIME_UNSET ? 0 : markerIndex.getVisibleMarkers(/* startMs= */ 0, durationMs, widthPx, markerTimesMs, markerPlayed);
+        // 控制器按数组长度读取标记，数组长度必须等于标记数。
+        if (visibleTimesMs.length != count) {
+            visibleTimesMs = new long[count];
+            visiblePlayed = new boolean[count];
+        }
+        System.arraycopy(markerTimesMs, 0, visibleTimesMs, 0, count);
+        System.arraycopy(markerPlayed, 0, visiblePlayed, 0, count);
+        markersDurationMs = durationMs;
+        markersWidthPx = widthPx;
+        controlView.setExtraAdGroupMarkers(visibleTimesMs, visiblePlayed);
+    }
+}
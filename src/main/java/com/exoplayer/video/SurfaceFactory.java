@@ -0,0 +1,72 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+
+import com.google.android.exoplayer2.video.VideoDecoderGLSurfaceView;
+import com.google.android.exoplayer2.video.spherical.SphericalGLSurfaceView;
+
+/**
+ * 创建 {@link ExoVideoView} 用于渲染视频的表面视图。
+ * <p>
+ * 内置实现对应 {@code surface_type} 的各个取值；可以用 {@link SurfacePool} 包装任意实现，在绑定播放器之前预先创建视图。
+ */
+public interface SurfaceFactory {
+
+    /**
+     * Creates {@link SurfaceView} instances.
+     */
+    SurfaceFactory SURFACE_VIEW = SurfaceView::new;
+
+    /**
+     * Creates {@link TextureView} instances.
+     */
+    SurfaceFactory TEXTURE_VIEW = TextureView::new;
+
+    /**
+     * Creates {@link SphericalGLSurfaceView} instances for 360 degree video.
+     */
+    SurfaceFactory SPHERICAL_GL_SURFACE_VIEW = new SurfaceFactory() {
+        @Override
+        public View createSurfaceView(Context context) {
+            return new SphericalGLSurfaceView(context);
+        }
+
+        @Override
+        public boolean ignoresVideoAspectRatio() {
+            return true;
+        }
+    };
+
+    /**
+     * Creates {@link VideoDecoderGLSurfaceView} instances for extension video decoders.
+     */
+    SurfaceFactory VIDEO_DECODER_GL_SURFACE_VIEW = VideoDecoderGLSurfaceView::new;
+
+    /**
+     * Creates a surface view. Must be called on the main thread.
+     *
+     * @param context The {@link Context}.
+     * @return A {@link SurfaceView}, {@link TextureView} or a subclass of either.
+     */
+    View createSurfaceView(Context context);
+
+    /**
+     * Returns whether views created by this factory render video without applying the video aspect
+     * ratio, for example because they project it onto a sphere.
+     */
+    default boolean ignoresVideoAspectRatio() {
+        return false;
+    }
+
+    /**
+     * Called when a view created by this factory has been removed from its {@link ExoVideoView}
+     * and is no longer used by it.
+     *
+     * @param surfaceView The view returned by {@link #createSurfaceView(Context)}.
+     */
+    default void releaseSurfaceView(View surfaceView) {
+    }
+}
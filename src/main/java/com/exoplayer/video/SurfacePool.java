@@ -0,0 +1,101 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.util.ArrayDeque;
+
+/**
+ * 缓存预先创建的表面视图的 {@link SurfaceFactory}。
+ * <p>
+ * 在列表滚动或页面切换前调用 {@link #prewarm(Context, int)}，绑定 {@link ExoVideoView} 时就不必在主线程上构造视图；
+ * {@link ExoVideoView} 不再使用的视图会放回池中复用。表面本身仍在视图附加到窗口后才创建。只能在主线程使用。
+ */
+public final class SurfacePool implements SurfaceFactory {
+
+    private final SurfaceFactory factory;
+    private final int maxSize;
+    private final ArrayDeque<View> surfaceViews;
+
+    /**
+     * Creates an instance.
+     *
+     * @param factory The {@link SurfaceFactory} creating the pooled views.
+     * @param maxSize The maximum number of idle views kept in the pool.
+     */
+    public SurfacePool(SurfaceFactory factory, int maxSize) {
+        Assertions.checkArgument(maxSize > 0);
+        this.factory = factory;
+        this.maxSize = maxSize;
+        surfaceViews = new ArrayDeque<>(maxSize);
+    }
+
+    /**
+     * Creates views until the pool holds {@code count} idle views.
+     *
+     * @param context The {@link Context} used to create the views.
+     * @param count   The number of idle views to keep ready, at most the maximum size of the pool.
+     */
+    public void prewarm(Context context, int count) {
+        checkMainThread();
+        int targetSize = Math.min(count, maxSize);
+        while (surfaceViews.size() < targetSize) {
+            surfaceViews.add(factory.createSurfaceView(context));
+        }
+    }
+
+    /**
+     * Returns the number of idle views in the pool.
+     */
+    public int size() {
+        return surfaceViews.size();
+    }
+
+    /**
+     * Removes all idle views from the pool.
+     */
+    public void clear() {
+        checkMainThread();
+        surfaceViews.clear();
+    }
+
+    @Override
+    public View createSurfaceView(Context context) {
+        checkMainThread();
+        View surfaceView = surfaceViews.poll();
+        return surfaceView != null ? surfaceView : factory.createSurfaceView(context);
+    }
+
+    @Override
+    public boolean ignoresVideoAspectRatio() {
+        return factory.ignoresVideoAspectRatio();
+    }
+
+    @Override
+    public void releaseSurfaceView(View surfaceView) {
+        checkMainThread();
+        if (surfaceView.getParent() instanceof ViewGroup) {
+            ((ViewGroup) surfaceView.getParent()).removeView(surfaceView);
+        }
+        // 复用前恢复 ExoVideoView 修改过的状态。
+        surfaceView.setOnClickListener(null);
+        surfaceView.setVisibility(View.VISIBLE);
+        if (surfaceView instanceof TextureView) {
+            ((TextureView) surfaceView).setTransform(null);
+        }
+        if (surfaceViews.size() < maxSize) {
+            surfaceViews.add(surfaceView);
+        } else {
+            factory.releaseSurfaceView(surfaceView);
+        }
+    }
+
+    private static void checkMainThread() {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+    }
+}
@@ -0,0 +1,70 @@
+package com.exoplayer.video;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 对视频轨道选择的限制，由 {@link ExoVideoView} 合并各个来源（解码器预算、画质调节等）后写入播放器的 {@code
+ * TrackSelectionParameters}。
+ */
+/* package */ final class VideoConstraints {
+
+    /**
+     * 不做任何限制
+     **/
+    public static final VideoConstraints UNCONSTRAINED = new VideoConstraints(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, /* videoDisabled= */ false);
+
+    /**
+     * 禁用视频轨道
+     **/
+    public static final VideoConstraints VIDEO_DISABLED = new VideoConstraints(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, /* videoDisabled= */ true);
+
+    public final int maxVideoWidth;
+    public final int maxVideoHeight;
+    public final int maxVideoFrameRate;
+    public final int maxVideoBitrate;
+    public final boolean videoDisabled;
+
+    public VideoConstraints(int maxVideoWidth, int maxVideoHeight, int maxVideoFrameRate, int maxVideoBitrate, boolean videoDisabled) {
+        this.maxVideoWidth = maxVideoWidth;
+        this.maxVideoHeight = maxVideoHeight;
+        this.maxVideoFrameRate = maxVideoFrameRate;
+        this.maxVideoBitrate = maxVideoBitrate;
+        this.videoDisabled = videoDisabled;
+    }
+
+    /**
+     * Returns constraints limiting the video size.
+     */
+    public static VideoConstraints maxVideoSize(int maxVideoWidth, int maxVideoHeight) {
+        return new VideoConstraints(maxVideoWidth, maxVideoHeight, Integer.MAX_VALUE, Integer.MAX_VALUE, /* videoDisabled= */ false);
+    }
+
+    /**
+     * Returns the strictest combination of these constraints and {@code other}.
+     */
+    public VideoConstraints merge(VideoConstraints other) {
+        return new VideoConstraints(Math.min(maxVideoWidth, other.maxVideoWidth), Math.min(maxVideoHeight, other.maxVideoHeight), Math.min(maxVideoFrameRate, other.maxVideoFrameRate), Math.min(maxVideoBitrate, other.maxVideoBitrate), videoDisabled || other.videoDisabled);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        VideoConstraints other = (VideoConstraints) obj;
+        return maxVideoWidth == other.maxVideoWidth && maxVideoHeight == other.maxVideoHeight && maxVideoFrameRate == other.maxVideoFrameRate && maxVideoBitrate == other.maxVideoBitrate && videoDisabled == other.videoDisabled;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxVideoWidth;
+        result = 31 * result + maxVideoHeight;
+        result = 31 * result + maxVideoFrameRate;
+        result = 31 * result + maxVideoBitrate;
+        result = 31 * result + (videoDisabled ? 1 : 0);
+        return result;
+    }
+}
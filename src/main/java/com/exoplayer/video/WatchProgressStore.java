@@ -0,0 +1,542 @@
+package com.exoplayer.video;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存大量媒体观看进度的本地存储，用于信息流中的进度条和续播位置。
+ * <p>
+ * 磁盘上分为两个文件：压缩后的索引保存每个媒体的最新进度，追加写入的日志保存索引之后的更新。
+ * 更新先进入内存，攒够一批或等待 {@link #DEFAULT_BATCH_DELAY_MS} 后一次追加到日志，
+ * 日志记录数超过索引条目数的一半时在后台重写索引并清空日志，写入量与更新次数成正比，而不是与条目总数成正比。
+ * 加载在构造时于后台开始，查询在加载完成前会阻塞，建议在应用启动时创建实例。
+ * <p>
+ * 通过 {@link ExoVideoView#setWatchProgressStore(WatchProgressStore)} 设置后，视图会在暂停、跳转、
+ * 切换媒体、更换播放器时以及播放期间定期记录当前媒体的位置。媒体以 {@link MediaItem#mediaId} 标识。
+ */
+public final class WatchProgressStore {
+
+    /**
+     * The default delay after which pending updates are written, in milliseconds.
+     */
+    public static final long DEFAULT_BATCH_DELAY_MS = 5_000;
+    /**
+     * The default interval at which the position of a playing player is recorded, in milliseconds.
+     */
+    public static final long DEFAULT_RECORD_INTERVAL_MS = 10_000;
+
+    /**
+     * 一个媒体的观看进度.
+     */
+    public static final class Entry {
+
+        /**
+         * 续播位置，单位毫秒
+         **/
+        public final long positionMs;
+        /**
+         * 媒体时长，未知时为 {@link C#TIME_UNSET}
+         **/
+        public final long durationMs;
+
+        public Entry(long positionMs, long durationMs) {
+            this.positionMs = positionMs;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * Returns the watched fraction in [0, 1], or 0 if the duration is unknown.
+         */
+        public float getFraction() {
+            if (durationMs == C.TIME_UNSET || durationMs <= 0) {
+                return 0;
+            }
+            return Math.min(1f, Math.max(0f, (float) positionMs / durationMs));
+        }
+    }
+
+    private static final String TAG = "WatchProgressStore";
+    private static final String DIRECTORY_NAME = "exo_video_watch_progress";
+    private static final int INDEX_VERSION = 1;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int MIN_COMPACTION_LOG_SIZE = 1024;
+
+    private final AtomicFile indexFile;
+    private final File logFile;
+    private final ScheduledExecutorService executor;
+    private final long batchDelayMs;
+    /**
+     * 所有媒体的进度，同时作为内存数据的锁
+     **/
+    private final HashMap<String, Entry> entries;
+    /**
+     * 尚未写入日志的更新，值为 null 表示删除
+     **/
+    private final LinkedHashMap<String, Entry> pendingUpdates;
+    private final Runnable flushRunnable;
+    private boolean loaded;
+    private boolean flushScheduled;
+    /**
+     * 日志中的记录数，只在写入线程访问
+     **/
+    private int logRecordCount;
+
+    /**
+     * Creates an instance storing its files in the app's files directory, with the default batch
+     * delay.
+     *
+     * @param context A {@link Context}.
+     */
+    public WatchProgressStore(Context context) {
+        this(new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME), DEFAULT_BATCH_DELAY_MS);
+    }
+
+    /**
+     * Creates an instance and starts loading in the background.
+     *
+     * @param directory    The directory of the files, which is created if needed.
+     * @param batchDelayMs The delay after which pending updates are written, in milliseconds.
+     */
+    public WatchProgressStore(File directory, long batchDelayMs) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create directory: " + directory);
+        }
+        indexFile = new AtomicFile(new File(directory, "index"));
+        logFile = new File(directory, "log");
+        executor = Executors.newSingleThreadScheduledExecutor();
+        this.batchDelayMs = batchDelayMs;
+        entries = new HashMap<>();
+        pendingUpdates = new LinkedHashMap<>();
+        flushRunnable = this::writePendingUpdates;
+        executor.execute(this::load);
+    }
+
+    /**
+     * Returns the progress of a media item, or {@code null} if none is stored. Blocks until loading
+     * has completed.
+     *
+     * @param mediaId The {@link MediaItem#mediaId}.
+     */
+    @Nullable
+    public Entry get(String mediaId) {
+        synchronized (entries) {
+            load();
+            return entries.get(mediaId);
+        }
+    }
+
+    /**
+     * Returns the progress of a page of media items, for example the items of a feed page. Items
+     * without stored progress are absent from the result. Blocks until loading has completed.
+     *
+     * @param mediaIds The {@link MediaItem#mediaId}s.
+     * @return The progress, by media id.
+     */
+    public Map<String, Entry> get(List<String> mediaIds) {
+        Map<String, Entry> result = new HashMap<>();
+        synchronized (entries) {
+            load();
+            for (int i = 0; i < mediaIds.size(); i++) {
+                String mediaId = mediaIds.get(i);
+                @Nullable Entry entry = entries.get(mediaId);
+                if (entry != null) {
+                    result.put(mediaId, entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the resume position of a media item, or {@link C#TIME_UNSET} if none is stored.
+     *
+     * @param mediaId The {@link MediaItem#mediaId}.
+     */
+    public long getPositionMs(String mediaId) {
+        @Nullable Entry entry = get(mediaId);
+        return entry != null ? entry.positionMs : C.TIME_UNSET;
+    }
+
+    /**
+     * Stores the progress of a media item. The update is visible immediately and written in a batch.
+     *
+     * @param mediaId    The {@link MediaItem#mediaId}.
+     * @param positionMs The resume position, in milliseconds.
+     * @param durationMs The duration, or {@link C#TIME_UNSET} to keep the stored duration.
+     */
+    public void put(String mediaId, long positionMs, long durationMs) {
+        synchronized (entries) {
+            load();
+            if (durationMs == C.TIME_UNSET) {
+                @Nullable Entry previous = entries.get(mediaId);
+                durationMs = previous != null ? previous.durationMs : C.TIME_UNSET;
+            }
+            Entry entry = new Entry(Math.max(0, positionMs), durationMs);
+            entries.put(mediaId, entry);
+            addPendingUpdate(mediaId, entry);
+        }
+    }
+
+    /**
+     * Removes the progress of a media item, for example when it was watched to the end.
+     *
+     * @param mediaId The {@link MediaItem#mediaId}.
+     */
+    public void remove(String mediaId) {
+        synchronized (entries) {
+            load();
+            if (entries.remove(mediaId) != null) {
+                addPendingUpdate(mediaId, null);
+            }
+        }
+    }
+
+    /**
+     * Writes pending updates in the background without waiting for the batch delay. Should be
+     * called when the app goes to the background.
+     */
+    public void flush() {
+        if (!executor.isShutdown()) {
+            executor.execute(flushRunnable);
+        }
+    }
+
+    /**
+     * Writes pending updates and stops the background thread. The instance must not be used
+     * afterwards.
+     */
+    public void release() {
+        flush();
+        executor.shutdown();
+    }
+
+    /**
+     * Writes pending updates, stops the background thread and waits until it has stopped.
+     *
+     * @param timeoutMs The maximum time to wait, in milliseconds.
+     * @return Whether the background thread stopped within the timeout.
+     */
+    /* package */ boolean releaseBlocking(long timeoutMs) throws InterruptedException {
+        release();
+        return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a {@link Tracker} recording the position of a player in this store.
+     */
+    /* package */ Tracker createTracker() {
+        return new Tracker();
+    }
+
+    private void addPendingUpdate(String mediaId, @Nullable Entry entry) {
+        // 同一媒体的多次更新只保留最后一次，移除后重新放入以保持写入顺序。
+        pendingUpdates.remove(mediaId);
+        pendingUpdates.put(mediaId, entry);
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (pendingUpdates.size() >= MAX_BATCH_SIZE) {
+            executor.execute(flushRunnable);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(flushRunnable, batchDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the index and replays the log once. Other callers block until loading has completed.
+     */
+    private void load() {
+        synchronized (entries) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (indexFile.exists()) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(indexFile.openRead()))) {
+                    if (input.readInt() != INDEX_VERSION) {
+                        throw new IOException("Unsupported index version");
+                    }
+                    int count = input.readInt();
+                    for (int i = 0; i < count; i++) {
+                        entries.put(input.readUTF(), new Entry(input.readLong(), input.readLong()));
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to read index", e);
+                    entries.clear();
+                }
+            }
+            if (logFile.exists()) {
+                // 最后一条完整记录之后的位置，进程在写入记录时退出会留下不完整的尾部。
+                long validLength = 0;
+                try (CountingInputStream countingInput = new CountingInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+                     DataInputStream input = new DataInputStream(countingInput)) {
+                    while (true) {
+                        String mediaId = input.readUTF();
+                        long positionMs = input.readLong();
+                        long durationMs = input.readLong();
+                        if (positionMs == C.TIME_UNSET) {
+                            entries.remove(mediaId);
+                        } else {
+                            entries.put(mediaId, new Entry(positionMs, durationMs));
+                        }
+                        logRecordCount++;
+                        validLength = countingInput.position;
+                    }
+                } catch (EOFException e) {
+                    // 日志结束，或尾部的记录不完整。
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to read log", e);
+                }
+                if (validLength < logFile.length()) {
+                    // 截掉不完整的尾部，否则之后追加的记录会跟在它后面，下次加载时全部被当作损坏的数据。
+                    truncateLog(validLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Truncates the log to a length. The log is deleted if it can't be truncated, since the records
+     * appended after a torn record could not be read.
+     */
+    private void truncateLog(long length) {
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(length);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to truncate log", e);
+            if (!logFile.delete()) {
+                Log.w(TAG, "Failed to delete log");
+            }
+            logRecordCount = 0;
+            // 删除的记录仍在内存中，下次写入时重写索引。
+            if (!executor.isShutdown()) {
+                executor.execute(this::compact);
+            }
+        }
+    }
+
+    /**
+     * Appends the pending updates to the log, and compacts the log into the index when it has grown
+     * to half the number of entries. Runs on the background thread.
+     */
+    private void writePendingUpdates() {
+        List<Map.Entry<String, Entry>> updates;
+        int entryCount;
+        synchronized (entries) {
+            load();
+            flushScheduled = false;
+            if (pendingUpdates.isEmpty()) {
+                return;
+            }
+            updates = new ArrayList<>(pendingUpdates.entrySet());
+            pendingUpdates.clear();
+            entryCount = entries.size();
+        }
+        if (logRecordCount + updates.size() > Math.max(MIN_COMPACTION_LOG_SIZE, entryCount / 2)) {
+            compact();
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, /* append= */ true)))) {
+            for (Map.Entry<String, Entry> update : updates) {
+                @Nullable Entry entry = update.getValue();
+                output.writeUTF(update.getKey());
+                output.writeLong(entry != null ? entry.positionMs : C.TIME_UNSET);
+                output.writeLong(entry != null ? entry.durationMs : C.TIME_UNSET);
+            }
+            logRecordCount += updates.size();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to log", e);
+            // 写入失败时改为重写索引，内存中的数据已包含这些更新。
+            compact();
+        }
+    }
+
+    /**
+     * Writes all entries to the index and deletes the log. Runs on the background thread.
+     */
+    private void compact() {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+        OutputStream outputStream = null;
+        try {
+            outputStream = indexFile.startWrite();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(INDEX_VERSION);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().positionMs);
+                output.writeLong(entry.getValue().durationMs);
+            }
+            output.flush();
+            indexFile.endWrite(outputStream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write index", e);
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException ignored) {
+                    // Do nothing.
+                }
+            }
+            return;
+        }
+        if (logFile.exists() && !logFile.delete()) {
+            Log.w(TAG, "Failed to delete log");
+        }
+        logRecordCount = 0;
+    }
+
+    /**
+     * 记录已读取字节数的输入流.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long position;
+
+        public CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                position++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                position += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            position += result;
+            return result;
+        }
+    }
+
+    /**
+     * 记录一个播放器的当前媒体位置，由 {@link ExoVideoView} 持有.
+     */
+    /* package */ final class Tracker implements Player.Listener {
+
+        private final Handler handler;
+        private final Runnable recordRunnable;
+        @Nullable
+        private Player player;
+
+        private Tracker() {
+            handler = new Handler(Looper.getMainLooper());
+            recordRunnable = this::recordPeriodically;
+        }
+
+        /**
+         * Sets the player whose position is recorded. The position of the previous player is
+         * recorded before it is replaced.
+         */
+        public void setPlayer(@Nullable Player player) {
+            Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+            if (this.player == player) {
+                return;
+            }
+            if (this.player != null) {
+                record();
+                this.player.removeListener(this);
+                handler.removeCallbacks(recordRunnable);
+            }
+            this.player = player;
+            if (player != null) {
+                player.addListener(this);
+                if (player.isPlaying()) {
+                    handler.postDelayed(recordRunnable, DEFAULT_RECORD_INTERVAL_MS);
+                }
+            }
+        }
+
+        private void recordPeriodically() {
+            record();
+            if (player != null && player.isPlaying()) {
+                handler.postDelayed(recordRunnable, DEFAULT_RECORD_INTERVAL_MS);
+            }
+        }
+
+        private void record() {
+            if (player == null || !player.isCommandAvailable(Player.COMMAND_GET_CURRENT_MEDIA_ITEM) || player.isPlayingAd()) {
+                return;
+            }
+            @Nullable MediaItem mediaItem = player.getCurrentMediaItem();
+            if (mediaItem != null && !MediaItem.DEFAULT_MEDIA_ID.equals(mediaItem.mediaId)) {
+                put(mediaItem.mediaId, player.getContentPosition(), player.getContentDuration());
+            }
+        }
+
+        // Player.Listener implementation
+
+        @Override
+        public void onIsPlayingChanged(boolean isPlaying) {
+            handler.removeCallbacks(recordRunnable);
+            if (isPlaying) {
+                handler.postDelayed(recordRunnable, DEFAULT_RECORD_INTERVAL_MS);
+            } else {
+                record();
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, @Player.DiscontinuityReason int reason) {
+            // 切换媒体时当前媒体已经是下一个，所以用跳转前的位置记录上一个媒体。
+            @Nullable MediaItem oldMediaItem = oldPosition.mediaItem;
+            if (oldMediaItem != null && !MediaItem.DEFAULT_MEDIA_ID.equals(oldMediaItem.mediaId) && oldPosition.adGroupIndex == C.INDEX_UNSET) {
+                put(oldMediaItem.mediaId, oldPosition.contentPositionMs, C.TIME_UNSET);
+            }
+            if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+                record();
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import okio.Buffer;
+
+/**
+ * {@link ConnectionPrewarmer} 的测试，本地的 HTTPS 服务器代替媒体服务器，用每个请求在连接上的序号判断播放请求是否复用了预热的连接。
+ * <p>
+ * {@link DefaultHttpDataSource} 使用进程内共享的 {@code HttpsURLConnection} 连接池，测试期间把默认的
+ * {@link SSLSocketFactory} 换成信任测试证书的版本。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ConnectionPrewarmerTest {
+
+    private static final int CONTENT_LENGTH = 16 * 1024;
+    private static final long TIMEOUT_MS = 10_000;
+    private static final long IDLE_TIMEOUT_MS = 1_000;
+
+    private byte[] content;
+    private MockWebServer server;
+    private SSLSocketFactory defaultSslSocketFactory;
+    /**
+     * 每个预热请求结束时释放一次
+     **/
+    private Semaphore prewarmsEnded;
+    private ConnectionPrewarmer prewarmer;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[CONTENT_LENGTH];
+        new Random(/* seed= */ 0).nextBytes(content);
+        String localhost = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder().addSubjectAlternativeName(localhost).build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder().heldCertificate(certificate).build();
+        HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder().addTrustedCertificate(certificate.certificate()).build();
+        defaultSslSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(clientCertificates.sslSocketFactory());
+        server = new MockWebServer();
+        server.useHttps(serverCertificates.sslSocketFactory(), /* tunnelProxy= */ false);
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                // HEAD 的响应没有内容，连接可以直接回到连接池。
+                return "HEAD".equals(request.getMethod()) ? new MockResponse() : new MockResponse().setBody(new Buffer().write(content));
+            }
+        });
+        server.start();
+        prewarmsEnded = new Semaphore(0);
+        DataSource.Factory prewarmFactory = new DefaultHttpDataSource.Factory().setTransferListener(new PrewarmEndListener());
+        prewarmer = new ConnectionPrewarmer(prewarmFactory, ConnectionPrewarmer.DEFAULT_MAX_HOSTS, IDLE_TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        prewarmer.release();
+        server.shutdown();
+        HttpsURLConnection.setDefaultSSLSocketFactory(defaultSslSocketFactory);
+    }
+
+    @Test
+    public void prewarm_playbackReusesWarmConnection() throws Exception {
+        prewarmer.prewarm(getUri("/video.mp4"));
+        assertThat(prewarmsEnded.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+        assertThat(readFully(getUri("/video.mp4"))).isEqualTo(content);
+
+        RecordedRequest prewarm = server.takeRequest();
+        RecordedRequest playback = server.takeRequest();
+        assertThat(prewarm.getMethod()).isEqualTo("HEAD");
+        assertThat(prewarm.getHandshake()).isNotNull();
+        assertThat(prewarm.getSequenceNumber()).isEqualTo(0);
+        assertThat(playback.getMethod()).isEqualTo("GET");
+        // 播放请求是同一个连接上的第二个请求，没有再次握手。
+        assertThat(playback.getSequenceNumber()).isEqualTo(1);
+    }
+
+    @Test
+    public void noPrewarm_playbackOpensNewConnection() throws Exception {
+        assertThat(readFully(getUri("/video.mp4"))).isEqualTo(content);
+
+        assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(0);
+    }
+
+    @Test
+    public void prewarm_sameHostWithinIdleTimeout_warmsOnce() throws Exception {
+        prewarmer.prewarm(getUri("/first.mp4"));
+        prewarmer.prewarm(getUri("/second.mp4"));
+        assertThat(prewarmsEnded.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void prewarm_afterIdleTimeout_warmsAgain() throws Exception {
+        prewarmer.prewarm(getUri("/video.mp4"));
+        assertThat(prewarmsEnded.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(IDLE_TIMEOUT_MS));
+        prewarmer.prewarm(getUri("/video.mp4"));
+
+        assertThat(prewarmsEnded.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void prewarm_notHttp_doesNothing() {
+        prewarmer.prewarm(Uri.parse("file:///sdcard/video.mp4"));
+        prewarmer.prewarm(Uri.parse("asset:///video.mp4"));
+
+        assertThat(server.getRequestCount()).isEqualTo(0);
+    }
+
+    private Uri getUri(String path) {
+        return Uri.parse(server.url(path).toString());
+    }
+
+    private static byte[] readFully(Uri uri) throws Exception {
+        DataSource dataSource = new DefaultHttpDataSource.Factory().createDataSource();
+        try {
+            dataSource.open(new DataSpec(uri));
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            DataSourceUtil.closeQuietly(dataSource);
+        }
+    }
+
+    /**
+     * 预热请求关闭后释放 {@link #prewarmsEnded}.
+     */
+    private final class PrewarmEndListener implements TransferListener {
+
+        @Override
+        public void onTransferInitializing(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onTransferStart(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onBytesTransferred(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        }
+
+        @Override
+        public void onTransferEnd(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            prewarmsEnded.release();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.media.DeniedByServerException;
+import android.os.Looper;
+import android.os.PersistableBundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.decoder.CryptoConfig;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.ExoMediaDrm;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * {@link DrmLicenseManager} 的测试，许可请求发到本地的 {@link MockWebServer}，由假的 {@link ExoMediaDrm} 处理。
+ * <p>
+ * 假的 {@link ExoMediaDrm} 把 PSSH 数据作为许可请求发出，把服务器返回的许可作为 keySetId，并返回可配置的许可剩余时间。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class DrmLicenseManagerTest {
+
+    private static final String ID = "id";
+    private static final byte[] PSSH_DATA = Util.getUtf8Bytes("pssh");
+    private static final byte[] LICENSE = Util.getUtf8Bytes("license");
+    private static final byte[] DENIED_LICENSE = Util.getUtf8Bytes("denied");
+    private static final String TOKEN_HEADER = "X-Token";
+    private static final long TIMEOUT_MS = 10_000;
+    private static final Format FORMAT = new Format.Builder()
+            .setSampleMimeType(MimeTypes.VIDEO_H264)
+            .setDrmInitData(new DrmInitData(new DrmInitData.SchemeData(C.UUID_NIL, MimeTypes.VIDEO_MP4, PSSH_DATA)))
+            .build();
+
+    private MockWebServer server;
+    private FakeMediaDrm mediaDrm;
+    private DrmLicenseManager licenseManager;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                byte[] license = "/denied".equals(request.getPath()) ? DENIED_LICENSE : LICENSE;
+                return new MockResponse().setBody(new Buffer().write(license));
+            }
+        });
+        server.start();
+        mediaDrm = new FakeMediaDrm();
+        Context context = ApplicationProvider.getApplicationContext();
+        licenseManager = new DrmLicenseManager(context, new DefaultHttpDataSource.Factory(), mediaItem -> FORMAT, uuid -> mediaDrm);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        licenseManager.release();
+        server.shutdown();
+    }
+
+    @Test
+    public void prefetch_storesLicenseFromServer() throws Exception {
+        mediaDrm.keyStatus = buildWidevineKeyStatus(/* licenseDurationRemainingSec= */ 3600);
+        MediaItem mediaItem = buildMediaItem(ID, C.WIDEVINE_UUID, "/license");
+
+        long startTimeMs = System.currentTimeMillis();
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getLicenseExpiryTimeMs(ID) != C.TIME_UNSET);
+        long endTimeMs = System.currentTimeMillis();
+
+        assertThat(licenseManager.getKeySetId(ID)).isEqualTo(LICENSE);
+        assertThat(licenseManager.getLicenseExpiryTimeMs(ID)).isAtLeast(startTimeMs + 3600_000);
+        assertThat(licenseManager.getLicenseExpiryTimeMs(ID)).isAtMost(endTimeMs + 3600_000);
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("POST");
+        assertThat(request.getHeader(TOKEN_HEADER)).isEqualTo("token");
+        assertThat(request.getBody().readByteArray()).isEqualTo(PSSH_DATA);
+    }
+
+    @Test
+    public void prefetch_licenseWithoutDuration_neverExpires() throws Exception {
+        // 非 Widevine 的许可没有剩余时间。
+        MediaItem mediaItem = buildMediaItem(ID, C.CLEARKEY_UUID, "/license");
+
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getLicenseExpiryTimeMs(ID) != C.TIME_UNSET);
+
+        assertThat(licenseManager.getLicenseExpiryTimeMs(ID)).isEqualTo(Long.MAX_VALUE);
+        assertThat(licenseManager.getKeySetId(ID)).isEqualTo(LICENSE);
+    }
+
+    @Test
+    public void getKeySetId_licenseExpiresSoon_removesLicense() throws Exception {
+        mediaDrm.keyStatus = buildWidevineKeyStatus(/* licenseDurationRemainingSec= */ DrmLicenseManager.MIN_REMAINING_LICENSE_DURATION_MS / 1000 / 2);
+        MediaItem mediaItem = buildMediaItem(ID, C.WIDEVINE_UUID, "/license");
+
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getLicenseExpiryTimeMs(ID) != C.TIME_UNSET);
+
+        assertThat(licenseManager.getKeySetId(ID)).isNull();
+        assertThat(licenseManager.getLicenseExpiryTimeMs(ID)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void prefetch_licenseDenied_storesNothing() throws Exception {
+        licenseManager.prefetch(buildMediaItem(ID, C.CLEARKEY_UUID, "/denied"));
+        // 预取按顺序在一个线程上进行，后一个完成时前一个已经结束。
+        licenseManager.prefetch(buildMediaItem("other", C.CLEARKEY_UUID, "/license"));
+        runMainLooperUntil(() -> licenseManager.getKeySetId("other") != null);
+
+        assertThat(licenseManager.getKeySetId(ID)).isNull();
+        assertThat(licenseManager.getLicenseExpiryTimeMs(ID)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void prefetch_validLicenseStored_doesNotRequestAgain() throws Exception {
+        MediaItem mediaItem = buildMediaItem(ID, C.CLEARKEY_UUID, "/license");
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getKeySetId(ID) != null);
+
+        licenseManager.prefetch(mediaItem);
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void applyLicense_licenseStored_setsKeySetId() throws Exception {
+        MediaItem mediaItem = buildMediaItem(ID, C.CLEARKEY_UUID, "/license");
+        assertThat(licenseManager.applyLicense(mediaItem)).isSameInstanceAs(mediaItem);
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getKeySetId(ID) != null);
+
+        MediaItem licensed = licenseManager.applyLicense(mediaItem);
+
+        MediaItem.DrmConfiguration drmConfiguration = Assertions.checkNotNull(Assertions.checkNotNull(licensed.localConfiguration).drmConfiguration);
+        assertThat(drmConfiguration.getKeySetId()).isEqualTo(LICENSE);
+    }
+
+    @Test
+    public void removeLicense_removesStoredLicense() throws Exception {
+        MediaItem mediaItem = buildMediaItem(ID, C.CLEARKEY_UUID, "/license");
+        licenseManager.prefetch(mediaItem);
+        runMainLooperUntil(() -> licenseManager.getKeySetId(ID) != null);
+
+        licenseManager.removeLicense(ID);
+
+        assertThat(licenseManager.getKeySetId(ID)).isNull();
+        assertThat(licenseManager.applyLicense(mediaItem)).isSameInstanceAs(mediaItem);
+    }
+
+    private MediaItem buildMediaItem(String mediaId, UUID scheme, String licensePath) {
+        return new MediaItem.Builder()
+                .setMediaId(mediaId)
+                .setUri("https://example.com/" + mediaId + ".mpd")
+                .setDrmConfiguration(new MediaItem.DrmConfiguration.Builder(scheme)
+                        .setLicenseUri(server.url(licensePath).toString())
+                        .setLicenseRequestHeaders(ImmutableMap.of(TOKEN_HEADER, "token"))
+                        .build())
+                .build();
+    }
+
+    private static Map<String, String> buildWidevineKeyStatus(long licenseDurationRemainingSec) {
+        return ImmutableMap.of("LicenseDurationRemaining", String.valueOf(licenseDurationRemainingSec), "PlaybackDurationRemaining", String.valueOf(licenseDurationRemainingSec));
+    }
+
+    /**
+     * 推进主线程 Looper 直到条件成立，许可请求的重试按 Robolectric 的时钟延迟.
+     */
+    private static void runMainLooperUntil(BooleanSupplier condition) throws Exception {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new TimeoutException();
+            }
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(10));
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 假的 {@link ExoMediaDrm}，许可请求的内容是 PSSH 数据，离线许可的 keySetId 就是服务器返回的许可.
+     */
+    private static final class FakeMediaDrm implements ExoMediaDrm {
+
+        /**
+         * {@link #queryKeyStatus(byte[])} 返回的状态，Widevine 从中读取许可的剩余时间
+         **/
+        public volatile Map<String, String> keyStatus = ImmutableMap.of();
+        private int nextSessionId;
+
+        @Override
+        public void setOnEventListener(@Nullable OnEventListener listener) {
+        }
+
+        @Override
+        public void setOnKeyStatusChangeListener(@Nullable OnKeyStatusChangeListener listener) {
+        }
+
+        @Override
+        public void setOnExpirationUpdateListener(@Nullable OnExpirationUpdateListener listener) {
+        }
+
+        @NonNull
+        @Override
+        public synchronized byte[] openSession() {
+            return new byte[]{(byte) ++nextSessionId};
+        }
+
+        @Override
+        public void closeSession(@NonNull byte[] sessionId) {
+        }
+
+        @NonNull
+        @Override
+        public KeyRequest getKeyRequest(@NonNull byte[] scope, @Nullable List<DrmInitData.SchemeData> schemeDatas, int keyType, @Nullable HashMap<String, String> optionalParameters) {
+            // 许可服务器的地址由 DrmConfiguration 提供。
+            byte[] data = Assertions.checkNotNull(Assertions.checkNotNull(schemeDatas).get(0).data);
+            return new KeyRequest(data, /* licenseServerUrl= */ "");
+        }
+
+        @Nullable
+        @Override
+        public byte[] provideKeyResponse(@NonNull byte[] scope, @NonNull byte[] response) throws DeniedByServerException {
+            if (Arrays.equals(response, DENIED_LICENSE)) {
+                throw new DeniedByServerException("License denied");
+            }
+            return response;
+        }
+
+        @NonNull
+        @Override
+        public ProvisionRequest getProvisionRequest() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void provideProvisionResponse(@NonNull byte[] response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NonNull
+        @Override
+        public Map<String, String> queryKeyStatus(@NonNull byte[] sessionId) {
+            return keyStatus;
+        }
+
+        @Override
+        public boolean requiresSecureDecoder(@NonNull byte[] sessionId, @NonNull String mimeType) {
+            return false;
+        }
+
+        @Override
+        public void acquire() {
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void restoreKeys(@NonNull byte[] sessionId, @NonNull byte[] keySetId) {
+        }
+
+        @Nullable
+        @Override
+        public PersistableBundle getMetrics() {
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public String getPropertyString(@NonNull String propertyName) {
+            return "";
+        }
+
+        @NonNull
+        @Override
+        public byte[] getPropertyByteArray(@NonNull String propertyName) {
+            return Util.EMPTY_BYTE_ARRAY;
+        }
+
+        @Override
+        public void setPropertyString(@NonNull String propertyName, @NonNull String value) {
+        }
+
+        @Override
+        public void setPropertyByteArray(@NonNull String propertyName, @NonNull byte[] value) {
+        }
+
+        @NonNull
+        @Override
+        public CryptoConfig createCryptoConfig(@NonNull byte[] sessionId) {
+            return new CryptoConfig() {
+            };
+        }
+
+        @Override
+        public int getCryptoType() {
+            return C.CRYPTO_TYPE_CUSTOM;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * {@link FastStartDataSource} 的测试，本地服务器为每个请求注入固定的延迟，文件是代码生成的 {@code moov} 在末尾的 MP4。
+ * <p>
+ * Robolectric 上没有解码器，首帧时间用真实的 {@link Mp4Extractor} 输出第一个样本的时间代替，
+ * 解析过程像 {@code ProgressiveMediaPeriod} 那样在每次跳转时重新打开数据源。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class FastStartDataSourceTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final int SAMPLE_COUNT = 512 * 1024;
+    private static final int LANGUAGE_UND = 0x55C4;
+    /**
+     * {@code ftyp} 的大小：头、主品牌、版本和一个兼容品牌
+     **/
+    private static final int FTYP_SIZE = 20;
+    private static final int[] MATRIX = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+
+    private byte[] samples;
+    private byte[] content;
+    /**
+     * {@code mdat} 之后的位置，即 {@code moov} 的位置
+     **/
+    private int tailPosition;
+    private MockWebServer server;
+    private RangeDispatcher dispatcher;
+    /**
+     * 布局缓存在进程内共享，每个测试用不同的地址
+     **/
+    private String path;
+
+    @Before
+    public void setUp() throws Exception {
+        samples = new byte[SAMPLE_COUNT * 2];
+        new Random(/* seed= */ 0).nextBytes(samples);
+        content = buildMp4WithMoovAtEnd(samples);
+        tailPosition = FTYP_SIZE + 8 + samples.length;
+        dispatcher = new RangeDispatcher(content);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        path = "/" + UUID.randomUUID() + ".mp4";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void read_moovAtEnd_readsWholeFileWithTwoRequests() throws Exception {
+        byte[] result = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+
+        assertThat(result).isEqualTo(content);
+        // 开头和剩下的数据在同一个连接上读取，另一个请求取回结尾。
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void open_cachedLayout_servesTailFromMemory() throws Exception {
+        read(buildFactory().createDataSource(), new DataSpec(getUri()));
+        int requestCount = server.getRequestCount();
+
+        byte[] tail = read(buildFactory().createDataSource(), new DataSpec.Builder().setUri(getUri()).setPosition(tailPosition).build());
+
+        assertThat(tail).isEqualTo(Arrays.copyOfRange(content, tailPosition, content.length));
+        assertThat(server.getRequestCount()).isEqualTo(requestCount);
+    }
+
+    @Test
+    public void read_notMp4_readsWithSingleRequest() throws Exception {
+        byte[] other = new byte[2 * FastStartDataSource.HEAD_SIZE];
+        new Random(/* seed= */ 1).nextBytes(other);
+        server.setDispatcher(new RangeDispatcher(other));
+
+        byte[] result = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+
+        assertThat(result).isEqualTo(other);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void read_tailRequestFails_readsFromUpstream() throws Exception {
+        dispatcher.failedRangeStart = tailPosition;
+
+        byte[] result = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+        dispatcher.failedRangeStart = -1;
+
+        assertThat(result).isEqualTo(content);
+        // 失败的布局没有缓存，跳到结尾时照常请求上游。
+        int requestCount = server.getRequestCount();
+        byte[] tail = read(buildFactory().createDataSource(), new DataSpec.Builder().setUri(getUri()).setPosition(tailPosition).build());
+        assertThat(tail).isEqualTo(Arrays.copyOfRange(content, tailPosition, content.length));
+        assertThat(server.getRequestCount()).isEqualTo(requestCount + 1);
+    }
+
+    @Test
+    public void extractFirstSample_highLatency_fewerRequestsAndFaster() throws Exception {
+        dispatcher.latencyMs = 200;
+
+        long startMs = System.currentTimeMillis();
+        extractFirstSample(new DefaultHttpDataSource.Factory().createDataSource(), getUri());
+        long plainMs = System.currentTimeMillis() - startMs;
+        int plainRequests = server.getRequestCount();
+        startMs = System.currentTimeMillis();
+        extractFirstSample(buildFactory().createDataSource(), getUri());
+        long fastStartMs = System.currentTimeMillis() - startMs;
+        int fastStartRequests = server.getRequestCount() - plainRequests;
+
+        System.out.println(String.format(Locale.US, "time to first sample: plain %d ms (%d requests), fast start %d ms (%d requests)", plainMs, plainRequests, fastStartMs, fastStartRequests));
+        // 开头、跳到结尾读 moov、跳回 mdat 各一个请求；快速起播时跳转都从内存读取。
+        assertThat(plainRequests).isEqualTo(3);
+        assertThat(fastStartRequests).isEqualTo(2);
+        assertThat(fastStartMs).isLessThan(plainMs);
+    }
+
+    private FastStartDataSource.Factory buildFactory() {
+        return new FastStartDataSource.Factory(new DefaultHttpDataSource.Factory());
+    }
+
+    private Uri getUri() {
+        return Uri.parse(server.url(path).toString());
+    }
+
+    private static byte[] read(DataSource dataSource, DataSpec dataSpec) throws IOException {
+        try {
+            dataSource.open(dataSpec);
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * 用 {@link Mp4Extractor} 解析到第一个样本输出为止，需要跳转时关闭数据源并从新的位置重新打开.
+     */
+    private static void extractFirstSample(DataSource dataSource, Uri uri) throws IOException {
+        Mp4Extractor extractor = new Mp4Extractor();
+        FakeExtractorOutput output = new FakeExtractorOutput();
+        extractor.init(output);
+        PositionHolder positionHolder = new PositionHolder();
+        long position = 0;
+        while (!hasSample(output)) {
+            long length = dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(position).build());
+            try {
+                ExtractorInput input = new DefaultExtractorInput(dataSource, position, length == C.LENGTH_UNSET ? C.LENGTH_UNSET : position + length);
+                int result = Extractor.RESULT_CONTINUE;
+                while (result == Extractor.RESULT_CONTINUE && !hasSample(output)) {
+                    result = extractor.read(input, positionHolder);
+                }
+                assertThat(result).isNotEqualTo(Extractor.RESULT_END_OF_INPUT);
+                position = positionHolder.position;
+            } finally {
+                dataSource.close();
+            }
+        }
+    }
+
+    private static boolean hasSample(FakeExtractorOutput output) {
+        return output.trackOutputs.size() > 0 && output.trackOutputs.valueAt(0).getSampleCount() > 0;
+    }
+
+    /**
+     * 生成 {@code ftyp}、{@code mdat}、{@code moov} 顺序的 MP4，只有一个单声道 16 位 PCM（{@code sowt}）音轨，
+     * 所有样本在一个块中.
+     */
+    private static byte[] buildMp4WithMoovAtEnd(byte[] samples) {
+        int sampleCount = samples.length / 2;
+        int durationMs = (int) ((long) sampleCount * 1000 / SAMPLE_RATE);
+        byte[] ftyp = box("ftyp", type("isom"), ints(0), type("isom"));
+        byte[] mdat = box("mdat", samples);
+        byte[] sampleEntry = box("sowt", new byte[6], shorts(/* dataReferenceIndex= */ 1), new byte[8], shorts(/* channelCount= */ 1, /* sampleSize= */ 16, 0, 0), ints(SAMPLE_RATE << 16));
+        byte[] stbl = box("stbl",
+                fullBox("stsd", ints(1), sampleEntry),
+                fullBox("stts", ints(1, sampleCount, 1)),
+                fullBox("stsc", ints(1, 1, sampleCount, 1)),
+                fullBox("stsz", ints(/* sampleSize= */ 2, sampleCount)),
+                fullBox("stco", ints(1, ftyp.length + 8)));
+        byte[] mdia = box("mdia",
+                fullBox("mdhd", ints(0, 0, SAMPLE_RATE, sampleCount), shorts(LANGUAGE_UND, 0)),
+                fullBox("hdlr", ints(0), type("soun"), new byte[12 + 1]),
+                box("minf", fullBox("smhd", shorts(0, 0)), stbl));
+        byte[] trak = box("trak",
+                fullBox("tkhd", ints(0, 0, /* trackId= */ 1, 0, durationMs), new byte[8], shorts(0, 0, /* volume= */ 0x0100, 0), ints(MATRIX), ints(0, 0)),
+                mdia);
+        byte[] moov = box("moov",
+                fullBox("mvhd", ints(0, 0, /* timescale= */ 1000, durationMs, /* rate= */ 0x00010000), shorts(/* volume= */ 0x0100), new byte[10], ints(MATRIX), new byte[24], ints(/* nextTrackId= */ 2)),
+                trak);
+        return concat(ftyp, mdat, moov);
+    }
+
+    private static byte[] box(String type, byte[]... payloads) {
+        byte[] payload = concat(payloads);
+        return concat(ints(8 + payload.length), type(type), payload);
+    }
+
+    private static byte[] fullBox(String type, byte[]... payloads) {
+        // 版本和标志都是 0。
+        return box(type, ints(0), concat(payloads));
+    }
+
+    private static byte[] type(String type) {
+        return Util.getUtf8Bytes(type);
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] shorts(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 2);
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            output.write(array, 0, array.length);
+        }
+        return output.toByteArray();
+    }
+}
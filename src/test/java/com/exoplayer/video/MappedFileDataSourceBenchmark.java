@@ -0,0 +1,109 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * 在 JVM 上比较 {@link MappedFileDataSource} 与 {@link FileDataSource} 读取同一个文件的耗时。
+ * <p>
+ * 加载器按小块读取，所以用 {@link #READ_LENGTH} 的缓冲顺序读完整个文件，并像加载器那样按区间多次打开。
+ * 结果只打印出来，不作为断言，JVM 上的数字只用于比较两者的相对开销。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MappedFileDataSourceBenchmark {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int READ_LENGTH = 4 * 1024;
+    private static final int RANGE_LENGTH = 1024 * 1024;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sequentialRead() throws Exception {
+        File file = writeFile();
+
+        long fileNs = measure(new FileDataSource(), file, /* rangeLength= */ C.LENGTH_UNSET);
+        long mappedNs = measure(new MappedFileDataSource(), file, /* rangeLength= */ C.LENGTH_UNSET);
+
+        report("sequential", fileNs, mappedNs);
+    }
+
+    @Test
+    public void rangeReads() throws Exception {
+        File file = writeFile();
+
+        long fileNs = measure(new FileDataSource(), file, RANGE_LENGTH);
+        long mappedNs = measure(new MappedFileDataSource(), file, RANGE_LENGTH);
+
+        report("ranges", fileNs, mappedNs);
+    }
+
+    private File writeFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "video.mp4");
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(MappedFileDataSourceTest.buildContent(FILE_SIZE, /* seed= */ 0));
+        }
+        return file;
+    }
+
+    /**
+     * Returns the shortest time taken to read the whole file, in nanoseconds.
+     *
+     * @param rangeLength The length read per open, or {@link C#LENGTH_UNSET} to read the file in a
+     *                    single open.
+     */
+    private static long measure(DataSource dataSource, File file, long rangeLength) throws IOException {
+        byte[] buffer = new byte[READ_LENGTH];
+        long bestNs = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            long startNs = System.nanoTime();
+            long bytesRead = 0;
+            while (bytesRead < FILE_SIZE) {
+                dataSource.open(new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(bytesRead).setLength(rangeLength).build());
+                try {
+                    int result;
+                    while ((result = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                        bytesRead += result;
+                    }
+                } finally {
+                    dataSource.close();
+                }
+            }
+            long elapsedNs = System.nanoTime() - startNs;
+            assertThat(bytesRead).isEqualTo((long) FILE_SIZE);
+            if (i >= WARMUP_ITERATIONS) {
+                bestNs = Math.min(bestNs, elapsedNs);
+            }
+        }
+        return bestNs;
+    }
+
+    private static void report(String name, long fileNs, long mappedNs) {
+        System.out.println(String.format(Locale.US, "%s: FileDataSource %.1f ms (%.0f MB/s), MappedFileDataSource %.1f ms (%.0f MB/s)", name, fileNs / 1e6, throughputMbPerSecond(fileNs), mappedNs / 1e6, throughputMbPerSecond(mappedNs)));
+    }
+
+    private static double throughputMbPerSecond(long elapsedNs) {
+        return FILE_SIZE / (1024.0 * 1024.0) / (elapsedNs / 1e9);
+    }
+}
@@ -0,0 +1,134 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link MappedFileDataSource} 的测试，用很小的窗口覆盖跨窗口读取。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MappedFileDataSourceTest {
+
+    private static final int WINDOW_SIZE = 1024;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_wholeFile_matchesFileDataSource() throws Exception {
+        byte[] content = buildContent(10 * WINDOW_SIZE + 17, /* seed= */ 0);
+        File file = writeFile("video.mp4", content);
+
+        byte[] mapped = read(new MappedFileDataSource(WINDOW_SIZE), new DataSpec(Uri.fromFile(file)));
+
+        assertThat(mapped).isEqualTo(read(new FileDataSource(), new DataSpec(Uri.fromFile(file))));
+        assertThat(mapped).isEqualTo(content);
+    }
+
+    @Test
+    public void read_rangeAcrossWindows_returnsRange() throws Exception {
+        byte[] content = buildContent(4 * WINDOW_SIZE, /* seed= */ 0);
+        File file = writeFile("video.mp4", content);
+        DataSpec dataSpec = new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(WINDOW_SIZE - 10).setLength(2 * WINDOW_SIZE).build();
+
+        byte[] mapped = read(new MappedFileDataSource(WINDOW_SIZE), dataSpec);
+
+        assertThat(mapped).isEqualTo(Arrays.copyOfRange(content, WINDOW_SIZE - 10, 3 * WINDOW_SIZE - 10));
+    }
+
+    @Test
+    public void open_positionBeyondEnd_throws() throws Exception {
+        File file = writeFile("video.mp4", buildContent(100, /* seed= */ 0));
+        MappedFileDataSource dataSource = new MappedFileDataSource(WINDOW_SIZE);
+
+        assertThrows(FileDataSource.FileDataSourceException.class, () -> dataSource.open(new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(101).build()));
+    }
+
+    @Test
+    public void reopen_sameFile_readsSameContent() throws Exception {
+        byte[] content = buildContent(3 * WINDOW_SIZE, /* seed= */ 0);
+        File file = writeFile("video.mp4", content);
+        MappedFileDataSource dataSource = new MappedFileDataSource(WINDOW_SIZE);
+
+        byte[] first = read(dataSource, new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(0).setLength(100).build());
+        byte[] second = read(dataSource, new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(50).setLength(100).build());
+
+        assertThat(first).isEqualTo(Arrays.copyOfRange(content, 0, 100));
+        assertThat(second).isEqualTo(Arrays.copyOfRange(content, 50, 150));
+    }
+
+    @Test
+    public void reopen_replacedFile_readsNewContent() throws Exception {
+        File file = writeFile("video.mp4", buildContent(2 * WINDOW_SIZE, /* seed= */ 0));
+        MappedFileDataSource dataSource = new MappedFileDataSource(WINDOW_SIZE);
+        read(dataSource, new DataSpec(Uri.fromFile(file)));
+        long lastModified = file.lastModified();
+
+        // 大小相同的新文件，之前的窗口映射的是旧文件。
+        assertThat(file.delete()).isTrue();
+        byte[] newContent = buildContent(2 * WINDOW_SIZE, /* seed= */ 1);
+        writeFile("video.mp4", newContent);
+        assertThat(file.setLastModified(lastModified + 2000)).isTrue();
+
+        assertThat(read(dataSource, new DataSpec(Uri.fromFile(file)))).isEqualTo(newContent);
+    }
+
+    @Test
+    public void read_lengthUnset_readsToEnd() throws Exception {
+        byte[] content = buildContent(WINDOW_SIZE + 1, /* seed= */ 0);
+        File file = writeFile("video.mp4", content);
+        MappedFileDataSource dataSource = new MappedFileDataSource(WINDOW_SIZE);
+
+        long length = dataSource.open(new DataSpec.Builder().setUri(Uri.fromFile(file)).setPosition(1).setLength(C.LENGTH_UNSET).build());
+        try {
+            assertThat(length).isEqualTo((long) WINDOW_SIZE);
+            assertThat(DataSourceUtil.readToEnd(dataSource)).isEqualTo(Arrays.copyOfRange(content, 1, content.length));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), name);
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        return file;
+    }
+
+    /* package */ static byte[] buildContent(int length, long seed) {
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    /* package */ static byte[] read(DataSource dataSource, DataSpec dataSpec) throws IOException {
+        try {
+            dataSource.open(dataSpec);
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * {@link MarkerIndex} 的测试，覆盖排序插入、批量归并、范围删除、上一个和下一个标记的查找以及按像素合并标记。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MarkerIndexTest {
+
+    @Test
+    public void add_unsorted_keepsMarkersSorted() {
+        MarkerIndex markerIndex = new MarkerIndex();
+
+        markerIndex.add(3000, false);
+        markerIndex.add(1000, true);
+        markerIndex.add(2000, false);
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 2000L, 3000L).inOrder();
+        assertThat(markerIndex.isPlayed(0)).isTrue();
+        assertThat(markerIndex.isPlayed(1)).isFalse();
+    }
+
+    @Test
+    public void add_existingTime_updatesPlayedState() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.add(1000, false);
+
+        markerIndex.add(1000, true);
+
+        assertThat(markerIndex.size()).isEqualTo(1);
+        assertThat(markerIndex.isPlayed(0)).isTrue();
+    }
+
+    @Test
+    public void add_beyondInitialCapacity_growsArrays() {
+        MarkerIndex markerIndex = new MarkerIndex();
+
+        for (int i = 99; i >= 0; i--) {
+            markerIndex.add(i * 1000L, false);
+        }
+
+        assertThat(markerIndex.size()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(markerIndex.getTimeMs(i)).isEqualTo(i * 1000L);
+        }
+    }
+
+    @Test
+    public void addAll_mergesWithExistingMarkers() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.add(2000, false);
+        markerIndex.add(4000, false);
+
+        markerIndex.addAll(new long[] {5000, 1000, 3000}, new boolean[] {true, true, false});
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 2000L, 3000L, 4000L, 5000L).inOrder();
+        assertThat(getPlayed(markerIndex)).asList().containsExactly(true, false, false, false, true).inOrder();
+    }
+
+    @Test
+    public void addAll_existingTime_replacesPlayedState() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.add(1000, false);
+        markerIndex.add(2000, false);
+
+        markerIndex.addAll(new long[] {2000, 1000}, new boolean[] {true, true});
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 2000L).inOrder();
+        assertThat(getPlayed(markerIndex)).asList().containsExactly(true, true).inOrder();
+    }
+
+    @Test
+    public void addAll_duplicateTimes_keepsOneMarkerWithLastPlayedState() {
+        MarkerIndex markerIndex = new MarkerIndex();
+
+        markerIndex.addAll(new long[] {1000, 2000, 1000, 1000}, new boolean[] {false, true, false, true});
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 2000L).inOrder();
+        assertThat(getPlayed(markerIndex)).asList().containsExactly(true, true).inOrder();
+    }
+
+    @Test
+    public void addAll_notifiesOnce() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        int[] notifications = new int[1];
+        markerIndex.addListener(index -> notifications[0]++);
+
+        markerIndex.addAll(new long[] {1000, 2000, 3000}, new boolean[3]);
+        markerIndex.addAll(new long[0], new boolean[0]);
+
+        assertThat(notifications[0]).isEqualTo(1);
+    }
+
+    @Test
+    public void remove_removesOnlyMarkerAtTime() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000, 3000}, new boolean[] {false, true, false});
+
+        markerIndex.remove(2000);
+        markerIndex.remove(2500);
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 3000L).inOrder();
+        assertThat(getPlayed(markerIndex)).asList().containsExactly(false, false).inOrder();
+    }
+
+    @Test
+    public void removeRange_removesFromInclusiveToExclusive() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000, 3000, 4000, 5000}, new boolean[5]);
+
+        markerIndex.removeRange(2000, 4000);
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(1000L, 4000L, 5000L).inOrder();
+    }
+
+    @Test
+    public void removeRange_boundsBetweenMarkers_removesMarkersInside() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000, 3000}, new boolean[3]);
+        int[] notifications = new int[1];
+        markerIndex.addListener(index -> notifications[0]++);
+
+        markerIndex.removeRange(0, 1500);
+        markerIndex.removeRange(2100, 2900);
+
+        assertThat(getTimesMs(markerIndex)).asList().containsExactly(2000L, 3000L).inOrder();
+        // 第二个范围内没有标记，不通知。
+        assertThat(notifications[0]).isEqualTo(1);
+    }
+
+    @Test
+    public void setPlayed_updatesExistingMarkerOnly() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.add(1000, false);
+
+        markerIndex.setPlayed(1000, true);
+        markerIndex.setPlayed(2000, true);
+
+        assertThat(markerIndex.size()).isEqualTo(1);
+        assertThat(markerIndex.isPlayed(0)).isTrue();
+    }
+
+    @Test
+    public void getNextMarkerTimeMs_returnsFirstMarkerAfterPosition() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000}, new boolean[2]);
+
+        assertThat(markerIndex.getNextMarkerTimeMs(0)).isEqualTo(1000L);
+        assertThat(markerIndex.getNextMarkerTimeMs(1000)).isEqualTo(2000L);
+        assertThat(markerIndex.getNextMarkerTimeMs(2000)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void getPreviousMarkerTimeMs_returnsLastMarkerBeforePosition() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000}, new boolean[2]);
+
+        assertThat(markerIndex.getPreviousMarkerTimeMs(3000)).isEqualTo(2000L);
+        assertThat(markerIndex.getPreviousMarkerTimeMs(2000)).isEqualTo(1000L);
+        assertThat(markerIndex.getPreviousMarkerTimeMs(1000)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void getPreviousMarkerTimeMs_withThreshold_skipsMarkerJustBeforePosition() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {10_000, 20_000}, new boolean[2]);
+
+        // 与 ExoVideoView#seekToPreviousMarker() 相同：刚越过的标记在阈值内，跳到更早的标记。
+        assertThat(markerIndex.getPreviousMarkerTimeMs(21_000 - ExoVideoView.PREVIOUS_MARKER_THRESHOLD_MS)).isEqualTo(10_000L);
+        assertThat(markerIndex.getPreviousMarkerTimeMs(23_001 - ExoVideoView.PREVIOUS_MARKER_THRESHOLD_MS)).isEqualTo(20_000L);
+        assertThat(markerIndex.getPreviousMarkerTimeMs(12_000 - ExoVideoView.PREVIOUS_MARKER_THRESHOLD_MS)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void clear_removesAllMarkers() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {1000, 2000}, new boolean[2]);
+
+        markerIndex.clear();
+
+        assertThat(markerIndex.size()).isEqualTo(0);
+        assertThat(markerIndex.getNextMarkerTimeMs(0)).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void getVisibleMarkers_samePixel_mergesIntoFirstMarker() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        // 时长 10 秒、宽 10 像素时每像素 1 秒。
+        markerIndex.addAll(new long[] {1000, 1500, 1999, 5000, 5100}, new boolean[] {true, true, true, true, false});
+        long[] timesMs = new long[11];
+        boolean[] played = new boolean[11];
+
+        int count = markerIndex.getVisibleMarkers(/* startMs= */ 0, /* endMs= */ 10_000, /* widthPx= */ 10, timesMs, played);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(timesMs[0]).isEqualTo(1000L);
+        assertThat(played[0]).isTrue();
+        // 合并的标记只有全部播放过才算播放过。
+        assertThat(timesMs[1]).isEqualTo(5000L);
+        assertThat(played[1]).isFalse();
+    }
+
+    @Test
+    public void getVisibleMarkers_skipsMarkersOutsideRange() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.addAll(new long[] {500, 1000, 3000, 6000}, new boolean[4]);
+        long[] timesMs = new long[101];
+        boolean[] played = new boolean[101];
+
+        int count = markerIndex.getVisibleMarkers(/* startMs= */ 1000, /* endMs= */ 5000, /* widthPx= */ 100, timesMs, played);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(timesMs[0]).isEqualTo(1000L);
+        assertThat(timesMs[1]).isEqualTo(3000L);
+    }
+
+    @Test
+    public void getVisibleMarkers_manyMarkers_boundedByWidth() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        int markerCount = 10_000;
+        long[] markerTimesMs = new long[markerCount];
+        for (int i = 0; i < markerCount; i++) {
+            markerTimesMs[i] = i * 360L;
+        }
+        markerIndex.addAll(markerTimesMs, new boolean[markerCount]);
+        int widthPx = 1000;
+        long[] timesMs = new long[widthPx + 1];
+        boolean[] played = new boolean[widthPx + 1];
+
+        int count = markerIndex.getVisibleMarkers(/* startMs= */ 0, /* endMs= */ 3_600_000, widthPx, timesMs, played);
+
+        assertThat(count).isAtMost(widthPx + 1);
+        assertThat(count).isGreaterThan(0);
+        for (int i = 1; i < count; i++) {
+            assertThat(timesMs[i]).isGreaterThan(timesMs[i - 1]);
+        }
+    }
+
+    @Test
+    public void getVisibleMarkers_emptyRangeOrWidth_returnsNoMarkers() {
+        MarkerIndex markerIndex = new MarkerIndex();
+        markerIndex.add(1000, false);
+        long[] timesMs = new long[1];
+        boolean[] played = new boolean[1];
+
+        assertThat(markerIndex.getVisibleMarkers(/* startMs= */ 0, /* endMs= */ 0, /* widthPx= */ 100, timesMs, played)).isEqualTo(0);
+        assertThat(markerIndex.getVisibleMarkers(/* startMs= */ 0, /* endMs= */ 10_000, /* widthPx= */ 0, timesMs, played)).isEqualTo(0);
+    }
+
+    private static long[] getTimesMs(MarkerIndex markerIndex) {
+        long[] timesMs = new long[markerIndex.size()];
+        for (int i = 0; i < timesMs.length; i++) {
+            timesMs[i] = markerIndex.getTimeMs(i);
+        }
+        return timesMs;
+    }
+
+    private static boolean[] getPlayed(MarkerIndex markerIndex) {
+        boolean[] played = new boolean[markerIndex.size()];
+        for (int i = 0; i < played.length; i++) {
+            played[i] = markerIndex.isPlayed(i);
+        }
+        return played;
+    }
+}
@@ -0,0 +1,187 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+/**
+ * {@link OfflineDownloads} 的测试，从本地的 {@link MockWebServer} 下载。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class OfflineDownloadsTest {
+
+    private static final String ID = "id";
+    private static final int CONTENT_LENGTH = 64 * 1024;
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Context context;
+    private MockWebServer server;
+    private File downloadDirectory;
+    private byte[] content;
+    private OfflineDownloads offlineDownloads;
+
+    @Before
+    public void setUp() throws Exception {
+        context = ApplicationProvider.getApplicationContext();
+        server = new MockWebServer();
+        server.start();
+        downloadDirectory = temporaryFolder.newFolder();
+        content = new byte[CONTENT_LENGTH];
+        new Random(/* seed= */ 0).nextBytes(content);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (offlineDownloads != null) {
+            offlineDownloads.release();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void download_completesAndPlaysFromCache() throws Exception {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content)));
+        offlineDownloads = buildOfflineDownloads();
+
+        offlineDownloads.download(ID, getUri());
+        runMainLooperUntil(() -> offlineDownloads.isDownloaded(ID));
+
+        @Nullable MediaItem mediaItem = offlineDownloads.getMediaItem(ID);
+        assertThat(mediaItem).isNotNull();
+        assertThat(readFully(offlineDownloads.createDataSourceFactory(), getUri())).isEqualTo(content);
+        // 读取的是已下载的内容，没有再次请求服务器。
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void download_reportsProgress() throws Exception {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content)).throttleBody(/* bytesPerPeriod= */ 8 * 1024, /* period= */ 50, TimeUnit.MILLISECONDS));
+        offlineDownloads = buildOfflineDownloads();
+        List<Float> percentages = new ArrayList<>();
+        offlineDownloads.addListener(new OfflineDownloads.Listener() {
+            @Override
+            public void onProgress(List<Download> downloads) {
+                percentages.add(downloads.get(0).getPercentDownloaded());
+            }
+        });
+
+        offlineDownloads.download(ID, getUri());
+        runMainLooperUntil(() -> offlineDownloads.isDownloaded(ID));
+
+        assertThat(percentages).isNotEmpty();
+        assertThat(percentages).isInOrder();
+    }
+
+    @Test
+    public void remove_deletesDownloadedContent() throws Exception {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content)));
+        offlineDownloads = buildOfflineDownloads();
+        List<String> removedIds = new ArrayList<>();
+        offlineDownloads.addListener(new OfflineDownloads.Listener() {
+            @Override
+            public void onDownloadRemoved(Download download) {
+                removedIds.add(download.request.id);
+            }
+        });
+        offlineDownloads.download(ID, getUri());
+        runMainLooperUntil(() -> offlineDownloads.isDownloaded(ID));
+
+        offlineDownloads.remove(ID);
+        runMainLooperUntil(() -> !removedIds.isEmpty());
+
+        assertThat(removedIds).containsExactly(ID);
+        assertThat(offlineDownloads.getDownload(ID)).isNull();
+        assertThat(offlineDownloads.getCache().getCacheSpace()).isEqualTo(0L);
+    }
+
+    @Test
+    public void release_resumesPendingDownloadInNextInstance() throws Exception {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content)));
+        offlineDownloads = buildOfflineDownloads();
+        offlineDownloads.setPaused(true);
+        offlineDownloads.download(ID, getUri());
+        runMainLooperUntil(() -> offlineDownloads.getDownload(ID) != null);
+        offlineDownloads.release();
+
+        offlineDownloads = buildOfflineDownloads();
+        assertThat(offlineDownloads.getDownload(ID)).isNotNull();
+        runMainLooperUntil(() -> offlineDownloads.isDownloaded(ID));
+
+        assertThat(readFully(offlineDownloads.createDataSourceFactory(), getUri())).isEqualTo(content);
+    }
+
+    private OfflineDownloads buildOfflineDownloads() {
+        // 不依赖 Robolectric 模拟的网络状态。
+        return new OfflineDownloads.Builder(context)
+                .setDownloadDirectory(downloadDirectory)
+                .setRequirements(new Requirements(/* requirements= */ 0))
+                .setProgressIntervalMs(10)
+                .build();
+    }
+
+    private Uri getUri() {
+        return Uri.parse(server.url("/video.mp4").toString());
+    }
+
+    private static byte[] readFully(DataSource.Factory dataSourceFactory, Uri uri) throws Exception {
+        DataSource dataSource = dataSourceFactory.createDataSource();
+        try {
+            dataSource.open(new DataSpec(uri));
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            DataSourceUtil.closeQuietly(dataSource);
+        }
+    }
+
+    /**
+     * 推进主线程 Looper 直到条件成立，下载在 {@link com.google.android.exoplayer2.offline.DownloadManager}
+     * 自己的线程上进行，事件回到主线程.
+     */
+    private static void runMainLooperUntil(BooleanSupplier condition) throws Exception {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new TimeoutException();
+            }
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(10));
+            Thread.sleep(10);
+        }
+    }
+}
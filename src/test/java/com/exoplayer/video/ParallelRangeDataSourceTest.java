@@ -0,0 +1,148 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * {@link ParallelRangeDataSource} 的测试，本地服务器为每个请求注入固定的延迟并限制每个连接的带宽，模拟高延迟网络。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ParallelRangeDataSourceTest {
+
+    private static final int CONTENT_LENGTH = 2 * 1024 * 1024;
+    private static final int INITIAL_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    private byte[] content;
+    private MockWebServer server;
+    private RangeDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[CONTENT_LENGTH];
+        new Random(/* seed= */ 0).nextBytes(content);
+        dispatcher = new RangeDispatcher(content);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void read_rangesSupported_readsContentWithParallelRequests() throws Exception {
+        dispatcher.latencyMs = 20;
+
+        byte[] result = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+
+        assertThat(result).isEqualTo(content);
+        assertThat(server.getRequestCount()).isGreaterThan(2);
+        assertThat(dispatcher.maxConcurrentRequests).isGreaterThan(1);
+    }
+
+    @Test
+    public void read_subrange_readsSubrange() throws Exception {
+        DataSpec dataSpec = new DataSpec.Builder().setUri(getUri()).setPosition(1000).setLength(CONTENT_LENGTH / 2).build();
+
+        byte[] result = read(buildFactory().createDataSource(), dataSpec);
+
+        assertThat(result).isEqualTo(Arrays.copyOfRange(content, 1000, 1000 + CONTENT_LENGTH / 2));
+    }
+
+    @Test
+    public void read_rangesIgnored_fallsBackToSingleConnection() throws Exception {
+        dispatcher.ignoreRanges = true;
+
+        byte[] result = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+
+        assertThat(result).isEqualTo(content);
+        // 第一个范围请求被忽略后只用一个连接重新读取。
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void read_gzipAllowed_usesSingleConnection() throws Exception {
+        DataSpec dataSpec = new DataSpec.Builder().setUri(getUri()).setFlags(DataSpec.FLAG_ALLOW_GZIP).build();
+
+        byte[] result = read(buildFactory().createDataSource(), dataSpec);
+
+        assertThat(result).isEqualTo(content);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void close_whileChunksDownloading_canBeReopened() throws Exception {
+        dispatcher.latencyMs = 50;
+        dispatcher.bytesPerSecond = 256 * 1024;
+        DataSource dataSource = buildFactory().createDataSource();
+        dataSource.open(new DataSpec(getUri()));
+        byte[] buffer = new byte[1024];
+        assertThat(dataSource.read(buffer, 0, buffer.length)).isGreaterThan(0);
+        dataSource.close();
+
+        dispatcher.bytesPerSecond = 0;
+        byte[] result = read(dataSource, new DataSpec.Builder().setUri(getUri()).setPosition(CONTENT_LENGTH / 2).build());
+
+        assertThat(result).isEqualTo(Arrays.copyOfRange(content, CONTENT_LENGTH / 2, CONTENT_LENGTH));
+    }
+
+    @Test
+    public void read_highLatency_fasterThanSingleConnection() throws Exception {
+        dispatcher.latencyMs = 100;
+        dispatcher.bytesPerSecond = 1024 * 1024;
+
+        long startMs = System.currentTimeMillis();
+        byte[] single = read(new DefaultHttpDataSource.Factory().createDataSource(), new DataSpec(getUri()));
+        long singleMs = System.currentTimeMillis() - startMs;
+        startMs = System.currentTimeMillis();
+        byte[] parallel = read(buildFactory().createDataSource(), new DataSpec(getUri()));
+        long parallelMs = System.currentTimeMillis() - startMs;
+
+        System.out.println(String.format(Locale.US, "single connection %d ms, parallel ranges %d ms", singleMs, parallelMs));
+        assertThat(single).isEqualTo(content);
+        assertThat(parallel).isEqualTo(content);
+        assertThat(parallelMs).isLessThan(singleMs);
+    }
+
+    private ParallelRangeDataSource.Factory buildFactory() {
+        return new ParallelRangeDataSource.Factory(new DefaultHttpDataSource.Factory())
+                .setChunkSizes(INITIAL_CHUNK_SIZE, MAX_CHUNK_SIZE)
+                .setMaxParallelRequests(4);
+    }
+
+    private Uri getUri() {
+        return Uri.parse(server.url("/video.mp4").toString());
+    }
+
+    private static byte[] read(DataSource dataSource, DataSpec dataSpec) throws IOException {
+        try {
+            dataSource.open(dataSpec);
+            return DataSourceUtil.readToEnd(dataSource);
+        } finally {
+            dataSource.close();
+        }
+    }
+}
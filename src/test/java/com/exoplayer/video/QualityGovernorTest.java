@@ -0,0 +1,144 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.os.PowerManager;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link QualityGovernor} 的测试，掉帧和温度状态都是模拟输入，时间由 Robolectric 的主线程 Looper 推进。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class QualityGovernorTest {
+
+    private static final long STABLE_PERIOD_MS = 30_000;
+
+    private QualityGovernor governor;
+    /**
+     * 每次调整的级别和原因
+     **/
+    private List<int[]> changes;
+
+    @Before
+    public void setUp() {
+        governor = new QualityGovernor(/* maxDroppedFramesPerSecond= */ 2f, STABLE_PERIOD_MS);
+        changes = new ArrayList<>();
+        governor.setListener((level, maxVideoHeight, maxVideoFrameRate, reason) -> changes.add(new int[]{level, reason}));
+    }
+
+    @Test
+    public void droppedFramesBelowThreshold_keepsLevel() {
+        governor.onDroppedFrames(/* droppedFrames= */ 1, /* elapsedMs= */ 1000);
+
+        assertThat(governor.getLevel()).isEqualTo(0);
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    public void droppedFramesAboveThreshold_lowersLevel() {
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+
+        assertThat(governor.getLevel()).isEqualTo(1);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).isEqualTo(new int[]{1, QualityGovernor.REASON_DROPPED_FRAMES});
+    }
+
+    @Test
+    public void droppedFramesWithinCooldown_lowerLevelOnce() {
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+        assertThat(governor.getLevel()).isEqualTo(1);
+
+        advanceTimeMs(5_000);
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+
+        assertThat(governor.getLevel()).isEqualTo(2);
+    }
+
+    @Test
+    public void droppedFramesStop_raisesLevelAfterStablePeriod() {
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+
+        advanceTimeMs(STABLE_PERIOD_MS - 1);
+        assertThat(governor.getLevel()).isEqualTo(1);
+        advanceTimeMs(1);
+
+        assertThat(governor.getLevel()).isEqualTo(0);
+        assertThat(changes.get(changes.size() - 1)).isEqualTo(new int[]{0, QualityGovernor.REASON_RECOVERED});
+    }
+
+    @Test
+    public void droppedFramesDuringStablePeriod_restartStablePeriod() {
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+        advanceTimeMs(STABLE_PERIOD_MS / 2);
+        governor.onDroppedFrames(/* droppedFrames= */ 3, /* elapsedMs= */ 1000);
+        assertThat(governor.getLevel()).isEqualTo(2);
+
+        // 第一次掉帧之后的稳定时间已经过去，但第二次掉帧重新开始计时。
+        advanceTimeMs(STABLE_PERIOD_MS / 2);
+        assertThat(governor.getLevel()).isEqualTo(2);
+        advanceTimeMs(STABLE_PERIOD_MS / 2);
+        assertThat(governor.getLevel()).isEqualTo(1);
+        advanceTimeMs(STABLE_PERIOD_MS);
+        assertThat(governor.getLevel()).isEqualTo(0);
+    }
+
+    @Test
+    public void thermalStatusRises_lowersLevelImmediately() {
+        governor.onThermalStatusChanged(PowerManager.THERMAL_STATUS_SEVERE);
+
+        assertThat(governor.getLevel()).isEqualTo(2);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).isEqualTo(new int[]{2, QualityGovernor.REASON_THERMAL});
+    }
+
+    @Test
+    public void thermalStatusFalls_raisesLevelOneStepPerStablePeriod() {
+        governor.onThermalStatusChanged(PowerManager.THERMAL_STATUS_SEVERE);
+        governor.onThermalStatusChanged(PowerManager.THERMAL_STATUS_NONE);
+        assertThat(governor.getLevel()).isEqualTo(2);
+
+        advanceTimeMs(STABLE_PERIOD_MS);
+        assertThat(governor.getLevel()).isEqualTo(1);
+        advanceTimeMs(STABLE_PERIOD_MS);
+        assertThat(governor.getLevel()).isEqualTo(0);
+        assertThat(changes.get(changes.size() - 1)).isEqualTo(new int[]{0, QualityGovernor.REASON_RECOVERED});
+    }
+
+    @Test
+    public void thermalStatusLight_keepsLevel() {
+        governor.onThermalStatusChanged(PowerManager.THERMAL_STATUS_LIGHT);
+
+        assertThat(governor.getLevel()).isEqualTo(0);
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    public void thermalAndDroppedFrames_useMostConstrainedLevel() {
+        governor.onThermalStatusChanged(PowerManager.THERMAL_STATUS_MODERATE);
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+        advanceTimeMs(5_000);
+        governor.onDroppedFrames(/* droppedFrames= */ 10, /* elapsedMs= */ 1000);
+        assertThat(governor.getLevel()).isEqualTo(2);
+
+        // 温度状态不变时只有掉帧的级别恢复，最终停在温度状态决定的级别。
+        advanceTimeMs(3 * STABLE_PERIOD_MS);
+
+        assertThat(governor.getLevel()).isEqualTo(1);
+    }
+
+    private static void advanceTimeMs(long timeMs) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(timeMs));
+    }
+}
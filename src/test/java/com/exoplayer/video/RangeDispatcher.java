@@ -0,0 +1,81 @@
+package com.exoplayer.video;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * 按 {@code Range} 请求头返回内容的一部分，每个响应先等待 {@link #latencyMs}，再以 {@link #bytesPerSecond}
+ * 发送，并记录同时进行的请求数.
+ */
+/* package */ final class RangeDispatcher extends Dispatcher {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final long THROTTLE_PERIOD_MS = 10;
+
+    private final byte[] content;
+    public volatile long latencyMs;
+    /**
+     * 每个连接的带宽，0 表示不限制
+     **/
+    public volatile int bytesPerSecond;
+    public volatile boolean ignoreRanges;
+    /**
+     * 从这个位置开始的范围请求返回服务器错误，-1 表示不出错
+     **/
+    public volatile long failedRangeStart = -1;
+    public volatile int maxConcurrentRequests;
+    private int concurrentRequests;
+
+    public RangeDispatcher(byte[] content) {
+        this.content = content;
+    }
+
+    @NonNull
+    @Override
+    public MockResponse dispatch(@NonNull RecordedRequest request) {
+        synchronized (this) {
+            concurrentRequests++;
+            maxConcurrentRequests = Math.max(maxConcurrentRequests, concurrentRequests);
+        }
+        try {
+            // 延迟在分派线程上等待，这样同时进行的请求数包含正在等待响应的请求。
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                concurrentRequests--;
+            }
+        }
+        @Nullable String range = request.getHeader("Range");
+        Matcher matcher = range == null || ignoreRanges ? null : RANGE_PATTERN.matcher(range);
+        MockResponse response;
+        if (matcher != null && matcher.matches()) {
+            int start = Integer.parseInt(matcher.group(1));
+            if (start == failedRangeStart) {
+                return new MockResponse().setResponseCode(500);
+            }
+            int end = matcher.group(2).isEmpty() ? content.length - 1 : Math.min(content.length - 1, Integer.parseInt(matcher.group(2)));
+            response = new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                    .setBody(new Buffer().write(content, start, end - start + 1));
+        } else {
+            response = new MockResponse().setBody(new Buffer().write(content));
+        }
+        int bytesPerSecond = this.bytesPerSecond;
+        if (bytesPerSecond > 0) {
+            response.throttleBody(bytesPerSecond * THROTTLE_PERIOD_MS / 1000, THROTTLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+}
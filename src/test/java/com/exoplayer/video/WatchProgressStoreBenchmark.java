@@ -0,0 +1,87 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 在 JVM 上测量 {@link WatchProgressStore} 保存 {@link #ENTRY_COUNT} 个媒体进度时的写入、加载和查询耗时。
+ * <p>
+ * 重点是少量更新的写入量：一批更新只追加到日志，不随条目总数增长。结果只打印出来，不作为断言。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class WatchProgressStoreBenchmark {
+
+    private static final int ENTRY_COUNT = 100_000;
+    private static final int BATCH_SIZE = 64;
+    private static final int PAGE_SIZE = 20;
+    private static final int PAGE_QUERIES = 10_000;
+    private static final int ITERATIONS = 5;
+    private static final long TIMEOUT_MS = 60_000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void hundredThousandEntries() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        File indexFile = new File(directory, "index");
+        File logFile = new File(directory, "log");
+
+        long startNs = System.nanoTime();
+        WatchProgressStore store = new WatchProgressStore(directory, WatchProgressStore.DEFAULT_BATCH_DELAY_MS);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            store.put("media" + i, i, 3_600_000);
+        }
+        assertThat(store.releaseBlocking(TIMEOUT_MS)).isTrue();
+        long populateNs = System.nanoTime() - startNs;
+
+        long bestLoadNs = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            startNs = System.nanoTime();
+            store = new WatchProgressStore(directory, WatchProgressStore.DEFAULT_BATCH_DELAY_MS);
+            assertThat(store.getPositionMs("media" + (ENTRY_COUNT - 1))).isEqualTo((long) ENTRY_COUNT - 1);
+            bestLoadNs = Math.min(bestLoadNs, System.nanoTime() - startNs);
+            assertThat(store.releaseBlocking(TIMEOUT_MS)).isTrue();
+        }
+
+        store = new WatchProgressStore(directory, WatchProgressStore.DEFAULT_BATCH_DELAY_MS);
+        List<String> page = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add("media" + (i * (ENTRY_COUNT / PAGE_SIZE)));
+        }
+        startNs = System.nanoTime();
+        for (int i = 0; i < PAGE_QUERIES; i++) {
+            Map<String, WatchProgressStore.Entry> result = store.get(page);
+            assertThat(result).hasSize(PAGE_SIZE);
+        }
+        long pageNs = (System.nanoTime() - startNs) / PAGE_QUERIES;
+
+        long indexLength = indexFile.length();
+        long logLength = logFile.length();
+        startNs = System.nanoTime();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            store.put("media" + i, i + 1, 3_600_000);
+        }
+        assertThat(store.releaseBlocking(TIMEOUT_MS)).isTrue();
+        long batchNs = System.nanoTime() - startNs;
+        long bytesWritten = logFile.length() - logLength;
+
+        System.out.println(String.format(Locale.US, "%d entries: populate %.1f ms, load %.1f ms, page of %d %.1f us", ENTRY_COUNT, populateNs / 1e6, bestLoadNs / 1e6, PAGE_SIZE, pageNs / 1e3));
+        System.out.println(String.format(Locale.US, "batch of %d updates: %.1f ms, %d bytes appended to the log, index %d bytes", BATCH_SIZE, batchNs / 1e6, bytesWritten, indexLength));
+        // 一批更新只追加到日志，没有重写索引。
+        assertThat(indexFile.length()).isEqualTo(indexLength);
+        assertThat(bytesWritten).isLessThan(indexLength / 100);
+    }
+}
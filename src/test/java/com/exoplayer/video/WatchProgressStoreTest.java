@@ -0,0 +1,165 @@
+package com.exoplayer.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * {@link WatchProgressStore} 的测试，每次重新创建实例时从磁盘加载，覆盖日志、索引和不完整的日志尾部。
+ */
+@RunWith(AndroidJUnit4.class)
+public final class WatchProgressStoreTest {
+
+    private static final long BATCH_DELAY_MS = 100;
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    @Nullable
+    private WatchProgressStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (store != null) {
+            store.releaseBlocking(TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    public void put_visibleImmediately() {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+
+        store.put("a", 1000, 10_000);
+
+        WatchProgressStore.Entry entry = store.get("a");
+        assertThat(entry).isNotNull();
+        assertThat(entry.positionMs).isEqualTo(1000L);
+        assertThat(entry.durationMs).isEqualTo(10_000L);
+        assertThat(entry.getFraction()).isEqualTo(0.1f);
+        assertThat(store.get("b")).isNull();
+        assertThat(store.getPositionMs("b")).isEqualTo(C.TIME_UNSET);
+    }
+
+    @Test
+    public void put_durationUnset_keepsStoredDuration() {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        store.put("a", 1000, 10_000);
+
+        store.put("a", 2000, C.TIME_UNSET);
+
+        assertThat(store.get("a").positionMs).isEqualTo(2000L);
+        assertThat(store.get("a").durationMs).isEqualTo(10_000L);
+    }
+
+    @Test
+    public void put_reload_restoresEntries() throws Exception {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        store.put("a", 1000, 10_000);
+        store.put("b", 2000, 20_000);
+        store.put("a", 3000, 10_000);
+
+        reload();
+
+        assertThat(store.getPositionMs("a")).isEqualTo(3000L);
+        assertThat(store.getPositionMs("b")).isEqualTo(2000L);
+    }
+
+    @Test
+    public void remove_reload_staysRemoved() throws Exception {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        store.put("a", 1000, 10_000);
+        store.put("b", 2000, 20_000);
+        reload();
+
+        store.remove("a");
+        reload();
+
+        assertThat(store.get("a")).isNull();
+        assertThat(store.getPositionMs("b")).isEqualTo(2000L);
+    }
+
+    @Test
+    public void getPage_returnsStoredEntriesOnly() {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        store.put("a", 1000, 10_000);
+        store.put("c", 3000, 30_000);
+
+        Map<String, WatchProgressStore.Entry> page = store.get(Arrays.asList("a", "b", "c"));
+
+        assertThat(page.keySet()).containsExactly("a", "c");
+        assertThat(page.get("c").positionMs).isEqualTo(3000L);
+    }
+
+    @Test
+    public void manyUpdates_compactIntoIndex_reloadRestoresEntries() throws Exception {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            store.put("media" + i, i, 100_000);
+        }
+        // 日志中的记录超过压缩的阈值，已经写入索引。
+        reload();
+
+        assertThat(new File(directory, "index").exists()).isTrue();
+        for (int i = 0; i < count; i++) {
+            assertThat(store.getPositionMs("media" + i)).isEqualTo((long) i);
+        }
+    }
+
+    @Test
+    public void load_tornLogTail_keepsUpdatesAppendedAfterIt() throws Exception {
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+        store.put("a", 1000, 10_000);
+        store.put("b", 2000, 20_000);
+        assertThat(store.releaseBlocking(TIMEOUT_MS)).isTrue();
+        // 模拟写入记录时进程退出：只写了媒体 id 和半个位置。
+        File logFile = new File(directory, "log");
+        long validLength = logFile.length();
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(logFile, /* append= */ true))) {
+            output.writeUTF("torn");
+            output.writeInt(1);
+        }
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+
+        assertThat(store.getPositionMs("a")).isEqualTo(1000L);
+        assertThat(store.getPositionMs("torn")).isEqualTo(C.TIME_UNSET);
+        assertThat(logFile.length()).isEqualTo(validLength);
+        store.put("c", 3000, 30_000);
+        reload();
+
+        assertThat(store.getPositionMs("a")).isEqualTo(1000L);
+        assertThat(store.getPositionMs("b")).isEqualTo(2000L);
+        assertThat(store.getPositionMs("c")).isEqualTo(3000L);
+    }
+
+    /**
+     * 写入更新并停止当前实例，再从磁盘加载一个新实例.
+     */
+    private void reload() throws Exception {
+        assertThat(store.releaseBlocking(TIMEOUT_MS)).isTrue();
+        store = new WatchProgressStore(directory, BATCH_DELAY_MS);
+    }
+}